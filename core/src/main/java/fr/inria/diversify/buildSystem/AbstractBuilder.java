@@ -7,10 +7,12 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Properties;
-import java.util.Set;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
 
 /**
  * User: Simon
@@ -59,9 +61,19 @@ public abstract class AbstractBuilder {
     //Number of time the run builder has been called
     protected int runCount;
 
+    //Kill the children process and the new threads after each run. Must be disabled when several builders run concurrently,
+    //see killOwnProcessTree
+    protected boolean killChildrenProcess = true;
+
+    //Kill only the process trees of the builds run in directory, and no thread. For the builders that run concurrently
+    protected boolean killOwnProcessTree = false;
+
     //Save the output to file for further analysis?
     private boolean saveOutputToFile;
 
+    //Stop the build at the first compile error or test failure not accepted
+    protected boolean failFast = false;
+
     public void setSaveOutputToFile(boolean value) {
         saveOutputToFile = value;
     }
@@ -90,7 +102,7 @@ public abstract class AbstractBuilder {
         saveOutputDir = "buildoutput";
     }
 
-    protected void reset() {
+    public void reset() {
         compileError = false;
         allTestRun = false;
         status = -3;
@@ -194,7 +206,9 @@ public abstract class AbstractBuilder {
      * Kill the maven thread that may be hang in Linux
      */
     protected void killUselessThread() {
-        if (!System.getProperty("os.name").contains("Windows")) {
+        if (killOwnProcessTree && !System.getProperty("os.name").contains("Windows")) {
+            killOwnProcessTree();
+        } else if (killChildrenProcess && !System.getProperty("os.name").contains("Windows")) {
             killAllChildrenProcess();
             for (Thread thread : Thread.getAllStackTraces().keySet()) {
                 if (!threadSet.contains(thread)) {
@@ -218,17 +232,97 @@ public abstract class AbstractBuilder {
         Log.debug("all children process kill (pid: {})", pid);
     }
 
+    /**
+     * Kill the children process started in directory, or with directory in their command line, and their descendants.
+     * Reads /proc, so does nothing out of Linux
+     */
+    protected void killOwnProcessTree() {
+        File proc = new File("/proc");
+        File[] processDirs = proc.listFiles();
+        if (processDirs == null) {
+            return;
+        }
+        String pid = ManagementFactory.getRuntimeMXBean().getName().split("@")[0];
+        Map<String, List<String>> childrenByParent = new HashMap<>();
+        for (File processDir : processDirs) {
+            String parent = parentPid(processDir);
+            if (parent != null) {
+                childrenByParent.computeIfAbsent(parent, k -> new ArrayList<>()).add(processDir.getName());
+            }
+        }
+
+        Path root = Paths.get(directory).toAbsolutePath().normalize();
+        List<String> tree = new ArrayList<>();
+        for (String child : childrenByParent.getOrDefault(pid, Collections.emptyList())) {
+            if (startedIn(new File(proc, child), root)) {
+                addProcessTree(child, childrenByParent, tree);
+            }
+        }
+        if (tree.isEmpty()) {
+            return;
+        }
+        try {
+            List<String> command = new ArrayList<>();
+            command.add("kill");
+            command.add("-KILL");
+            command.addAll(tree);
+            new ProcessBuilder(command).start().waitFor();
+        } catch (Exception e) {
+            Log.error("killOwnProcessTree ", e);
+        }
+        Log.debug("process tree of {} kill (pids: {})", directory, tree);
+    }
+
+    /**
+     * The parent pid of a process of /proc, null if processDir is not a process
+     */
+    protected String parentPid(File processDir) {
+        if (!processDir.getName().matches("\\d+")) {
+            return null;
+        }
+        try {
+            //pid (comm) state ppid ..., comm may contain spaces and parentheses
+            String stat = new String(Files.readAllBytes(new File(processDir, "stat").toPath()), StandardCharsets.UTF_8);
+            String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+            return fields[1];
+        } catch (Exception e) {
+            //the process ended
+            return null;
+        }
+    }
+
+    protected boolean startedIn(File processDir, Path root) {
+        try {
+            Path cwd = Files.readSymbolicLink(new File(processDir, "cwd").toPath());
+            if (cwd.normalize().startsWith(root)) {
+                return true;
+            }
+        } catch (Exception e) {}
+        try {
+            String commandLine = new String(Files.readAllBytes(new File(processDir, "cmdline").toPath()), StandardCharsets.UTF_8);
+            for (String arg : commandLine.split("\0")) {
+                try {
+                    if (!arg.isEmpty() && Paths.get(arg).toAbsolutePath().normalize().startsWith(root)) {
+                        return true;
+                    }
+                } catch (InvalidPathException e) {}
+            }
+        } catch (IOException e) {}
+        return false;
+    }
+
+    protected void addProcessTree(String pid, Map<String, List<String>> childrenByParent, List<String> tree) {
+        tree.add(pid);
+        for (String child : childrenByParent.getOrDefault(pid, Collections.emptyList())) {
+            addProcessTree(child, childrenByParent, tree);
+        }
+    }
+
     protected void saveOutputToFile(String output) {
         try {
             if (saveOutputToFile) {
 
-                File f = new File(getSaveOutputDir());
-                if (!f.exists()) {
-                    f.mkdirs();
-                }
-                File newTextFile = new File(getSaveOutputDir() + "/buidOutput" + runCount + ".txt");
-
-                FileWriter fileWriter = new FileWriter(newTextFile);
+                FileWriter fileWriter = new FileWriter(outputFile());
                 fileWriter.write(output);
                 fileWriter.close();
 
@@ -239,6 +333,17 @@ public abstract class AbstractBuilder {
         }
     }
 
+    /**
+     * File where the output of the current run is saved
+     */
+    protected File outputFile() {
+        File f = new File(getSaveOutputDir());
+        if (!f.exists()) {
+            f.mkdirs();
+        }
+        return new File(getSaveOutputDir() + "/buidOutput" + runCount + ".txt");
+    }
+
     public Integer getStatus() {
         return status;
     }
@@ -255,6 +360,18 @@ public abstract class AbstractBuilder {
         this.timeOut = timeOut;
     }
 
+    public void setKillChildrenProcess(boolean killChildrenProcess) {
+        this.killChildrenProcess = killChildrenProcess;
+    }
+
+    public void setKillOwnProcessTree(boolean killOwnProcessTree) {
+        this.killOwnProcessTree = killOwnProcessTree;
+    }
+
+    public void setFailFast(boolean failFast) {
+        this.failFast = failFast;
+    }
+
     public void setClojureTest(boolean clojureTest) {
         this.clojureTest = clojureTest;
     }
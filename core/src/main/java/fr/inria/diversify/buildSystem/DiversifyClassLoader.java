@@ -2,14 +2,12 @@ package fr.inria.diversify.buildSystem;
 
 
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
-import java.net.URLConnection;
+import java.nio.file.Files;
 import java.util.*;
 
 /**
@@ -85,21 +83,7 @@ public class DiversifyClassLoader extends ClassLoader {
     }
 
     protected Class loadClass0(File classFile, String fullName) throws IOException {
-        String url = "file:" + classFile.getAbsolutePath();
-        URL myUrl = new URL(url);
-        URLConnection connection = myUrl.openConnection();
-        InputStream input = connection.getInputStream();
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-        int data = input.read();
-
-        while (data != -1) {
-            buffer.write(data);
-            data = input.read();
-        }
-
-        input.close();
-
-        byte[] classData = buffer.toByteArray();
+        byte[] classData = Files.readAllBytes(classFile.toPath());
         return defineClass(fullName,
                 classData, 0, classData.length);
     }
@@ -56,32 +56,41 @@ public class MavenBuilder extends AbstractBuilder {
         invoker.setMavenHome(getBuilderPath());
         invoker.setTimeOut(timeOut);
 
-        ByteArrayOutputStream os = new ByteArrayOutputStream();
-        PrintStream stream = new PrintStream(os);
-        PrintStreamHandler psh = new PrintStreamHandler(stream, true);
-        invoker.setOutputHandler(psh);
-        invoker.setErrorHandler(psh);
+        MavenOutputParser parser = new MavenOutputParser();
+        parser.setAcceptedErrors(acceptedErrors);
+        parser.setFailFast(failFast);
+        MavenOutputHandler handler = new MavenOutputHandler(parser, verbose, failFast);
+        handler.setKeepOutput(clojureTest);
+        Writer outputFile = null;
         try {
+            if (getSaveOutputToFile()) {
+                outputFile = new BufferedWriter(new FileWriter(outputFile()));
+                handler.setOutputFile(outputFile);
+            }
+            invoker.setOutputHandler(handler);
+            invoker.setErrorHandler(handler);
             invoker.execute(request);
-            output = os.toString();
-            if(verbose) {
-                Log.debug(output);
+            if (handler.isBuildStopped()) {
+                //clears the interruption of the build
+                Thread.interrupted();
             }
-            if (getSaveOutputToFile()) { saveOutputToFile(output); }
+            output = handler.getOutput();
             if (clojureTest) {
                 parseClojureResult(output);
             } else {
-                parseResult(output);
+                parseResult(handler);
             }
 
-        } catch (MavenInvocationException e) {
+        } catch (MavenInvocationException | IOException e) {
             Log.debug("Error in run Maven", e);
-        }
-        try {
-            stream.close();
-            os.close();
-        } catch (IOException e) {
-            e.printStackTrace();
+        } finally {
+            if (outputFile != null) {
+                try {
+                    outputFile.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
         }
     }
 
@@ -114,18 +123,12 @@ public class MavenBuilder extends AbstractBuilder {
     public boolean hasDeviated = false;
 
     /**
-     * Parse status from the maven output
-     * @param r
+     * Status from the output parsed during the build
      */
-    protected void parseResult(String r) {
-        //Save r to further analysis
-        MavenOutputParser parser = new MavenOutputParser();
-        parser.setAcceptedErrors(acceptedErrors);
-
-        parser.parse(r, "\n");
-//        errors = parser.getCompileErrors();
+    protected void parseResult(MavenOutputHandler handler) {
+        status = handler.finish();
+        MavenOutputParser parser = handler.getParser();
         failedTests = parser.getFailedTests();
-        status = parser.getStatus();
         this.hasDeviated = parser.hasDeviated;
     }
 
@@ -0,0 +1,105 @@
+package fr.inria.diversify.buildSystem.maven;
+
+import fr.inria.diversify.util.Log;
+import org.apache.maven.shared.invoker.InvocationOutputHandler;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Parses the output of maven line by line, as it is read from the process: the output is not kept in memory,
+ * unless keepOutput is set.
+ *
+ * When the parser stops, after a compile error or after the first failed test not accepted in fail fast mode,
+ * the thread running the build is interrupted, which kills the maven process.
+ */
+public class MavenOutputHandler implements InvocationOutputHandler {
+    protected MavenOutputParser parser;
+
+    protected boolean verbose;
+
+    protected StringBuilder output;
+
+    protected Writer outputFile;
+
+    protected Thread buildThread;
+
+    protected boolean stopBuild;
+
+    protected boolean buildStopped = false;
+
+    /**
+     * @param parser    Parser of the output, started by this handler
+     * @param verbose   Log the lines at debug level
+     * @param stopBuild Interrupt the current thread when the parser stops
+     */
+    public MavenOutputHandler(MavenOutputParser parser, boolean verbose, boolean stopBuild) {
+        this.parser = parser;
+        this.verbose = verbose;
+        this.stopBuild = stopBuild;
+        buildThread = Thread.currentThread();
+        parser.start();
+    }
+
+    @Override
+    public synchronized void consumeLine(String line) {
+        if (verbose && Log.DEBUG) {
+            Log.debug(line);
+        }
+        if (output != null) {
+            output.append(line).append('\n');
+        }
+        if (outputFile != null) {
+            try {
+                outputFile.write(line);
+                outputFile.write('\n');
+            } catch (IOException e) {
+                Log.warn("Cannot save output: {}", e.getMessage());
+                outputFile = null;
+            }
+        }
+        if (!parser.parseLine(line) && stopBuild && !buildStopped) {
+            buildStopped = true;
+            Log.debug("stop the build");
+            buildThread.interrupt();
+        }
+    }
+
+    /**
+     * Ends the parsing
+     *
+     * @return The status of the build
+     */
+    public synchronized int finish() {
+        return parser.finish();
+    }
+
+    /**
+     * True if the build was stopped before its end
+     */
+    public synchronized boolean isBuildStopped() {
+        return buildStopped;
+    }
+
+    /**
+     * Keeps the output in memory, for getOutput
+     */
+    public void setKeepOutput(boolean keepOutput) {
+        output = keepOutput ? new StringBuilder() : null;
+    }
+
+    /**
+     * Copies the lines to a writer, closed by the caller
+     */
+    public void setOutputFile(Writer outputFile) {
+        this.outputFile = outputFile;
+    }
+
+    public String getOutput() {
+        return output == null ? null : output.toString();
+    }
+
+    public MavenOutputParser getParser() {
+        return parser;
+    }
+}
@@ -31,6 +31,14 @@ public class MavenOutputParser {
     //Errors we don't mind about
     private List<String> acceptedErrors;
 
+    private static final Pattern failedTestPattern = Pattern.compile("(\\w+)\\(((\\w+\\.)*\\w+)\\)\\s+Time elapsed:\\s+((\\d+\\.)?\\d+)\\s+sec\\s+<<<\\s+((FAILURE)|(ERROR))!");
+
+    //Stop at the first failed test not accepted
+    private boolean failFast = false;
+
+    //The parsing stopped at the first failed test not accepted
+    private boolean stopped = false;
+
     public MavenOutputParser() {
         status = -3;
         compilationErrors = new ArrayList<>();
@@ -56,60 +64,73 @@ public class MavenOutputParser {
      * @return 0 if locate success, -1 if test fails, -2 compilation error, -3 nothing parsed, -4 parsing error
      */
     public int parse(String[] output) {
-        Pattern failedTestPattern = Pattern.compile("(\\w+)\\(((\\w+\\.)*\\w+)\\)\\s+Time elapsed:\\s+((\\d+\\.)?\\d+)\\s+sec\\s+<<<\\s+((FAILURE)|(ERROR))!");
-        Pattern deviationPattern = Pattern.compile(".*\\[OFF TRACK\\].*");
-
-
-        List<String> resultFailedTests = new ArrayList<>();
-        boolean addToFailedTest = false;
+        start();
+        for (int i = 0; i < output.length && parseLine(output[i]); i++) {}
+        return finish();
+    }
 
+    /**
+     * Starts the parsing of an output read line by line with parseLine
+     */
+    public void start() {
+        stopped = false;
         setCompileError(false);
         status = -3;
+    }
 
-        for (int i = 0; i < output.length && getCompileError() == false; i++) {
-            String s = output[i];
-            Matcher m = failedTestPattern.matcher(s);
-            boolean matches = m.find();
-            if (matches) {
-                this.failedTest.add(m.group(2) + "." + m.group(1));
-            }
-            Matcher mDev = deviationPattern.matcher(s);
-            boolean matchesmDev = mDev.find();
-            if (matchesmDev) {
-                this.hasDeviated = true;
-            }
-
-            if(addToFailedTest) {
-                resultFailedTests.add(s);
-            }
-            if(s.contains("Failed tests:")) {
-                addToFailedTest = true;
-                resultFailedTests.add(s.substring("Failed tests:".length(), s.length()));
-            }
-            if(s.contains("Tests in error:")) {
-                addToFailedTest = true;
-//                resultFailedTests.add(s.substring("Failed tests:".length(), s.length()));
-            }
-            if(s.contains("Tests run:")  || s.isEmpty()) {
-                addToFailedTest = false;
+    /**
+     * Parses the next line of the output
+     *
+     * @return false when the rest of the output is not needed: after a compile error, or after the first failed test
+     * not accepted when failFast is set
+     */
+    public boolean parseLine(String s) {
+        if (getCompileError() || stopped) {
+            return false;
+        }
+        //the pattern is only matched against the lines of a failed test
+        Matcher m = s.contains("<<<") ? failedTestPattern.matcher(s) : null;
+        if (m != null && m.find()) {
+            String test = m.group(2) + "." + m.group(1);
+            this.failedTest.add(test);
+            if (failFast && !acceptedErrors.contains(test)) {
+                Log.debug("fail fast, test failed: {}", test);
+                stopped = true;
+                status = -1;
+                return false;
             }
+        }
+        if (s.contains("[OFF TRACK]")) {
+            this.hasDeviated = true;
+        }
 
-            //If we find a compile error there is no need for parsing more output
-            if (s.contains("[ERROR] COMPILATION ERROR")) {
-                setCompileError(true);
-                status = -2;
-            } else if (s.contains("[INFO] BUILD FAILURE")) {
-                if(!acceptedErrors.isEmpty()) {
-                    failedTest.removeAll(acceptedErrors);
-                    if(failedTest.isEmpty()) {
-                        status = 0;
-                    }
-                } else {
-                    status = -1;
+        //If we find a compile error there is no need for parsing more output
+        if (s.contains("[ERROR] COMPILATION ERROR")) {
+            setCompileError(true);
+            status = -2;
+        } else if (s.contains("[INFO] BUILD FAILURE")) {
+            if(!acceptedErrors.isEmpty()) {
+                failedTest.removeAll(acceptedErrors);
+                if(failedTest.isEmpty()) {
+                    status = 0;
                 }
-            } else if ( s.contains("[INFO] BUILD SUCCESS") ) {
-                status = 0;
+            } else {
+                status = -1;
             }
+        } else if ( s.contains("[INFO] BUILD SUCCESS") ) {
+            status = 0;
+        }
+        return !getCompileError();
+    }
+
+    /**
+     * Ends the parsing
+     *
+     * @return 0 if locate success, -1 if test fails, -2 compilation error, -3 nothing parsed, -4 parsing error
+     */
+    public int finish() {
+        if (stopped) {
+            failedTest.removeAll(acceptedErrors);
         }
         if((status == 0) && (this.hasDeviated)) status = 1;
 
@@ -120,6 +141,20 @@ public class MavenOutputParser {
         return status;
     }
 
+    /**
+     * True if the parsing stopped at the first failed test not accepted
+     */
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * Stop at the first failed test not accepted
+     */
+    public void setFailFast(boolean failFast) {
+        this.failFast = failFast;
+    }
+
     /**
      * Indicates if they where compile errors
      *
@@ -15,6 +15,7 @@ import spoon.support.reflect.code.CtLocalVariableImpl;
 import spoon.support.reflect.code.CtVariableReadImpl;
 
 import java.io.File;
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -27,7 +28,7 @@ import java.util.Random;
  * Date: 5/3/13
  * Time: 3:21 PM
  */
-public abstract class CodeFragment<T extends CtElement> {
+public abstract class CodeFragment<T extends CtElement> implements Serializable {
 
     /**
      * Context of the Code fragment, see article by Baudry, et. al "Tailored Source Code Transformations to Synthesize
@@ -0,0 +1,120 @@
+package fr.inria.diversify.codeFragment;
+
+import fr.inria.diversify.runner.accessors.Accessor;
+import fr.inria.diversify.util.StringSimilarity;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Code fragments of a class sorted by line, used to find the fragments near a line without
+ * going through the whole class.
+ */
+public class CodeFragmentLineIndex {
+    protected List<CodeFragment> source;
+    protected int sourceSize;
+
+    //fragments of the class and their lines, in the order of the source list
+    protected CodeFragment[] fragments;
+    protected int[] lines;
+
+    //indexes in fragments, sorted by line
+    protected int[] byLine;
+
+    //StringSimilarity fingerprints of the fragments, by accessor class
+    protected Map<Class<?>, AtomicReferenceArray<int[]>> fingerprints = new ConcurrentHashMap<>();
+
+    /**
+     * @param className the fragments of source in another class are ignored
+     */
+    public CodeFragmentLineIndex(String className, List<CodeFragment> source) {
+        this.source = source;
+        sourceSize = source.size();
+
+        CodeFragment[] tmpFragments = new CodeFragment[sourceSize];
+        int[] tmpLines = new int[sourceSize];
+        int count = 0;
+        for(CodeFragment codeFragment : source) {
+            String position = codeFragment.positionString();
+            int separator = position.indexOf(':');
+            if(position.substring(0, separator).equals(className)) {
+                tmpFragments[count] = codeFragment;
+                tmpLines[count] = Integer.parseInt(position.substring(separator + 1));
+                count++;
+            }
+        }
+        fragments = Arrays.copyOf(tmpFragments, count);
+        lines = Arrays.copyOf(tmpLines, count);
+
+        //sort (line, index) pairs packed in longs
+        long[] keys = new long[count];
+        for(int i = 0; i < count; i++) {
+            keys[i] = ((long) lines[i] << 32) | i;
+        }
+        Arrays.sort(keys);
+        byLine = new int[count];
+        for(int i = 0; i < count; i++) {
+            byLine[i] = (int) keys[i];
+        }
+    }
+
+    /**
+     * True if this index has been built from this list and the list has not grown since
+     */
+    public boolean isIndexOf(List<CodeFragment> list) {
+        return source == list && sourceSize == list.size();
+    }
+
+    /**
+     * Indexes of the fragments whose line is in [line - lineThreshold, line + lineThreshold],
+     * in the order of the source list
+     */
+    public int[] near(int line, int lineThreshold) {
+        long min = (long) line - lineThreshold;
+        long max = (long) line + lineThreshold;
+
+        int low = 0;
+        int high = byLine.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if(lines[byLine[mid]] < min) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        int end = low;
+        while (end < byLine.length && lines[byLine[end]] <= max) {
+            end++;
+        }
+        int[] result = Arrays.copyOfRange(byLine, low, end);
+        Arrays.sort(result);
+        return result;
+    }
+
+    public CodeFragment get(int index) {
+        return fragments[index];
+    }
+
+    public int line(int index) {
+        return lines[index];
+    }
+
+    /**
+     * StringSimilarity fingerprint of the value of a fragment, computed on the first call.
+     * The accessor must be stateless: the fingerprints are cached by accessor class.
+     */
+    public int[] fingerprint(int index, Accessor<CodeFragment, String> accessor) {
+        AtomicReferenceArray<int[]> cache = fingerprints.computeIfAbsent(accessor.getClass(),
+                key -> new AtomicReferenceArray<>(fragments.length));
+        int[] fingerprint = cache.get(index);
+        if(fingerprint == null) {
+            fingerprint = StringSimilarity.fingerprint(accessor.getValue(fragments[index]));
+            cache.set(index, fingerprint);
+        }
+        return fingerprint;
+    }
+}
@@ -2,7 +2,9 @@ package fr.inria.diversify.codeFragment;
 
 import spoon.reflect.reference.CtTypeReference;
 
-public class Context {
+import java.io.Serializable;
+
+public class Context implements Serializable {
 	protected InputContext inputContext;
 	protected CtTypeReference<?> outputContext;
 	
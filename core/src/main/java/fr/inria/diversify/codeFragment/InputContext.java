@@ -3,20 +3,38 @@ package fr.inria.diversify.codeFragment;
 import spoon.reflect.reference.CtTypeReference;
 import spoon.reflect.reference.CtVariableReference;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
-public class InputContext {
-    protected Set<CtVariableReference> variableReferences;
+public class InputContext implements Serializable {
+    protected transient Set<CtVariableReference> variableReferences;
     protected Integer hashCode = null;
 
     public InputContext(Set<CtVariableReference> inputContext) {
         this.variableReferences = inputContext;
     }
 
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeObject(new ArrayList<>(variableReferences));
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        List<CtVariableReference> variables = (List<CtVariableReference>) in.readObject();
+        //the hash code of a reference is not stable until the whole graph is read: the set is filled after,
+        //keeping the iteration order of the serialized set
+        in.registerValidation(() -> variableReferences = new LinkedHashSet<>(variables), 0);
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (obj == null || !(obj instanceof InputContext))
@@ -0,0 +1,278 @@
+package fr.inria.diversify.factories;
+
+import fr.inria.diversify.codeFragment.CodeFragment;
+import fr.inria.diversify.codeFragment.CodeFragmentList;
+import fr.inria.diversify.runner.InputProgram;
+import fr.inria.diversify.util.Log;
+import spoon.reflect.declaration.CtElement;
+import spoon.reflect.factory.Factory;
+import spoon.reflect.reference.CtVariableReference;
+import spoon.reflect.visitor.Filter;
+
+import java.io.*;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Snapshot on disk of the spoon model of a program, and of its code fragments once processed.
+ *
+ * The name of a snapshot file is made of a key of the source directories (relative to the program directory), the
+ * java version and the classpath, and of a hash of the content of the java files: a copy of the program in another
+ * directory uses the same snapshot. When the sources change, the next save replaces the snapshot of the previous
+ * content. The sandboxes of the runners (tmp_&lt;time&gt; directories, with the suffix of a worker, of the original or
+ * of the sosie, and the tmp_branch_&lt;time&gt; directories of the coverage) are not cached, their snapshots would never
+ * be read again.
+ */
+public class ModelCache {
+    //directories created for each run: tmp_<time> by AbstractRunner.init, tmp_<time>_worker<i> by
+    //ParallelSinglePointRunner, tmp_<time>_original and _sosie by SosieComparator, tmp_branch_<time> for the coverage
+    protected static final Pattern SANDBOX = Pattern.compile("tmp_(branch_)?\\d+(_\\w+)?");
+
+    protected File directory;
+    protected File baseDir;
+    protected List<String> sourceDirs;
+    protected int javaVersion;
+
+    //hash of the sources, computed once: the model is built from the sources as they are at the first use
+    protected String contentHash;
+
+    /**
+     * @param directory directory of the snapshots
+     * @param baseDir directory of the program, the source directories are keyed relative to it
+     * @param sourceDirs source directories of the model, as given to SpoonMetaFactory
+     */
+    public ModelCache(String directory, String baseDir, List<String> sourceDirs, int javaVersion) {
+        this.directory = new File(directory);
+        this.baseDir = baseDir == null ? null : new File(baseDir).getAbsoluteFile();
+        this.sourceDirs = sourceDirs.stream()
+                .filter(dirs -> dirs != null)
+                .flatMap(dirs -> Arrays.stream(dirs.split(System.getProperty("path.separator"))))
+                .filter(dir -> !dir.isEmpty())
+                .collect(Collectors.toList());
+        this.javaVersion = javaVersion;
+    }
+
+    /**
+     * Restores the factory of inputProgram from the snapshot, and its code fragments if they have been processed
+     * with the same processor
+     *
+     * @return false if there is no up to date snapshot
+     */
+    public boolean load(InputProgram inputProgram) {
+        if(isSandbox()) {
+            return false;
+        }
+        File file;
+        try {
+            file = snapshotFile();
+        } catch (IOException e) {
+            Log.warn("can not hash the sources of the spoon model: {}", e.getMessage());
+            return false;
+        }
+        if(!file.exists()) {
+            return false;
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))))) {
+            if(!in.readUTF().equals(contentHash())) {
+                Log.info("spoon model cache {} is outdated", file);
+                return false;
+            }
+            String processor = in.readUTF();
+            Factory factory = (Factory) in.readObject();
+            CodeFragmentList codeFragments = (CodeFragmentList) in.readObject();
+            HashMap<String, CodeFragmentList> codeFragmentsByClass = (HashMap<String, CodeFragmentList>) in.readObject();
+
+            restoreFactory(factory, codeFragments);
+            inputProgram.setFactory(factory);
+            if(codeFragments != null && processor.equals(inputProgram.getCodeFragmentProcessor().getClass().getName())) {
+                inputProgram.setCodeFragments(codeFragments, codeFragmentsByClass);
+            }
+            Log.info("spoon model loaded from {}", file);
+            return true;
+        } catch (Exception e) {
+            Log.warn("can not load the spoon model cache {}: {}", file, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Writes the factory of inputProgram in the snapshot, with its code fragments if they have been processed
+     */
+    public void save(InputProgram inputProgram) {
+        if(isSandbox()) {
+            return;
+        }
+        File file = null;
+        try {
+            file = snapshotFile();
+            directory.mkdirs();
+            //written in a temporary file, another process may be reading the snapshot
+            File tmp = File.createTempFile(file.getName(), ".tmp", directory);
+            try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tmp))))) {
+                out.writeUTF(contentHash());
+                out.writeUTF(inputProgram.getCodeFragmentProcessor().getClass().getName());
+                out.writeObject(inputProgram.getFactory());
+                boolean processed = inputProgram.isCodeFragmentsProcessed();
+                out.writeObject(processed ? inputProgram.getCodeFragments() : null);
+                out.writeObject(processed ? inputProgram.getCodeFragmentsByClass() : null);
+            } catch (IOException e) {
+                Files.deleteIfExists(tmp.toPath());
+                throw e;
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            deleteOutdated(file);
+        } catch (IOException e) {
+            Log.warn("can not save the spoon model cache {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * The factory of the elements is transient: it is set again on the model and on the references
+     * of the code fragments, which are not all in the model
+     */
+    protected void restoreFactory(Factory factory, CodeFragmentList codeFragments) {
+        factory.createQuery(factory.Module().getAllModules().toArray())
+                .filterChildren(new Filter<CtElement>() {
+                    @Override
+                    public boolean matches(CtElement element) {
+                        element.setFactory(factory);
+                        return false;
+                    }
+                }).list();
+        if(codeFragments != null) {
+            for(CodeFragment codeFragment : codeFragments) {
+                codeFragment.getCtCodeFragment().setFactory(factory);
+                codeFragment.getOutputContext().setFactory(factory);
+                for(CtVariableReference variable : codeFragment.getInputContext().getVar()) {
+                    variable.setFactory(factory);
+                }
+            }
+        }
+    }
+
+    protected File snapshotFile() throws IOException {
+        return new File(directory, configurationKey() + "-" + contentHash().substring(0, 16) + ".model");
+    }
+
+    /**
+     * Removes the snapshots of the other contents of the same source directories
+     */
+    protected void deleteOutdated(File snapshot) throws IOException {
+        String prefix = configurationKey() + "-";
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(".model"));
+        if(files != null) {
+            for(File file : files) {
+                if(!file.equals(snapshot)) {
+                    Files.deleteIfExists(file.toPath());
+                }
+            }
+        }
+    }
+
+    /**
+     * Hash of the source directories relative to the program directory, of the java version and of the classpath
+     */
+    protected String configurationKey() {
+        StringBuilder key = new StringBuilder();
+        sourceDirs.forEach(dir -> key.append(relativePath(dir)).append('\n'));
+        key.append(javaVersion).append('\n');
+        classpath().forEach(url -> key.append(url).append('\n'));
+
+        return hash(key.toString().getBytes()).substring(0, 16);
+    }
+
+    /**
+     * Path of a source directory relative to the program directory, absolute if it is not in the program directory
+     */
+    protected String relativePath(String dir) {
+        Path path = Paths.get(dir).toAbsolutePath().normalize();
+        if(baseDir != null && path.startsWith(baseDir.toPath().normalize())) {
+            return baseDir.toPath().normalize().relativize(path).toString();
+        }
+        return path.toString();
+    }
+
+    /**
+     * True if a source directory is in a sandbox of a runner
+     */
+    protected boolean isSandbox() {
+        for(String dir : sourceDirs) {
+            for(Path name : Paths.get(dir).toAbsolutePath()) {
+                if(SANDBOX.matcher(name.toString()).matches()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Hash of the paths and contents of the java files of the source directories
+     */
+    protected String contentHash() throws IOException {
+        if(contentHash == null) {
+            MessageDigest digest = digest();
+            for(String dir : sourceDirs) {
+                Path root = Paths.get(dir);
+                if(!Files.isDirectory(root)) {
+                    continue;
+                }
+                List<Path> files;
+                try (Stream<Path> walk = Files.walk(root)) {
+                    files = walk.filter(path -> path.toString().endsWith(".java"))
+                            .sorted()
+                            .collect(Collectors.toList());
+                }
+                for(Path file : files) {
+                    digest.update(root.relativize(file).toString().getBytes());
+                    digest.update(Files.readAllBytes(file));
+                }
+            }
+            contentHash = toHex(digest.digest());
+        }
+        return contentHash;
+    }
+
+    /**
+     * Urls of the class loaders used by spoon to resolve the types, including the dependencies loaded
+     * by MavenDependencyResolver
+     */
+    protected List<URL> classpath() {
+        List<URL> urls = new ArrayList<>();
+        for(ClassLoader loader = Thread.currentThread().getContextClassLoader(); loader != null; loader = loader.getParent()) {
+            if(loader instanceof URLClassLoader) {
+                urls.addAll(Arrays.asList(((URLClassLoader) loader).getURLs()));
+            }
+        }
+        return urls;
+    }
+
+    protected String hash(byte[] bytes) {
+        return toHex(digest().digest(bytes));
+    }
+
+    protected MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    protected String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for(byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
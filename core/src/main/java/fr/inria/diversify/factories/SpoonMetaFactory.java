@@ -10,6 +10,7 @@ import spoon.support.StandardEnvironment;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 /**
  * Created by marodrig on 16/06/2014.
@@ -17,23 +18,25 @@ import java.util.Collection;
 public class SpoonMetaFactory {
 
     public Factory buildNewFactory(InputProgram inputProgram, boolean withTest) throws IllegalAccessException, InstantiationException, ClassNotFoundException {
-        ArrayList<String> a = new ArrayList<String>();
-        a.add(inputProgram.getAbsoluteSourceCodeDir());
-        if(withTest) {
-            a.add(inputProgram.getAbsoluteTestSourceCodeDir());
-        }
-        a.add(inputProgram.getExternalSourceCodeDir());
-        return buildNewFactory(a, inputProgram.getJavaVersion());
+        return buildNewFactory(sourceDirectories(inputProgram, withTest), inputProgram.getJavaVersion());
     }
 
     public DiversityCompiler buildSpoonCompiler(InputProgram inputProgram, boolean withTest) throws IllegalAccessException, InstantiationException, ClassNotFoundException {
+        return buildSpoonCompiler(sourceDirectories(inputProgram, withTest), inputProgram.getJavaVersion());
+    }
+
+    /**
+     * Source directories of the model of inputProgram, each entry may contain several directories separated by
+     * the path separator
+     */
+    public List<String> sourceDirectories(InputProgram inputProgram, boolean withTest) {
         ArrayList<String> a = new ArrayList<String>();
         a.add(inputProgram.getAbsoluteSourceCodeDir());
         if(withTest) {
             a.add(inputProgram.getAbsoluteTestSourceCodeDir());
         }
         a.add(inputProgram.getExternalSourceCodeDir());
-        return buildSpoonCompiler(a, inputProgram.getJavaVersion());
+        return a;
     }
 
     public Factory buildNewFactory(String srcDirectory, int javaVersion) throws ClassNotFoundException, IllegalAccessException, InstantiationException {
@@ -0,0 +1,138 @@
+package fr.inria.diversify.persistence.json.input;
+
+import org.json.JSONException;
+import org.json.JSONTokener;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Token level reader of a JSON text: the members of an object and the elements of an array are read one by one,
+ * and a value can be skipped without being built. Only the value being read is in memory.
+ */
+public class JsonStreamReader implements Closeable {
+
+    private Reader reader;
+
+    private JSONTokener tokener;
+
+    public JsonStreamReader(Reader reader) {
+        this.reader = reader;
+        tokener = new JSONTokener(reader);
+    }
+
+    /**
+     * Reads the start of an object
+     */
+    public void beginObject() throws JSONException {
+        expect('{');
+    }
+
+    /**
+     * Reads the start of an array
+     */
+    public void beginArray() throws JSONException {
+        expect('[');
+    }
+
+    /**
+     * Reads the key of the next member of the current object
+     *
+     * @return The key, null at the end of the object
+     */
+    public String nextKey() throws JSONException {
+        char c = nextSeparated();
+        if (c == '}') {
+            return null;
+        }
+        if (c != '"' && c != '\'') {
+            throw tokener.syntaxError("A JSONObject text must begin with a key");
+        }
+        String key = tokener.nextString(c);
+        c = tokener.nextClean();
+        if (c == '=') {
+            if (tokener.next() != '>') {
+                tokener.back();
+            }
+        } else if (c != ':') {
+            throw tokener.syntaxError("Expected a ':' after a key");
+        }
+        return key;
+    }
+
+    /**
+     * True if the current array has a next element, read with nextValue or skipValue
+     */
+    public boolean hasNextElement() throws JSONException {
+        char c = nextSeparated();
+        if (c == ']') {
+            return false;
+        }
+        tokener.back();
+        return true;
+    }
+
+    /**
+     * Reads the next value: a JSONObject, a JSONArray, a String, a Number, a Boolean or JSONObject.NULL
+     */
+    public Object nextValue() throws JSONException {
+        return tokener.nextValue();
+    }
+
+    /**
+     * Reads the next value without building it
+     */
+    public void skipValue() throws JSONException {
+        char c = tokener.nextClean();
+        if (c == '"' || c == '\'') {
+            tokener.nextString(c);
+        } else if (c == '{' || c == '[') {
+            int depth = 1;
+            while (depth > 0) {
+                c = tokener.next();
+                switch (c) {
+                    case 0:
+                        throw tokener.syntaxError("Unterminated value");
+                    case '"':
+                    case '\'':
+                        tokener.nextString(c);
+                        break;
+                    case '{':
+                    case '[':
+                        depth++;
+                        break;
+                    case '}':
+                    case ']':
+                        depth--;
+                        break;
+                }
+            }
+        } else {
+            tokener.back();
+            tokener.nextValue();
+        }
+    }
+
+    /**
+     * The next character, after the separator of the previous member or element
+     */
+    protected char nextSeparated() throws JSONException {
+        char c = tokener.nextClean();
+        if (c == ',' || c == ';') {
+            c = tokener.nextClean();
+        }
+        return c;
+    }
+
+    protected void expect(char expected) throws JSONException {
+        if (tokener.nextClean() != expected) {
+            throw tokener.syntaxError("Expected a '" + expected + "'");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -1,9 +1,11 @@
 package fr.inria.diversify.runner;
 
 import fr.inria.diversify.codeFragment.CodeFragment;
+import fr.inria.diversify.codeFragment.CodeFragmentLineIndex;
 import fr.inria.diversify.codeFragment.CodeFragmentList;
 import fr.inria.diversify.codeFragmentProcessor.*;
 import fr.inria.diversify.coverage.ICoverageReport;
+import fr.inria.diversify.factories.ModelCache;
 import fr.inria.diversify.runner.accessors.Accessor;
 import fr.inria.diversify.runner.accessors.SourceAccesor;
 import fr.inria.diversify.runner.accessors.TypeAccesor;
@@ -29,6 +31,7 @@ import spoon.reflect.visitor.filter.TypeFilter;
 import spoon.support.QueueProcessingManager;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 //import java.util.stream.Collectors;
 
@@ -131,6 +134,11 @@ public class InputProgram {
 
     protected Map<Class, List<? extends CtElement>> typeToObject = new HashMap<Class, List<? extends CtElement>>();
 
+    /**
+     * Elements of a type by line, built on the first findElement of the type
+     */
+    protected Map<Class, Map<Integer, List<CtElement>>> elementsByLine = new ConcurrentHashMap<>();
+
     /**
      * List of inline constants that can be found in this program
      */
@@ -149,7 +157,22 @@ public class InputProgram {
     /**
      * Code fragments separated by class
      */
-    protected HashMap<String, CodeFragmentList> codeFragmentsByClass = null;
+    protected volatile HashMap<String, CodeFragmentList> codeFragmentsByClass = null;
+
+    /**
+     * Line index of the code fragments of each class, used by findCodeFragment
+     */
+    protected Map<String, CodeFragmentLineIndex> lineIndexes = new ConcurrentHashMap<>();
+
+    /**
+     * Directory of the spoon model snapshots, null to always build the model
+     */
+    private String modelCacheDir;
+
+    /**
+     * Snapshot of the current model, updated when the code fragments are processed
+     */
+    protected ModelCache modelCache;
 
     /**
      * Process all code fragments. Used to early process them.
@@ -162,9 +185,25 @@ public class InputProgram {
             pm.process(factory.Package().getRootPackage());
             codeFragments = processor.getCodeFragments();
             codeFragmentsByClass = processor.getCodeFragmentsByClass();
+            if (modelCache != null) {
+                modelCache.save(this);
+            }
         }
     }
 
+    public boolean isCodeFragmentsProcessed() {
+        return codeFragments != null && codeFragments.size() != 0 && codeFragmentsByClass != null;
+    }
+
+    /**
+     * Sets the code fragments of the factory, already processed (e.g. restored by ModelCache)
+     */
+    public void setCodeFragments(CodeFragmentList codeFragments, HashMap<String, CodeFragmentList> codeFragmentsByClass) {
+        this.codeFragments = codeFragments;
+        this.codeFragmentsByClass = codeFragmentsByClass;
+        lineIndexes.clear();
+    }
+
 
     /**
      * Process only the code fragments needed to handle a known set of transformations.
@@ -259,45 +298,37 @@ public class InputProgram {
         int similarFragmentCount = 0;
         int similarMinDist = Integer.MAX_VALUE;
 
-        CodeFragmentList fragments = getCodeFragmentsByClass().get(position);
-        if (fragments != null) {
-            for (CodeFragment codeFragment : fragments) {
-                String[] cfPos = codeFragment.positionString().split(":");
-                //Analyze only code fragments in the file of the one we are looking for
-                if (cfPos[0].equals(position)) {
-                    int cfLine = Integer.parseInt(cfPos[1]);
-                    /*if(codeFragment.getCtCodeFragment().toString().equals(searchValue) && cfLine == lineNumber) {
-                        //If it is of the same code and the same line: we found it!!
-                        return codeFragment;
-                    }*/
-                    String ctValue = accesor.getValue(codeFragment);
-                    if (ctValue.equals(searchValue) && cfLine == lineNumber) {
-                        //If it is of the same code and the same line: we found it!!
-                        return codeFragment;
-                    //} else if (ctValue.contains(searchValue) && cfLine == lineNumber) {
-                    } else {
-                        //Similarity factor (provide flexibility...)
-                        double x = StringSimilarity.CompareStrings(ctValue, searchValue);
-                        //Line distance
-                        int k = Math.abs(cfLine - lineNumber);
-
-                        //Do not analyze this fragment if it is to different or to far
-                        if (x < valueThreshold || k > lineThreshold) continue;
-
-                        if (x > sDiff) {
-                            similarFragmentCount = 0;//A better value is found, erase similar count
-                            minDiff = k;//Store line distance
-                            sDiff = x;
+        CodeFragmentLineIndex index = getLineIndex(position);
+        if (index != null) {
+            int[] searchPairs = StringSimilarity.fingerprint(searchValue);
+            //Analyze only code fragments near the line we are looking for
+            for (int i : index.near(lineNumber, lineThreshold)) {
+                CodeFragment codeFragment = index.get(i);
+                int cfLine = index.line(i);
+                if (cfLine == lineNumber && accesor.getValue(codeFragment).equals(searchValue)) {
+                    //If it is of the same code and the same line: we found it!!
+                    return codeFragment;
+                } else {
+                    //Similarity factor (provide flexibility...)
+                    double x = StringSimilarity.compare(index.fingerprint(i, accesor), searchPairs);
+                    //Line distance
+                    int k = Math.abs(cfLine - lineNumber);
+
+                    //Do not analyze this fragment if it is to different
+                    if (x < valueThreshold) continue;
+
+                    if (x > sDiff) {
+                        similarFragmentCount = 0;//A better value is found, erase similar count
+                        minDiff = k;//Store line distance
+                        sDiff = x;
+                        result = codeFragment;
+                    } else if (Math.abs(x - sDiff) < 0.0000001) {
+                        similarFragmentCount++; //equally good fragment found, augment the amount of fragments
+                        if (k < minDiff) {
+                            similarMinDist = minDiff;
+                            //else return the nearest one with same code
                             result = codeFragment;
-                        } else if (Math.abs(x - sDiff) < 0.0000001) {
-                            similarFragmentCount++; //equally good fragment found, augment the amount of fragments
-                            int d = Math.abs(cfLine - lineNumber);
-                            if (d < minDiff) {
-                                similarMinDist = minDiff;
-                                //else return the nearest one with same code
-                                result = codeFragment;
-                                minDiff = d;
-                            }
+                            minDiff = k;
                         }
                     }
                 }
@@ -323,6 +354,22 @@ public class InputProgram {
         return result;
     }
 
+    /**
+     * Line index of the code fragments of a class, built on the first search in this class
+     */
+    protected CodeFragmentLineIndex getLineIndex(String className) {
+        CodeFragmentList fragments = getCodeFragmentsByClass().get(className);
+        if (fragments == null) {
+            return null;
+        }
+        CodeFragmentLineIndex index = lineIndexes.get(className);
+        if (index == null || !index.isIndexOf(fragments)) {
+            index = new CodeFragmentLineIndex(className, fragments);
+            lineIndexes.put(className, index);
+        }
+        return index;
+    }
+
     public <T extends CtElement> T findElement(Class type, String position, String searchValue) {
         return findElement(type, position, searchValue, 5, 0.85);
     }
@@ -337,14 +384,7 @@ public class InputProgram {
         String classPosition = classPositionTmp;
         int lineNumberPosition = Integer.parseInt(s[1]);
 
-        List<T> allElements = getAllElement(type);
-        /*List<T> elements = allElements.stream()
-                .filter(e -> (e.getPosition().getLine() == lineNumberPosition)
-                        && (e.getPosition().getCompilationUnit().getMainType().getQualifiedName().equals(classPosition))
-                ).collect(Collectors.toList());*/
-        List<T> elements = allElements.stream()
-                .filter(e -> (e.getPosition().getLine() == lineNumberPosition))
-                .collect(Collectors.toList());
+        List<T> elements = getElementsAtLine(type, lineNumberPosition);
         if(elements.size() == 1) return  elements.get(0);
         List<T> elementsFiltered = elements.stream()
                 .filter(e -> e.getPosition().getCompilationUnit().getMainType().getQualifiedName().equals(classPosition))
@@ -367,6 +407,30 @@ public class InputProgram {
         return result;
     }
 
+    /**
+     * Elements of a type at a line, in the order of getAllElement. Thread safe: the index of the type is built once.
+     */
+    protected <T extends CtElement> List<T> getElementsAtLine(Class type, int line) {
+        Map<Integer, List<CtElement>> index = elementsByLine.get(type);
+        if (index == null) {
+            Map<Integer, List<CtElement>> newIndex = new HashMap<>();
+            for (CtElement element : this.<CtElement>getAllElement(type)) {
+                if (element.getPosition() != null) {
+                    newIndex.computeIfAbsent(element.getPosition().getLine(), key -> new ArrayList<>()).add(element);
+                }
+            }
+            index = elementsByLine.putIfAbsent(type, newIndex);
+            if (index == null) {
+                index = newIndex;
+            }
+        }
+        List<CtElement> elements = index.get(line);
+        if (elements == null) {
+            return Collections.emptyList();
+        }
+        return (List<T>) elements;
+    }
+
     /**
      * Returns an specific code fragment given its position and source. The source is optional.
      * However, you should supply both, since is possible that a code fragment
@@ -376,7 +440,7 @@ public class InputProgram {
      * @param source   Source of the code Fragment
      * @return
      */
-    public synchronized CodeFragment getCodeFragment(String position, String source) {
+    public CodeFragment getCodeFragment(String position, String source) {
         return findCodeFragment(position, source, new SourceAccesor());
     }
 
@@ -636,8 +700,28 @@ public class InputProgram {
         this.preferredGeneratorVersion = preferredGeneratorVersion;
     }
 
+    public String getModelCacheDir() {
+        return modelCacheDir;
+    }
+
+    public void setModelCacheDir(String modelCacheDir) {
+        this.modelCacheDir = modelCacheDir;
+    }
+
+    public ModelCache getModelCache() {
+        return modelCache;
+    }
+
+    public void setModelCache(ModelCache modelCache) {
+        this.modelCache = modelCache;
+    }
+
     public HashMap<String, CodeFragmentList> getCodeFragmentsByClass() {
-        if (codeFragmentsByClass == null) processCodeFragments();
+        if (codeFragmentsByClass == null) {
+            synchronized (this) {
+                if (codeFragmentsByClass == null) processCodeFragments();
+            }
+        }
         return codeFragmentsByClass;
     }
 
@@ -650,6 +734,7 @@ public class InputProgram {
         clone.javaVersion = javaVersion;
         clone.coverageDir = coverageDir;
         clone.classesDir = classesDir;
+        clone.modelCacheDir = modelCacheDir;
 
         return clone;
     }
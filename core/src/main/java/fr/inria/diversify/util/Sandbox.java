@@ -0,0 +1,145 @@
+package fr.inria.diversify.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+/**
+ * Working copy of a project made of hard links to the original files.
+ *
+ * Files written in place (by spoon, the instrumentation or the build) would modify the original through the link,
+ * so everything a build can write is copied: the writable directories (typically the source directories), and at
+ * any depth the files and directories of WRITABLE_NAMES (sources, resources and tests, build outputs, the log
+ * directory whose info and options files are rewritten by the instrumentation, and the build files, such as the pom
+ * replaced by AbstractBuilder.initPom). Only the other files (libraries, data, .git) are linked.
+ * The excluded directories are not provisioned at all, none by default, as the copy of the whole project did.
+ * When hard links are not supported (e.g. another file system), the files are copied.
+ */
+public class Sandbox {
+    public static final List<String> DEFAULT_EXCLUDED = Collections.emptyList();
+    public static final List<String> WRITABLE_NAMES = Arrays.asList("src", "target", "log",
+            "pom.xml", "build.xml", "build.gradle");
+
+    protected Path original;
+    protected Path directory;
+    protected Set<Path> writableDirs;
+    protected Set<Path> excludedDirs;
+    protected boolean linkSupported = true;
+
+    /**
+     * @param original directory of the original project
+     * @param directory directory of the sandbox
+     * @param writableDirs directories (relative to the project) copied rather than linked
+     */
+    public Sandbox(String original, String directory, Collection<String> writableDirs) {
+        this(original, directory, writableDirs, DEFAULT_EXCLUDED);
+    }
+
+    public Sandbox(String original, String directory, Collection<String> writableDirs, Collection<String> excludedDirs) {
+        this.original = Paths.get(original).toAbsolutePath().normalize();
+        this.directory = Paths.get(directory).toAbsolutePath().normalize();
+        this.writableDirs = relativePaths(writableDirs);
+        this.excludedDirs = relativePaths(excludedDirs);
+    }
+
+    /**
+     * Provisions the sandbox, a previous content of the sandbox directory is deleted
+     */
+    public void create() throws IOException {
+        File dir = directory.toFile();
+        if(dir.exists()) {
+            FileUtils.forceDelete(dir);
+        }
+        Files.walkFileTree(original, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Path relative = original.relativize(dir);
+                if(excludedDirs.contains(relative) || dir.equals(directory)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                Files.createDirectories(directory.resolve(relative));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Path relative = original.relativize(file);
+                if(isWritable(relative)) {
+                    Files.copy(file, directory.resolve(relative), StandardCopyOption.COPY_ATTRIBUTES);
+                } else {
+                    link(file, directory.resolve(relative));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Restores a file of the sandbox from the original project, or deletes it if it is not in the original project
+     *
+     * @param relativePath path relative to the project directory
+     */
+    public void restore(String relativePath) throws IOException {
+        Path relative = Paths.get(relativePath).normalize();
+        Path file = original.resolve(relative);
+        Path copy = directory.resolve(relative);
+        if(!Files.exists(file)) {
+            Files.deleteIfExists(copy);
+        } else if(isWritable(relative)) {
+            Files.copy(file, copy, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+        } else {
+            Files.deleteIfExists(copy);
+            link(file, copy);
+        }
+    }
+
+    public void delete() throws IOException {
+        File dir = directory.toFile();
+        if(dir.exists()) {
+            FileUtils.forceDelete(dir);
+        }
+    }
+
+    public String getDirectory() {
+        return directory.toString();
+    }
+
+    protected boolean isWritable(Path relative) {
+        for(Path writableDir : writableDirs) {
+            if(relative.startsWith(writableDir)) {
+                return true;
+            }
+        }
+        for(Path name : relative) {
+            if(WRITABLE_NAMES.contains(name.toString())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected void link(Path file, Path link) throws IOException {
+        if(linkSupported) {
+            try {
+                Files.createLink(link, file);
+                return;
+            } catch (UnsupportedOperationException | IOException e) {
+                Log.debug("hard links not supported in {}, files are copied", directory);
+                linkSupported = false;
+            }
+        }
+        Files.copy(file, link, StandardCopyOption.COPY_ATTRIBUTES);
+    }
+
+    protected Set<Path> relativePaths(Collection<String> paths) {
+        Set<Path> set = new HashSet<>();
+        for(String path : paths) {
+            if(path != null && !path.isEmpty()) {
+                set.add(Paths.get(path).normalize());
+            }
+        }
+        return set;
+    }
+}
@@ -1,7 +1,6 @@
 package fr.inria.diversify.util;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * Created by marodrig on 21/12/2014.
@@ -19,19 +18,29 @@ public class StringSimilarity {
     /// <param name="str2"></param>
     /// <returns>The percentage match from 0.0 to 1.0 where 1.0 is 100%</returns>
     public static double CompareStrings(String str1, String str2) {
-        List<String> pairs1 = WordLetterPairs(str1.toUpperCase());
-        List<String> pairs2 = WordLetterPairs(str2.toUpperCase());
+        return compare(fingerprint(str1), fingerprint(str2));
+    }
 
+    /// <summary>
+    /// Compares two fingerprints, same result as CompareStrings on the fingerprinted strings
+    /// </summary>
+    /// <returns>The percentage match from 0.0 to 1.0 where 1.0 is 100%</returns>
+    public static double compare(int[] pairs1, int[] pairs2) {
         double intersection = 0;
-        double union = pairs1.size() + pairs2.size();
+        double union = pairs1.length + pairs2.length;
 
-        for (int i = 0; i < pairs1.size(); i++) {
-            for (int j = 0; j < pairs2.size(); j++) {
-                if (pairs1.get(i).equals(pairs2.get(j))) {
-                    intersection++;
-                    pairs2.remove(j);//Must remove the match to prevent "GGGG" from appearing to match "GG" with 100% success
-                    break;
-                }
+        //each pair of pairs2 matches at most one pair of pairs1, so "GGGG" does not match "GG" with 100% success
+        int i = 0;
+        int j = 0;
+        while (i < pairs1.length && j < pairs2.length) {
+            if (pairs1[i] == pairs2[j]) {
+                intersection++;
+                i++;
+                j++;
+            } else if (pairs1[i] < pairs2[j]) {
+                i++;
+            } else {
+                j++;
             }
         }
 
@@ -39,49 +48,57 @@ public class StringSimilarity {
     }
 
     /// <summary>
-    /// Gets all letter pairs for each
-    /// individual word in the String
+    /// Compares a fingerprint with several ones
     /// </summary>
-    /// <param name="str"></param>
-    /// <returns></returns>
-    private static List<String> WordLetterPairs(String str) {
-        List<String> AllPairs = new ArrayList<String>();
+    /// <param name="scores">receives the score of each candidate</param>
+    public static void compare(int[] query, int[][] candidates, double[] scores) {
+        for (int i = 0; i < candidates.length; i++) {
+            scores[i] = compare(query, candidates[i]);
+        }
+    }
 
-        // Tokenize the String and putDataToJSON the tokens/words into an array
-        String[] Words = str.split("\\s");
+    /// <summary>
+    /// Gets all letter pairs for each individual word of the upper cased String,
+    /// each pair packed in an int, sorted
+    /// </summary>
+    public static int[] fingerprint(String str) {
+        str = str.toUpperCase();
+        int[] pairs = new int[Math.max(str.length(), 1)];
+        int count = 0;
 
-        // For each word
-        for (int w = 0; w < Words.length; w++) {
-            if (!(Words[w] == null || Words[w].equals(""))) {
+        // Words are separated by the characters of \s
+        int length = str.length();
+        int begin = 0;
+        while (begin < length) {
+            while (begin < length && isWhitespace(str.charAt(begin))) {
+                begin++;
+            }
+            int end = begin;
+            while (end < length && !isWhitespace(str.charAt(end))) {
+                end++;
+            }
+            // a one letter word is paired with the euro sign
+            if (end - begin == 1) {
+                pairs[count++] = pair(str.charAt(begin), '\u20AC');
+            } else {
                 // Find the pairs of characters
-                String[] PairsInWord = LetterPairs(Words[w]);
-                for (int p = 0; p < PairsInWord.length; p++) {
-                    AllPairs.add(PairsInWord[p]);
+                for (int i = begin; i < end - 1; i++) {
+                    pairs[count++] = pair(str.charAt(i), str.charAt(i + 1));
                 }
             }
+            begin = end;
         }
+        int[] result = Arrays.copyOf(pairs, count);
+        Arrays.sort(result);
 
-        return AllPairs;
+        return result;
     }
 
-    /// <summary>
-    /// Generates an array containing every 
-    /// two consecutive letters in the input String
-    /// </summary>
-    /// <param name="str"></param>
-    /// <returns></returns>
-    private static String[] LetterPairs(String str) {
-
-        int numPairs = str.length() - 1;
-
-        if ( numPairs == 0 ) return new String[]{str + "€"};
-
-        String[] pairs = new String[numPairs];
-
-        for (int i = 0; i < numPairs; i++) {
-            pairs[i] = str.substring(i, i + 2);
-        }
+    private static int pair(char c1, char c2) {
+        return (c1 << 16) | c2;
+    }
 
-        return pairs;
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
     }
 }
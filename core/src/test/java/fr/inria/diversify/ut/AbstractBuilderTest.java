@@ -0,0 +1,87 @@
+package fr.inria.diversify.ut;
+
+import fr.inria.diversify.buildSystem.AbstractBuilder;
+import fr.inria.diversify.util.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class AbstractBuilderTest {
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        assumeTrue(new File("/proc/self/stat").exists());
+        dir = Files.createTempDirectory("abstractBuilder").toFile().getCanonicalFile();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (dir != null) {
+            FileUtils.forceDelete(dir);
+        }
+    }
+
+    @Test
+    public void testKillOwnProcessTree() throws Exception {
+        File worker = new File(dir, "tmp_1");
+        File otherWorker = new File(dir, "tmp_1_worker1");
+        worker.mkdirs();
+        otherWorker.mkdirs();
+        //a build with a forked child, as surefire
+        Process build = new ProcessBuilder("sh", "-c", "sleep 60 & wait").directory(worker).start();
+        Process otherBuild = new ProcessBuilder("sleep", "60").directory(otherWorker).start();
+        try {
+            Thread.sleep(500);
+            assertEquals(2, processCount(worker));
+
+            new TestBuilder(worker.getPath()).killOwnProcessTree();
+
+            assertTrue(build.waitFor(10, TimeUnit.SECONDS));
+            assertEquals(0, processCount(worker));
+            assertTrue(otherBuild.isAlive());
+        } finally {
+            build.destroyForcibly();
+            otherBuild.destroyForcibly();
+        }
+    }
+
+    /**
+     * Number of processes running in dir
+     */
+    private int processCount(File dir) {
+        int count = 0;
+        for (File process : new File("/proc").listFiles()) {
+            try {
+                Path cwd = Files.readSymbolicLink(new File(process, "cwd").toPath());
+                if (cwd.equals(dir.toPath())) {
+                    count++;
+                }
+            } catch (Exception e) {}
+        }
+        return count;
+    }
+
+    private static class TestBuilder extends AbstractBuilder {
+        TestBuilder(String directory) {
+            super(directory);
+        }
+
+        @Override
+        protected void runPrivate(String[] goals, boolean verbose) {}
+
+        @Override
+        public void killOwnProcessTree() {
+            super.killOwnProcessTree();
+        }
+    }
+}
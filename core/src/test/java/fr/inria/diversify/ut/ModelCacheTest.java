@@ -0,0 +1,128 @@
+package fr.inria.diversify.ut;
+
+import fr.inria.diversify.codeFragment.CodeFragment;
+import fr.inria.diversify.codeFragmentProcessor.AllStatementsProcessor;
+import fr.inria.diversify.factories.ModelCache;
+import fr.inria.diversify.factories.SpoonMetaFactory;
+import fr.inria.diversify.runner.InputProgram;
+import fr.inria.diversify.util.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ModelCacheTest {
+    private File root;
+    private File src;
+    private File cacheDir;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("modelCache").toFile();
+        src = new File(root, "src");
+        cacheDir = new File(root, "cache");
+        write("public class A { int m(int a, int b) { int c = a + b; return c; } }", new File(src, "A.java"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.forceDelete(root);
+    }
+
+    @Test
+    public void testLoad() throws Exception {
+        InputProgram built = inputProgram();
+        built.setFactory(new SpoonMetaFactory().buildNewFactory(src.getPath(), 7));
+        built.setModelCache(cache());
+        built.processCodeFragments();
+
+        InputProgram loaded = inputProgram();
+        assertTrue(cache().load(loaded));
+        assertNotNull(loaded.getFactory().Class().get("A"));
+        assertTrue(loaded.isCodeFragmentsProcessed());
+        assertEquals(built.getCodeFragments().size(), loaded.getCodeFragments().size());
+        for(int i = 0; i < built.getCodeFragments().size(); i++) {
+            CodeFragment cf = loaded.getCodeFragments().get(i);
+            assertEquals(built.getCodeFragments().get(i).equalString(), cf.equalString());
+            assertSame(loaded.getFactory(), cf.getCtCodeFragment().getFactory());
+            assertEquals(built.getCodeFragments().get(i).getInputContext().getVar().toString(),
+                    cf.getInputContext().getVar().toString());
+            assertTrue(cf.getInputContext().getVar().containsAll(cf.getInputContext().getVar()));
+        }
+    }
+
+    @Test
+    public void testInvalidation() throws Exception {
+        InputProgram built = inputProgram();
+        built.setFactory(new SpoonMetaFactory().buildNewFactory(src.getPath(), 7));
+        cache().save(built);
+
+        write("public class A { }", new File(src, "A.java"));
+        assertFalse(cache().load(inputProgram()));
+    }
+
+    @Test
+    public void testCopy() throws Exception {
+        InputProgram built = inputProgram();
+        built.setFactory(new SpoonMetaFactory().buildNewFactory(src.getPath(), 7));
+        cache().save(built);
+
+        //a copy of the program in another directory uses the same snapshot
+        File copy = new File(root, "copy");
+        write("public class A { int m(int a, int b) { int c = a + b; return c; } }", new File(copy, "src/A.java"));
+        assertTrue(cache(copy).load(inputProgram()));
+
+        //the snapshot of the new content replaces the previous one
+        write("public class A { }", new File(copy, "src/A.java"));
+        cache(copy).save(built);
+        assertEquals(1, cacheDir.listFiles().length);
+        assertFalse(cache().load(inputProgram()));
+    }
+
+    @Test
+    public void testSandbox() throws Exception {
+        File sandbox = new File(root, "tmp_1234");
+        write("public class A { }", new File(sandbox, "src/A.java"));
+        InputProgram built = inputProgram();
+        built.setFactory(new SpoonMetaFactory().buildNewFactory(new File(sandbox, "src").getPath(), 7));
+        cache(sandbox).save(built);
+
+        assertFalse(cacheDir.exists());
+        assertFalse(cache(sandbox).load(inputProgram()));
+
+        //the other runners
+        for (String name : Arrays.asList("tmp_1234_worker1", "tmp_1234_original", "tmp_1234_sosie", "tmp_branch_1234")) {
+            File dir = new File(root, name);
+            write("public class A { }", new File(dir, "src/A.java"));
+            cache(dir).save(built);
+            assertFalse(name, cacheDir.exists());
+        }
+    }
+
+    private ModelCache cache() {
+        return cache(root);
+    }
+
+    private ModelCache cache(File programDir) {
+        List<String> sourceDirs = Arrays.asList(new File(programDir, "src").getPath());
+        return new ModelCache(cacheDir.getPath(), programDir.getPath(), sourceDirs, 7);
+    }
+
+    private InputProgram inputProgram() {
+        InputProgram inputProgram = new InputProgram();
+        inputProgram.setCodeFragmentProcessor(new AllStatementsProcessor());
+        return inputProgram;
+    }
+
+    private void write(String content, File file) throws IOException {
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes("UTF-8"));
+    }
+}
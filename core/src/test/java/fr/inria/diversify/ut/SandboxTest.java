@@ -0,0 +1,103 @@
+package fr.inria.diversify.ut;
+
+import fr.inria.diversify.util.FileUtils;
+import fr.inria.diversify.util.Sandbox;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class SandboxTest {
+    private File root;
+    private File project;
+    private File sandboxDir;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("sandbox").toFile();
+        project = new File(root, "project");
+        sandboxDir = new File(root, "sandbox");
+        write("<project/>", new File(project, "pom.xml"));
+        write("class A {}", new File(project, "src/main/java/A.java"));
+        write("data", new File(project, "src/main/resources/data.txt"));
+        write("class", new File(project, "target/classes/A.class"));
+        write("id;0;A", new File(project, "log/info"));
+        write("jar", new File(project, "lib/a.jar"));
+        write("class T {}", new File(project, "module/src/test/java/T.java"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.forceDelete(root);
+    }
+
+    @Test
+    public void testCreate() throws IOException {
+        new Sandbox(project.getPath(), sandboxDir.getPath(), Arrays.asList("src/main/java")).create();
+
+        assertEquals("<project/>", read(new File(sandboxDir, "pom.xml")));
+        assertEquals("data", read(new File(sandboxDir, "src/main/resources/data.txt")));
+        assertEquals("class", read(new File(sandboxDir, "target/classes/A.class")));
+        //the files the build does not write are links
+        assertTrue(Files.isSameFile(new File(project, "lib/a.jar").toPath(), new File(sandboxDir, "lib/a.jar").toPath()));
+
+        //a writable file is a copy
+        write("class A { int i; }", new File(sandboxDir, "src/main/java/A.java"));
+        assertEquals("class A {}", read(new File(project, "src/main/java/A.java")));
+
+        //the log directory and the pom are rewritten by the instrumentation and the builders
+        write("id;0;B", new File(sandboxDir, "log/info"));
+        write("<project></project>", new File(sandboxDir, "pom.xml"));
+        assertEquals("id;0;A", read(new File(project, "log/info")));
+        assertEquals("<project/>", read(new File(project, "pom.xml")));
+
+        //resources, tests of the modules and build outputs are written in place by the build
+        write("other", new File(sandboxDir, "src/main/resources/data.txt"));
+        write("class T { int i; }", new File(sandboxDir, "module/src/test/java/T.java"));
+        write("other class", new File(sandboxDir, "target/classes/A.class"));
+        assertEquals("data", read(new File(project, "src/main/resources/data.txt")));
+        assertEquals("class T {}", read(new File(project, "module/src/test/java/T.java")));
+        assertEquals("class", read(new File(project, "target/classes/A.class")));
+    }
+
+    @Test
+    public void testExclude() throws IOException {
+        new Sandbox(project.getPath(), sandboxDir.getPath(), Arrays.asList("src/main/java"), Arrays.asList("target")).create();
+
+        assertFalse(new File(sandboxDir, "target").exists());
+        assertEquals("<project/>", read(new File(sandboxDir, "pom.xml")));
+    }
+
+    @Test
+    public void testRestore() throws IOException {
+        Sandbox sandbox = new Sandbox(project.getPath(), sandboxDir.getPath(), Arrays.asList("src/main/java"));
+        sandbox.create();
+
+        write("class A { int i; }", new File(sandboxDir, "src/main/java/A.java"));
+        write("class B {}", new File(sandboxDir, "src/main/java/B.java"));
+        Files.delete(new File(sandboxDir, "pom.xml").toPath());
+
+        sandbox.restore("src/main/java/A.java");
+        sandbox.restore("src/main/java/B.java");
+        sandbox.restore("pom.xml");
+
+        assertEquals("class A {}", read(new File(sandboxDir, "src/main/java/A.java")));
+        assertFalse(new File(sandboxDir, "src/main/java/B.java").exists());
+        assertEquals("<project/>", read(new File(sandboxDir, "pom.xml")));
+    }
+
+    private void write(String content, File file) throws IOException {
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes("UTF-8"));
+    }
+
+    private String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), "UTF-8");
+    }
+}
@@ -0,0 +1,80 @@
+package fr.inria.diversify.ut.json.input;
+
+import fr.inria.diversify.persistence.json.input.JsonStreamReader;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test the token level reading of a JSON text
+ */
+public class JsonStreamReaderTest {
+
+    private static final String JSON = "{\"header\": {\"a\": \"}]\", \"b\": [1, 2]},\n" +
+            " \"transformations\": [{\"tindex\": 1, \"s\": \"x\\\"{\"}, {\"tindex\": 2, \"l\": [[], {}]}, {\"tindex\": 3}],\n" +
+            " \"failureDictionary\": {\"test\": 0}, \"count\": 3}";
+
+    /**
+     * Test the reading of the members of an object and of the elements of an array
+     */
+    @Test
+    public void testReadElements() throws JSONException {
+        JsonStreamReader reader = new JsonStreamReader(new StringReader(JSON));
+        reader.beginObject();
+        assertEquals("header", reader.nextKey());
+        JSONObject header = (JSONObject) reader.nextValue();
+        assertEquals("}]", header.getString("a"));
+
+        assertEquals("transformations", reader.nextKey());
+        reader.beginArray();
+        List<Integer> indexes = new ArrayList<>();
+        while (reader.hasNextElement()) {
+            indexes.add(((JSONObject) reader.nextValue()).getInt("tindex"));
+        }
+        assertEquals(3, indexes.size());
+        assertEquals(3, (int) indexes.get(2));
+
+        assertEquals("failureDictionary", reader.nextKey());
+        assertEquals(0, ((JSONObject) reader.nextValue()).getInt("test"));
+        assertEquals("count", reader.nextKey());
+        assertEquals(3, reader.nextValue());
+        assertNull(reader.nextKey());
+    }
+
+    /**
+     * Test that skipped values, with strings containing brackets, leave the reader on the next member
+     */
+    @Test
+    public void testSkipValue() throws JSONException {
+        JsonStreamReader reader = new JsonStreamReader(new StringReader(JSON));
+        reader.beginObject();
+        List<String> keys = new ArrayList<>();
+        String key = reader.nextKey();
+        while (key != null) {
+            keys.add(key);
+            reader.skipValue();
+            key = reader.nextKey();
+        }
+        assertEquals(4, keys.size());
+        assertEquals("count", keys.get(3));
+    }
+
+    /**
+     * Test the reading of empty objects and arrays
+     */
+    @Test
+    public void testEmpty() throws JSONException {
+        JsonStreamReader reader = new JsonStreamReader(new StringReader("{\"t\": []}"));
+        reader.beginObject();
+        assertEquals("t", reader.nextKey());
+        reader.beginArray();
+        assertFalse(reader.hasNextElement());
+        assertNull(reader.nextKey());
+    }
+}
@@ -2,11 +2,11 @@ package fr.inria.diversify;
 
 import fr.inria.diversify.buildSystem.android.InvalidSdkException;
 import fr.inria.diversify.log.branch.Coverage;
+import fr.inria.diversify.persistence.binary.TransformationStore;
 import fr.inria.diversify.persistence.json.input.JsonTransformationLoader;
 import fr.inria.diversify.processor.main.AddBlockEverywhereProcessor;
 import fr.inria.diversify.runner.InputConfiguration;
 import fr.inria.diversify.runner.InputProgram;
-import fr.inria.diversify.transformation.Transformation;
 import fr.inria.diversify.util.InitUtils;
 import spoon.reflect.code.CtStatement;
 import spoon.reflect.declaration.CtClass;
@@ -30,7 +30,7 @@ import java.util.stream.Collectors;
 public class SosieSubSetExp {
     protected InputProgram inputProgram;
     protected List<Coverage> testCoverages;
-    protected Collection<Transformation> transformations;
+    protected TransformationStore store;
 
     public Map<CtType, Set<String>> classToCoverageTests() {
         Map<CtType, Set<String>> classToTests = new HashMap<>();
@@ -95,55 +95,54 @@ public class SosieSubSetExp {
             Set<String> tests = classToTests.get(cl);
             Set<String> localTests = classToLocalTests.get(cl);
 
-            Set<Transformation> trial = transformations.parallelStream()
-                    .filter(t -> mainType(t).equals(cl))
-                    .collect(Collectors.toSet());
-
-            Set<Transformation> compile = trial.stream()
-                    .filter(t -> t.getStatus() >= -1)
-                    .collect(Collectors.toSet());
-
-            Set<Transformation> sosie = compile.stream()
-                    .filter(t -> t.getStatus() == 0)
-                    .collect(Collectors.toSet());
-
-            Set<Transformation> localSosie = new HashSet<>();
-            for(Transformation t : compile) {
-                boolean b = false;
-                for(String test : t.getFailures()) {
-                    b = b || localTests.contains(test);
-                    if(b) {
-                        break;
+            int[] trial = store.recordsOfClass(cl.getQualifiedName());
+            BitSet localTestIds = store.testIds(localTests);
+            int compile = 0;
+            int sosie = 0;
+            int localSosie = 0;
+            int localsosieNotGlobalSosie = 0;
+            for(int t : trial) {
+                int status = store.getStatus(t);
+                if(status >= -1) {
+                    compile++;
+                    if(status == 0) {
+                        sosie++;
+                    }
+                    if(!store.failsOneOf(t, localTestIds)) {
+                        localSosie++;
+                        if(status != 0) {
+                            localsosieNotGlobalSosie++;
+                        }
                     }
-                }
-                if(!b) {
-                    localSosie.add(t);
                 }
             }
 
-            Set<Transformation> localsosieNotGlobalSosie = localSosie.stream()
-                    .filter(t -> t.getStatus() != 0)
-                    .collect(Collectors.toSet());
-
             writer.write(cl.getQualifiedName() + ";");
             writer.write(tests.size() + ";");
             writer.write(localTests.size() + ";");
-            writer.write(trial.size() + ";");
-            writer.write(compile.size() + ";");
-            writer.write(sosie.size() + ";");
-            writer.write(localSosie.size() + ";");
-            writer.write(localsosieNotGlobalSosie.size() + "\n");
+            writer.write(trial.length + ";");
+            writer.write(compile + ";");
+            writer.write(sosie + ";");
+            writer.write(localSosie + ";");
+            writer.write(localsosieNotGlobalSosie + "\n");
         }
         writer.close();
     }
 
-    protected CtType mainType(Transformation t) {
-        return t.getPositions().get(0).getCompilationUnit().getMainType();
-    }
-
-    protected Collection<Transformation> loadTransformation(String transDir) {
+    /**
+     * Loads the store of the transformations, or builds it from the transformations of transDir and writes it
+     * in storeFile when it does not exist
+     */
+    protected TransformationStore loadTransformation(String transDir, String storeFile) throws IOException {
+        if(storeFile != null && new File(storeFile).exists()) {
+            return TransformationStore.load(new File(storeFile));
+        }
         JsonTransformationLoader loader = new JsonTransformationLoader(inputProgram);
-        return loader.load(transDir, true);
+        TransformationStore store = TransformationStore.of(loader.load(transDir, true));
+        if(storeFile != null) {
+            store.write(new File(storeFile));
+        }
+        return store;
     }
 
     public SosieSubSetExp(InputConfiguration inputConfiguration) throws Exception, InvalidSdkException {
@@ -155,7 +154,8 @@ public class SosieSubSetExp {
 
         loadLog();
 
-        transformations = loadTransformation(inputConfiguration.getPreviousTransformationPath());
+        store = loadTransformation(inputConfiguration.getPreviousTransformationPath(),
+                inputConfiguration.getProperty("transformation.store"));
     }
 
     protected void loadLog() throws IOException {
@@ -0,0 +1,118 @@
+package fr.inria.diversify.buildSystem.inprocess;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.*;
+
+/**
+ * Main class of a build worker process, started by BuildWorkerPool.
+ *
+ * The worker listens on a loopback port, written on its standard output, and serves the requests
+ * of one client. A request is a json object on one line, the response is a json object on one line:
+ * <pre>
+ * {"directory": ..., "generation": ..., "srcDir": ..., "testSrcDir": ..., "javaVersion": ..., "properties": {...}}
+ * {"status": ..., "compileError": ..., "allTestRun": ..., "failedTests": [...], "output": ..., "heap": ..., "unusable": ...}
+ * </pre>
+ * The worker keeps one InProcessBuilder per directory, so the following builds of a directory only
+ * recompile the modified files. The builder is dropped when the generation of the request does not follow the
+ * last one of the worker: another worker has built the directory in between, and its classes are not known to this
+ * builder. <code>unusable</code> is true when test threads of a timed out build could not be stopped, the worker
+ * must not be reused. It stops at the end of the connection or on <code>{"stop": true}</code>.
+ */
+public class BuildWorker {
+    public static final String PORT_PREFIX = "BUILD_WORKER_PORT ";
+
+    protected Map<String, InProcessBuilder> builders = new HashMap<>();
+
+    //generation of the last build of each directory
+    protected Map<String, Integer> generations = new HashMap<>();
+
+    public static void main(String[] args) throws IOException {
+        ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        System.out.println(PORT_PREFIX + serverSocket.getLocalPort());
+        System.out.flush();
+
+        Socket socket = serverSocket.accept();
+        serverSocket.close();
+        try {
+            new BuildWorker().serve(socket.getInputStream(), socket.getOutputStream());
+        } finally {
+            socket.close();
+        }
+        System.exit(0);
+    }
+
+    protected void serve(InputStream in, OutputStream out) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            try {
+                JSONObject request = new JSONObject(line);
+                if (request.optBoolean("stop")) {
+                    return;
+                }
+                writer.write(build(request).toString());
+            } catch (JSONException e) {
+                writer.write("{\"status\":-3,\"error\":" + JSONObject.quote(e.getMessage()) + "}");
+            }
+            writer.write("\n");
+            writer.flush();
+        }
+    }
+
+    protected JSONObject build(JSONObject request) throws JSONException {
+        String directory = request.getString("directory");
+        int generation = request.optInt("generation", -1);
+        InProcessBuilder builder = builders.get(directory);
+        Integer lastGeneration = generations.put(directory, generation);
+        if (builder != null && (generation == -1 || lastGeneration == null || lastGeneration != generation - 1)) {
+            builder = null;
+        }
+        if (builder == null) {
+            builder = new InProcessBuilder(directory, request.getString("srcDir"),
+                    request.getString("testSrcDir"), request.getInt("javaVersion"));
+            builders.put(directory, builder);
+        }
+        Properties properties = null;
+        JSONObject jsonProperties = request.optJSONObject("properties");
+        if (jsonProperties != null) {
+            properties = new Properties();
+            Iterator keys = jsonProperties.keys();
+            while (keys.hasNext()) {
+                String key = (String) keys.next();
+                properties.setProperty(key, jsonProperties.getString(key));
+            }
+        }
+        if (request.has("acceptedErrors")) {
+            JSONArray acceptedErrors = request.getJSONArray("acceptedErrors");
+            List<String> errors = new ArrayList<>(acceptedErrors.length());
+            for (int i = 0; i < acceptedErrors.length(); i++) {
+                errors.add(acceptedErrors.getString(i));
+            }
+            builder.setAcceptedErrors(errors);
+        }
+
+        //the time out is enforced by the client, which kills this process
+        builder.reset();
+        builder.runPrivate(null, false, properties);
+
+        JSONObject response = new JSONObject();
+        response.put("status", builder.getStatus());
+        response.put("compileError", builder.getCompileError());
+        response.put("allTestRun", builder.allTestRun());
+        response.put("failedTests", new JSONArray(builder.getFailedTests()));
+        response.put("output", builder.getOutput());
+        Runtime runtime = Runtime.getRuntime();
+        response.put("heap", runtime.totalMemory() - runtime.freeMemory());
+        response.put("unusable", builder.isUnusable());
+
+        return response;
+    }
+}
@@ -0,0 +1,246 @@
+package fr.inria.diversify.buildSystem.inprocess;
+
+import fr.inria.diversify.util.Log;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Pool of long-lived BuildWorker processes.
+ *
+ * A worker is started the first time it is needed and reused for the following builds. It is stopped
+ * after <code>maxRun</code> builds, when its heap grows past <code>maxHeap</code>, or when a build
+ * exceeds its time out or leaves test threads running. Only the process of this worker is killed.
+ *
+ * The builds of a directory are numbered: a worker compiles incrementally only if it has run the previous build
+ * of the directory, otherwise the classes compiled by another worker would be taken as up to date.
+ */
+public class BuildWorkerPool {
+    protected int size;
+    protected int maxRun;
+    protected long maxHeap;
+    protected List<String> jvmArgs;
+    protected String classPath;
+
+    protected final List<Worker> idle;
+    //number of builds of each directory
+    protected final Map<String, Integer> generations = new HashMap<>();
+    protected int started;
+    protected boolean closed;
+
+    /**
+     * @param size maximum number of workers
+     * @param maxRun number of builds after which a worker is recycled
+     * @param maxHeap heap size (in bytes) after which a worker is recycled
+     * @param jvmArgs options of the worker jvm
+     */
+    public BuildWorkerPool(int size, int maxRun, long maxHeap, List<String> jvmArgs) {
+        this.size = Math.max(1, size);
+        this.maxRun = maxRun;
+        this.maxHeap = maxHeap;
+        this.jvmArgs = jvmArgs;
+        idle = new LinkedList<>();
+        //the dependencies of the program are in the context class loader
+        classPath = classPath(Thread.currentThread().getContextClassLoader());
+    }
+
+    /**
+     * Sends a build request to a worker
+     *
+     * @param timeOut time out in seconds, no time out if <= 0
+     * @return the response of the worker
+     * @throws SocketTimeoutException if the time out is exceeded, the worker is then killed
+     */
+    public JSONObject build(JSONObject request, int timeOut) throws IOException, InterruptedException, JSONException {
+        String directory = request.getString("directory");
+        Worker worker = borrow(directory);
+        synchronized (idle) {
+            request.put("generation", (int) generations.merge(directory, 1, Integer::sum));
+        }
+        boolean reuse = false;
+        try {
+            JSONObject response = worker.request(request, timeOut);
+            reuse = worker.runs < maxRun && response.optLong("heap") < maxHeap && !response.optBoolean("unusable");
+            return response;
+        } finally {
+            release(worker, reuse);
+        }
+    }
+
+    /**
+     * Takes an idle worker, preferably one that has already built this directory
+     */
+    protected Worker borrow(String directory) throws IOException, InterruptedException {
+        synchronized (idle) {
+            while (idle.isEmpty() && started >= size && !closed) {
+                idle.wait();
+            }
+            if (closed) {
+                throw new IOException("build worker pool closed");
+            }
+            if (!idle.isEmpty()) {
+                Worker worker = idle.stream()
+                        .filter(w -> directory.equals(w.lastDirectory))
+                        .findFirst()
+                        .orElse(idle.get(0));
+                idle.remove(worker);
+                worker.lastDirectory = directory;
+                return worker;
+            }
+            started++;
+        }
+        try {
+            Worker worker = new Worker();
+            worker.lastDirectory = directory;
+            return worker;
+        } catch (IOException e) {
+            synchronized (idle) {
+                started--;
+                idle.notify();
+            }
+            throw e;
+        }
+    }
+
+    protected void release(Worker worker, boolean reuse) {
+        synchronized (idle) {
+            if (reuse && !closed) {
+                idle.add(worker);
+                idle.notify();
+                return;
+            }
+            started--;
+            idle.notify();
+        }
+        worker.stop();
+    }
+
+    /**
+     * Stops all the idle workers, the busy ones are stopped when they are released
+     */
+    public void close() {
+        synchronized (idle) {
+            closed = true;
+            for (Worker worker : idle) {
+                worker.stop();
+                started--;
+            }
+            idle.clear();
+            idle.notifyAll();
+        }
+    }
+
+    protected String classPath(ClassLoader classLoader) {
+        List<String> classPath = new ArrayList<>();
+        while (classLoader != null) {
+            if (classLoader instanceof URLClassLoader) {
+                for (URL url : ((URLClassLoader) classLoader).getURLs()) {
+                    classPath.add(url.getFile());
+                }
+            }
+            classLoader = classLoader.getParent();
+        }
+        classPath.addAll(Arrays.asList(System.getProperty("java.class.path").split(File.pathSeparator)));
+        return classPath.stream()
+                .distinct()
+                .filter(path -> new File(path).exists())
+                .collect(Collectors.joining(File.pathSeparator));
+    }
+
+    protected class Worker {
+        protected Process process;
+        protected Socket socket;
+        protected BufferedReader reader;
+        protected Writer writer;
+        protected int runs;
+        protected String lastDirectory;
+        //false while a request is in progress or after a failed request
+        protected boolean ready;
+
+        protected Worker() throws IOException {
+            List<String> command = new ArrayList<>();
+            command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+            command.addAll(jvmArgs);
+            command.add("-cp");
+            command.add(classPath);
+            command.add(BuildWorker.class.getName());
+
+            process = new ProcessBuilder(command)
+                    .redirectErrorStream(true)
+                    .start();
+            BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream()));
+            String line = out.readLine();
+            while (line != null && !line.startsWith(BuildWorker.PORT_PREFIX)) {
+                line = out.readLine();
+            }
+            if (line == null) {
+                process.destroyForcibly();
+                throw new IOException("build worker did not start");
+            }
+            int port = Integer.parseInt(line.substring(BuildWorker.PORT_PREFIX.length()).trim());
+            drain(out);
+
+            socket = new Socket(InetAddress.getLoopbackAddress(), port);
+            reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+            writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8"));
+            ready = true;
+            Log.debug("build worker started on port {}", port);
+        }
+
+        protected JSONObject request(JSONObject request, int timeOut) throws IOException, JSONException {
+            runs++;
+            ready = false;
+            socket.setSoTimeout(timeOut > 0 ? timeOut * 1000 : 0);
+            writer.write(request.toString());
+            writer.write("\n");
+            writer.flush();
+            String line = reader.readLine();
+            if (line == null) {
+                throw new IOException("build worker stopped");
+            }
+            JSONObject response = new JSONObject(line);
+            ready = true;
+            return response;
+        }
+
+        /**
+         * The output of the tests run by the worker is discarded
+         */
+        protected void drain(BufferedReader out) {
+            Thread thread = new Thread(() -> {
+                try {
+                    while (out.readLine() != null) {}
+                } catch (IOException e) {}
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        protected void stop() {
+            if (!ready) {
+                //time out or broken connection: the worker may be stuck in a test
+                process.destroyForcibly();
+                return;
+            }
+            try {
+                writer.write("{\"stop\":true}\n");
+                writer.flush();
+                socket.close();
+                if (!process.waitFor(1, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            } catch (Exception e) {
+                process.destroyForcibly();
+            }
+        }
+    }
+}
@@ -0,0 +1,514 @@
+package fr.inria.diversify.buildSystem.inprocess;
+
+import fr.inria.diversify.buildSystem.AbstractBuilder;
+import fr.inria.diversify.buildSystem.DiversifyClassLoader;
+import fr.inria.diversify.util.Log;
+import org.eclipse.jdt.internal.compiler.batch.Main;
+import org.junit.runner.Description;
+import org.junit.runner.Request;
+import org.junit.runner.Result;
+import org.junit.runner.manipulation.Filter;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+import org.junit.runner.notification.RunNotifier;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.Modifier;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Permission;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Builder that compiles and runs the tests of the program in the current JVM.
+ *
+ * The first run compiles all the sources of the program (main and test) in a class directory owned by the builder.
+ * The following runs only compile the java files whose content has changed since the previous run, and run the JUnit tests
+ * in a new class loader over this class directory.
+ *
+ * Status and failed tests have the same meaning as for MavenBuilder: -2 compile error, -1 test failure,
+ * 0 all test green.
+ *
+ * The tests run in a thread of their own thread group, where System.exit throws a SecurityException. When the build
+ * times out, its thread stops the tests: the JUnit run is stopped, then the test threads are interrupted and
+ * stopped. If test threads are still alive, the builder is unusable: the following builds fail. The compilations
+ * are serialized, so a compilation that has timed out ends before the next one starts.
+ */
+public class InProcessBuilder extends AbstractBuilder {
+    protected String srcDir;
+    protected String testSrcDir;
+    protected int javaVersion;
+
+    //hash of the content of each java file at its last compilation: the last modified time has a granularity of
+    //one second, and the sandbox restores the time of the original files
+    protected Map<File, byte[]> lastCompiled;
+
+    //java files that did not compile during the previous run
+    protected Set<File> toRecompile;
+
+    //directory of the classes compiled by this builder
+    protected File classesDir;
+
+    protected final Object compileLock = new Object();
+
+    //test threads of a timed out build are still running
+    protected volatile boolean unusable = false;
+
+    //time given to the test threads to end after an interruption, in milliseconds
+    protected static final int STOP_DELAY = 500;
+
+    public InProcessBuilder(String directory, String srcDir, String testSrcDir, int javaVersion) {
+        super(directory);
+        this.srcDir = srcDir;
+        this.testSrcDir = testSrcDir;
+        this.javaVersion = javaVersion;
+        lastCompiled = new HashMap<>();
+        toRecompile = new HashSet<>();
+        //no child process to kill
+        killChildrenProcess = false;
+        ExitGuard.install();
+    }
+
+    @Override
+    public void setDirectory(String directory) {
+        if(!directory.equals(this.directory)) {
+            lastCompiled.clear();
+            toRecompile.clear();
+            classesDir = null;
+        }
+        super.setDirectory(directory);
+    }
+
+    @Override
+    public void runBuilder(final String[] goals, Properties properties) throws InterruptedException {
+        int run = runCount;
+        super.runBuilder(goals, properties);
+        synchronized (this) {
+            if (runCount == run) {
+                //time out: the maven process would have been killed before BUILD SUCCESS
+                runCount++;
+                status = -2;
+            }
+        }
+    }
+
+    protected void runPrivate(String[] goals, boolean verbose) {
+        runPrivate(goals, verbose, null);
+    }
+
+    @Override
+    protected void runPrivate(String[] goals, boolean verbose, Properties properties) {
+        int run = runCount;
+        StringWriter out = new StringWriter();
+        PrintWriter writer = new PrintWriter(out);
+        boolean compile = false;
+        boolean testRun = false;
+        List<String> failures = new ArrayList<>();
+        try {
+            if(unusable) {
+                throw new IllegalStateException("threads of a timed out build are still running, the builder is unusable");
+            }
+            synchronized (compileLock) {
+                compile = compile(writer);
+            }
+            if(compile) {
+                failures = runTests(properties, writer);
+                testRun = true;
+            }
+        } catch (Throwable e) {
+            Log.debug("error in InProcessBuilder", e);
+            e.printStackTrace(writer);
+        }
+        writer.close();
+
+        synchronized (this) {
+            //this run has timed out, a new one may be running
+            if(run != runCount) {
+                return;
+            }
+            runCount++;
+            output = out.toString();
+            if(verbose) {
+                Log.debug(output);
+            }
+            if (getSaveOutputToFile()) { saveOutputToFile(output); }
+
+            failures.removeAll(acceptedErrors);
+            compileError = !compile;
+            allTestRun = testRun;
+            failedTests = failures;
+            if(!compile || !testRun) {
+                status = -2;
+            } else if(failures.isEmpty()) {
+                status = 0;
+            } else {
+                status = -1;
+            }
+        }
+    }
+
+    /**
+     * Compiles the java files modified since the previous run
+     *
+     * @return false if there is a compile error
+     */
+    protected boolean compile(PrintWriter out) throws IOException {
+        if(classesDir == null) {
+            classesDir = new File(directory + "/target/inprocess-classes");
+            classesDir.mkdirs();
+        }
+        List<File> javaFiles = new ArrayList<>();
+        javaFiles.addAll(javaFiles(new File(directory + "/" + srcDir)));
+        javaFiles.addAll(javaFiles(new File(directory + "/" + testSrcDir)));
+
+        List<File> modified = new ArrayList<>();
+        Map<File, byte[]> hashes = new HashMap<>();
+        for(File file : javaFiles) {
+            byte[] hash = contentHash(file);
+            hashes.put(file, hash);
+            if(toRecompile.contains(file) || !Arrays.equals(lastCompiled.get(file), hash)) {
+                modified.add(file);
+            }
+        }
+        if(modified.isEmpty()) {
+            return true;
+        }
+        Log.debug("compile {} java files", modified.size());
+        modified.forEach(file -> deleteClasses(file));
+
+        List<String> args = new ArrayList<>();
+        args.add("-source");
+        args.add("1." + javaVersion);
+        args.add("-target");
+        args.add("1." + javaVersion);
+        args.add("-nowarn");
+        args.add("-proc:none");
+        args.add("-proceedOnError");
+        args.add("-encoding");
+        args.add("UTF-8");
+        args.add("-cp");
+        args.add(classPath().stream().collect(Collectors.joining(File.pathSeparator)));
+        args.add("-d");
+        args.add(classesDir.getAbsolutePath());
+        modified.forEach(file -> args.add(file.getAbsolutePath()));
+
+        Main compiler = new Main(out, out, false, null, null);
+        compiler.compile(args.toArray(new String[args.size()]));
+
+        toRecompile.clear();
+        for(File file : modified) {
+            lastCompiled.put(file, hashes.get(file));
+        }
+        if(compiler.globalErrorsCount != 0) {
+            out.println("[ERROR] COMPILATION ERROR");
+            toRecompile.addAll(modified);
+            return false;
+        }
+        return true;
+    }
+
+    protected byte[] contentHash(File file) throws IOException {
+        try {
+            return MessageDigest.getInstance("MD5").digest(Files.readAllBytes(file.toPath()));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Runs the tests in a new class loader
+     *
+     * @param properties maven properties, only <code>test</code> is used
+     * @return the failed tests
+     */
+    protected List<String> runTests(Properties properties, PrintWriter out) throws Exception {
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        List<String> classPaths = new ArrayList<>();
+        classPaths.add(classesDir.getAbsolutePath());
+        URLClassLoader resourceClassLoader = new URLClassLoader(resourceURLs(), contextClassLoader);
+        DiversifyClassLoader classLoader = new DiversifyClassLoader(resourceClassLoader, classPaths);
+
+        String testFilter = properties == null ? null : properties.getProperty("test");
+        List<String> failures = new ArrayList<>();
+        RunNotifier notifier = new RunNotifier();
+        Exception[] error = new Exception[1];
+        TestThreadGroup group = new TestThreadGroup();
+        Thread testThread = new Thread(group, () -> {
+            try {
+                runTests(classLoader, testFilter, notifier, failures, out);
+            } catch (Exception e) {
+                error[0] = e;
+            }
+        }, "inprocess-tests");
+        testThread.setContextClassLoader(classLoader);
+        try {
+            if(Thread.interrupted()) {
+                throw new InterruptedException("build timed out before the tests");
+            }
+            testThread.start();
+            try {
+                testThread.join();
+            } catch (InterruptedException e) {
+                stopTests(group, notifier);
+                throw e;
+            }
+        } finally {
+            resourceClassLoader.close();
+        }
+        if(error[0] != null) {
+            throw error[0];
+        }
+        return failures;
+    }
+
+    /**
+     * Runs the test classes in the test thread
+     */
+    protected void runTests(ClassLoader classLoader, String testFilter, RunNotifier notifier, List<String> failures,
+                            PrintWriter out) throws ClassNotFoundException {
+        for(String testClassName : testClasses(testFilter)) {
+            Class<?> testClass = classLoader.loadClass(testClassName);
+            if(!isTestClass(testClass)) {
+                continue;
+            }
+            Request request = Request.aClass(testClass);
+            Set<String> methods = testMethods(testFilter, testClassName);
+            if(!methods.isEmpty()) {
+                request = request.filterWith(new Filter() {
+                    public boolean shouldRun(Description description) {
+                        return description.getMethodName() == null || methods.contains(description.getMethodName());
+                    }
+
+                    public String describe() {
+                        return methods.toString();
+                    }
+                });
+            }
+            Result result = new Result();
+            RunListener listener = result.createListener();
+            notifier.addListener(listener);
+            try {
+                request.getRunner().run(notifier);
+            } finally {
+                notifier.removeListener(listener);
+            }
+            out.println("Tests run: " + result.getRunCount() + ", Failures: " + result.getFailureCount() + " - in " + testClassName);
+            for(Failure failure : result.getFailures()) {
+                Description description = failure.getDescription();
+                String test = description.getClassName() + "." + description.getMethodName();
+                out.println(test + " <<< FAILURE!");
+                failures.add(test);
+            }
+        }
+    }
+
+    /**
+     * Stops the tests of a timed out build, the builder is unusable if some test threads survive
+     */
+    @SuppressWarnings("deprecation")
+    protected void stopTests(TestThreadGroup group, RunNotifier notifier) {
+        notifier.pleaseStop();
+        group.interrupt();
+        for(int i = 0; i < 10 && group.activeCount() > 0; i++) {
+            try {
+                Thread.sleep(STOP_DELAY / 10);
+            } catch (InterruptedException e) {}
+            if(i >= 5) {
+                Thread[] threads = new Thread[group.activeCount() * 2 + 1];
+                int count = group.enumerate(threads);
+                for(int j = 0; j < count; j++) {
+                    threads[j].stop();
+                }
+            }
+        }
+        if(group.activeCount() > 0) {
+            unusable = true;
+            Log.warn("{} test threads of a timed out build are still running", group.activeCount());
+        }
+    }
+
+    public boolean isUnusable() {
+        return unusable;
+    }
+
+    /**
+     * Thread group of the tests of a build
+     */
+    protected static class TestThreadGroup extends ThreadGroup {
+        protected TestThreadGroup() {
+            super("inprocess-tests");
+            //destroyed with its last thread
+            setDaemon(true);
+        }
+    }
+
+    /**
+     * Security manager throwing a SecurityException when a test calls System.exit or Runtime.halt, the other
+     * checks are delegated to the previous security manager, if any
+     */
+    protected static class ExitGuard extends SecurityManager {
+        protected final SecurityManager previous;
+
+        protected ExitGuard(SecurityManager previous) {
+            this.previous = previous;
+        }
+
+        protected static synchronized void install() {
+            SecurityManager current = System.getSecurityManager();
+            if(!(current instanceof ExitGuard)) {
+                System.setSecurityManager(new ExitGuard(current));
+            }
+        }
+
+        @Override
+        public void checkExit(int status) {
+            for(ThreadGroup group = Thread.currentThread().getThreadGroup(); group != null; group = group.getParent()) {
+                if(group instanceof TestThreadGroup) {
+                    throw new SecurityException("System.exit(" + status + ") called by a test");
+                }
+            }
+            if(previous != null) {
+                previous.checkExit(status);
+            }
+        }
+
+        @Override
+        public void checkPermission(Permission permission) {
+            if(previous != null) {
+                previous.checkPermission(permission);
+            }
+        }
+
+        @Override
+        public void checkPermission(Permission permission, Object context) {
+            if(previous != null) {
+                previous.checkPermission(permission, context);
+            }
+        }
+    }
+
+    protected boolean isTestClass(Class<?> cl) {
+        return !Modifier.isAbstract(cl.getModifiers())
+                && Modifier.isPublic(cl.getModifiers())
+                && !cl.isInterface()
+                && cl.getEnclosingClass() == null;
+    }
+
+    /**
+     * Test classes with the default surefire includes (Test*, *Test, *TestCase)
+     */
+    protected List<String> testClasses(String testFilter) {
+        File testDir = new File(directory + "/" + testSrcDir);
+        Set<String> included = testFilter == null ? null : Arrays.stream(testFilter.split(","))
+                .map(test -> test.split("#")[0].trim())
+                .collect(Collectors.toSet());
+
+        return javaFiles(testDir).stream()
+                .map(file -> testDir.toPath().relativize(file.toPath()).toString())
+                .map(path -> path.substring(0, path.length() - ".java".length()).replace(File.separatorChar, '.'))
+                .filter(className -> {
+                    String simpleName = className.substring(className.lastIndexOf('.') + 1);
+                    if(included != null) {
+                        return included.contains(className) || included.contains(simpleName);
+                    }
+                    return simpleName.startsWith("Test") || simpleName.endsWith("Test") || simpleName.endsWith("TestCase");
+                })
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    protected Set<String> testMethods(String testFilter, String testClassName) {
+        Set<String> methods = new HashSet<>();
+        if(testFilter != null) {
+            String simpleName = testClassName.substring(testClassName.lastIndexOf('.') + 1);
+            for (String test : testFilter.split(",")) {
+                String[] split = test.trim().split("#");
+                if (split.length == 2 && (split[0].equals(testClassName) || split[0].equals(simpleName))) {
+                    methods.addAll(Arrays.asList(split[1].split("\\+")));
+                }
+            }
+        }
+        return methods;
+    }
+
+    protected List<String> classPath() {
+        List<String> classPath = new ArrayList<>();
+        classPath.add(classesDir.getAbsolutePath());
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        while (classLoader != null) {
+            if(classLoader instanceof URLClassLoader) {
+                for(URL url : ((URLClassLoader) classLoader).getURLs()) {
+                    classPath.add(url.getFile());
+                }
+            }
+            classLoader = classLoader.getParent();
+        }
+        classPath.addAll(Arrays.asList(System.getProperty("java.class.path").split(File.pathSeparator)));
+        return classPath.stream()
+                .distinct()
+                .filter(path -> new File(path).exists())
+                .collect(Collectors.toList());
+    }
+
+    protected URL[] resourceURLs() throws MalformedURLException {
+        List<URL> urls = new ArrayList<>();
+        for(String dir : new String[]{"src/test/resources", "src/main/resources", "target/test-classes", "target/classes"}) {
+            File file = new File(directory + "/" + dir);
+            if(file.exists()) {
+                urls.add(file.toURI().toURL());
+            }
+        }
+        return urls.toArray(new URL[urls.size()]);
+    }
+
+    protected List<File> javaFiles(File dir) {
+        List<File> javaFiles = new ArrayList<>();
+        File[] files = dir.listFiles();
+        if(files != null) {
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    javaFiles.addAll(javaFiles(file));
+                } else if (file.getName().endsWith(".java")) {
+                    javaFiles.add(file);
+                }
+            }
+        }
+        return javaFiles;
+    }
+
+    /**
+     * Deletes the classes compiled from a java file (the class and its inner classes)
+     */
+    protected void deleteClasses(File javaFile) {
+        String typeName = javaFile.getName().substring(0, javaFile.getName().length() - ".java".length());
+        String packagePath = packagePath(javaFile);
+        File[] classFiles = new File(classesDir, packagePath).listFiles();
+        if(classFiles != null) {
+            for(File classFile : classFiles) {
+                String name = classFile.getName();
+                if(name.equals(typeName + ".class") || name.startsWith(typeName + "$")) {
+                    classFile.delete();
+                }
+            }
+        }
+    }
+
+    protected String packagePath(File javaFile) {
+        for(String dir : new String[]{srcDir, testSrcDir}) {
+            File root = new File(directory + "/" + dir);
+            if(javaFile.toPath().startsWith(root.toPath())) {
+                File parent = javaFile.getParentFile();
+                return root.toPath().relativize(parent.toPath()).toString();
+            }
+        }
+        return "";
+    }
+}
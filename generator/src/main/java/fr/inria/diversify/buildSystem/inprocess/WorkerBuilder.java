@@ -0,0 +1,112 @@
+package fr.inria.diversify.buildSystem.inprocess;
+
+import fr.inria.diversify.buildSystem.AbstractBuilder;
+import fr.inria.diversify.util.Log;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Builder that delegates the compilation and the tests of the program to a BuildWorker of a pool.
+ *
+ * The build runs in the calling thread and its time out is enforced on the worker connection: a worker
+ * that times out is killed alone, there is no child process to kill and no sleep after each build.
+ * Status and failed tests have the same meaning as for InProcessBuilder.
+ */
+public class WorkerBuilder extends AbstractBuilder {
+    protected String srcDir;
+    protected String testSrcDir;
+    protected int javaVersion;
+    protected BuildWorkerPool pool;
+
+    public WorkerBuilder(String directory, String srcDir, String testSrcDir, int javaVersion, BuildWorkerPool pool) {
+        super(directory);
+        this.srcDir = srcDir;
+        this.testSrcDir = testSrcDir;
+        this.javaVersion = javaVersion;
+        this.pool = pool;
+        killChildrenProcess = false;
+    }
+
+    @Override
+    public void runBuilder(final String[] goals, Properties properties) throws InterruptedException {
+        reset();
+        runPrivate(goals, true, properties);
+    }
+
+    protected void runPrivate(String[] goals, boolean verbose) {
+        runPrivate(goals, verbose, null);
+    }
+
+    @Override
+    protected void runPrivate(String[] goals, boolean verbose, Properties properties) {
+        output = null;
+        try {
+            JSONObject response = build(properties);
+            if (response == null) {
+                //the worker has been lost, one retry with a new worker
+                response = build(properties);
+            }
+            if (response == null) {
+                status = -2;
+            } else {
+                output = response.optString("output");
+                compileError = response.getBoolean("compileError");
+                allTestRun = response.getBoolean("allTestRun");
+                List<String> failures = new ArrayList<>();
+                JSONArray failedTests = response.getJSONArray("failedTests");
+                for (int i = 0; i < failedTests.length(); i++) {
+                    failures.add(failedTests.getString(i));
+                }
+                this.failedTests = failures;
+                status = response.getInt("status");
+            }
+        } catch (SocketTimeoutException e) {
+            Log.debug("build worker time out ({}s) in {}", timeOut, directory);
+            status = -2;
+        } catch (Exception e) {
+            Log.debug("error in WorkerBuilder", e);
+            status = -2;
+        }
+        runCount++;
+        if (output != null) {
+            if (verbose) {
+                Log.debug(output);
+            }
+            if (getSaveOutputToFile()) { saveOutputToFile(output); }
+        }
+    }
+
+    /**
+     * @return the response of the worker, null if the worker stopped during the build
+     */
+    protected JSONObject build(Properties properties) throws Exception {
+        JSONObject request = new JSONObject();
+        request.put("directory", new File(directory).getAbsolutePath());
+        request.put("srcDir", srcDir);
+        request.put("testSrcDir", testSrcDir);
+        request.put("javaVersion", javaVersion);
+        request.put("acceptedErrors", new JSONArray(acceptedErrors));
+        if (properties != null) {
+            JSONObject jsonProperties = new JSONObject();
+            for (String key : properties.stringPropertyNames()) {
+                jsonProperties.put(key, properties.getProperty(key));
+            }
+            request.put("properties", jsonProperties);
+        }
+        try {
+            return pool.build(request, timeOut);
+        } catch (SocketTimeoutException e) {
+            throw e;
+        } catch (IOException e) {
+            Log.debug("build worker lost: {}", e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package fr.inria.diversify.coverage;
+
+import fr.inria.diversify.util.FileUtils;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import spoon.reflect.cu.SourcePosition;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Index of the tests that cover each part of a program.
+ *
+ * An entry is a range of lines of a class (a branch) with the tests that execute it. A source position
+ * is mapped to the tests of the smallest entry that contains it.
+ * The index is saved in a json file, so it is computed only once per program.
+ */
+public class TestImpactIndex {
+    /**
+     * Entries of each class, sorted by size
+     */
+    protected Map<String, List<Entry>> entriesByClass;
+
+    protected boolean sorted;
+
+    protected static class Entry {
+        final int begin;
+        final int end;
+        final Set<String> tests;
+
+        Entry(int begin, int end, Set<String> tests) {
+            this.begin = begin;
+            this.end = end;
+            this.tests = tests;
+        }
+
+        boolean contains(int line, int endLine) {
+            return begin <= line && end >= endLine;
+        }
+    }
+
+    public TestImpactIndex() {
+        entriesByClass = new HashMap<>();
+        sorted = true;
+    }
+
+    /**
+     * Adds the tests covering the lines [begin, end] of a class
+     *
+     * @param className qualified name of the main type of the compilation unit
+     * @param tests tests names (class#method)
+     */
+    public void add(String className, int begin, int end, Collection<String> tests) {
+        if(!entriesByClass.containsKey(className)) {
+            entriesByClass.put(className, new ArrayList<>());
+        }
+        entriesByClass.get(className).add(new Entry(begin, end, new HashSet<>(tests)));
+        sorted = false;
+    }
+
+    public void add(SourcePosition position, Collection<String> tests) {
+        add(className(position), position.getLine(), position.getEndLine(), tests);
+    }
+
+    /**
+     * Tests covering the smallest entry that contains the lines [line, endLine] of a class
+     *
+     * @return the tests, an empty set if no entry contains these lines
+     */
+    public Set<String> testsFor(String className, int line, int endLine) {
+        sort();
+        List<Entry> entries = entriesByClass.get(className);
+        if(entries != null) {
+            for (Entry entry : entries) {
+                if (entry.contains(line, endLine)) {
+                    return entry.tests;
+                }
+            }
+        }
+        return Collections.emptySet();
+    }
+
+    public Set<String> testsFor(SourcePosition position) {
+        if(position == null || position.getCompilationUnit() == null) {
+            return Collections.emptySet();
+        }
+        return testsFor(className(position), position.getLine(), position.getEndLine());
+    }
+
+    /**
+     * Tests covering at least one of the positions
+     */
+    public Set<String> testsFor(Collection<SourcePosition> positions) {
+        Set<String> tests = new HashSet<>();
+        for(SourcePosition position : positions) {
+            tests.addAll(testsFor(position));
+        }
+        return tests;
+    }
+
+    /**
+     * Test classes covering at least one of the positions
+     */
+    public Set<String> testClassesFor(Collection<SourcePosition> positions) {
+        Set<String> testClasses = new TreeSet<>();
+        for(String test : testsFor(positions)) {
+            testClasses.add(test.split("#")[0]);
+        }
+        return testClasses;
+    }
+
+    public int size() {
+        return entriesByClass.values().stream()
+                .mapToInt(entries -> entries.size())
+                .sum();
+    }
+
+    protected void sort() {
+        if(!sorted) {
+            for(List<Entry> entries : entriesByClass.values()) {
+                entries.sort((e1, e2) -> Integer.compare(e1.end - e1.begin, e2.end - e2.begin));
+            }
+            sorted = true;
+        }
+    }
+
+    protected String className(SourcePosition position) {
+        return position.getCompilationUnit().getMainType().getQualifiedName();
+    }
+
+    /**
+     * Writes the index in a json file. The tests names are stored once, entries refer to their index.
+     */
+    public void write(File file) throws IOException, JSONException {
+        Map<String, Integer> testIds = new HashMap<>();
+        JSONArray tests = new JSONArray();
+        JSONObject classes = new JSONObject();
+        for(String className : entriesByClass.keySet()) {
+            JSONArray entries = new JSONArray();
+            for(Entry entry : entriesByClass.get(className)) {
+                JSONArray ids = new JSONArray();
+                for(String test : entry.tests) {
+                    if(!testIds.containsKey(test)) {
+                        testIds.put(test, testIds.size());
+                        tests.put(test);
+                    }
+                    ids.put(testIds.get(test));
+                }
+                JSONArray jsonEntry = new JSONArray();
+                jsonEntry.put(entry.begin);
+                jsonEntry.put(entry.end);
+                jsonEntry.put(ids);
+                entries.put(jsonEntry);
+            }
+            classes.put(className, entries);
+        }
+        JSONObject object = new JSONObject();
+        object.put("tests", tests);
+        object.put("classes", classes);
+
+        if(file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        FileWriter writer = new FileWriter(file);
+        object.write(writer);
+        writer.close();
+    }
+
+    public static TestImpactIndex load(File file) throws IOException, JSONException {
+        String content = FileUtils.readFile(file);
+        if(content == null) {
+            throw new IOException("unable to read " + file);
+        }
+        JSONObject object = new JSONObject(content);
+        JSONArray tests = object.getJSONArray("tests");
+        JSONObject classes = object.getJSONObject("classes");
+
+        TestImpactIndex index = new TestImpactIndex();
+        Iterator keys = classes.keys();
+        while (keys.hasNext()) {
+            String className = (String) keys.next();
+            JSONArray entries = classes.getJSONArray(className);
+            for(int i = 0; i < entries.length(); i++) {
+                JSONArray entry = entries.getJSONArray(i);
+                JSONArray ids = entry.getJSONArray(2);
+                List<String> entryTests = new ArrayList<>(ids.length());
+                for(int j = 0; j < ids.length(); j++) {
+                    entryTests.add(tests.getString(ids.getInt(j)));
+                }
+                index.add(className, entry.getInt(0), entry.getInt(1), entryTests);
+            }
+        }
+        return index;
+    }
+}
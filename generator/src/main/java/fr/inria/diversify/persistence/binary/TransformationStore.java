@@ -0,0 +1,592 @@
+package fr.inria.diversify.persistence.binary;
+
+import fr.inria.diversify.persistence.PersistenceException;
+import fr.inria.diversify.transformation.SingleTransformation;
+import fr.inria.diversify.transformation.Transformation;
+import spoon.reflect.cu.SourcePosition;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.function.IntPredicate;
+
+/**
+ * Columnar store of the results of transformations, for the analyses of the sosies.
+ *
+ * A record is a transformation: its type, name, class, method, lines, status, failed tests and parent are stored
+ * in one int column each, the strings being ids of dictionaries. The records of a class, of a method and failing
+ * a test are indexed, the records of a class and of a method are sorted by line. The store is written in a binary
+ * file whose columns are read in bulk, the transformations and the spoon model are not needed to query it.
+ */
+public class TransformationStore {
+    protected static final int MAGIC = 0x44535452;
+    protected static final int VERSION = 1;
+
+    /**
+     * No class, method or parent
+     */
+    public static final int NONE = -1;
+
+    protected int size;
+
+    protected Dictionary symbols;
+    protected Dictionary classes;
+    protected Dictionary methods;
+    protected Dictionary tests;
+
+    protected long[] mostSigBits;
+    protected long[] leastSigBits;
+    protected int[] types;
+    protected int[] names;
+    protected int[] classIds;
+    protected int[] methodIds;
+    protected int[] lines;
+    protected int[] endLines;
+    protected int[] status;
+    protected int[] parents;
+    protected Postings failures;
+
+    protected Postings byClass;
+    protected Postings byMethod;
+    protected Postings byTest;
+
+    protected TransformationStore() {}
+
+    /**
+     * Builds the store of the transformations
+     */
+    public static TransformationStore of(Collection<? extends Transformation> transformations) {
+        Builder builder = new Builder();
+        for (Transformation transformation : transformations) {
+            builder.add(transformation);
+        }
+        return builder.build();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public UUID getIndex(int record) {
+        return new UUID(mostSigBits[record], leastSigBits[record]);
+    }
+
+    public String getType(int record) {
+        return symbols.get(types[record]);
+    }
+
+    public String getName(int record) {
+        return symbols.get(names[record]);
+    }
+
+    /**
+     * Qualified name of the main type of the file of the transformation, null if unknown
+     */
+    public String getClassName(int record) {
+        return classes.get(classIds[record]);
+    }
+
+    /**
+     * Name of the method of the transformation, qualified by its class, null if unknown
+     */
+    public String getMethod(int record) {
+        return methods.get(methodIds[record]);
+    }
+
+    public int getLine(int record) {
+        return lines[record];
+    }
+
+    public int getEndLine(int record) {
+        return endLines[record];
+    }
+
+    public int getStatus(int record) {
+        return status[record];
+    }
+
+    /**
+     * Record of the parent of the transformation, NONE if the transformation has no parent in the store
+     */
+    public int getParent(int record) {
+        return parents[record];
+    }
+
+    public List<String> getFailures(int record) {
+        List<String> list = new ArrayList<>(failures.size(record));
+        for (int i = failures.offsets[record]; i < failures.offsets[record + 1]; i++) {
+            list.add(tests.get(failures.values[i]));
+        }
+        return list;
+    }
+
+    /**
+     * All the class names of the store
+     */
+    public List<String> getClassNames() {
+        return Collections.unmodifiableList(classes.values);
+    }
+
+    /**
+     * Records of the transformations of a class, sorted by line
+     */
+    public int[] recordsOfClass(String className) {
+        return byClass.get(classes.id(className));
+    }
+
+    /**
+     * Records of the transformations of a method, sorted by line
+     */
+    public int[] recordsOfMethod(String className, String methodName) {
+        return byMethod.get(methods.id(className + "." + methodName));
+    }
+
+    /**
+     * Records of the transformations failing a test
+     */
+    public int[] recordsFailing(String test) {
+        return byTest.get(tests.id(test));
+    }
+
+    /**
+     * Records of the transformations of a class in the lines from line to endLine
+     */
+    public int[] recordsInLines(String className, int line, int endLine) {
+        int id = classes.id(className);
+        if (id == NONE) {
+            return new int[0];
+        }
+        int from = byClass.offsets[id];
+        int to = byClass.offsets[id + 1];
+        //first record at line or after
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (lines[byClass.values[mid]] < line) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        int[] result = new int[to - low];
+        int count = 0;
+        for (int i = low; i < to && lines[byClass.values[i]] <= endLine; i++) {
+            int record = byClass.values[i];
+            if (endLines[record] <= endLine) {
+                result[count++] = record;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Number of records with a status accepted by the filter
+     */
+    public int count(int[] records, IntPredicate statusFilter) {
+        int count = 0;
+        for (int record : records) {
+            if (statusFilter.test(status[record])) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Number of records of each class with a status accepted by the filter, e.g. the sosies per class
+     */
+    public Map<String, Integer> countByClass(IntPredicate statusFilter) {
+        int[] countById = new int[classes.size()];
+        for (int record = 0; record < size; record++) {
+            if (classIds[record] != NONE && statusFilter.test(status[record])) {
+                countById[classIds[record]]++;
+            }
+        }
+        Map<String, Integer> counts = new HashMap<>(classes.size() * 2);
+        for (int id = 0; id < classes.size(); id++) {
+            counts.put(classes.get(id), countById[id]);
+        }
+        return counts;
+    }
+
+    /**
+     * Ids of the tests, for failsOneOf
+     */
+    public BitSet testIds(Collection<String> testNames) {
+        BitSet ids = new BitSet(tests.size());
+        for (String test : testNames) {
+            int id = tests.id(test);
+            if (id != NONE) {
+                ids.set(id);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * True if the transformation fails one of the tests
+     */
+    public boolean failsOneOf(int record, BitSet testIds) {
+        for (int i = failures.offsets[record]; i < failures.offsets[record + 1]; i++) {
+            if (testIds.get(failures.values[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void write(File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(size);
+            symbols.write(out);
+            classes.write(out);
+            methods.write(out);
+            tests.write(out);
+            writeLongs(out, mostSigBits);
+            writeLongs(out, leastSigBits);
+            for (int[] column : new int[][]{types, names, classIds, methodIds, lines, endLines, status, parents}) {
+                writeInts(out, column);
+            }
+            for (Postings postings : new Postings[]{failures, byClass, byMethod, byTest}) {
+                writeInts(out, postings.offsets);
+                writeInts(out, postings.values);
+            }
+        }
+    }
+
+    public static TransformationStore load(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new PersistenceException(file + " is not a transformation store");
+            }
+            TransformationStore store = new TransformationStore();
+            store.size = in.readInt();
+            store.symbols = Dictionary.read(in);
+            store.classes = Dictionary.read(in);
+            store.methods = Dictionary.read(in);
+            store.tests = Dictionary.read(in);
+            store.mostSigBits = readLongs(in);
+            store.leastSigBits = readLongs(in);
+            store.types = readInts(in);
+            store.names = readInts(in);
+            store.classIds = readInts(in);
+            store.methodIds = readInts(in);
+            store.lines = readInts(in);
+            store.endLines = readInts(in);
+            store.status = readInts(in);
+            store.parents = readInts(in);
+            store.failures = new Postings(readInts(in), readInts(in));
+            store.byClass = new Postings(readInts(in), readInts(in));
+            store.byMethod = new Postings(readInts(in), readInts(in));
+            store.byTest = new Postings(readInts(in), readInts(in));
+            return store;
+        }
+    }
+
+    protected static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * 4);
+        buffer.asIntBuffer().put(values);
+        out.writeInt(values.length);
+        out.write(buffer.array());
+    }
+
+    protected static int[] readInts(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt() * 4];
+        in.readFully(bytes);
+        int[] values = new int[bytes.length / 4];
+        ByteBuffer.wrap(bytes).asIntBuffer().get(values);
+        return values;
+    }
+
+    protected static void writeLongs(DataOutputStream out, long[] values) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * 8);
+        buffer.asLongBuffer().put(values);
+        out.writeInt(values.length);
+        out.write(buffer.array());
+    }
+
+    protected static long[] readLongs(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt() * 8];
+        in.readFully(bytes);
+        long[] values = new long[bytes.length / 8];
+        ByteBuffer.wrap(bytes).asLongBuffer().get(values);
+        return values;
+    }
+
+    /**
+     * Strings encoded by ids
+     */
+    protected static class Dictionary {
+        protected List<String> values = new ArrayList<>();
+        protected Map<String, Integer> ids = new HashMap<>();
+
+        protected int add(String value) {
+            if (value == null) {
+                return NONE;
+            }
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = values.size();
+                values.add(value);
+                ids.put(value, id);
+            }
+            return id;
+        }
+
+        protected int id(String value) {
+            Integer id = ids.get(value);
+            return id == null ? NONE : id;
+        }
+
+        protected String get(int id) {
+            return id == NONE ? null : values.get(id);
+        }
+
+        protected int size() {
+            return values.size();
+        }
+
+        protected void write(DataOutputStream out) throws IOException {
+            out.writeInt(values.size());
+            for (String value : values) {
+                out.writeUTF(value);
+            }
+        }
+
+        protected static Dictionary read(DataInputStream in) throws IOException {
+            Dictionary dictionary = new Dictionary();
+            int size = in.readInt();
+            dictionary.values = new ArrayList<>(size);
+            dictionary.ids = new HashMap<>(size * 2);
+            for (int id = 0; id < size; id++) {
+                String value = in.readUTF();
+                dictionary.values.add(value);
+                dictionary.ids.put(value, id);
+            }
+            return dictionary;
+        }
+    }
+
+    /**
+     * The values of key k are values[offsets[k]] to values[offsets[k + 1] - 1]
+     */
+    protected static class Postings {
+        protected int[] offsets;
+        protected int[] values;
+
+        protected Postings(int[] offsets, int[] values) {
+            this.offsets = offsets;
+            this.values = values;
+        }
+
+        protected int size(int key) {
+            return offsets[key + 1] - offsets[key];
+        }
+
+        protected int[] get(int key) {
+            if (key == NONE) {
+                return new int[0];
+            }
+            return Arrays.copyOfRange(values, offsets[key], offsets[key + 1]);
+        }
+
+        /**
+         * Inverts the keys of the records: the records of each key, sorted by the order
+         */
+        protected static Postings invert(int[] keys, int nbKey, int[] order) {
+            int[] offsets = new int[nbKey + 1];
+            int nbValue = 0;
+            for (int key : keys) {
+                if (key != NONE) {
+                    offsets[key + 1]++;
+                    nbValue++;
+                }
+            }
+            for (int key = 0; key < nbKey; key++) {
+                offsets[key + 1] += offsets[key];
+            }
+            int[] next = Arrays.copyOf(offsets, nbKey);
+            int[] values = new int[nbValue];
+            for (int record : order) {
+                int key = keys[record];
+                if (key != NONE) {
+                    values[next[key]++] = record;
+                }
+            }
+            return new Postings(offsets, values);
+        }
+    }
+
+    /**
+     * Adds the transformations one by one, build creates the columns and the indexes
+     */
+    public static class Builder {
+        protected TransformationStore store = new TransformationStore();
+        protected int size = 0;
+        protected long[] mostSigBits = new long[16];
+        protected long[] leastSigBits = new long[16];
+        protected int[][] columns = new int[8][16];
+        protected UUID[] parentIndexes = new UUID[16];
+        protected int[] failureOffsets = new int[17];
+        protected int[] failures = new int[16];
+
+        public Builder() {
+            store.symbols = new Dictionary();
+            store.classes = new Dictionary();
+            store.methods = new Dictionary();
+            store.tests = new Dictionary();
+        }
+
+        public Builder add(Transformation transformation) {
+            if (size == mostSigBits.length) {
+                int capacity = size * 2;
+                mostSigBits = Arrays.copyOf(mostSigBits, capacity);
+                leastSigBits = Arrays.copyOf(leastSigBits, capacity);
+                for (int i = 0; i < columns.length; i++) {
+                    columns[i] = Arrays.copyOf(columns[i], capacity);
+                }
+                parentIndexes = Arrays.copyOf(parentIndexes, capacity);
+                failureOffsets = Arrays.copyOf(failureOffsets, capacity + 1);
+            }
+            UUID index = transformation.getIndex();
+            mostSigBits[size] = index.getMostSignificantBits();
+            leastSigBits[size] = index.getLeastSignificantBits();
+            columns[0][size] = store.symbols.add(transformation.getType());
+            columns[1][size] = store.symbols.add(transformation.getName());
+            addPosition(transformation);
+            columns[6][size] = transformation.getStatus();
+            parentIndexes[size] = transformation.getParent() == null ? null : transformation.getParent().getIndex();
+
+            int nbFailure = failureOffsets[size];
+            if (transformation.getFailures() != null) {
+                for (String failure : transformation.getFailures()) {
+                    if (failure == null) {
+                        continue;
+                    }
+                    if (nbFailure == failures.length) {
+                        failures = Arrays.copyOf(failures, nbFailure * 2);
+                    }
+                    failures[nbFailure++] = store.tests.add(failure);
+                }
+            }
+            failureOffsets[++size] = nbFailure;
+            return this;
+        }
+
+        protected void addPosition(Transformation transformation) {
+            String className = null;
+            String method = null;
+            int line = 0;
+            int endLine = 0;
+            try {
+                SourcePosition position = null;
+                if (transformation instanceof SingleTransformation) {
+                    SingleTransformation single = (SingleTransformation) transformation;
+                    position = single.getPosition();
+                    //classLocationName is a simple name, or null, for some transformations
+                    className = mainType(position);
+                    if (className == null) {
+                        className = single.classLocationName();
+                    }
+                    method = single.methodLocationName();
+                    line = single.line();
+                } else if (!transformation.getPositions().isEmpty()) {
+                    position = transformation.getPositions().get(0);
+                    className = mainType(position);
+                }
+                if (position != null) {
+                    line = position.getLine();
+                    endLine = position.getEndLine();
+                } else {
+                    endLine = line;
+                }
+            } catch (Exception e) {
+                //the position of the transformation is unknown
+            }
+            columns[2][size] = store.classes.add(className);
+            columns[3][size] = className == null || method == null ? NONE : store.methods.add(className + "." + method);
+            columns[4][size] = line;
+            columns[5][size] = endLine;
+        }
+
+        /**
+         * Qualified name of the main type of the compilation unit of position, null if it is unknown
+         */
+        protected String mainType(SourcePosition position) {
+            if (position == null) {
+                return null;
+            }
+            try {
+                return position.getCompilationUnit().getMainType().getQualifiedName();
+            } catch (Exception e) {
+                return null;
+            }
+        }
+
+        public TransformationStore build() {
+            store.size = size;
+            store.mostSigBits = Arrays.copyOf(mostSigBits, size);
+            store.leastSigBits = Arrays.copyOf(leastSigBits, size);
+            store.types = Arrays.copyOf(columns[0], size);
+            store.names = Arrays.copyOf(columns[1], size);
+            store.classIds = Arrays.copyOf(columns[2], size);
+            store.methodIds = Arrays.copyOf(columns[3], size);
+            store.lines = Arrays.copyOf(columns[4], size);
+            store.endLines = Arrays.copyOf(columns[5], size);
+            store.status = Arrays.copyOf(columns[6], size);
+            store.failures = new Postings(Arrays.copyOf(failureOffsets, size + 1),
+                    Arrays.copyOf(failures, failureOffsets[size]));
+
+            Map<UUID, Integer> records = new HashMap<>(size * 2);
+            for (int record = 0; record < size; record++) {
+                records.put(store.getIndex(record), record);
+            }
+            store.parents = new int[size];
+            for (int record = 0; record < size; record++) {
+                Integer parent = parentIndexes[record] == null ? null : records.get(parentIndexes[record]);
+                store.parents[record] = parent == null ? NONE : parent;
+            }
+
+            int[] byLine = sortByLine(store.lines);
+            store.byClass = Postings.invert(store.classIds, store.classes.size(), byLine);
+            store.byMethod = Postings.invert(store.methodIds, store.methods.size(), byLine);
+
+            int[] testOfFailure = store.failures.values;
+            int[] recordOfFailure = new int[testOfFailure.length];
+            for (int record = 0; record < size; record++) {
+                Arrays.fill(recordOfFailure, store.failures.offsets[record], store.failures.offsets[record + 1], record);
+            }
+            Postings byTest = Postings.invert(testOfFailure, store.tests.size(), identity(testOfFailure.length));
+            for (int i = 0; i < byTest.values.length; i++) {
+                byTest.values[i] = recordOfFailure[byTest.values[i]];
+            }
+            store.byTest = byTest;
+            return store;
+        }
+
+        protected int[] sortByLine(int[] lines) {
+            //line in the high bits, record in the low bits
+            long[] keys = new long[lines.length];
+            for (int record = 0; record < keys.length; record++) {
+                keys[record] = ((long) lines[record] << 32) | record;
+            }
+            Arrays.sort(keys);
+            int[] sorted = new int[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                sorted[i] = (int) keys[i];
+            }
+            return sorted;
+        }
+
+        protected int[] identity(int size) {
+            int[] identity = new int[size];
+            for (int i = 0; i < size; i++) {
+                identity[i] = i;
+            }
+            return identity;
+        }
+    }
+}
@@ -5,11 +5,20 @@ import fr.inria.diversify.persistence.Header;
 import fr.inria.diversify.persistence.PersistenceException;
 import fr.inria.diversify.transformation.Transformation;
 import fr.inria.diversify.util.Log;
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static fr.inria.diversify.persistence.json.output.JsonFailuresOutput.FAILURES_DICTIONARY;
+import static fr.inria.diversify.persistence.json.output.JsonSectionOutput.TRANSFORMATIONS;
 
 /**
  * User: Simon
@@ -49,6 +58,16 @@ public class JsonTransformationLoader {
      */
     private HashMap<String, JsonSectionInput> sections;
 
+    /**
+     * Number of files of a directory loaded concurrently by load
+     */
+    private int parallelism = 1;
+
+    /**
+     * Transformations of the file of a loader created by loadFile
+     */
+    private Collection<Transformation> loaded = Collections.emptyList();
+
     public JsonTransformationLoader(InputProgram inputProgram) {
         assert inputProgram.getFactory() != null;
 
@@ -125,6 +144,12 @@ public class JsonTransformationLoader {
         }
     }
 
+    /**
+     * Sections read by the iterator, the other sections need all the transformations of a file
+     */
+    private static final List<String> STREAM_SECTIONS = Arrays.asList(JsonFailuresInput.class.getName(),
+            JsonTransformationCollectionInput.class.getName(), JsonHeaderInput.class.getName());
+
     /**
      * Init all sections in the input
      */
@@ -148,6 +173,32 @@ public class JsonTransformationLoader {
         HashMap<UUID, Transformation> result = new HashMap<>();
         //System.out.println("result size: " + result.size());
 
+        JsonHeaderInput headerInput = readHeader(jsonObject, result);
+        JsonFailuresInput failures = readFailures(jsonObject, result);
+
+        JsonTransformationCollectionInput asts = (JsonTransformationCollectionInput)
+                getSection(JsonTransformationCollectionInput.class);
+        asts.setJsonObject(jsonObject);
+        asts.setInputProgram(inputProgram);
+        asts.setLoadMessages(getLoadMessages());
+        asts.setFailures(failures.getFailures());
+        asts.read(result);
+        //System.out.println("result size: " + result.size());
+
+        for ( JsonSectionInput s : sections.values() ) {
+            if ( s.equals(headerInput) || s.equals(failures) || s.equals(asts) ) continue;
+            s.setInputProgram(inputProgram);
+            s.setJsonObject(jsonObject);
+            s.read(result);
+        }
+
+        return result.values();
+    }
+
+    /**
+     * Reads the header section of the JSON object
+     */
+    protected JsonHeaderInput readHeader(JSONObject jsonObject, Map<UUID, Transformation> result) {
         JsonHeaderInput headerInput = (JsonHeaderInput) getSection(JsonHeaderInput.class);
         try {
 
@@ -160,7 +211,13 @@ public class JsonTransformationLoader {
         } catch (PersistenceException e) {
             System.err.println("Can't read header");
         }
+        return headerInput;
+    }
 
+    /**
+     * Reads the failures dictionary of the JSON object
+     */
+    protected JsonFailuresInput readFailures(JSONObject jsonObject, Map<UUID, Transformation> result) {
         JsonFailuresInput failures = (JsonFailuresInput) getSection(JsonFailuresInput.class);
         try {
             failures.setJsonObject(jsonObject);
@@ -171,24 +228,7 @@ public class JsonTransformationLoader {
         } catch (PersistenceException e) {
             System.err.println("Can't read dictionarry");
         }
-
-        JsonTransformationCollectionInput asts = (JsonTransformationCollectionInput)
-                getSection(JsonTransformationCollectionInput.class);
-        asts.setJsonObject(jsonObject);
-        asts.setInputProgram(inputProgram);
-        asts.setLoadMessages(getLoadMessages());
-        asts.setFailures(failures.getFailures());
-        asts.read(result);
-        //System.out.println("result size: " + result.size());
-
-        for ( JsonSectionInput s : sections.values() ) {
-            if ( s.equals(headerInput) || s.equals(failures) || s.equals(asts) ) continue;
-            s.setInputProgram(inputProgram);
-            s.setJsonObject(jsonObject);
-            s.read(result);
-        }
-
-        return result.values();
+        return failures;
     }
 
     public Collection<Transformation> load(String dirOrFile, boolean set) {
@@ -201,7 +241,15 @@ public class JsonTransformationLoader {
         File file = new File(dirOrFile);
         System.out.println("load JSON from: " + file.getAbsolutePath());
 
-        if(file.isDirectory()) {
+        if(file.isDirectory() && parallelism > 1) {
+            transformations.addAll(loadParallel(file));
+        } else if(customSections().isEmpty()) {
+            //the transformations are read one by one
+            Iterator<Transformation> iterator = iterator(dirOrFile);
+            while (iterator.hasNext()) {
+                transformations.add(iterator.next());
+            }
+        } else if(file.isDirectory()) {
             for(File f: file.listFiles()) {
                 try {
                     System.out.println("\t- " + f.getAbsolutePath());
@@ -220,6 +268,289 @@ public class JsonTransformationLoader {
         return transformations;
     }
 
+    /**
+     * Loads the files of a directory on a ForkJoinPool of parallelism threads. Each file is read by its own loader,
+     * with the default sections; the custom sections are shared, one file at a time reads them. The calls to the
+     * spoon factory, which is not thread safe, are synchronized on the factory. The transformations are returned in
+     * the order of the file names, load removes the duplicates only when it returns a set.
+     */
+    protected List<Transformation> loadParallel(File dir) {
+        List<File> files = Arrays.stream(dir.listFiles())
+                .sorted(Comparator.comparing(File::getName))
+                .collect(Collectors.toList());
+        if(files.isEmpty()) {
+            return Collections.emptyList();
+        }
+        //the code fragments are processed before the concurrent searches
+        inputProgram.getCodeFragmentsByClass();
+
+        ForkJoinPool pool = new ForkJoinPool(Math.min(parallelism, files.size()));
+        List<JsonTransformationLoader> loaders;
+        try {
+            loaders = pool.submit(() -> files.parallelStream()
+                    .map(this::loadFile)
+                    .collect(Collectors.toList()))
+                .get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PersistenceException("Loading of " + dir + " interrupted", e);
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+
+        List<Transformation> result = new ArrayList<>();
+        for(JsonTransformationLoader loader : loaders) {
+            result.addAll(loader.loaded);
+            getLoadMessages().addAll(loader.getLoadMessages());
+            if(loader.header != null) {
+                header = loader.header;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Loads a file with a new loader
+     */
+    protected JsonTransformationLoader loadFile(File file) {
+        JsonTransformationLoader loader = new JsonTransformationLoader(inputProgram, verifyProject);
+        loader.setJsonPath(file.getAbsolutePath());
+        List<JsonSectionInput> customSections = customSections();
+        try {
+            if(customSections.isEmpty()) {
+                List<Transformation> transformations = new ArrayList<>();
+                loader.iterator(file.getAbsolutePath()).forEachRemaining(transformations::add);
+                loader.loaded = transformations;
+            } else {
+                Collection<Transformation> transformations = loader.read();
+                Map<UUID, Transformation> byIndex = new HashMap<>();
+                for(Transformation transformation : transformations) {
+                    byIndex.put(transformation.getIndex(), transformation);
+                }
+                for(JsonSectionInput section : customSections) {
+                    synchronized (section) {
+                        section.setInputProgram(inputProgram);
+                        section.setJsonObject(loader.jsonObject);
+                        section.read(byIndex);
+                    }
+                }
+                loader.jsonObject = null;
+                loader.loaded = byIndex.values();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            Log.debug("");
+        }
+        return loader;
+    }
+
+    /**
+     * The sections added by addSection that are not read by the iterator
+     */
+    protected List<JsonSectionInput> customSections() {
+        return sections.entrySet().stream()
+                .filter(entry -> !STREAM_SECTIONS.contains(entry.getKey()))
+                .map(Map.Entry::getValue)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * The transformations of a file or of the files of a directory, read one by one: the JSON of a file is never in
+     * memory, only its header, its failures dictionary and the transformation being read. As read does, the elements
+     * of a file with the same index are merged in one transformation: the transformations of the current file are
+     * kept, and a transformation already returned is updated by a later element with its index. The custom sections
+     * are not read by the iterator, they need all the transformations of a file (see read).
+     */
+    public Iterator<Transformation> iterator(String dirOrFile) {
+        File file = new File(dirOrFile);
+        if(file.isDirectory()) {
+            return new TransformationIterator(Arrays.asList(file.listFiles()), false);
+        } else {
+            return new TransformationIterator(Collections.singletonList(file), true);
+        }
+    }
+
+    public Stream<Transformation> stream(String dirOrFile) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(dirOrFile), Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Opens a JSON file and reads its header and its failures dictionary
+     *
+     * @return The reader at the start of the transformations array, null if the file has no transformations
+     */
+    protected JsonStreamReader openTransformations(File file) throws IOException, JSONException {
+        Log.debug("open: {}", file.getAbsolutePath());
+        jsonPath = file.getAbsolutePath();
+        JSONObject jsonSections = new JSONObject();
+        boolean hasTransformations = false;
+
+        JsonStreamReader reader = new JsonStreamReader(new BufferedReader(new FileReader(file)));
+        try {
+            reader.beginObject();
+            String key = reader.nextKey();
+            while (key != null) {
+                if (key.equals(TRANSFORMATIONS)) {
+                    if (jsonSections.has(Header.HEADER) && jsonSections.has(FAILURES_DICTIONARY)) {
+                        //the transformations are read in this pass
+                        readStreamSections(jsonSections);
+                        reader.beginArray();
+                        JsonStreamReader transformationsReader = reader;
+                        reader = null;
+                        return transformationsReader;
+                    }
+                    hasTransformations = true;
+                    reader.skipValue();
+                } else if (key.equals(Header.HEADER) || key.equals(FAILURES_DICTIONARY)) {
+                    jsonSections.put(key, reader.nextValue());
+                } else {
+                    reader.skipValue();
+                }
+                key = reader.nextKey();
+            }
+        } finally {
+            if (reader != null) {
+                reader.close();
+            }
+        }
+        readStreamSections(jsonSections);
+        if (!hasTransformations) {
+            return null;
+        }
+
+        //the header or the failures dictionary follow the transformations: second pass
+        reader = new JsonStreamReader(new BufferedReader(new FileReader(file)));
+        reader.beginObject();
+        String key = reader.nextKey();
+        while (key != null && !key.equals(TRANSFORMATIONS)) {
+            reader.skipValue();
+            key = reader.nextKey();
+        }
+        reader.beginArray();
+        return reader;
+    }
+
+    protected void readStreamSections(JSONObject jsonSections) {
+        HashMap<UUID, Transformation> result = new HashMap<>();
+        readHeader(jsonSections, result);
+        JsonFailuresInput failures = readFailures(jsonSections, result);
+
+        JsonTransformationCollectionInput asts = (JsonTransformationCollectionInput)
+                getSection(JsonTransformationCollectionInput.class);
+        asts.setInputProgram(inputProgram);
+        asts.setLoadMessages(getLoadMessages());
+        asts.setFailures(failures.getFailures());
+    }
+
+    /**
+     * Reads one element of the transformations array with the transformation section
+     *
+     * @param fileTransformations the transformations of the file already read, an element with the same index
+     *                            updates its transformation
+     * @return the transformations of the element not read before
+     */
+    protected Collection<Transformation> readTransformation(Object jsonTransformation,
+                                                            FileTransformations fileTransformations) throws JSONException {
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put(TRANSFORMATIONS, new JSONArray().put(jsonTransformation));
+
+        JsonTransformationCollectionInput asts = (JsonTransformationCollectionInput)
+                getSection(JsonTransformationCollectionInput.class);
+        asts.setJsonObject(jsonObject);
+        fileTransformations.added = new ArrayList<>();
+        asts.read(fileTransformations);
+        return fileTransformations.added;
+    }
+
+    /**
+     * The transformations of a file by index, with the transformations added by the last element read
+     */
+    protected static class FileTransformations extends HashMap<UUID, Transformation> {
+        protected List<Transformation> added = new ArrayList<>();
+
+        @Override
+        public Transformation put(UUID index, Transformation transformation) {
+            Transformation previous = super.put(index, transformation);
+            if (previous == null) {
+                added.add(transformation);
+            }
+            return previous;
+        }
+    }
+
+    /**
+     * Iterator over the transformations of files, a file is read while its transformations are consumed
+     */
+    protected class TransformationIterator implements Iterator<Transformation> {
+        protected Iterator<File> files;
+
+        //a file that cannot be read stops the iteration, or is skipped
+        protected boolean failOnError;
+
+        protected JsonStreamReader reader;
+
+        protected FileTransformations fileTransformations;
+
+        protected Iterator<Transformation> current = Collections.emptyIterator();
+
+        public TransformationIterator(List<File> files, boolean failOnError) {
+            this.files = files.iterator();
+            this.failOnError = failOnError;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                try {
+                    if (reader != null && reader.hasNextElement()) {
+                        current = readTransformation(reader.nextValue(), fileTransformations).iterator();
+                    } else {
+                        closeReader();
+                        if (!files.hasNext()) {
+                            return false;
+                        }
+                        reader = openTransformations(files.next());
+                        fileTransformations = new FileTransformations();
+                    }
+                } catch (PersistenceException e) {
+                    closeReader();
+                    if (failOnError) throw e;
+                    e.printStackTrace();
+                } catch (Exception e) {
+                    closeReader();
+                    if (failOnError) throw new PersistenceException("Unable to parse text file into JSON file", e);
+                    e.printStackTrace();
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Transformation next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+
+        protected void closeReader() {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                reader = null;
+            }
+            fileTransformations = null;
+        }
+    }
+
     public void setInputProgram(InputProgram inputProgram) {
         this.inputProgram = inputProgram;
     }
@@ -270,4 +601,12 @@ public class JsonTransformationLoader {
     public void setVerifyProject(boolean verifyProject) {
         this.verifyProject = verifyProject;
     }
+
+    /**
+     * Number of files of a directory loaded concurrently by load, 1 (the default) for a sequential load.
+     * The searches of code fragments of the input program must be thread safe.
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
 }
@@ -49,61 +49,63 @@ public class JsonAddMethodInvocationInput extends JsonAstReplaceInput {
             //CodeFragment cf = getCodeFragment(cfJson.getString(POSITION), cfJson.getString(SOURCE_CODE));
             //CtStatement tp = (CtStatement) cf.getCtCodeFragment();
 
-            CtStatement tp = (CtStatement) new CtPathStringBuilder()
-                    .fromString(cfJson.getString("path"))
-                    .evaluateOn(getInputProgram()
-                            .getFactory()
-                            .getModel()
-                            .getRootPackage())
-                    .iterator()
-                    .next();
-            /*CtStatement tp = getInputProgram().findElement(
+            //the spoon factory is not thread safe, the files of a directory may be loaded concurrently
+            synchronized (getInputProgram().getFactory()) {
+                CtStatement tp = (CtStatement) new CtPathStringBuilder()
+                        .fromString(cfJson.getString("path"))
+                        .evaluateOn(getInputProgram()
+                                .getFactory()
+                                .getModel()
+                                .getRootPackage())
+                        .iterator()
+                        .next();
+                /*CtStatement tp = getInputProgram().findElement(
+                                Class.forName(cfJson.getString("type")),
+                                cfJson.getString(POSITION),
+                                cfJson.getString(SOURCE_CODE)
+                        );*/
+
+                if(tp == null) {
+                    System.out.println(cfJson.toString());
+                    tp = getInputProgram().findElement(
                             Class.forName(cfJson.getString("type")),
                             cfJson.getString(POSITION),
                             cfJson.getString(SOURCE_CODE)
-                    );*/
-
-            if(tp == null) {
-                System.out.println(cfJson.toString());
-                tp = getInputProgram().findElement(
-                        Class.forName(cfJson.getString("type")),
-                        cfJson.getString(POSITION),
-                        cfJson.getString(SOURCE_CODE)
-                );
-            }
-
-            Factory f = tp.getFactory();
-            transf.setTp(tp);
-            transf.setup();
-
-
-
-            CtField well = null;
-            if(insertJson.getString("createdWell").compareTo("true") == 0) {
-                String[] wellstr = insertJson.getString("well").split(" ");
-                String wellName, wellType, wellInit;
-                if(wellstr[1].compareTo("static") == 0) {
-                    wellType = wellstr[2];
-                    wellName = wellstr[3];
-                    wellInit = wellstr[5];
-                    CtTypeReference type = PrimitiveUtil.getTypeReference(wellType, f);
-                    well = f.Code().createCtField(wellName, type, wellInit, ModifierKind.PUBLIC, ModifierKind.STATIC);
-                } else {
-                    wellType = wellstr[1];
-                    wellName = wellstr[2];
-                    wellInit = wellstr[4];
-                    CtTypeReference type = PrimitiveUtil.getTypeReference(wellType, f);
-                    well = f.Code().createCtField(wellName, type,wellInit, ModifierKind.PUBLIC);
+                    );
                 }
-            }
-            transf.setWell(well);
-            int status = Integer.parseInt(getJsonObject().getString(STATUS));
-            if(status > -3) transf.setStatus(status);
 
-            CtStatement tryInv = f.Code().createCodeSnippetStatement(insertJson.getString("stmt"));
-            transf.setTryInv(tryInv);
-            transf.setInsertIsStatic(insertJson.getString("static").compareTo("true") == 0);
+                Factory f = tp.getFactory();
+                transf.setTp(tp);
+                transf.setup();
+
+
+
+                CtField well = null;
+                if(insertJson.getString("createdWell").compareTo("true") == 0) {
+                    String[] wellstr = insertJson.getString("well").split(" ");
+                    String wellName, wellType, wellInit;
+                    if(wellstr[1].compareTo("static") == 0) {
+                        wellType = wellstr[2];
+                        wellName = wellstr[3];
+                        wellInit = wellstr[5];
+                        CtTypeReference type = PrimitiveUtil.getTypeReference(wellType, f);
+                        well = f.Code().createCtField(wellName, type, wellInit, ModifierKind.PUBLIC, ModifierKind.STATIC);
+                    } else {
+                        wellType = wellstr[1];
+                        wellName = wellstr[2];
+                        wellInit = wellstr[4];
+                        CtTypeReference type = PrimitiveUtil.getTypeReference(wellType, f);
+                        well = f.Code().createCtField(wellName, type,wellInit, ModifierKind.PUBLIC);
+                    }
+                }
+                transf.setWell(well);
+                int status = Integer.parseInt(getJsonObject().getString(STATUS));
+                if(status > -3) transf.setStatus(status);
 
+                CtStatement tryInv = f.Code().createCodeSnippetStatement(insertJson.getString("stmt"));
+                transf.setTryInv(tryInv);
+                transf.setInsertIsStatic(insertJson.getString("static").compareTo("true") == 0);
+            }
 
             addTransformation(transformations, transf);
 
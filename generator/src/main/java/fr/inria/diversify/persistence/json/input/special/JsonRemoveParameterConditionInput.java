@@ -74,18 +74,21 @@ public class JsonRemoveParameterConditionInput extends JsonTransformationInput {
 
     protected CtIf getReplaceStmt(CtIf stmt) {
         Factory factory = getInputProgram().getFactory();
-        CtIf clone = factory.Core().clone(stmt);
+        //one clone at a time: the factory is not thread safe
+        synchronized (factory) {
+            CtIf clone = factory.Core().clone(stmt);
 
-        if(stmt.getElseStatement() == null) {
-            clone.setCondition(factory.Code().createLiteral(false));
-        } else {
-            if(containsOnlyReturn(stmt.getThenStatement())) {
+            if(stmt.getElseStatement() == null) {
                 clone.setCondition(factory.Code().createLiteral(false));
             } else {
-                clone.setCondition(factory.Code().createLiteral(true));
+                if(containsOnlyReturn(stmt.getThenStatement())) {
+                    clone.setCondition(factory.Code().createLiteral(false));
+                } else {
+                    clone.setCondition(factory.Code().createLiteral(true));
+                }
             }
+            return clone;
         }
-        return clone;
     }
 
     protected boolean containsOnlyReturn(CtStatement stmt) {
@@ -43,7 +43,11 @@ public class JsonSwapSubTypeInput extends JsonAstReplaceInput {
 
             CtConstructorCall f = (CtConstructorCall) tp;
 
-            CtExpression exp = f.getFactory().Code().createCodeSnippetExpression(getJsonObject().getString("newCall"));
+            CtExpression exp;
+            //the factory is shared by the concurrent loads of JsonTransformationLoader
+            synchronized (getInputProgram().getFactory()) {
+                exp = f.getFactory().Code().createCodeSnippetExpression(getJsonObject().getString("newCall"));
+            }
             //CtConstructorCall newCall = (CtConstructorCall) ((CtCodeSnippetExpressionImpl) exp).compile();
             transf.setTpAndNewCall(f,(CtCodeSnippetExpression) exp);
             addTransformation(transformations, transf);
@@ -0,0 +1,326 @@
+package fr.inria.diversify.persistence.json.output;
+
+import fr.inria.diversify.persistence.Header;
+import fr.inria.diversify.persistence.PersistenceException;
+import fr.inria.diversify.transformation.Transformation;
+import fr.inria.diversify.util.Log;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Append-only journal of the results of a session: one JSON record per line, written as soon as a trial is over.
+ *
+ * A record is either a failure of the failure dictionary ({"failure": name, "id": id}), written before the first
+ * transformation failing with it, or a transformation ({"transformation": json}). The records are flushed one by one
+ * and synced to the disk every syncInterval transformations, so a crash loses at most the last batch.
+ *
+ * An existing journal is resumed: its evaluated transformations are known, and a record torn by a crash is dropped.
+ * A transformation is known by its identity, stable from one session to another: its type, its name, the positions
+ * of its transplantation point and of its transplant, and the identity of its parent. compact writes the journal in
+ * the format of JsonTransformationWriter.
+ */
+public class ResultJournal implements Closeable {
+    public static final String FAILURE = "failure";
+    public static final String ID = "id";
+    public static final String TRANSFORMATION = "transformation";
+
+    /**
+     * Fields of a transformation that are not part of its identity
+     */
+    protected static final Set<String> RESULT_FIELDS = new HashSet<>(Arrays.asList(
+            JsonSectionOutput.TINDEX, JsonSectionOutput.STATUS, JsonSectionOutput.FAILURES, "series", "parent"));
+
+    protected File file;
+
+    protected int syncInterval;
+
+    protected FileOutputStream out;
+
+    protected Writer writer;
+
+    protected Map<String, Integer> failuresDict = new HashMap<>();
+
+    protected Set<String> evaluated = new HashSet<>();
+
+    /**
+     * Transformations written since the last sync
+     */
+    protected int unsynced = 0;
+
+    public ResultJournal(File file, int syncInterval) {
+        this.file = file;
+        this.syncInterval = Math.max(1, syncInterval);
+    }
+
+    /**
+     * Opens the journal for appending, after the records of a previous session when resume is true
+     */
+    public void open(boolean resume) throws IOException {
+        if (resume && file.exists()) {
+            long validLength = readJournal(new RecordHandler() {
+                public void failure(String failure, int id) {
+                    failuresDict.put(failure, id);
+                }
+
+                public void transformation(JSONObject transformation) throws JSONException {
+                    evaluated.add(identity(transformation));
+                }
+            });
+            truncate(validLength);
+            Log.info("resume journal {}: {} transformations evaluated", file, evaluated.size());
+        } else if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        out = new FileOutputStream(file, resume);
+        writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Appends the result of a trial
+     */
+    public synchronized void append(Transformation transformation) throws IOException {
+        try {
+            for (Transformation t = transformation; t != null; t = t.getParent()) {
+                if (t.getFailures() == null) {
+                    continue;
+                }
+                for (String failure : t.getFailures()) {
+                    if (failure != null && !failuresDict.containsKey(failure)) {
+                        int id = failuresDict.size();
+                        failuresDict.put(failure, id);
+                        writeRecord(new JSONObject().put(FAILURE, failure).put(ID, id));
+                    }
+                }
+            }
+            Transformation.setFailuresDico(failuresDict);
+            JSONObject json = transformation.toJSONObject();
+            writeRecord(new JSONObject().put(TRANSFORMATION, json));
+            evaluated.add(identity(json));
+        } catch (JSONException e) {
+            throw new PersistenceException(e);
+        }
+        writer.flush();
+        if (++unsynced >= syncInterval) {
+            sync();
+        }
+    }
+
+    protected void writeRecord(JSONObject record) throws IOException {
+        writer.write(record.toString());
+        writer.write('\n');
+    }
+
+    /**
+     * Forces the records written to the disk
+     */
+    public synchronized void sync() throws IOException {
+        writer.flush();
+        out.getFD().sync();
+        unsynced = 0;
+    }
+
+    /**
+     * True if the result of the transformation is in the journal
+     */
+    public synchronized boolean isEvaluated(Transformation transformation) {
+        return evaluated.contains(identity(transformation));
+    }
+
+    /**
+     * Identity of a transformation, equal for the transformations of two sessions built from the same query
+     */
+    public static String identity(Transformation transformation) {
+        try {
+            return identity(transformation.toJSONObject());
+        } catch (JSONException e) {
+            throw new PersistenceException(e);
+        }
+    }
+
+    /**
+     * Identity of a transformation written by toJSONObject: the transformations without transplantation point
+     * are known by all their fields except the result ones
+     */
+    public static String identity(JSONObject transformation) throws JSONException {
+        StringBuilder identity = new StringBuilder();
+        identity.append(transformation.optString(JsonSectionOutput.TRANSF_TYPE))
+                .append(':').append(transformation.optString(JsonSectionOutput.NAME));
+        JSONObject transplantationPoint = transformation.optJSONObject(JsonSectionOutput.TRANSPLANT_POINT);
+        if (transplantationPoint != null) {
+            identity.append('@').append(transplantationPoint.optString(JsonSectionOutput.POSITION));
+            JSONObject transplant = transformation.optJSONObject(JsonSectionOutput.TRANSPLANT);
+            if (transplant != null) {
+                identity.append('<').append(transplant.optString(JsonSectionOutput.POSITION));
+            }
+        } else {
+            canonical(transformation, identity);
+        }
+        JSONObject parent = transformation.optJSONObject("parent");
+        if (parent != null) {
+            identity.append('^').append(identity(parent));
+        }
+        return identity.toString();
+    }
+
+    /**
+     * Appends the fields of a JSON value with the keys sorted, the result fields of the transformation are skipped
+     */
+    protected static void canonical(Object value, StringBuilder builder) throws JSONException {
+        if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            List<String> keys = new ArrayList<>();
+            Iterator iterator = object.keys();
+            while (iterator.hasNext()) {
+                keys.add((String) iterator.next());
+            }
+            Collections.sort(keys);
+            builder.append('{');
+            for (String key : keys) {
+                if (!RESULT_FIELDS.contains(key)) {
+                    builder.append(key).append('=');
+                    canonical(object.get(key), builder);
+                    builder.append(',');
+                }
+            }
+            builder.append('}');
+        } else if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            builder.append('[');
+            for (int i = 0; i < array.length(); i++) {
+                canonical(array.get(i), builder);
+                builder.append(',');
+            }
+            builder.append(']');
+        } else {
+            builder.append(value);
+        }
+    }
+
+    /**
+     * Number of transformations in the journal
+     */
+    public synchronized int size() {
+        return evaluated.size();
+    }
+
+    /**
+     * Writes the transformations of the journal into a JSON file of the current format. The records are copied one
+     * by one, the transformations are never all in memory.
+     *
+     * @param outputPath Path of the JSON file
+     * @param srcPOM     POM of the project of the transformations
+     */
+    public synchronized void compact(String outputPath, String srcPOM) throws IOException {
+        if (writer != null) {
+            sync();
+        }
+        final Map<String, Integer> dict = new HashMap<>();
+        final int[] count = {0};
+        readJournal(new RecordHandler() {
+            public void failure(String failure, int id) {
+                dict.put(failure, id);
+            }
+
+            public void transformation(JSONObject transformation) {
+                count[0]++;
+            }
+        });
+
+        try (final Writer output = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputPath), StandardCharsets.UTF_8))) {
+            JSONObject start = new JSONObject();
+            new JsonHeaderOutput(srcPOM, new JsonTransformationWriter().getGeneratorVersion()).write(start);
+            start.getJSONObject(Header.HEADER).put(Header.TRANSF_COUNT, count[0]);
+            start.put(JsonFailuresOutput.FAILURES_DICTIONARY, dict);
+            //the transformations are written in the object, before its closing brace
+            String text = start.toString();
+            output.write(text, 0, text.length() - 1);
+            output.write(",\"" + JsonSectionOutput.TRANSFORMATIONS + "\":[");
+            final boolean[] first = {true};
+            readJournal(new RecordHandler() {
+                public void failure(String failure, int id) {}
+
+                public void transformation(JSONObject transformation) throws IOException {
+                    if (!first[0]) {
+                        output.write(',');
+                    }
+                    first[0] = false;
+                    output.write(transformation.toString());
+                }
+            });
+            output.write("]}");
+        } catch (JSONException e) {
+            throw new PersistenceException(e);
+        }
+        Log.info("journal {} compacted in {}: {} transformations", file, outputPath, count[0]);
+    }
+
+    /**
+     * Reads the records of the journal
+     *
+     * @return The length in bytes of the complete records
+     */
+    protected long readJournal(RecordHandler handler) throws IOException {
+        long validLength = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line = reader.readLine();
+            while (line != null) {
+                JSONObject record;
+                try {
+                    record = new JSONObject(line);
+                } catch (JSONException e) {
+                    if (reader.readLine() != null) {
+                        throw new PersistenceException("Invalid record in the journal " + file + ": " + line, e);
+                    }
+                    Log.warn("torn record at the end of the journal {}, ignored", file);
+                    break;
+                }
+                try {
+                    if (record.has(TRANSFORMATION)) {
+                        handler.transformation(record.getJSONObject(TRANSFORMATION));
+                    } else {
+                        handler.failure(record.getString(FAILURE), record.getInt(ID));
+                    }
+                } catch (JSONException e) {
+                    throw new PersistenceException("Invalid record in the journal " + file + ": " + line, e);
+                }
+                validLength += line.getBytes(StandardCharsets.UTF_8).length + 1;
+                line = reader.readLine();
+            }
+        }
+        return validLength;
+    }
+
+    /**
+     * Drops the bytes after the complete records, and ends the last record by a new line
+     */
+    protected void truncate(long validLength) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            if (raf.length() > validLength) {
+                raf.setLength(validLength);
+            } else if (raf.length() < validLength) {
+                raf.seek(raf.length());
+                raf.write('\n');
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            sync();
+            writer.close();
+            writer = null;
+        }
+    }
+
+    protected interface RecordHandler {
+        void failure(String failure, int id) throws IOException, JSONException;
+
+        void transformation(JSONObject transformation) throws IOException, JSONException;
+    }
+}
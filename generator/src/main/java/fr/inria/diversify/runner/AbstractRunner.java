@@ -1,7 +1,9 @@
 package fr.inria.diversify.runner;
 
 import fr.inria.diversify.bytecode.CompareBytecode;
+import fr.inria.diversify.coverage.TestImpactIndex;
 import fr.inria.diversify.persistence.json.output.JsonTransformationWriter;
+import fr.inria.diversify.persistence.json.output.ResultJournal;
 import fr.inria.diversify.statistic.AbstractSessionResults;
 import fr.inria.diversify.buildSystem.AbstractBuilder;
 import fr.inria.diversify.transformation.SingleTransformation;
@@ -10,6 +12,7 @@ import fr.inria.diversify.transformation.query.TransformationQuery;
 import fr.inria.diversify.util.FileUtils;
 import fr.inria.diversify.util.GitUtils;
 import fr.inria.diversify.util.Log;
+import fr.inria.diversify.util.Sandbox;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -127,6 +130,48 @@ public abstract class AbstractRunner {
      */
     protected AbstractBuilder builder;
 
+    /**
+     * Journal of the results, null to keep them only in memory until the end of the session
+     */
+    protected ResultJournal journal;
+
+    /**
+     * Sets the journal where the result of each trial is appended. The transformations already in the journal
+     * are not evaluated again, and the results are written from the journal: they are not kept in memory.
+     */
+    public void setJournal(ResultJournal journal) {
+        this.journal = journal;
+        trial = journal.size();
+    }
+
+    public ResultJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * True if the result of the transformation is in the journal of a previous session
+     */
+    protected boolean alreadyEvaluated(Transformation trans) {
+        if(journal != null && journal.isEvaluated(trans)) {
+            Log.debug("transformation {} already evaluated", trans.getIndex());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Appends the result of a trial to the journal, or to the transformations of the session without journal
+     */
+    protected void addResult(Transformation trans) throws IOException {
+        if(journal != null) {
+            journal.append(trans);
+        } else {
+            synchronized (this) {
+                transformations.add(trans);
+            }
+        }
+    }
+
     /**
      * Runs the diversificator.
      * @param n Number of times the diversification process will run, i.e trials
@@ -203,15 +248,17 @@ public abstract class AbstractRunner {
      * @throws JSONException
      */
     public String writeTransformations(String fileName) throws IOException, JSONException {
-        if (transformations.isEmpty())
-            return "";
-
-        JsonTransformationWriter writer = new JsonTransformationWriter();
-        writer.write(transformations, fileName + ".json", inputConfiguration.getInputProgram().getProgramDir() + "/pom.xml");
-        return fileName + ".json";
+        return writeTransformationsIntoSpecificFile(fileName + ".json");
     }
 
     public String writeTransformationsIntoSpecificFile(String fileName) throws IOException, JSONException {
+        if(journal != null) {
+            if(journal.size() == 0)
+                return "";
+
+            journal.compact(fileName, inputConfiguration.getInputProgram().getProgramDir() + "/pom.xml");
+            return fileName;
+        }
         if (transformations.isEmpty())
             return "";
 
@@ -248,13 +295,33 @@ public abstract class AbstractRunner {
     public String init(String dirProject, String dirTarget) throws IOException, InterruptedException {
         originalTmpDir = dirTarget;
         tmpDir = dirTarget + "/tmp_" + System.currentTimeMillis();
-        File dir = new File(tmpDir);
-        dir.mkdirs();
-        FileUtils.copyDirectory(new File(dirProject), dir);
+        initSandbox(dirProject, tmpDir);
 
         return tmpDir;
     }
 
+    /**
+     * Provisions a working copy of the project: the source directories and everything the build writes are copied,
+     * the other files are hard links to the original ones, and the excluded directories (property sandbox.exclude,
+     * none by default) are not provisioned.
+     */
+    protected Sandbox initSandbox(String dirProject, String dir) throws IOException {
+        List<String> writableDirs = new ArrayList<>();
+        writableDirs.add(sourceDir);
+        List<String> excludedDirs = Sandbox.DEFAULT_EXCLUDED;
+        if(inputConfiguration != null) {
+            writableDirs.add(inputConfiguration.getRelativeTestSourceCodeDir());
+            String exclude = inputConfiguration.getProperty("sandbox.exclude");
+            if(exclude != null) {
+                excludedDirs = Arrays.asList(exclude.split(","));
+            }
+        }
+        Sandbox sandbox = new Sandbox(dirProject, dir, writableDirs, excludedDirs);
+        sandbox.create();
+
+        return sandbox;
+    }
+
     /**
      * Delete the temporal files that we have created
      */
@@ -273,6 +340,24 @@ public abstract class AbstractRunner {
 
     Map<String, Set<String>> testImpact = null;
 
+    /**
+     * Index of the tests covering each position, null to run all the tests at each trial
+     */
+    protected TestImpactIndex testImpactIndex;
+
+    /**
+     * Run all the tests when no test covers a transformation, otherwise the transformation is not tested
+     */
+    protected boolean runAllTestsIfUncovered = true;
+
+    public void setTestImpactIndex(TestImpactIndex testImpactIndex) {
+        this.testImpactIndex = testImpactIndex;
+    }
+
+    public void setRunAllTestsIfUncovered(boolean runAllTestsIfUncovered) {
+        this.runAllTestsIfUncovered = runAllTestsIfUncovered;
+    }
+
     public void setTestImpactReport(File f) {
         if(!f.canRead()) System.err.println("Unreadable file: " + f.getName());
         try {
@@ -308,11 +393,45 @@ public abstract class AbstractRunner {
     }
 
     protected Integer runTest(String directory) throws InterruptedException {
+        return runTest(builder, directory);
+    }
+
+    protected Integer runTest(AbstractBuilder builder, String directory) throws InterruptedException {
+        return runTest(builder, directory, (Properties) null);
+    }
+
+    /**
+     * Runs the tests covering the positions of a transformation, or all the tests when no test impact index is set
+     */
+    protected Integer runTest(AbstractBuilder builder, String directory, Transformation trans) throws InterruptedException {
+        if(testImpactIndex == null) {
+            return runTest(builder, directory);
+        }
+        Set<String> testClasses = testImpactIndex.testClassesFor(trans.getPositions());
+        if(testClasses.isEmpty()) {
+            if(runAllTestsIfUncovered) {
+                Log.debug("no test covers the transformation, run all tests");
+                return runTest(builder, directory);
+            } else {
+                Log.info("no test covers the transformation, not tested");
+                builder.reset();
+                return builder.getStatus();
+            }
+        }
+        Log.debug("run {} test classes", testClasses.size());
+        Properties properties = new Properties();
+        properties.setProperty("test", String.join(",", testClasses));
+        properties.setProperty("failIfNoTests", "false");
+
+        return runTest(builder, directory, properties);
+    }
+
+    protected Integer runTest(AbstractBuilder builder, String directory, Properties properties) throws InterruptedException {
         int status;
 
         Log.debug("run test in directory: {}", directory);
         builder.setDirectory(directory);
-        builder.runBuilder();
+        builder.runBuilder(null, properties);
         Log.info("status: " + builder.getStatus() + ", compile error: " + builder.getCompileError() + ", run all test: " + builder.allTestRun() + ", nb error: " + builder.getFailedTests().size());
         status = builder.getStatus();
 
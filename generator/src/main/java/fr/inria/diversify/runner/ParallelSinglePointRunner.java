@@ -0,0 +1,238 @@
+package fr.inria.diversify.runner;
+
+import fr.inria.diversify.buildSystem.AbstractBuilder;
+import fr.inria.diversify.statistic.SinglePointSessionResults;
+import fr.inria.diversify.transformation.Transformation;
+import fr.inria.diversify.util.FileUtils;
+import fr.inria.diversify.util.Log;
+import fr.inria.diversify.util.Sandbox;
+import spoon.reflect.cu.SourcePosition;
+import spoon.reflect.declaration.CtType;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * A SinglePointRunner that evaluates several transformations at the same time.
+ *
+ * Each worker owns a copy of the project and a builder. The spoon model is shared by all the workers,
+ * so the query, the application and the restoration of a transformation in the model are done under
+ * <code>modelLock</code>: only the builds run concurrently.
+ */
+public class ParallelSinglePointRunner extends SinglePointRunner {
+    /**
+     * Number of workers
+     */
+    protected int nbWorker;
+
+    /**
+     * Project copy of each worker, the first one is tmpDir
+     */
+    protected List<String> workerDirs;
+
+    /**
+     * Builder of each worker, in the same order as workerDirs
+     */
+    protected List<AbstractBuilder> workerBuilders;
+
+    /**
+     * Sandbox of each worker, in the same order as workerDirs
+     */
+    protected List<Sandbox> workerSandboxes;
+
+    /**
+     * Guards the transformation query and the spoon model
+     */
+    protected final Object modelLock = new Object();
+
+    /**
+     * Number of transformations still to query, -1 for all
+     */
+    protected int remaining;
+
+    public ParallelSinglePointRunner(InputConfiguration inputConfiguration, String projectDir, String srcDir, int nbWorker) {
+        super(inputConfiguration, projectDir, srcDir);
+        this.nbWorker = Math.max(1, nbWorker);
+        workerDirs = new ArrayList<>(this.nbWorker);
+        workerBuilders = new ArrayList<>(this.nbWorker);
+        workerSandboxes = new ArrayList<>(this.nbWorker);
+    }
+
+    @Override
+    public String init(String dirProject, String dirTarget) throws IOException, InterruptedException {
+        originalTmpDir = dirTarget;
+        tmpDir = dirTarget + "/tmp_" + System.currentTimeMillis();
+        workerDirs.clear();
+        workerSandboxes.clear();
+        for(int i = 0; i < nbWorker; i++) {
+            String workerDir = i == 0 ? tmpDir : tmpDir + "_worker" + i;
+            workerSandboxes.add(initSandbox(dirProject, workerDir));
+            workerDirs.add(workerDir);
+        }
+        Log.info("{} workers initialized in {}", nbWorker, dirTarget);
+
+        return tmpDir;
+    }
+
+    public List<String> getWorkerDirs() {
+        return workerDirs;
+    }
+
+    /**
+     * Sets the builder of each worker, <code>builders.get(i)</code> must work in <code>getWorkerDirs().get(i)</code>
+     */
+    public void setWorkerBuilders(List<AbstractBuilder> builders) {
+        workerBuilders = new ArrayList<>(builders);
+        for(AbstractBuilder workerBuilder : workerBuilders) {
+            workerBuilder.setKillOwnProcessTree(true);
+        }
+        builder = workerBuilders.get(0);
+    }
+
+    @Override
+    public void run(int n) throws Exception {
+        if(workerBuilders.size() != workerDirs.size()) {
+            throw new Exception("ParallelSinglePointRunner needs one builder per worker (" + workerDirs.size() + ")");
+        }
+        transformations = new ArrayList<>();
+        remaining = n > 0 ? n : -1;
+
+        ExecutorService executor = Executors.newFixedThreadPool(workerDirs.size());
+        List<Future<Void>> futures = new ArrayList<>(workerDirs.size());
+        for(int i = 0; i < workerDirs.size(); i++) {
+            final String workerDir = workerDirs.get(i);
+            final AbstractBuilder workerBuilder = workerBuilders.get(i);
+            futures.add(executor.submit(() -> {
+                Transformation trans = nextTransformation();
+                while (trans != null) {
+                    run(trans, workerDir, workerBuilder);
+                    trans = nextTransformation();
+                }
+                return null;
+            }));
+        }
+        executor.shutdown();
+        try {
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            executor.shutdownNow();
+            throw new Exception(e.getCause());
+        }
+        Log.info("session result: {}", sessionResults);
+    }
+
+    /**
+     * Pulls the next transformation from the shared query
+     *
+     * @return the next transformation, null when the session is over
+     */
+    protected Transformation nextTransformation() throws Exception {
+        synchronized (modelLock) {
+            while (remaining != 0 && transQuery.hasNextTransformation()) {
+                Transformation trans = transQuery.query();
+                //the transformations of the journal do not count as trials
+                if(!alreadyEvaluated(trans)) {
+                    if(remaining > 0) {
+                        remaining--;
+                    }
+                    return trans;
+                }
+            }
+            return null;
+        }
+    }
+
+    protected void run(Transformation trans, String workerDir, AbstractBuilder workerBuilder) throws Exception {
+        if(alreadyEvaluated(trans)) {
+            return;
+        }
+        int currentTrial;
+        synchronized (this) {
+            currentTrial = trial;
+        }
+        Log.info("trial {} in {}", currentTrial, workerDir);
+
+        try {
+            synchronized (modelLock) {
+                try {
+                    applyTransformation(trans, workerBuilder, workerDir + "/" + sourceDir);
+                } finally {
+                    //the model is restored right away for the other workers, the transformed files stay in workerDir
+                    restoreModel(trans, workerDir);
+                }
+            }
+
+            try {
+                int status = runTest(workerBuilder, workerDir, trans);
+
+                trans.setStatus(status);
+                trans.setFailures(workerBuilder.getFailedTests());
+                // error during runTest
+            } catch (Exception e) {
+                trans.setStatus(-2);
+                Log.debug("compile error during diversification", e);
+            }
+
+            synchronized (this) {
+                trial++;
+                ((SinglePointSessionResults) sessionResults).addRunResults(trans);
+            }
+        } catch (Exception e) {
+            trans.setStatus(-2);
+            Log.debug("error during the application of the transformation", e);
+        }
+        restoreSources(trans, workerDir);
+
+        addResult(trans);
+    }
+
+    /**
+     * Undo the transformation in the spoon model. The restored files are written outside of the worker
+     * directory, in order to build the transformed program.
+     */
+    protected void restoreModel(Transformation trans, String workerDir) {
+        try {
+            trans.restore(workerDir + "_restore/" + sourceDir);
+        } catch (Exception e) {
+            Log.debug("error during the restoration of the transformation", e);
+        }
+    }
+
+    /**
+     * Copies back the original files modified by a transformation into the worker directory
+     */
+    protected void restoreSources(Transformation trans, String workerDir) throws IOException {
+        Sandbox sandbox = workerSandboxes.get(workerDirs.indexOf(workerDir));
+        List<SourcePosition> positions = new ArrayList<>(trans.getPositions());
+        if(withParent && trans.getParent() != null) {
+            positions.addAll(trans.getParent().getPositions());
+        }
+        for(SourcePosition position : positions) {
+            if(position == null || position.getCompilationUnit() == null) {
+                continue;
+            }
+            CtType<?> type = position.getCompilationUnit().getMainType();
+            sandbox.restore(sourceDir + "/" + type.getQualifiedName().replace(".", "/") + ".java");
+        }
+    }
+
+    @Override
+    public void deleteTmpFiles() {
+        for(String workerDir : workerDirs) {
+            try {
+                FileUtils.deleteDirectory(new File(workerDir + "_restore"));
+                if(!workerDir.equals(tmpDir)) {
+                    FileUtils.deleteDirectory(new File(workerDir));
+                }
+            } catch (IOException e) {
+                Log.warn("unable to delete {}", workerDir);
+            }
+        }
+        super.deleteTmpFiles();
+    }
+}
@@ -1,6 +1,7 @@
 package fr.inria.diversify.runner;
 
 
+import fr.inria.diversify.buildSystem.AbstractBuilder;
 import fr.inria.diversify.statistic.SinglePointSessionResults;
 import fr.inria.diversify.transformation.AddMethodInvocation;
 import fr.inria.diversify.transformation.SingleTransformation;
@@ -46,8 +47,12 @@ public class SinglePointRunner extends AbstractRunner {
             transformations = new ArrayList<>(n);
             int count = 0;
             while(transQuery.hasNextTransformation() &&  count < n) {
-                run(transQuery.query());
-                count++;
+                Transformation trans = transQuery.query();
+                //the transformations of the journal do not count as trials
+                if(!alreadyEvaluated(trans)) {
+                    run(trans);
+                    count++;
+                }
             }
         } else {
             while (transQuery.hasNextTransformation()) {
@@ -64,6 +69,9 @@ public class SinglePointRunner extends AbstractRunner {
     }
 
     protected void run(Transformation trans) throws Exception {
+        if(alreadyEvaluated(trans)) {
+            return;
+        }
         Log.info("trial {}", trial);
         Log.debug("output dir: " + tmpDir + "/" + sourceDir);
 //        writePosition(tmpDir + "/transplant.json", (ASTTransformation) trans);
@@ -72,8 +80,7 @@ public class SinglePointRunner extends AbstractRunner {
             applyTransformation(trans);
 
             try {
-                int status;
-                    status = runTest(tmpDir);
+                int status = runTest(builder, tmpDir, trans);
 
 
 //                if(status == 0) {
@@ -96,17 +103,21 @@ public class SinglePointRunner extends AbstractRunner {
             trans.setStatus(-2);
             tryRestore(trans, e);
         }
-        transformations.add(trans);
+        addResult(trans);
     }
 
     protected void applyTransformation(Transformation trans) throws Exception {
+        applyTransformation(trans, builder, tmpDir + "/" + sourceDir);
+    }
+
+    protected void applyTransformation(Transformation trans, AbstractBuilder builder, String srcDir) throws Exception {
         if(withParent) {
             if(acceptedErrors) {
                 builder.setAcceptedErrors(trans.getParent().getFailures());
             }
-            trans.applyWithParent(tmpDir + "/" + sourceDir);
+            trans.applyWithParent(srcDir);
         } else {
-            trans.apply(tmpDir + "/" + sourceDir);
+            trans.apply(srcDir);
         }
         //System.out.println("Soesie src dir: "+getSosieDestinationPath());
         //((SingleTransformation) trans).printJavaFile(getSosieDestinationPath());
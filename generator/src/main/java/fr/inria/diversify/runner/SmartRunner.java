@@ -47,6 +47,9 @@ public class SmartRunner extends SinglePointRunner {
 
     @Override
     protected void run(Transformation trans) throws Exception {
+        if(alreadyEvaluated(trans)) {
+            return;
+        }
         Log.info("trial {}", trial);
         Log.debug("output dir: " + tmpDir + "/" + sourceDir);
 //        writePosition(tmpDir + "/transplant.json", (ASTTransformation) trans);
@@ -111,10 +114,10 @@ public class SmartRunner extends SinglePointRunner {
                             if (divergent && status >= 0) status = 1;
                         }
                     } else {
-                        status = runTest(tmpDir, p);
+                        status = runTest(builder, tmpDir, trans);
                     }
                 } else {
-                    status = runTest(tmpDir);
+                    status = runTest(builder, tmpDir, trans);
                 }
 
 
@@ -138,7 +141,6 @@ public class SmartRunner extends SinglePointRunner {
             trans.setStatus(-2);
             tryRestore(trans, e);
         }
-        transformations.add(trans);
-
+        addResult(trans);
     }
 }
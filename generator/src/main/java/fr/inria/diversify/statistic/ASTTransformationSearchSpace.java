@@ -5,15 +5,25 @@ import fr.inria.diversify.codeFragment.CodeFragment;
 import fr.inria.diversify.codeFragment.Statement;
 import fr.inria.diversify.coverage.ICoverageReport;
 import fr.inria.diversify.transformation.ast.*;
+import fr.inria.diversify.transformation.query.ReplaceabilityIndex;
 import fr.inria.diversify.util.Log;
 import spoon.reflect.code.CtLocalVariable;
 import spoon.reflect.code.CtReturn;
 import spoon.reflect.code.CtStatement;
+import spoon.reflect.cu.SourcePosition;
 import spoon.reflect.declaration.CtElement;
 import spoon.reflect.factory.Factory;
 import spoon.reflect.reference.CtVariableReference;
 
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
 /**
@@ -26,27 +36,72 @@ public class ASTTransformationSearchSpace {
 
     protected boolean subType;
 
+    //fragments bucketed by context, only the compatible ones are checked by findCandidate
+    protected ReplaceabilityIndex index;
+
+    protected int parallelism = Runtime.getRuntime().availableProcessors();
+
     public ASTTransformationSearchSpace(CodeFragmentList list, ICoverageReport coverageReport) {
         codeFragments = list.stream()
             .filter(fragment -> coverageReport.codeFragmentCoverage(fragment) != 0)
             .collect(Collectors.toList());
+        index = new ReplaceabilityIndex(codeFragments, new Random());
     }
 
-    public Map<CodeFragment, Long> getSearchSpace() {
-        Map<CodeFragment, Long> searchSpace = new HashMap<>();
-        codeFragments.parallelStream()
-                .forEach(cf -> {
-                    try {
-                        long count = nbAllReplaceOrAdd(cf) * 2 + nbAllDelete(cf);
-                        searchSpace.put(cf,count);
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-                });
+    public Map<CodeFragment, Long> getSearchSpace() throws InterruptedException {
+        Map<CodeFragment, Long> searchSpace = new ConcurrentHashMap<>();
+        forEachSearchSpace(searchSpace::put);
 
         return searchSpace;
     }
 
+    /**
+     * Writes the search space size of each fragment in a csv file, as soon as it is computed
+     */
+    public void writeSearchSpace(String fileName) throws IOException, InterruptedException {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName))) {
+            writer.write("position;searchSpaceSize;nodeType\n");
+            forEachSearchSpace((codeFragment, count) -> {
+                SourcePosition position = codeFragment.getCtCodeFragment().getPosition();
+                String line = position.getCompilationUnit().getMainType().getQualifiedName() + ":" + position.getLine()
+                        + ";" + count + ";" + codeFragment.getCodeFragmentTypeSimpleName() + "\n";
+                try {
+                    synchronized (writer) {
+                        writer.write(line);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Computes the search space size of each fragment on a ForkJoinPool of parallelism threads.
+     * The consumer is called concurrently, in no particular order.
+     */
+    public void forEachSearchSpace(BiConsumer<CodeFragment, Long> consumer) throws InterruptedException {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.submit(() -> codeFragments.parallelStream()
+                    .forEach(cf -> consumer.accept(cf, nbAllReplaceOrAdd(cf) * 2 + nbAllDelete(cf))))
+                .get();
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
     public Set<ASTTransformation> getAllASTTransformationFor(CodeFragment codeFragment) throws InterruptedException {
         Set<ASTTransformation> transformations = new HashSet<>();
 
@@ -105,13 +160,7 @@ public class ASTTransformationSearchSpace {
     }
 
     protected List<CodeFragment> findCandidate(CodeFragment cf, boolean varNameMatch, boolean subType) {
-        List<CodeFragment> list = new ArrayList<>();
-        for (CodeFragment statement : codeFragments) {
-            if (cf.isReplaceableBy(statement, varNameMatch, subType) && !statement.equalString().equals(cf.equalString())) {
-                list.add(statement);
-            }
-        }
-        return list;
+        return index.candidates(cf, varNameMatch, subType);
     }
 
     protected List<Map<String, String>> getAllVarMapping(CodeFragment before, CodeFragment after) {
@@ -127,7 +176,7 @@ public class ASTTransformationSearchSpace {
         return computeVarMapping(vars);
     }
 
-    public long nbAllReplaceOrAdd(CodeFragment codeFragment) throws InterruptedException {
+    public long nbAllReplaceOrAdd(CodeFragment codeFragment) {
         long count = 0;
         for (CodeFragment cf2 : findCandidate(codeFragment, false, subType)) {
             count += nbAllVarMapping(codeFragment, cf2);
@@ -1,8 +1,8 @@
 package fr.inria.diversify.statistic;
 
+import fr.inria.diversify.persistence.binary.TransformationStore;
 import fr.inria.diversify.runner.InputProgram;
 import fr.inria.diversify.transformation.SingleTransformation;
-import fr.inria.diversify.util.Log;
 import spoon.reflect.declaration.CtClass;
 
 import java.io.*;
@@ -13,11 +13,15 @@ import java.util.stream.Collectors;
  * Created by Simon on 20/03/14.
  */
 public class FailureMatrix {
-    protected Collection<SingleTransformation> transformations;
+    protected TransformationStore store;
     protected List<String> allTest;
     InputProgram inputProgram;
 
     public FailureMatrix(InputProgram inputProgram, Collection<SingleTransformation> transformations, String allTestFile) throws IOException {
+        this(inputProgram, TransformationStore.of(transformations), allTestFile);
+    }
+
+    public FailureMatrix(InputProgram inputProgram, TransformationStore store, String allTestFile) throws IOException {
         this.inputProgram = inputProgram;
         BufferedReader br = new BufferedReader(new FileReader(allTestFile));
         allTest = new ArrayList<>();
@@ -28,44 +32,37 @@ public class FailureMatrix {
             line = br.readLine();
         }
 
-        this.transformations = transformations;
+        this.store = store;
     }
 
     protected List<String> buildMatrix() {
-        return buildMatrix(transformations);
+        int[] records = new int[store.size()];
+        for(int i = 0; i < records.length; i++) {
+            records[i] = i;
+        }
+        return buildMatrix(records);
     }
 
     protected List<String> buildMatrixForClass(String className) {
-        return buildMatrix(transformations.stream()
-                .filter(t -> t.classLocationName().equals(className))
-                .collect(Collectors.toList()));
+        return buildMatrix(store.recordsOfClass(className));
     }
 
-    protected List<String> buildMatrix(Collection<SingleTransformation> transformations) {
+    protected List<String> buildMatrix(int[] records) {
         Map<String,Integer> map = new HashMap<>();
+        List<BitSet> testIds = allTest.stream()
+                .map(test -> store.testIds(Collections.singleton(test)))
+                .collect(Collectors.toList());
 
-        for(SingleTransformation transformation: transformations) {
-            if(transformation.getStatus() == -1) {
+        for(int record : records) {
+            if(store.getStatus(record) == -1) {
                 StringBuilder sb = new StringBuilder();
-                List<String> failures = transformation.getFailures();
-                int count = 0;
-                for(String test: allTest) {
-                   if(failures.contains(test)){
+                for(BitSet test : testIds) {
+                   if(store.failsOneOf(record, test))
                        sb.append(";1");
-                       count++;
-                   }
                    else
                        sb.append(";0");
                 }
-                String key = sb.toString();
-                if(!map.containsKey(key))
-                    map.put(key, 1);
-                else {
-                    if(transformation.getFailures().size() < count) {
-                        Log.debug("halt");
-                    }
-                    map.put(key, map.get(key) + 1);
-                }
+                map.merge(sb.toString(), 1, Integer::sum);
             }
         }
         List<String> matrix = new ArrayList<String>(map.size());
@@ -37,6 +37,11 @@ public class ADRTransformationQuery extends TransformationQuery {
 
     protected ToDoubleFunction<Transformation> evalFunction;
 
+    /**
+     * Unique code fragments by context, built on the first candidate search
+     */
+    protected ReplaceabilityIndex replaceabilityIndex;
+
     /**
      * Short constructor assuming the fragment class to be statement and the transformation to be stupid
      *
@@ -340,13 +345,15 @@ public class ADRTransformationQuery extends TransformationQuery {
     protected CodeFragment findRandomFragmentCandidate(CodeFragment cf,
                                                        boolean varNameMatch, boolean subType) throws IllegalAccessException, InstantiationException {
 
-        String cfString = cf.equalString();
-        for(CodeFragment codeFragment : getAllUniqueCodeFragments()) {
-            if(cf.isReplaceableBy(codeFragment, varNameMatch, subType) && !codeFragment.equalString().equals(cfString)) {
-                return codeFragment;
-            }
+        return getReplaceabilityIndex().randomCandidate(cf, varNameMatch, subType);
+    }
+
+    protected ReplaceabilityIndex getReplaceabilityIndex() {
+        Collection<CodeFragment> uniqueCodeFragments = getInputProgram().getCodeFragments().getUniqueCodeFragmentList();
+        if(replaceabilityIndex == null || !replaceabilityIndex.isIndexOf(uniqueCodeFragments)) {
+            replaceabilityIndex = new ReplaceabilityIndex(uniqueCodeFragments, random);
         }
-        return null;
+        return replaceabilityIndex;
     }
 
     protected List<CodeFragment> getAllUniqueCodeFragments() {
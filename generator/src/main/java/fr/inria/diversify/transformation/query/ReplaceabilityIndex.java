@@ -0,0 +1,151 @@
+package fr.inria.diversify.transformation.query;
+
+import fr.inria.diversify.codeFragment.*;
+import spoon.reflect.reference.CtTypeReference;
+import spoon.reflect.reference.CtVariableReference;
+
+import java.util.*;
+
+/**
+ * Index of the code fragments by context, to find the candidates to replace a code fragment without
+ * going through all the fragments.
+ *
+ * A fragment (statement, expression or block) is replaceable by another only if they have the same output type
+ * and if each input variable type of the other has a variable of the same type in the input context of the first one
+ * (or a variable of the same name, with varNameMatch). The fragments are bucketed by output type and by set of
+ * input types (or names). The buckets compatible with a fragment give a small pool of candidates, on which
+ * CodeFragment.isReplaceableBy is still checked.
+ *
+ * candidates can be called from several threads, randomCandidate cannot.
+ */
+public class ReplaceabilityIndex {
+    protected static final int MAX_POOLS = 1024;
+
+    protected Collection<CodeFragment> source;
+    protected int sourceSize;
+    protected Random random;
+
+    protected CodeFragment[] all;
+
+    //fragments by output type, then by input types
+    protected Map<String, Map<Set<String>, List<CodeFragment>>> byOutputAndInputTypes;
+
+    //fragments by input variable names
+    protected Map<Set<String>, List<CodeFragment>> byInputNames;
+
+    //candidate pools already computed, by key of the replaced fragment
+    protected Map<String, CodeFragment[]> pools;
+
+    public ReplaceabilityIndex(Collection<CodeFragment> fragments, Random random) {
+        this.random = random;
+        source = fragments;
+        sourceSize = fragments.size();
+        all = fragments.toArray(new CodeFragment[sourceSize]);
+        byOutputAndInputTypes = new HashMap<>();
+        byInputNames = new HashMap<>();
+        pools = new LinkedHashMap<String, CodeFragment[]>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<String, CodeFragment[]> eldest) {
+                return size() > MAX_POOLS;
+            }
+        };
+
+        for(CodeFragment fragment : all) {
+            byOutputAndInputTypes
+                    .computeIfAbsent(typeKey(fragment.getOutputContext()), key -> new HashMap<>())
+                    .computeIfAbsent(inputTypes(fragment.getInputContext()), key -> new ArrayList<>())
+                    .add(fragment);
+            byInputNames
+                    .computeIfAbsent(fragment.getInputContext().getAllVarName(), key -> new ArrayList<>())
+                    .add(fragment);
+        }
+    }
+
+    /**
+     * True if this index has been built from this collection and the collection has not changed of size since
+     */
+    public boolean isIndexOf(Collection<CodeFragment> fragments) {
+        return source == fragments && sourceSize == fragments.size();
+    }
+
+    /**
+     * A random fragment that can replace cf and has a different source
+     *
+     * @return the fragment, null if there is no candidate
+     */
+    public CodeFragment randomCandidate(CodeFragment cf, boolean varNameMatch, boolean subType) {
+        CodeFragment[] pool = pool(cf, varNameMatch, subType);
+        String cfString = cf.equalString();
+
+        //partial shuffle of the pool, until a candidate is found
+        for(int i = 0; i < pool.length; i++) {
+            int j = i + random.nextInt(pool.length - i);
+            CodeFragment candidate = pool[j];
+            pool[j] = pool[i];
+            pool[i] = candidate;
+
+            if(cf.isReplaceableBy(candidate, varNameMatch, subType) && !candidate.equalString().equals(cfString)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * All the fragments that can replace cf and have a different source, in no particular order
+     */
+    public List<CodeFragment> candidates(CodeFragment cf, boolean varNameMatch, boolean subType) {
+        List<CodeFragment> candidates = new ArrayList<>();
+        String cfString = cf.equalString();
+        for(CodeFragment candidate : pool(cf, varNameMatch, subType)) {
+            if(cf.isReplaceableBy(candidate, varNameMatch, subType) && !candidate.equalString().equals(cfString)) {
+                candidates.add(candidate);
+            }
+        }
+        return candidates;
+    }
+
+    protected synchronized CodeFragment[] pool(CodeFragment cf, boolean varNameMatch, boolean subType) {
+        if(!(cf instanceof Statement || cf instanceof Expression || cf instanceof Block)) {
+            //the replaceability does not depend on the context
+            return all;
+        }
+        InputContext inputContext = cf.getInputContext();
+        if(varNameMatch) {
+            Set<String> names = inputContext.getAllVarName();
+            return pools.computeIfAbsent("name:" + new TreeSet<>(names), key -> subsetPool(byInputNames, names));
+        }
+        String output = typeKey(cf.getOutputContext());
+        Map<Set<String>, List<CodeFragment>> byInputTypes = byOutputAndInputTypes.getOrDefault(output, Collections.emptyMap());
+        if(subType) {
+            //a variable of a sub type can be used: only the output type is indexed
+            return pools.computeIfAbsent("subType:" + output, key -> subsetPool(byInputTypes, null));
+        }
+        Set<String> types = inputTypes(inputContext);
+        return pools.computeIfAbsent("type:" + output + ":" + new TreeSet<>(types), key -> subsetPool(byInputTypes, types));
+    }
+
+    /**
+     * Fragments of the buckets whose key is a subset of keys, of all the buckets if keys is null
+     */
+    protected CodeFragment[] subsetPool(Map<Set<String>, List<CodeFragment>> buckets, Set<String> keys) {
+        List<CodeFragment> pool = new ArrayList<>();
+        for(Map.Entry<Set<String>, List<CodeFragment>> bucket : buckets.entrySet()) {
+            if(keys == null || keys.containsAll(bucket.getKey())) {
+                pool.addAll(bucket.getValue());
+            }
+        }
+        return pool.toArray(new CodeFragment[pool.size()]);
+    }
+
+    protected Set<String> inputTypes(InputContext inputContext) {
+        Set<String> types = new HashSet<>();
+        for(CtVariableReference<?> variable : inputContext.getVar()) {
+            types.add(typeKey(variable.getType()));
+        }
+        return types;
+    }
+
+    protected String typeKey(CtTypeReference<?> type) {
+        return type == null ? "null" : type.getQualifiedName();
+    }
+}
@@ -5,6 +5,7 @@ import fr.inria.diversify.buildSystem.maven.MavenDependencyResolver;
 import fr.inria.diversify.runner.InputConfiguration;
 import fr.inria.diversify.runner.InputProgram;
 import fr.inria.diversify.factories.DiversityCompiler;
+import fr.inria.diversify.factories.ModelCache;
 import fr.inria.diversify.factories.SpoonMetaFactory;
 import org.apache.log4j.Level;
 import spoon.Launcher;
@@ -40,7 +41,7 @@ public class InitUtils {
         t.setOnlyDirectDependencies(onlyDirectDependencies);
         String builder = inputConfiguration.getProperty("builder");
 
-        if(builder.equals("maven")) {
+        if(builder.equals("maven") || builder.equals("inprocess") || builder.equals("worker")) {
             t.resolveDependencies(inputConfiguration.getInputProgram(), inputConfiguration.getProperty("dependenciesLoading", "True").equalsIgnoreCase("true"));
             String androidSdk = inputConfiguration.getProperty("maven.androidSdk");
             if (androidSdk != null) {
@@ -85,6 +86,8 @@ public class InitUtils {
 
         inputProgram.setJavaVersion(Integer.parseInt(inputConfiguration.getProperty("javaVersion", "6")));
 
+        inputProgram.setModelCacheDir(inputConfiguration.getProperty("spoon.cache"));
+
         return inputProgram;
     }
 
@@ -94,8 +97,23 @@ public class InitUtils {
 
     public static Factory initSpoon(InputProgram inputProgram, boolean withTest) {
         try {
-            Factory factory =  new SpoonMetaFactory().buildNewFactory(inputProgram, withTest);
+            SpoonMetaFactory metaFactory = new SpoonMetaFactory();
+            ModelCache cache = null;
+            if(inputProgram.getModelCacheDir() != null) {
+                cache = new ModelCache(inputProgram.getModelCacheDir(), inputProgram.getProgramDir(),
+                        metaFactory.sourceDirectories(inputProgram, withTest), inputProgram.getJavaVersion());
+                inputProgram.setModelCache(cache);
+                if(cache.load(inputProgram)) {
+                    return inputProgram.getFactory();
+                }
+            }
+            //the snapshot is saved once, with the code fragments, by processCodeFragments. The models with the tests
+            //are built to be instrumented or run, their code fragments are not processed: they are saved now
+            Factory factory =  metaFactory.buildNewFactory(inputProgram, withTest);
             inputProgram.setFactory(factory);
+            if(cache != null && withTest) {
+                cache.save(inputProgram);
+            }
             return factory;
         } catch (ClassNotFoundException  | IllegalAccessException | InstantiationException e) {
             throw new java.lang.RuntimeException(e);
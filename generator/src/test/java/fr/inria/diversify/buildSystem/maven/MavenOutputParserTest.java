@@ -1,6 +1,5 @@
-package fr.inria.diversify.oldTests.buildSystem;
+package fr.inria.diversify.buildSystem.maven;
 
-import fr.inria.diversify.buildSystem.maven.MavenOutputParser;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -8,6 +7,7 @@ import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -152,4 +152,37 @@ public class MavenOutputParserTest {
         Assert.assertEquals(0, parser.parse(lines));
     }
 
+    @Test
+    public void testHandler() throws Exception {
+        String[] files = {"maven outputs/build error/1_buidOutput6.txt", "maven outputs/test failed/1_buidOutput7.txt",
+                "maven outputs/success/1_buidOutput4.txt"};
+        for (String file : files) {
+            String[] lines = readFile(getResourcePath(file));
+            MavenOutputParser parser = new MavenOutputParser();
+            MavenOutputHandler handler = new MavenOutputHandler(new MavenOutputParser(), false, false);
+            for (String line : lines) {
+                handler.consumeLine(line);
+            }
+            Assert.assertEquals(parser.parse(lines), handler.finish());
+            Assert.assertEquals(parser.getFailedTests(), handler.getParser().getFailedTests());
+        }
+    }
+
+    @Test
+    public void testFailFast() throws Exception {
+        String[] lines = readFile(getResourcePath("maven outputs/test failed/1_buidOutput7.txt"));
+        MavenOutputParser parser = new MavenOutputParser();
+        parser.setFailFast(true);
+        Assert.assertEquals(-1, parser.parse(lines));
+        Assert.assertTrue(parser.isStopped());
+        Assert.assertEquals(1, parser.getFailedTests().size());
+        Assert.assertTrue(parser.getFailedTests().get(0).contains("test_getInstance"));
+
+        parser = new MavenOutputParser();
+        parser.setFailFast(true);
+        parser.setAcceptedErrors(new ArrayList<>(Arrays.asList("org.apache.commons.lang3.time.FastDateFormatTest.test_getInstance")));
+        parser.parse(lines);
+        Assert.assertFalse(parser.getFailedTests().isEmpty());
+        Assert.assertFalse(parser.getFailedTests().get(0).contains("test_getInstance"));
+    }
 }
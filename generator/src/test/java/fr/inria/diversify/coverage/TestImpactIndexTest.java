@@ -0,0 +1,45 @@
+package fr.inria.diversify.coverage;
+
+import org.json.JSONException;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class TestImpactIndexTest {
+
+    protected TestImpactIndex buildIndex() {
+        TestImpactIndex index = new TestImpactIndex();
+        index.add("org.Foo", 10, 50, Arrays.asList("org.FooTest#testA", "org.FooTest#testB", "org.BarTest#testC"));
+        index.add("org.Foo", 20, 25, Arrays.asList("org.FooTest#testA"));
+        index.add("org.Bar", 1, 5, Arrays.asList("org.BarTest#testC"));
+        return index;
+    }
+
+    @Test
+    public void testSmallestEntry() {
+        TestImpactIndex index = buildIndex();
+
+        assertEquals(Collections.singleton("org.FooTest#testA"), index.testsFor("org.Foo", 21, 22));
+        assertEquals(3, index.testsFor("org.Foo", 30, 31).size());
+        assertEquals(3, index.testsFor("org.Foo", 24, 26).size());
+        assertTrue(index.testsFor("org.Foo", 5, 6).isEmpty());
+        assertTrue(index.testsFor("org.Unknown", 1, 1).isEmpty());
+    }
+
+    @Test
+    public void testWriteLoad() throws IOException, JSONException {
+        File file = File.createTempFile("testImpact", ".json");
+        file.deleteOnExit();
+        buildIndex().write(file);
+
+        TestImpactIndex index = TestImpactIndex.load(file);
+        assertEquals(3, index.size());
+        assertEquals(Collections.singleton("org.FooTest#testA"), index.testsFor("org.Foo", 21, 22));
+        assertEquals(Collections.singleton("org.BarTest#testC"), index.testsFor("org.Bar", 2, 3));
+    }
+}
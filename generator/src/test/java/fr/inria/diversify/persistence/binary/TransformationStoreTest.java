@@ -0,0 +1,82 @@
+package fr.inria.diversify.persistence.binary;
+
+import fr.inria.diversify.transformation.SingleTransformation;
+import fr.inria.diversify.transformation.Transformation;
+import org.junit.Test;
+import spoon.reflect.cu.SourcePosition;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class TransformationStoreTest {
+
+    protected SingleTransformation transformation(final String className, final String method, final int line,
+                                                  int status, String... failures) {
+        SingleTransformation transformation = new SingleTransformation() {
+            public String classLocationName() { return className; }
+            public String packageLocationName() { return ""; }
+            public String methodLocationName() { return method; }
+            public SourcePosition getPosition() { return null; }
+            public int line() { return line; }
+            public String getTransformationString() { return ""; }
+            public void apply(String srcDir) {}
+            public void restore(String srcDir) {}
+        };
+        transformation.setStatus(status);
+        transformation.setFailures(Arrays.asList(failures));
+        return transformation;
+    }
+
+    protected TransformationStore buildStore() {
+        List<Transformation> transformations = new ArrayList<>();
+        transformations.add(transformation("org.Foo", "foo", 20, 0));
+        transformations.add(transformation("org.Foo", "foo", 10, -1, "org.FooTest#testA"));
+        transformations.add(transformation("org.Foo", "bar", 30, -1, "org.FooTest#testA", "org.BarTest#testC"));
+        transformations.add(transformation("org.Bar", "bar", 5, -2));
+        Transformation child = transformation("org.Bar", "bar", 6, 0);
+        child.setParent(transformations.get(0));
+        transformations.add(child);
+        return TransformationStore.of(transformations);
+    }
+
+    protected void testQueries(TransformationStore store) {
+        assertEquals(5, store.size());
+        assertArrayEquals(new int[]{1, 0, 2}, store.recordsOfClass("org.Foo"));
+        assertArrayEquals(new int[]{1, 0}, store.recordsOfMethod("org.Foo", "foo"));
+        assertArrayEquals(new int[]{1, 2}, store.recordsFailing("org.FooTest#testA"));
+        assertEquals(0, store.recordsFailing("org.Unknown#test").length);
+        assertArrayEquals(new int[]{0, 2}, store.recordsInLines("org.Foo", 15, 30));
+
+        Map<String, Integer> sosies = store.countByClass(status -> status == 0);
+        assertEquals(1, (int) sosies.get("org.Foo"));
+        assertEquals(1, (int) sosies.get("org.Bar"));
+
+        assertEquals(0, store.getParent(4));
+        assertEquals(TransformationStore.NONE, store.getParent(0));
+        assertEquals(Arrays.asList("org.FooTest#testA", "org.BarTest#testC"), store.getFailures(2));
+        BitSet tests = store.testIds(Collections.singleton("org.BarTest#testC"));
+        assertTrue(store.failsOneOf(2, tests));
+        assertFalse(store.failsOneOf(1, tests));
+    }
+
+    @Test
+    public void testQueries() {
+        testQueries(buildStore());
+    }
+
+    @Test
+    public void testWriteLoad() throws IOException {
+        File file = File.createTempFile("transformations", ".store");
+        file.deleteOnExit();
+        TransformationStore store = buildStore();
+        store.write(file);
+
+        TransformationStore loaded = TransformationStore.load(file);
+        testQueries(loaded);
+        assertEquals(store.getIndex(3), loaded.getIndex(3));
+        assertEquals("org.Bar.bar", loaded.getMethod(3));
+    }
+}
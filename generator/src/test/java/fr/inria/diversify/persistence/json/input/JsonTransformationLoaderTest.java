@@ -0,0 +1,116 @@
+package fr.inria.diversify.persistence.json.input;
+
+import fr.inria.diversify.runner.InputProgram;
+import fr.inria.diversify.transformation.Transformation;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+import spoon.reflect.cu.SourcePosition;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+
+import static fr.inria.diversify.persistence.json.output.JsonFailuresOutput.FAILURES_DICTIONARY;
+import static fr.inria.diversify.persistence.json.output.JsonSectionOutput.TRANSFORMATIONS;
+import static org.junit.Assert.*;
+
+public class JsonTransformationLoaderTest {
+    private static final String FIRST = "00000000-0000-0000-0000-000000000001";
+    private static final String SECOND = "00000000-0000-0000-0000-000000000002";
+
+    /**
+     * Transformation section reading the index and the status of the elements, an element with the index of a
+     * transformation read before updates it
+     */
+    protected static class StatusInput extends JsonTransformationCollectionInput {
+        public StatusInput(InputProgram inputProgram) {
+            super(inputProgram, null);
+        }
+
+        @Override
+        public void read(Map<UUID, Transformation> transformations) {
+            try {
+                JSONArray array = getJsonObject().getJSONArray(TRANSFORMATIONS);
+                for (int i = 0; i < array.length(); i++) {
+                    JSONObject element = array.getJSONObject(i);
+                    UUID index = UUID.fromString(element.getString("tindex"));
+                    Transformation transformation = transformations.get(index);
+                    if (transformation == null) {
+                        transformation = transformation();
+                        transformation.setIndex(index);
+                    }
+                    transformation.setStatus(element.getInt("status"));
+                    transformations.put(index, transformation);
+                }
+            } catch (JSONException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    @Test
+    public void testMergeSameIndex() throws Exception {
+        File file = write(element(FIRST, -1), element(SECOND, -2), element(FIRST, 0));
+
+        JsonTransformationLoader loader = loader();
+        List<Transformation> streamed = new ArrayList<>();
+        loader.iterator(file.getPath()).forEachRemaining(streamed::add);
+        assertEquals(status(read(loader(), file.getPath())), status(streamed));
+        assertEquals(2, streamed.size());
+        assertEquals(0, status(streamed).get(UUID.fromString(FIRST)).intValue());
+    }
+
+    private Collection<Transformation> read(JsonTransformationLoader loader, String path) {
+        loader.setJsonPath(path);
+        return loader.read();
+    }
+
+    private Map<UUID, Integer> status(Collection<Transformation> transformations) {
+        Map<UUID, Integer> status = new HashMap<>();
+        for (Transformation transformation : transformations) {
+            status.put(transformation.getIndex(), transformation.getStatus());
+        }
+        return status;
+    }
+
+    private JsonTransformationLoader loader() {
+        InputProgram inputProgram = new InputProgram();
+        JsonTransformationLoader loader = new JsonTransformationLoader(inputProgram, false);
+        loader.addSection(JsonTransformationCollectionInput.class, new StatusInput(inputProgram));
+        return loader;
+    }
+
+    private JSONObject element(String index, int status) throws JSONException {
+        JSONObject element = new JSONObject();
+        element.put("tindex", index);
+        element.put("status", status);
+        return element;
+    }
+
+    private File write(JSONObject... elements) throws JSONException, IOException {
+        JSONObject json = new JSONObject();
+        json.put(FAILURES_DICTIONARY, new JSONObject());
+        json.put(TRANSFORMATIONS, new JSONArray(Arrays.asList(elements)));
+        File file = File.createTempFile("transformations", ".json");
+        file.deleteOnExit();
+        Files.write(file.toPath(), json.toString().getBytes("UTF-8"));
+        return file;
+    }
+
+    protected static Transformation transformation() {
+        return new Transformation() {
+            {
+                this.type = "test";
+                this.name = "test";
+            }
+            public String getTransformationString() { return ""; }
+            public void apply(String srcDir) {}
+            public void applyWithParent(String srcDir) {}
+            public void restore(String srcDir) {}
+            public List<SourcePosition> getPositions() { return Collections.emptyList(); }
+        };
+    }
+}
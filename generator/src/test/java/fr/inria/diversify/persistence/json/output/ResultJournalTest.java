@@ -0,0 +1,97 @@
+package fr.inria.diversify.persistence.json.output;
+
+import fr.inria.diversify.transformation.Transformation;
+import fr.inria.diversify.util.FileUtils;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+import spoon.reflect.cu.SourcePosition;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ResultJournalTest {
+
+    protected Transformation transformation(final String transformationName, int status, String... failures) {
+        Transformation transformation = new Transformation() {
+            {
+                this.type = "test";
+                this.name = transformationName;
+            }
+            public String getTransformationString() { return ""; }
+            public void apply(String srcDir) {}
+            public void applyWithParent(String srcDir) {}
+            public void restore(String srcDir) {}
+            public List<SourcePosition> getPositions() { return Collections.emptyList(); }
+        };
+        transformation.setStatus(status);
+        transformation.setFailures(Arrays.asList(failures));
+        return transformation;
+    }
+
+    @Test
+    public void testResume() throws IOException {
+        File file = File.createTempFile("journal", ".jsonl");
+        file.deleteOnExit();
+        Transformation t1 = transformation("t1", 0);
+        Transformation t2 = transformation("t2", -1, "org.FooTest#testA");
+
+        ResultJournal journal = new ResultJournal(file, 1);
+        journal.open(false);
+        journal.append(t1);
+        journal.append(t2);
+        journal.close();
+        //record torn by a crash
+        FileWriter writer = new FileWriter(file, true);
+        writer.write("{\"transformation\": {\"tindex\": ");
+        writer.close();
+
+        journal = new ResultJournal(file, 10);
+        journal.open(true);
+        assertEquals(2, journal.size());
+        //the transformations of a new session are other objects, with other indexes
+        assertTrue(journal.isEvaluated(transformation("t1", Transformation.NOT_TESTED)));
+        assertTrue(journal.isEvaluated(transformation("t2", Transformation.NOT_TESTED)));
+        assertFalse(journal.isEvaluated(transformation("t3", Transformation.NOT_TESTED)));
+        journal.append(transformation("t3", -1, "org.FooTest#testA", "org.FooTest#testB"));
+        journal.close();
+
+        journal = new ResultJournal(file, 10);
+        journal.open(true);
+        assertEquals(3, journal.size());
+        journal.close();
+    }
+
+    @Test
+    public void testCompact() throws IOException, JSONException {
+        File file = File.createTempFile("journal", ".jsonl");
+        file.deleteOnExit();
+        File output = File.createTempFile("journal", ".json");
+        output.deleteOnExit();
+
+        ResultJournal journal = new ResultJournal(file, 2);
+        journal.open(false);
+        journal.append(transformation("t1", -1, "org.FooTest#testA"));
+        journal.append(transformation("t2", 0));
+        journal.append(transformation("t3", -1, "org.BarTest#testC", "org.FooTest#testA"));
+        journal.compact(output.getAbsolutePath(), "");
+        journal.close();
+
+        JSONObject object = new JSONObject(FileUtils.readFile(output));
+        assertEquals(3, object.getJSONObject("header").getInt("transformationCount"));
+        JSONObject dict = object.getJSONObject(JsonFailuresOutput.FAILURES_DICTIONARY);
+        assertEquals(2, dict.length());
+        JSONArray transformations = object.getJSONArray(JsonSectionOutput.TRANSFORMATIONS);
+        assertEquals(3, transformations.length());
+        JSONArray failures = transformations.getJSONObject(2).getJSONArray(JsonSectionOutput.FAILURES);
+        assertEquals(dict.getInt("org.BarTest#testC"), failures.getInt(0));
+        assertEquals(dict.getInt("org.FooTest#testA"), failures.getInt(1));
+    }
+}
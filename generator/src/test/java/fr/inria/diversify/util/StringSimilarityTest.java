@@ -0,0 +1,36 @@
+package fr.inria.diversify.util;
+
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Created by marodrig on 21/12/2014.
+ */
+public class StringSimilarityTest {
+
+    @Test
+    public void similarityTest() {
+        assertTrue((1.0 - StringSimilarity.CompareStrings("int = 0", "int = 0")) < 0.00001);
+        assertFalse((1.0 - StringSimilarity.CompareStrings("int = 0", "int = 2")) < 0.00001);
+    }
+
+    @Test
+    public void fingerprintTest() {
+        //GG matches only one pair of GGGG
+        assertEquals(0.5, StringSimilarity.CompareStrings("gggg", "GG"), 0.0);
+        assertEquals(0.4, StringSimilarity.CompareStrings("France", "French"), 0.0);
+
+        int[] query = StringSimilarity.fingerprint("int = 0");
+        int[][] candidates = {StringSimilarity.fingerprint("int = 0"), StringSimilarity.fingerprint("int = 2")};
+        double[] scores = new double[2];
+        StringSimilarity.compare(query, candidates, scores);
+        assertEquals(StringSimilarity.CompareStrings("int = 0", "int = 0"), scores[0], 0.0);
+        assertEquals(StringSimilarity.CompareStrings("int = 0", "int = 2"), scores[1], 0.0);
+    }
+
+
+
+}
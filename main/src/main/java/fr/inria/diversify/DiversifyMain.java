@@ -3,10 +3,14 @@ package fr.inria.diversify;
 import fr.inria.diversify.buildSystem.AbstractBuilder;
 import fr.inria.diversify.buildSystem.android.InvalidSdkException;
 import fr.inria.diversify.buildSystem.ant.AntBuilder;
+import fr.inria.diversify.buildSystem.inprocess.BuildWorkerPool;
+import fr.inria.diversify.buildSystem.inprocess.InProcessBuilder;
+import fr.inria.diversify.buildSystem.inprocess.WorkerBuilder;
 import fr.inria.diversify.buildSystem.maven.MavenBuilder;
 import fr.inria.diversify.codeFragment.CodeFragment;
 import fr.inria.diversify.coverage.*;
 import fr.inria.diversify.runner.*;
+import fr.inria.diversify.info.CoverageInfo;
 import fr.inria.diversify.issta2.Compare;
 import fr.inria.diversify.issta2.DiffQuery;
 import fr.inria.diversify.issta2.MultiTransformationGenerator;
@@ -15,6 +19,7 @@ import fr.inria.diversify.logger.branch.BranchComparator;
 import fr.inria.diversify.logger.transformationUsed.StaticDiffBuilder;
 import fr.inria.diversify.persistence.json.input.JsonTransformationLoader;
 import fr.inria.diversify.persistence.json.output.JsonTransformationWriter;
+import fr.inria.diversify.persistence.json.output.ResultJournal;
 import fr.inria.diversify.statistic.ASTTransformationSearchSpace;
 import fr.inria.diversify.statistic.TransformationInfo;
 import fr.inria.diversify.transformation.ast.ASTTransformation;
@@ -29,7 +34,6 @@ import fr.inria.diversify.visu.Visu;
 import javassist.NotFoundException;
 import org.json.JSONException;
 import spoon.reflect.code.CtStatement;
-import spoon.reflect.cu.SourcePosition;
 import spoon.reflect.declaration.*;
 
 import java.io.*;
@@ -60,6 +64,11 @@ public class DiversifyMain {
      */
     protected InputConfiguration inputConfiguration;
 
+    /**
+     * Build worker processes shared by the builders, when builder=worker
+     */
+    protected BuildWorkerPool buildWorkerPool;
+
     public DiversifyMain(String propertiesFile) throws Exception, InvalidSdkException {
         Runtime.getRuntime().traceMethodCalls(true);
         //System.out.println("Cur dir " + System.getProperty("user.dir"));
@@ -139,11 +148,26 @@ public class DiversifyMain {
             runner.setTransformationQuery(query);
             InitUtils.addApplicationClassesToClassPath(inputProgram);
             runner.setBuilder(builder);
+            if(runner instanceof ParallelSinglePointRunner) {
+                ParallelSinglePointRunner parallelRunner = (ParallelSinglePointRunner) runner;
+                List<AbstractBuilder> builders = new ArrayList<>();
+                builders.add(builder);
+                for(String workerDir : parallelRunner.getWorkerDirs().subList(1, parallelRunner.getWorkerDirs().size())) {
+                    builders.add(initBuilder(workerDir));
+                }
+                parallelRunner.setWorkerBuilders(builders);
+            }
 
             try {
                 runner.run(n);
             } finally {
+                if(runner.getJournal() != null) {
+                    runner.getJournal().close();
+                }
                 writeResult(runner);
+                if(buildWorkerPool != null) {
+                    buildWorkerPool.close();
+                }
             }
             if(!inputConfiguration.getProperty("deleteTmpDir", "true").equalsIgnoreCase("false")) {
                 runner.deleteTmpFiles();
@@ -166,6 +190,12 @@ public class DiversifyMain {
             case "simple":
                 abstractRunner = new SinglePointRunner(inputConfiguration, project, src);
                 break;
+            case "parallel": {
+                int nbWorker = Integer.parseInt(inputConfiguration.getProperty("runner.worker",
+                        Runtime.getRuntime().availableProcessors() + ""));
+                abstractRunner = new ParallelSinglePointRunner(inputConfiguration, project, src, nbWorker);
+                break;
+            }
             case "secondpass":
                 abstractRunner = new SecondPassRunner(inputConfiguration, project, src);
                 break;
@@ -221,6 +251,19 @@ public class DiversifyMain {
         if(!inputConfiguration.getProperty("test-impact", "").equalsIgnoreCase("")) {
             abstractRunner.setTestImpactReport(new File(inputConfiguration.getProperty("test-impact")));
         }
+        String testImpactIndex = inputConfiguration.getProperty("test.impact.index", "");
+        if(!testImpactIndex.isEmpty() && !(abstractRunner instanceof CoverageRunner)) {
+            abstractRunner.setTestImpactIndex(CoverageInfo.testImpactIndex(inputProgram, new File(testImpactIndex),
+                    inputConfiguration.getProperty("tmpDir") + "/tmp_branch_" + System.currentTimeMillis()));
+        }
+        abstractRunner.setRunAllTestsIfUncovered(Boolean.parseBoolean(inputConfiguration.getProperty("test.impact.runAllIfUncovered", "true")));
+        String journal = inputConfiguration.getProperty("result.journal", "");
+        if(!journal.isEmpty()) {
+            ResultJournal resultJournal = new ResultJournal(new File(journal),
+                    Integer.parseInt(inputConfiguration.getProperty("result.journal.syncInterval", "10")));
+            resultJournal.open(Boolean.parseBoolean(inputConfiguration.getProperty("result.journal.resume", "true")));
+            abstractRunner.setJournal(resultJournal);
+        }
 
         return abstractRunner;
     }
@@ -272,6 +315,14 @@ public class DiversifyMain {
                 rb.initPom(pomFile);
             }
 
+        } else if(builder.equals("inprocess")) {
+            rb = new InProcessBuilder(directory, inputProgram.getRelativeSourceCodeDir(),
+                    inputProgram.getRelativeTestSourceCodeDir(), inputProgram.getJavaVersion());
+            initTimeOut(rb);
+        } else if(builder.equals("worker")) {
+            rb = new WorkerBuilder(directory, inputProgram.getRelativeSourceCodeDir(),
+                    inputProgram.getRelativeTestSourceCodeDir(), inputProgram.getJavaVersion(), initBuildWorkerPool());
+            initTimeOut(rb);
         } else { //builder == ant
             rb = new AntBuilder(directory, inputConfiguration.getProperty("builder.testTarget"));
             rb.setGoals(new String[]{"clean", inputConfiguration.getProperty("builder.testTarget")});
@@ -286,10 +337,27 @@ public class DiversifyMain {
         rb.setSaveOutputDir(results);
         rb.setClojureTest(useClojure);
         rb.setSaveOutputToFile(saveOutput);
+        rb.setFailFast(Boolean.parseBoolean(inputConfiguration.getProperty("builder.failFast", "false")));
 
         return rb;
     }
 
+    protected BuildWorkerPool initBuildWorkerPool() {
+        if(buildWorkerPool == null) {
+            int size = 1;
+            if(inputConfiguration.getProperty("runner", "simple").equals("parallel")) {
+                size = Integer.parseInt(inputConfiguration.getProperty("runner.worker",
+                        Runtime.getRuntime().availableProcessors() + ""));
+            }
+            int maxRun = Integer.parseInt(inputConfiguration.getProperty("builder.worker.maxRun", "100"));
+            long maxHeap = Long.parseLong(inputConfiguration.getProperty("builder.worker.maxHeap", "1024")) * 1024 * 1024;
+            String jvmArgs = inputConfiguration.getProperty("builder.worker.jvmArgs", "").trim();
+            buildWorkerPool = new BuildWorkerPool(size, maxRun, maxHeap,
+                    jvmArgs.isEmpty() ? new ArrayList<>() : Arrays.asList(jvmArgs.split("\\s+")));
+        }
+        return buildWorkerPool;
+    }
+
     protected void initTimeOut(AbstractBuilder rb) throws InterruptedException {
         int t = Integer.parseInt(inputConfiguration.getProperty("timeOut").trim());
         if (t == -1) {
@@ -547,13 +615,23 @@ public class DiversifyMain {
         return false;
     }
 
+    /**
+     * Loader of the transformations of the input program, the files of a directory are loaded by
+     * transformation.load.parallelism threads (1 by default)
+     */
+    protected JsonTransformationLoader initTransformationLoader() {
+        JsonTransformationLoader loader = new JsonTransformationLoader(inputProgram);
+        loader.setParallelism(Integer.parseInt(inputConfiguration.getProperty("transformation.load.parallelism", "1")));
+        return loader;
+    }
+
     protected void computePureDiversifyStat(String transDir, String output) throws Exception {
         if(inputConfiguration.getProperty("pureMethods") != null) {
             loadPureMethodList(new File(inputConfiguration.getProperty("pureMethods")));
             System.out.println("------------------------- Pure Methods OK ? " + (pureMethods != null) + "---------------------");
         }
         ICoverageReport coverage = initCoverageReport(inputProgram.getProgramDir());
-        JsonTransformationLoader loader = new JsonTransformationLoader(inputProgram);
+        JsonTransformationLoader loader = initTransformationLoader();
         Collection<Transformation> transformationsRaw = loader.load(transDir, false);
         Collection<Transformation> transformationsRawSet = new HashSet<>(transformationsRaw);
         Collection<ASTTransformation> transformations = new HashSet<>();
@@ -601,7 +679,7 @@ public class DiversifyMain {
 
     protected void computeDiversifyStat(String transDir, String output) throws Exception {
         ICoverageReport coverage = initCoverageReport(inputProgram.getProgramDir());
-        JsonTransformationLoader loader = new JsonTransformationLoader(inputProgram);
+        JsonTransformationLoader loader = initTransformationLoader();
         Collection<Transformation> transformations = loader.load(transDir, false);
 
         System.out.println("Read " + transformations.size() + " transformations");
@@ -639,20 +717,9 @@ public class DiversifyMain {
         transformationInfo.print(output + "Trial.csv");
     }
 
-    protected void computeSearchSpace(String out) throws IOException {
-        BufferedWriter writer = new BufferedWriter(new FileWriter(out + "_searchSpace.csv"));
-        writer.write("position;searchSpaceSize;nodeType\n");
-
+    protected void computeSearchSpace(String out) throws IOException, InterruptedException {
         ASTTransformationSearchSpace tSS = new ASTTransformationSearchSpace(inputProgram.getCodeFragments(), new NullCoverageReport());
-        Map<CodeFragment, Long> searchSpace = tSS.getSearchSpace();
-
-        for(CodeFragment codeFragment : searchSpace.keySet()) {
-            SourcePosition position = codeFragment.getCtCodeFragment().getPosition();
-            writer.write(position.getCompilationUnit().getMainType().getQualifiedName() + ":" + position.getLine());
-            writer.write(";" + searchSpace.get(codeFragment) + ";");
-            writer.write(codeFragment.getCodeFragmentTypeSimpleName() + "\n");
-        }
-        writer.close();
+        tSS.writeSearchSpace(out + "_searchSpace.csv");
     }
 
     protected void visu(Collection<Transformation> transformations) throws Exception {
@@ -677,7 +744,7 @@ public class DiversifyMain {
     protected void writeResult(AbstractRunner runner) {
         String repo = inputConfiguration.getProperty("gitRepository");
 
-        if(!runner.getTransformations().isEmpty()) {
+        if(!runner.getTransformations().isEmpty() || (runner.getJournal() != null && runner.getJournal().size() > 0)) {
             if (repo.equals("null")) {
                 if(inputConfiguration.getProperty("result").matches("(.+)\\.json"))
                     runner.printResult(inputConfiguration.getProperty("result"), true);
@@ -692,7 +759,7 @@ public class DiversifyMain {
 
     protected void stackProduceTransformationFromJSON(String transDir, String output) throws Exception {
         ICoverageReport coverage = initCoverageReport(inputProgram.getProgramDir());
-        JsonTransformationLoader loader = new JsonTransformationLoader(inputProgram);
+        JsonTransformationLoader loader = initTransformationLoader();
         Collection<Transformation> transformations = loader.load(transDir, false);
 
         File file = new File(output);
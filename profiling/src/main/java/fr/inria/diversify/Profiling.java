@@ -13,6 +13,7 @@ import fr.inria.diversify.util.PrintClassUtils;
 import spoon.reflect.factory.Factory;
 
 import java.io.File;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.util.Properties;
 
@@ -56,6 +57,25 @@ public class Profiling {
 
 
         ProcessorUtil.writeInfoFile(inputProgram.getProgramDir());
+        writeLogOptions();
+    }
+
+    /**
+     * Writes the properties profiling.log.* (observationRate, observationBudget, valueFormat, binaryLog...)
+     * without their prefix in the options file of the log directory, read by the LogWriters
+     */
+    protected void writeLogOptions() throws IOException {
+        Properties options = new Properties();
+        for(String key : properties.stringPropertyNames()) {
+            if(key.startsWith("profiling.log.")) {
+                options.setProperty(key.substring("profiling.log.".length()), properties.getProperty(key));
+            }
+        }
+        if(!options.isEmpty()) {
+            try (FileWriter writer = new FileWriter(inputProgram.getProgramDir() + "/log/options")) {
+                options.store(writer, null);
+            }
+        }
     }
 
     protected void initOutputDirectory() throws IOException {
@@ -92,6 +112,7 @@ public class Profiling {
         if(condition) {
             boolean addBodyBranch =  Boolean.parseBoolean(properties.getProperty("profiling.main.branch.addBodyBranch", "true"));
             BranchCoverageProcessor m = new BranchCoverageProcessor(inputProgram, inputProgram.getProgramDir(), addBodyBranch);
+            m.setIntId(Boolean.parseBoolean(properties.getProperty("profiling.main.branch.intId", "false")));
             m.setLogger(logger+".Logger");
             LoggerUtils.applyProcessor(factory, m);
         }
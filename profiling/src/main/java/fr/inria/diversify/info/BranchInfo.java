@@ -49,6 +49,10 @@ public class BranchInfo {
         branchPosition = processor.getBranchPosition();
     }
 
+    public Map<String, SourcePosition> getBranchPosition() {
+        return branchPosition;
+    }
+
     protected boolean include(SourcePosition oThis, SourcePosition oOther) {
         return oThis.getCompilationUnit().getMainType().getQualifiedName().equals(oOther.getCompilationUnit().getMainType().getQualifiedName())
                 && oThis.getLine() <= oOther.getLine()
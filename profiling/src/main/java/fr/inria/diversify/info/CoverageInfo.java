@@ -2,12 +2,15 @@ package fr.inria.diversify.info;
 
 import fr.inria.diversify.Profiling;
 import fr.inria.diversify.buildSystem.maven.MavenBuilder;
+import fr.inria.diversify.coverage.TestImpactIndex;
 import fr.inria.diversify.runner.InputProgram;
 import fr.inria.diversify.logger.branch.*;
 import fr.inria.diversify.processor.main.BranchPositionProcessor;
 import fr.inria.diversify.util.FileUtils;
 import fr.inria.diversify.util.Log;
 import fr.inria.diversify.util.LoggerUtils;
+import fr.inria.diversify.util.Sandbox;
+import spoon.reflect.cu.SourcePosition;
 
 import java.io.File;
 import java.io.IOException;
@@ -20,7 +23,7 @@ import java.util.*;
  */
 public class CoverageInfo {
     protected InputProgram inputProgram;
-    protected Map<String, Set<String>> testsByBranch;
+    protected BranchTestIndex testsByBranch;
     protected Coverage globalCoverage;
     protected List<TestCoverage> testCoverage;
 
@@ -50,24 +53,64 @@ public class CoverageInfo {
     }
 
     public boolean containsTestForBranch(String branch) {
-        return testsByBranch.containsKey(branch);
+        return testsByBranch.containsTestFor(branch);
     }
 
     public Set<String> getTestForBranch(String branch) {
-        return testsByBranch.get(branch);
+        return testsByBranch.getTests(branch);
     }
 
     public List<TestCoverage> getTestCoverage() {
         return testCoverage;
     }
 
-    protected void copyDir(String src, String dest) throws IOException {
-        File dir = new File(dest);
-        if(dir.exists()) {
-            FileUtils.forceDelete(dir);
+    /**
+     * Builds the index of the tests covering each branch of the program
+     */
+    public TestImpactIndex buildTestImpactIndex(BranchInfo branchInfo) {
+        TestImpactIndex index = new TestImpactIndex();
+        for(Map.Entry<String, SourcePosition> branch : branchInfo.getBranchPosition().entrySet()) {
+            Set<String> tests = testsByBranch.getTests(branch.getKey());
+            if(tests != null && branch.getValue() != null && branch.getValue().getCompilationUnit() != null) {
+                index.add(branch.getValue(), tests);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Loads the test impact index from a file, or computes it with an instrumented run of the tests
+     * and writes it in the file
+     *
+     * @param indexFile file of the index, may be null to not save the index
+     * @param tmpDir directory for the instrumented program, deleted after use
+     */
+    public static TestImpactIndex testImpactIndex(InputProgram inputProgram, File indexFile, String tmpDir) throws Exception {
+        if(indexFile != null && indexFile.exists()) {
+            Log.info("load test impact index from {}", indexFile);
+            return TestImpactIndex.load(indexFile);
+        }
+        CoverageInfo coverageInfo = new CoverageInfo(inputProgram);
+        File dir = new File(tmpDir);
+        coverageInfo.init(dir.getAbsolutePath());
+        FileUtils.forceDelete(dir);
+
+        BranchInfo branchInfo = new BranchInfo(inputProgram);
+        branchInfo.intBranch();
+
+        TestImpactIndex index = coverageInfo.buildTestImpactIndex(branchInfo);
+        if(indexFile != null) {
+            index.write(indexFile);
+            Log.info("test impact index ({} branches) written in {}", index.size(), indexFile);
         }
-        dir.mkdirs();
-        FileUtils.copyDirectory(new File(src), dir);
+        return index;
+    }
+
+    protected void copyDir(String src, String dest) throws IOException {
+        List<String> writableDirs = new ArrayList<>();
+        writableDirs.add(inputProgram.getRelativeSourceCodeDir());
+        writableDirs.add(inputProgram.getRelativeTestSourceCodeDir());
+        new Sandbox(src, dest, writableDirs).create();
     }
 
 
@@ -100,23 +143,15 @@ public class CoverageInfo {
     }
 
     protected void initTestByBranch(String logDir) throws InterruptedException, IOException {
-        testsByBranch = new HashMap<>();
-
-        testCoverage = loadTestCoverage(logDir);
+        CoverageReader reader = new CoverageReader(logDir);
+        testCoverage = reader.loadTest();
+        testsByBranch = new BranchTestIndex(reader.getBranchIndex());
 
         for(TestCoverage tc : testCoverage) {
-            for(MethodCoverage mth : tc.getCoverage().getMethodCoverages()) {
-                for(BranchCoverage branchCoverage : mth.getCoveredBranchCoverages()) {
-                    String key = mth.getMethodId() + "." + branchCoverage.getId();
-                    if (!testsByBranch.containsKey(key)) {
-                        testsByBranch.put(key, new HashSet<>());
-                    }
-                    String testName = tc.getTestName();
-                    int ind = testName.lastIndexOf(".");
-                    testName = new StringBuilder(testName).replace(ind, ind + 1, "#").toString();
-                    testsByBranch.get(key).add(testName);
-                }
-            }
+            String testName = tc.getTestName();
+            int ind = testName.lastIndexOf(".");
+            testName = new StringBuilder(testName).replace(ind, ind + 1, "#").toString();
+            testsByBranch.add(testName, tc.getCoveredBranches());
         }
     }
 }
@@ -12,6 +12,7 @@ import fr.inria.diversify.logger.exception.ExceptionDiff;
 import fr.inria.diversify.logger.graph.GraphsDiff;
 import fr.inria.diversify.logger.transformationUsed.StaticDiff;
 import fr.inria.diversify.logger.variable.VariableDiff;
+import fr.inria.diversify.persistence.binary.TransformationStore;
 import fr.inria.diversify.persistence.json.input.JsonTransformationLoader;
 import fr.inria.diversify.persistence.json.output.JsonTransformationWriter;
 import fr.inria.diversify.processor.main.BranchPositionProcessor;
@@ -45,6 +46,7 @@ public class StatementsInfo {
     protected final InputProgram inputProgram;
     protected Map<Transformation, Set<Diff>> transToDiffs;
     protected Collection<SingleTransformation> transformations;
+    protected TransformationStore store = TransformationStore.of(Collections.<Transformation>emptyList());
 
     protected Map<String, SourcePosition> branchPosition;
     protected CoverageInfo coverageInfo;
@@ -82,6 +84,7 @@ public class StatementsInfo {
         transformations = loader.load(transDir, true).stream()
                 .map(t -> (SingleTransformation)t)
                 .collect(Collectors.toList());
+        store = TransformationStore.of(transformations);
 
         transToDiffs = jsonDiffInput.getTransToDiffs();
 
@@ -166,22 +169,17 @@ public class StatementsInfo {
         writer.append("position;isCandidate;isCandidateDelete;nbTrial;nbCompile;nbSosie;nbTest;nbAssert;maxDeep;meanDeep;medianDeep;minDeep\n");
         for(CodeFragment stmt: inputProgram.getCodeFragments()) {
             SourcePosition position = stmt.getCtCodeFragment().getPosition();
-            List<Transformation> transInThisStmt = transformations.stream()
-                    .filter(trans -> include(position, trans.getPosition()))
-                    .collect(Collectors.toList());
+            int[] transInThisStmt = store.recordsInLines(position.getCompilationUnit().getMainType().getQualifiedName(),
+                    position.getLine(), position.getEndLine());
 
             writer.append( stmt.positionString() + ";");
 
             writer.append(stmtInfo.isTransformable(stmt) + ";");
             writer.append(stmtInfo.delete(stmt) + ";");
 
-            writer.append(transInThisStmt.size() + ";");
-            writer.append(transInThisStmt.stream()
-                    .filter(trans -> trans.getStatus() >= -1)
-                    .count() + ";");
-            writer.append(transInThisStmt.stream()
-                    .filter(trans -> trans.getStatus() >= 0)
-                    .count() + ";");
+            writer.append(transInThisStmt.length + ";");
+            writer.append(store.count(transInThisStmt, status -> status >= -1) + ";");
+            writer.append(store.count(transInThisStmt, status -> status >= 0) + ";");
             Collection<String> coveredTests = coveredTests(position);
             writer.append(coveredTests(position).size() + ";");
             writer.append(nbAssertFor(coveredTests) + ";");
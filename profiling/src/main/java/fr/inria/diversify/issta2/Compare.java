@@ -55,7 +55,7 @@ public class Compare extends SinglePointRunner {
 
             try {
                 transformations.add(trans);
-                int status = runTest(tmpDir);
+                int status = runTest(builder, tmpDir, trans);
 
                 trans.setStatus(status);
                 trans.setFailures(builder.getFailedTests());
@@ -68,7 +68,7 @@ public class MultiTransformationGenerator extends AbstractRunner {
         try {
             currentMultiTransformation.apply(dir);
             try {
-                int status = runTest(tmpDir);
+                int status = runTest(builder, tmpDir, currentMultiTransformation);
 
                 currentMultiTransformation.setStatus(status);
                 currentMultiTransformation.setFailures(builder.getFailedTests());
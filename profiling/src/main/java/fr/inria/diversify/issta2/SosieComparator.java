@@ -9,6 +9,7 @@ import fr.inria.diversify.logger.Diff;
 import fr.inria.diversify.transformation.SingleTransformation;
 import fr.inria.diversify.util.FileUtils;
 import fr.inria.diversify.util.Log;
+import fr.inria.diversify.util.Sandbox;
 import spoon.reflect.cu.SourcePosition;
 
 import java.io.File;
@@ -134,13 +135,15 @@ public class SosieComparator {
         return builder.getStatus();
     }
 
+    /**
+     * Provisions dest from src: the source directories, rewritten by the instrumentation, and the files written by
+     * the build are copied, the other files are hard links
+     */
     protected void copyDir(String src, String dest) throws IOException {
-        File dir = new File(dest);
-        if(dir.exists()) {
-            FileUtils.forceDelete(dir);
-        }
-        dir.mkdirs();
-        FileUtils.copyDirectory(new File(src), dir);
+        List<String> writableDirs = new ArrayList<>();
+        writableDirs.add(inputProgram.getRelativeSourceCodeDir());
+        writableDirs.add(inputProgram.getRelativeTestSourceCodeDir());
+        new Sandbox(src, dest, writableDirs).create();
     }
 
     protected void instru(String outputDirectory, SingleTransformation transformation) throws Exception {
@@ -0,0 +1,86 @@
+package fr.inria.diversify.logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The log files of a directory. LogWriter writes one log file per thread, so the files are parsed independently,
+ * in parallel. The readers merge the results of the files by test, in concurrent maps.
+ */
+public class LogDirectory {
+    protected final File directory;
+    protected final String prefix;
+
+    protected int parallelism = Runtime.getRuntime().availableProcessors();
+
+    public interface LogFileParser {
+        void parse(File logFile) throws IOException;
+    }
+
+    /**
+     * @param prefix prefix of the names of the log files
+     */
+    public LogDirectory(String directory, String prefix) {
+        this.directory = new File(directory);
+        this.prefix = prefix;
+    }
+
+    /**
+     * The log files, the largest first so that they do not end the parsing alone
+     */
+    public List<File> getLogFiles() {
+        List<File> logFiles = new ArrayList<>();
+        File[] files = directory.listFiles();
+        if(files != null) {
+            Arrays.stream(files)
+                    .filter(file -> file.isFile() && file.getName().startsWith(prefix))
+                    .sorted(Comparator.comparingLong(File::length).reversed().thenComparing(File::getName))
+                    .forEach(logFiles::add);
+        }
+        return logFiles;
+    }
+
+    /**
+     * Calls parser on each log file, concurrently on a ForkJoinPool of parallelism threads
+     */
+    public void parse(LogFileParser parser) throws IOException {
+        List<File> logFiles = getLogFiles();
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, Math.min(parallelism, logFiles.size())));
+        try {
+            pool.submit(() -> logFiles.parallelStream()
+                    .forEach(file -> {
+                        try {
+                            parser.parse(file);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }))
+                .get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("parsing of " + directory + " interrupted");
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            if(e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+}
@@ -0,0 +1,934 @@
+package fr.inria.diversify.logger;
+
+import fr.inria.diversify.logger.logger.BinaryTraceOutput;
+import fr.inria.diversify.logger.logger.KeyWord;
+import fr.inria.diversify.util.Log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Scanner of the records of a log file written by LogWriter, in the text or in the binary format.
+ *
+ * The file is memory mapped by windows, and the scanner gives the fields of the current record (separated by
+ * KeyWord.simpleSeparator) as offsets in the mapped bytes: a String is built only for the fields asked as String.
+ * The records of a binary log are decoded directly in the bytes and the field offsets of the record, the bytes
+ * of the text format: both formats give the same records. Only the strings (values, text records) and the symbols
+ * with a separator or a newline are scanned byte by byte.
+ *
+ * As with the previous line by line readers, the text before the first record is skipped, the newlines of a record
+ * are removed, and at the end of a text log that has not been closed, an unfinished test end record is still
+ * returned. Trailing empty fields are not counted, as with String.split.
+ *
+ * A binary log is read up to its end, its first truncated record or its first corrupted record: all the complete
+ * records before are returned, a corrupted record is reported with a warning.
+ */
+public class LogScanner implements Closeable {
+    protected static final int WINDOW = 64 << 20;
+    protected static final int DECODED_WINDOW = 4 << 20;
+    protected static final int MAX_WINDOW = Integer.MAX_VALUE - 8;
+
+    protected static final String[] KEY_WORDS = {
+            KeyWord.methodCallObservation, KeyWord.branchObservation, KeyWord.variableObservation,
+            KeyWord.testStartObservation, KeyWord.testEndObservation, KeyWord.catchObservation,
+            KeyWord.throwObservation, KeyWord.logTransformation, KeyWord.assertObservation,
+            KeyWord.getterKeyWord, KeyWord.classKeyWord};
+
+    protected RandomAccessFile file;
+    protected String fileName;
+    protected FileChannel channel;
+    protected long size;
+    protected boolean binary;
+    protected Charset charset;
+
+    //bytes of a text log: a window of the mapped file
+    protected ByteBuffer text;
+    //offset in the file of the first byte of text (text format)
+    protected long textOffset;
+    //text holds the end of the log
+    protected boolean textEnd;
+    //start of the next record in text
+    protected int position;
+    //bytes already scanned for a separator after position
+    protected int scanned;
+    //the first separator has been read
+    protected boolean started;
+    protected boolean end;
+
+    //binary format
+    protected ByteBuffer input;
+    protected long inputOffset;
+    protected List<byte[]> symbols;
+    //symbols without separator, semicolon or newline, copied without being scanned
+    protected BitSet plainSymbols;
+    //the ints are zigzag encoded, since the version 2 of the format
+    protected boolean zigzag;
+    //a record needed more bytes than the file has
+    protected boolean truncated;
+    protected boolean binaryEnd;
+    protected byte[] strings = new byte[256];
+
+    //bytes and fields of the decoded records
+    protected byte[] decoded;
+    protected ByteBuffer decodedBuffer;
+    protected int decodedLength;
+    protected int[] decodedFieldStarts = new int[64];
+    protected int[] decodedFieldEnds = new int[64];
+    protected int decodedFieldCount;
+    //decoded records to return: start, end, first field and end of the fields of each record
+    protected int[] queue = new int[64];
+    protected int queueSize;
+    protected int queueNext;
+    //record being decoded, ended by the next separator
+    protected boolean open;
+    protected int openStart;
+    protected int openFields;
+    protected int openFieldStart;
+    //the record has bytes, newlines included
+    protected boolean openRaw;
+    //consecutive '$' at the end of the record, and a '\r' after them
+    protected int dollars;
+    protected boolean dollarsReturn;
+
+    //current record, in text or in line when it had newlines
+    protected ByteBuffer record;
+    protected ByteBuffer view;
+    protected int recordStart;
+    protected int recordEnd;
+    protected int fieldCount;
+    protected int[] fieldStarts = new int[16];
+    protected int[] fieldEnds = new int[16];
+    protected byte[] line = new byte[256];
+    protected ByteBuffer lineBuffer = ByteBuffer.wrap(line);
+    protected byte[] scratch = new byte[256];
+
+    //strings of the fields read with symbol, by content
+    protected byte[][] symbolKeys = new byte[1024][];
+    protected String[] symbolValues = new String[1024];
+    protected int symbolCount;
+
+    public LogScanner(File file) throws IOException {
+        this.file = new RandomAccessFile(file, "r");
+        fileName = file.getName();
+        channel = this.file.getChannel();
+        size = channel.size();
+
+        byte[] magic = BinaryTraceOutput.MAGIC;
+        if(size >= magic.length) {
+            ByteBuffer header = ByteBuffer.allocate(magic.length);
+            channel.read(header, 0);
+            byte version = header.get(magic.length - 1);
+            binary = Arrays.equals(Arrays.copyOf(header.array(), magic.length - 1), Arrays.copyOf(magic, magic.length - 1))
+                    && (version == magic[magic.length - 1] || version == BinaryTraceOutput.VERSION_UNSIGNED);
+            zigzag = version != BinaryTraceOutput.VERSION_UNSIGNED;
+        }
+        if(binary) {
+            charset = StandardCharsets.UTF_8;
+            symbols = new ArrayList<>();
+            plainSymbols = new BitSet();
+            inputOffset = magic.length;
+            input = ByteBuffer.allocate(0);
+            decoded = new byte[DECODED_WINDOW];
+            decodedBuffer = ByteBuffer.wrap(decoded);
+        } else {
+            //same charset as the FileWriter of TextTraceOutput
+            charset = Charset.defaultCharset();
+            text = ByteBuffer.allocate(0);
+            textOffset = 0;
+        }
+    }
+
+    public boolean isBinary() {
+        return binary;
+    }
+
+    /**
+     * Moves to the next record
+     *
+     * @return false at the end of the log
+     */
+    public boolean next() throws IOException {
+        if(binary) {
+            return nextBinary();
+        }
+        while (!end) {
+            int newLine = findSeparator();
+            if(newLine != -1) {
+                int start = position;
+                int separator = separatorStart(newLine);
+                position = newLine + 1;
+                if(started) {
+                    setRecord(text, start, separator);
+                    return true;
+                }
+                started = true;
+            } else if(!textEnd) {
+                refill();
+            } else {
+                end = true;
+                return started && (lastRecord() || unfinishedTestEnd());
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Index of the newline of the next separator in text, -1 if text has no more separator
+     */
+    protected int findSeparator() {
+        ByteBuffer text = this.text;
+        int limit = text.limit();
+        for(int i = position + scanned; i < limit; i++) {
+            if(text.get(i) == '\n' && separatorStart(i) != -1) {
+                scanned = 0;
+                return i;
+            }
+        }
+        scanned = limit - position;
+        return -1;
+    }
+
+    /**
+     * Start of the separator KeyWord.endLine ending at the newline at index, -1 if the newline does not end a separator
+     */
+    protected int separatorStart(int index) {
+        int i = index - 1;
+        if(i >= position && text.get(i) == '\r') {
+            i--;
+        }
+        if(i - 1 >= position && text.get(i) == '$' && text.get(i - 1) == '$') {
+            return i - 1;
+        }
+        return -1;
+    }
+
+    /**
+     * A record ended by a separator without its newline, at the end of the log
+     */
+    protected boolean lastRecord() {
+        int limit = text.limit();
+        if(limit - position >= 2 && text.get(limit - 1) == '$' && text.get(limit - 2) == '$') {
+            setRecord(text, position, limit - 2);
+            position = limit;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * The rest of an unclosed log is returned as a test end record if it starts as one
+     */
+    protected boolean unfinishedTestEnd() {
+        setRecord(text, position, text.limit());
+        position = text.limit();
+        String testEnd = KeyWord.testEndObservation;
+        if(recordEnd - recordStart < testEnd.length()) {
+            return false;
+        }
+        for(int i = 0; i < testEnd.length(); i++) {
+            if(record.get(recordStart + i) != testEnd.charAt(i)) {
+                return false;
+            }
+        }
+        setRecord(record, recordStart, recordStart + testEnd.length());
+        return true;
+    }
+
+    protected void setRecord(ByteBuffer buffer, int start, int end) {
+        int count = 0;
+        int fieldStart = start;
+        for(int i = start; i < end; i++) {
+            byte b = buffer.get(i);
+            if(b == ';') {
+                count = addField(count, fieldStart, i);
+                fieldStart = i + 1;
+            } else if(b == '\n' || b == '\r') {
+                setRecord(removeNewLines(buffer, start, end), 0, lineBuffer.limit());
+                return;
+            }
+        }
+        count = addField(count, fieldStart, end);
+        //as String.split, without the trailing empty fields
+        if(end != start) {
+            while (count > 0 && fieldStarts[count - 1] == fieldEnds[count - 1]) {
+                count--;
+            }
+        }
+        fieldCount = count;
+
+        if(record != buffer) {
+            record = buffer;
+            view = buffer.duplicate();
+        }
+        recordStart = start;
+        recordEnd = end;
+    }
+
+    protected int addField(int count, int start, int end) {
+        if(count == fieldStarts.length) {
+            fieldStarts = Arrays.copyOf(fieldStarts, count * 2);
+            fieldEnds = Arrays.copyOf(fieldEnds, count * 2);
+        }
+        fieldStarts[count] = start;
+        fieldEnds[count] = end;
+        return count + 1;
+    }
+
+    protected ByteBuffer removeNewLines(ByteBuffer buffer, int start, int end) {
+        if(line.length < end - start) {
+            line = new byte[end - start];
+            lineBuffer = ByteBuffer.wrap(line);
+        }
+        int length = 0;
+        for(int i = start; i < end; i++) {
+            byte b = buffer.get(i);
+            if(b != '\n' && b != '\r') {
+                line[length++] = b;
+            }
+        }
+        lineBuffer.clear();
+        lineBuffer.limit(length);
+        return lineBuffer;
+    }
+
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    public String field(int index) {
+        return string(fieldStart(index), fieldEnds[index]);
+    }
+
+    /**
+     * The field as an int, parsed without building a String
+     */
+    public int intField(int index) {
+        int start = fieldStart(index);
+        int end = fieldEnds[index];
+        boolean negative = start < end && record.get(start) == '-';
+        int i = negative ? start + 1 : start;
+        if(i == end) {
+            throw new NumberFormatException("For input string: \"" + field(index) + "\"");
+        }
+        int value = 0;
+        for(; i < end; i++) {
+            int digit = record.get(i) - '0';
+            if(digit < 0 || digit > 9) {
+                throw new NumberFormatException("For input string: \"" + field(index) + "\"");
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    public boolean fieldEquals(int index, String value) {
+        int start = fieldStart(index);
+        int end = fieldEnds[index];
+        if(end - start != value.length()) {
+            return false;
+        }
+        for(int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if(c > 127) {
+                return field(index).equals(value);
+            }
+            if(record.get(start + i) != c) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The KeyWord constant of the first field, "" if it is not a key word
+     */
+    public String keyWord() {
+        if(fieldCount == 0) {
+            return "";
+        }
+        for(String keyWord : KEY_WORDS) {
+            if(fieldEquals(0, keyWord)) {
+                return keyWord;
+            }
+        }
+        return "";
+    }
+
+    /**
+     * The field as a String shared by all the equal fields read with this method: for the fields that repeat,
+     * as the method and branch ids or the test names, the String is built once
+     */
+    public String symbol(int index) {
+        int start = fieldStart(index);
+        int end = fieldEnds[index];
+        int hash = 1;
+        for(int i = start; i < end; i++) {
+            hash = 31 * hash + record.get(i);
+        }
+        int mask = symbolKeys.length - 1;
+        int slot = mix(hash) & mask;
+        while (symbolKeys[slot] != null) {
+            if(sameBytes(symbolKeys[slot], start, end)) {
+                return symbolValues[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        byte[] key = bytes(start, end);
+        String value = new String(key, charset);
+        symbolKeys[slot] = key;
+        symbolValues[slot] = value;
+        if(++symbolCount * 2 > symbolKeys.length) {
+            growSymbols();
+        }
+        return value;
+    }
+
+    protected int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    protected boolean sameBytes(byte[] key, int start, int end) {
+        if(key.length != end - start) {
+            return false;
+        }
+        for(int i = 0; i < key.length; i++) {
+            if(key[i] != record.get(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    protected void growSymbols() {
+        byte[][] keys = symbolKeys;
+        String[] values = symbolValues;
+        symbolKeys = new byte[keys.length * 2][];
+        symbolValues = new String[keys.length * 2];
+        int mask = symbolKeys.length - 1;
+        for(int i = 0; i < keys.length; i++) {
+            if(keys[i] != null) {
+                int hash = 1;
+                for(byte b : keys[i]) {
+                    hash = 31 * hash + b;
+                }
+                int slot = mix(hash) & mask;
+                while (symbolKeys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                symbolKeys[slot] = keys[i];
+                symbolValues[slot] = values[i];
+            }
+        }
+    }
+
+    /**
+     * The text of the record from the field index to the end of the record, separators included
+     */
+    public String from(int index) {
+        return string(fieldStart(index), recordEnd);
+    }
+
+    /**
+     * The text of the record
+     */
+    @Override
+    public String toString() {
+        return string(recordStart, recordEnd);
+    }
+
+    protected int fieldStart(int index) {
+        if(index >= fieldCount) {
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+        return fieldStarts[index];
+    }
+
+    protected String string(int start, int end) {
+        int length = end - start;
+        if(scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        view.limit(end);
+        view.position(start);
+        view.get(scratch, 0, length);
+        return new String(scratch, 0, length, charset);
+    }
+
+    protected byte[] bytes(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        view.limit(end);
+        view.position(start);
+        view.get(bytes);
+        return bytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        text = null;
+        input = null;
+        record = null;
+        view = null;
+        file.close();
+    }
+
+    /**
+     * Maps the next window of the file, starting at the current record
+     */
+    protected void refill() throws IOException {
+        long offset = textOffset + position;
+        long length = Math.min(size - offset, Math.max(WINDOW, 2L * (text.limit() - position)));
+        if(length > MAX_WINDOW) {
+            throw new IOException("log record too long at " + offset);
+        }
+        text = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        textOffset = offset;
+        textEnd = offset + length == size;
+        position = 0;
+    }
+
+    protected boolean nextBinary() throws IOException {
+        while (queueNext == queueSize) {
+            if(binaryEnd) {
+                return false;
+            }
+            compact();
+            decodeNext();
+        }
+        int q = 4 * queueNext++;
+        int from = queue[q + 2];
+        int count = queue[q + 3] - from;
+        if(fieldStarts.length < count) {
+            fieldStarts = new int[Math.max(count, 2 * fieldStarts.length)];
+            fieldEnds = new int[fieldStarts.length];
+        }
+        System.arraycopy(decodedFieldStarts, from, fieldStarts, 0, count);
+        System.arraycopy(decodedFieldEnds, from, fieldEnds, 0, count);
+        fieldCount = count;
+        if(record != decodedBuffer) {
+            record = decodedBuffer;
+            view = decodedBuffer.duplicate();
+        }
+        recordStart = queue[q];
+        recordEnd = queue[q + 1];
+        return true;
+    }
+
+    /**
+     * Moves the record being decoded to the start of the buffers, once the decoded records have been returned
+     */
+    protected void compact() {
+        int length = decodedLength - openStart;
+        System.arraycopy(decoded, openStart, decoded, 0, length);
+        int fields = decodedFieldCount - openFields;
+        for(int i = 0; i < fields; i++) {
+            decodedFieldStarts[i] = decodedFieldStarts[openFields + i] - openStart;
+            decodedFieldEnds[i] = decodedFieldEnds[openFields + i] - openStart;
+        }
+        openFieldStart -= openStart;
+        decodedLength = length;
+        decodedFieldCount = fields;
+        openStart = 0;
+        openFields = 0;
+        queueSize = 0;
+        queueNext = 0;
+    }
+
+    /**
+     * Decodes the next record of the binary log, the decoded records are restored if it is truncated or corrupted
+     */
+    protected void decodeNext() throws IOException {
+        long recordOffset = inputOffset + input.position();
+        int length = decodedLength;
+        int fields = decodedFieldCount;
+        int queued = queueSize;
+        boolean wasOpen = open;
+        int start = openStart;
+        int from = openFields;
+        int fieldStart = openFieldStart;
+        boolean raw = openRaw;
+        int dollarCount = dollars;
+        boolean dollarReturn = dollarsReturn;
+        if(!decodeRecord()) {
+            decodedLength = length;
+            decodedFieldCount = fields;
+            queueSize = queued;
+            open = wasOpen;
+            openStart = start;
+            openFields = from;
+            openFieldStart = fieldStart;
+            openRaw = raw;
+            dollars = dollarCount;
+            dollarsReturn = dollarReturn;
+            if(!truncated) {
+                Log.warn("corrupted record at {} in {}, the rest of the log is skipped", recordOffset, fileName);
+            }
+            //the last record is complete
+            endRecord();
+            binaryEnd = true;
+        }
+    }
+
+    /**
+     * Decodes a record of the binary log in the bytes of the text format
+     *
+     * @return false at the end of the file, or if the record is corrupted
+     */
+    protected boolean decodeRecord() throws IOException {
+        if(!ensureInput(1)) {
+            return false;
+        }
+        int tag = input.get();
+        switch (tag) {
+            case BinaryTraceOutput.DEFINE: {
+                int symbol = readUnsigned();
+                byte[] string = readBytes();
+                if(symbol < 0 || string == null) {
+                    return false;
+                }
+                while (symbols.size() <= symbol) {
+                    symbols.add(null);
+                }
+                symbols.set(symbol, string);
+                plainSymbols.set(symbol, isPlain(string));
+                return true;
+            }
+            case BinaryTraceOutput.METHOD_CALL:
+                startRecord(KeyWord.methodCallObservation);
+                return appendInt() && appendSeparator() && appendSymbol();
+            case BinaryTraceOutput.PATH:
+                startRecord(KeyWord.branchObservation);
+                return appendSymbol() && appendSeparator() && appendInt() && appendSymbol();
+            case BinaryTraceOutput.ID_METHOD_CALL:
+                startRecord(KeyWord.methodCallObservation);
+                return appendInt() && appendSeparator() && appendInt();
+            case BinaryTraceOutput.ID_PATH: {
+                startRecord(KeyWord.branchObservation);
+                if(!(appendInt() && appendSeparator() && appendInt())) {
+                    return false;
+                }
+                int count = readUnsigned();
+                for(int i = 0; i < count; i++) {
+                    if(!(appendSeparator() && appendInt())) {
+                        return false;
+                    }
+                }
+                return count >= 0;
+            }
+            case BinaryTraceOutput.TEST_START:
+                startRecord(KeyWord.testStartObservation);
+                return appendSymbol();
+            case BinaryTraceOutput.TEST_END:
+                endRecord();
+                startRecord();
+                appendAscii(KeyWord.testEndObservation);
+                return true;
+            case BinaryTraceOutput.VARIABLES: {
+                startRecord(KeyWord.variableObservation);
+                if(!(appendInt() && appendSeparator() && appendSymbol() && appendSeparator())) {
+                    return false;
+                }
+                int count = readUnsigned();
+                for(int i = 0; i < count; i++) {
+                    if(i != 0) {
+                        appendText(KeyWord.separator);
+                    }
+                    if(!appendSymbol()) {
+                        return false;
+                    }
+                    appendText(KeyWord.separator);
+                    if(!appendString()) {
+                        return false;
+                    }
+                }
+                return count >= 0;
+            }
+            case BinaryTraceOutput.CATCH:
+            case BinaryTraceOutput.THROW:
+                startRecord(tag == BinaryTraceOutput.CATCH ? KeyWord.catchObservation : KeyWord.throwObservation);
+                return appendInt() && appendSeparator() && appendSymbol() && appendSeparator()
+                        && appendSymbol() && appendSeparator() && appendSymbol() && appendSeparator() && appendString();
+            case BinaryTraceOutput.TRANSFORMATION:
+                startRecord(KeyWord.logTransformation);
+                return appendInt() && appendSeparator() && appendSymbol();
+            case BinaryTraceOutput.RECORD:
+                endRecord();
+                startRecord();
+                return appendSymbol();
+            case BinaryTraceOutput.TEXT:
+                return appendString();
+            case BinaryTraceOutput.CLOSE:
+                endRecord();
+                //nothing is written after the close
+                binaryEnd = true;
+                return true;
+            default:
+                //unknown tag
+                return false;
+        }
+    }
+
+    /**
+     * Ends the current record and starts a record with a key word and a separator
+     */
+    protected void startRecord(String keyWord) {
+        endRecord();
+        startRecord();
+        appendAscii(keyWord);
+        appendSeparator();
+    }
+
+    protected void startRecord() {
+        open = true;
+        openStart = decodedLength;
+        openFields = decodedFieldCount;
+        openFieldStart = decodedLength;
+        openRaw = false;
+        dollars = 0;
+        dollarsReturn = false;
+    }
+
+    /**
+     * Adds the record being decoded to the records to return, the bytes before the first record are dropped
+     */
+    protected void endRecord() {
+        if(!open) {
+            decodedLength = openStart;
+            decodedFieldCount = openFields;
+            openFieldStart = openStart;
+            return;
+        }
+        open = false;
+        addDecodedField(openFieldStart, decodedLength);
+        //as String.split, without the trailing empty fields
+        if(openRaw) {
+            while (decodedFieldCount > openFields
+                    && decodedFieldStarts[decodedFieldCount - 1] == decodedFieldEnds[decodedFieldCount - 1]) {
+                decodedFieldCount--;
+            }
+        }
+        if(queueSize * 4 == queue.length) {
+            queue = Arrays.copyOf(queue, queue.length * 2);
+        }
+        int q = 4 * queueSize++;
+        queue[q] = openStart;
+        queue[q + 1] = decodedLength;
+        queue[q + 2] = openFields;
+        queue[q + 3] = decodedFieldCount;
+        openStart = decodedLength;
+        openFields = decodedFieldCount;
+        openFieldStart = decodedLength;
+    }
+
+    protected void addDecodedField(int start, int end) {
+        if(decodedFieldCount == decodedFieldStarts.length) {
+            decodedFieldStarts = Arrays.copyOf(decodedFieldStarts, decodedFieldCount * 2);
+            decodedFieldEnds = Arrays.copyOf(decodedFieldEnds, decodedFieldCount * 2);
+        }
+        decodedFieldStarts[decodedFieldCount] = start;
+        decodedFieldEnds[decodedFieldCount] = end;
+        decodedFieldCount++;
+    }
+
+    protected boolean appendSeparator() {
+        reserve(1);
+        decoded[decodedLength++] = ';';
+        addDecodedField(openFieldStart, decodedLength - 1);
+        openFieldStart = decodedLength;
+        openRaw = true;
+        dollars = 0;
+        return true;
+    }
+
+    protected boolean appendInt() throws IOException {
+        long raw = readVarint();
+        if(raw < 0) {
+            return false;
+        }
+        long value = zigzag ? (int) (raw >>> 1) ^ -(int) (raw & 1) : (int) raw;
+        if(value < 0) {
+            appendAscii("-");
+            value = -value;
+        }
+        int digits = 1;
+        for(long i = value; i >= 10; i /= 10) {
+            digits++;
+        }
+        reserve(digits);
+        decodedLength += digits;
+        for(int i = decodedLength - 1; i >= decodedLength - digits; i--) {
+            decoded[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        openRaw = true;
+        dollars = 0;
+        return true;
+    }
+
+    protected boolean appendSymbol() throws IOException {
+        int symbol = readUnsigned();
+        if(symbol < 0 || symbol >= symbols.size() || symbols.get(symbol) == null) {
+            return false;
+        }
+        byte[] bytes = symbols.get(symbol);
+        if(plainSymbols.get(symbol)) {
+            reserve(bytes.length);
+            System.arraycopy(bytes, 0, decoded, decodedLength, bytes.length);
+            decodedLength += bytes.length;
+            if(bytes.length != 0) {
+                openRaw = true;
+                dollars = 0;
+            }
+        } else {
+            appendText(bytes, bytes.length);
+        }
+        return true;
+    }
+
+    protected boolean appendString() throws IOException {
+        int length = readUnsigned();
+        if(length < 0 || !ensureInput(length)) {
+            return false;
+        }
+        if(strings.length < length) {
+            strings = new byte[Math.max(length, 2 * strings.length)];
+        }
+        input.get(strings, 0, length);
+        appendText(strings, length);
+        return true;
+    }
+
+    /**
+     * Appends bytes of the key words, without separator or newline
+     */
+    protected void appendAscii(String ascii) {
+        reserve(ascii.length());
+        for(int i = 0; i < ascii.length(); i++) {
+            decoded[decodedLength++] = (byte) ascii.charAt(i);
+        }
+        if(!ascii.isEmpty()) {
+            openRaw = true;
+            dollars = 0;
+        }
+    }
+
+    protected void appendText(String ascii) {
+        byte[] bytes = ascii.getBytes(StandardCharsets.UTF_8);
+        appendText(bytes, bytes.length);
+    }
+
+    /**
+     * Appends bytes in the text format: the semicolons separate fields, the newlines are removed, and a newline
+     * after two '$' ends the record
+     */
+    protected void appendText(byte[] bytes, int length) {
+        reserve(length);
+        for(int i = 0; i < length; i++) {
+            byte b = bytes[i];
+            if(b == ';') {
+                appendSeparator();
+            } else if(b == '\n') {
+                openRaw = true;
+                if(dollars >= 2) {
+                    decodedLength -= 2;
+                    endRecord();
+                    startRecord();
+                } else {
+                    dollars = 0;
+                }
+                dollarsReturn = false;
+            } else if(b == '\r') {
+                openRaw = true;
+                if(dollars < 2 || dollarsReturn) {
+                    dollars = 0;
+                }
+                dollarsReturn = true;
+            } else {
+                decoded[decodedLength++] = b;
+                openRaw = true;
+                dollars = b == '$' && !dollarsReturn ? dollars + 1 : (b == '$' ? 1 : 0);
+                dollarsReturn = false;
+            }
+        }
+    }
+
+    protected boolean isPlain(byte[] bytes) {
+        for(byte b : bytes) {
+            if(b == ';' || b == '\n' || b == '\r' || b == '$') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    protected void reserve(int length) {
+        if(decodedLength + length > decoded.length) {
+            decoded = Arrays.copyOf(decoded, Math.max(decoded.length * 2, decodedLength + length));
+            decodedBuffer = ByteBuffer.wrap(decoded);
+        }
+    }
+    /**
+     * The 32 bits of a varint, -1 at the end of the file or if the varint is longer than 5 bytes
+     */
+    protected long readVarint() throws IOException {
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            if(shift > 28 || !ensureInput(1)) {
+                return -1;
+            }
+            b = input.get() & 0xFF;
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value & 0xFFFFFFFFL;
+    }
+
+    /**
+     * An unsigned varint (count, length or symbol), -1 at the end of the file or if it is not a positive int
+     */
+    protected int readUnsigned() throws IOException {
+        long value = readVarint();
+        return value > Integer.MAX_VALUE ? -1 : (int) value;
+    }
+
+    protected byte[] readBytes() throws IOException {
+        int length = readUnsigned();
+        if(length < 0 || !ensureInput(length)) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        input.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Maps the next window of the binary file if there are less than length bytes left in input
+     *
+     * @return false if the file has less than length bytes left
+     */
+    protected boolean ensureInput(int length) throws IOException {
+        if(input.remaining() >= length) {
+            return true;
+        }
+        long offset = inputOffset + input.position();
+        if(size - offset < length) {
+            truncated = true;
+            return false;
+        }
+        long windowLength = Math.min(size - offset, Math.max(WINDOW, length));
+        input = channel.map(FileChannel.MapMode.READ_ONLY, offset, windowLength);
+        inputOffset = offset;
+        return true;
+    }
+}
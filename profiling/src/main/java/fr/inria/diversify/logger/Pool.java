@@ -1,33 +1,44 @@
 package fr.inria.diversify.logger;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * User: Simon
  * Date: 05/06/15
  * Time: 12:59
+ *
+ * Thread safe: the log files are parsed in parallel.
  */
 public class Pool {
     private static Map<String,String> StringPool =
-            new HashMap<String,String>(20000);
+            new ConcurrentHashMap<String,String>(20000);
 
     private static Map<Integer,Integer> IntegerPool =
-            new HashMap<Integer,Integer>(20000);
+            new ConcurrentHashMap<Integer,Integer>(20000);
 
     private static Map<Object,Object> ObjectPool =
-            new HashMap<Object,Object>(20000);
+            new ConcurrentHashMap<Object,Object>(20000);
 
     public static String get(String str) {
+        if(str == null) {
+            return null;
+        }
         String canon = StringPool.putIfAbsent(str, str);
         return (canon == null) ? str : canon;
     }
 
     public static Integer get(Integer str) {
+        if(str == null) {
+            return null;
+        }
         Integer canon = IntegerPool.putIfAbsent(str, str);
         return (canon == null) ? str : canon;
     }
     public static Object get(Object str) {
+        if(str == null) {
+            return null;
+        }
         Object canon = ObjectPool.putIfAbsent(str, str);
         return (canon == null) ? str : canon;
     }
@@ -0,0 +1,218 @@
+package fr.inria.diversify.logger.branch;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed bitmap of ints (dense branch ids, test numbers): only the non empty 64 bits words are stored,
+ * with their index, sorted by index. The set operations go through the words of both bitmaps in order,
+ * 64 bits at a time.
+ */
+public class BranchBitmap {
+    protected static final int OR = 0;
+    protected static final int AND = 1;
+    protected static final int AND_NOT = 2;
+    protected static final int XOR = 3;
+
+    protected int[] keys;
+    protected long[] words;
+    protected int size;
+
+    public BranchBitmap() {
+        keys = new int[4];
+        words = new long[4];
+    }
+
+    protected BranchBitmap(int[] keys, long[] words, int size) {
+        this.keys = keys;
+        this.words = words;
+        this.size = size;
+    }
+
+    public void add(int bit) {
+        orWord(bit >>> 6, 1L << bit);
+    }
+
+    /**
+     * Adds the bits of mask, shifted by offset
+     */
+    public void addWord(int offset, long mask) {
+        int shift = offset & 63;
+        orWord(offset >>> 6, mask << shift);
+        if(shift != 0) {
+            orWord((offset >>> 6) + 1, mask >>> (64 - shift));
+        }
+    }
+
+    protected void orWord(int key, long word) {
+        if(word == 0) {
+            return;
+        }
+        int index = find(key);
+        if(index < 0) {
+            index = -index - 1;
+            if(size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                words = Arrays.copyOf(words, size * 2);
+            }
+            System.arraycopy(keys, index, keys, index + 1, size - index);
+            System.arraycopy(words, index, words, index + 1, size - index);
+            keys[index] = key;
+            words[index] = 0;
+            size++;
+        }
+        words[index] |= word;
+    }
+
+    public boolean contains(int bit) {
+        int index = find(bit >>> 6);
+        return index >= 0 && (words[index] & (1L << bit)) != 0;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int cardinality() {
+        int cardinality = 0;
+        for(int i = 0; i < size; i++) {
+            cardinality += Long.bitCount(words[i]);
+        }
+        return cardinality;
+    }
+
+    /**
+     * Adds the bits of other to this bitmap
+     */
+    public void or(BranchBitmap other) {
+        BranchBitmap union = merge(this, other, OR);
+        keys = union.keys;
+        words = union.words;
+        size = union.size;
+    }
+
+    public BranchBitmap union(BranchBitmap other) {
+        return merge(this, other, OR);
+    }
+
+    public BranchBitmap intersection(BranchBitmap other) {
+        return merge(this, other, AND);
+    }
+
+    /**
+     * The bits of this bitmap that are not in other
+     */
+    public BranchBitmap difference(BranchBitmap other) {
+        return merge(this, other, AND_NOT);
+    }
+
+    /**
+     * True if all the bits of other are in this bitmap
+     */
+    public boolean containsAll(BranchBitmap other) {
+        int i = 0;
+        for(int j = 0; j < other.size; j++) {
+            while (i < size && keys[i] < other.keys[j]) {
+                i++;
+            }
+            long word = i < size && keys[i] == other.keys[j] ? words[i] : 0;
+            if((other.words[j] & ~word) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Number of bits set in only one of the bitmaps
+     */
+    public int distance(BranchBitmap other) {
+        return merge(this, other, XOR).cardinality();
+    }
+
+    public void forEach(IntConsumer consumer) {
+        for(int i = 0; i < size; i++) {
+            long word = words[i];
+            while (word != 0) {
+                consumer.accept((keys[i] << 6) + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+    }
+
+    public BranchBitmap copy() {
+        return new BranchBitmap(Arrays.copyOf(keys, Math.max(size, 1)), Arrays.copyOf(words, Math.max(size, 1)), size);
+    }
+
+    protected int find(int key) {
+        //the last word is the most likely, the bits are mostly added in order
+        if(size > 0 && keys[size - 1] == key) {
+            return size - 1;
+        }
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    protected static BranchBitmap merge(BranchBitmap b1, BranchBitmap b2, int operation) {
+        int length = operation == OR || operation == XOR ? b1.size + b2.size : b1.size;
+        int[] keys = new int[Math.max(length, 1)];
+        long[] words = new long[Math.max(length, 1)];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < b1.size || j < b2.size) {
+            int key;
+            long w1 = 0;
+            long w2 = 0;
+            if(j == b2.size || (i < b1.size && b1.keys[i] < b2.keys[j])) {
+                key = b1.keys[i];
+                w1 = b1.words[i++];
+            } else if(i == b1.size || b2.keys[j] < b1.keys[i]) {
+                key = b2.keys[j];
+                w2 = b2.words[j++];
+            } else {
+                key = b1.keys[i];
+                w1 = b1.words[i++];
+                w2 = b2.words[j++];
+            }
+            long word;
+            switch (operation) {
+                case OR: word = w1 | w2; break;
+                case AND: word = w1 & w2; break;
+                case AND_NOT: word = w1 & ~w2; break;
+                default: word = w1 ^ w2;
+            }
+            if(word != 0) {
+                keys[size] = key;
+                words[size] = word;
+                size++;
+            }
+        }
+        return new BranchBitmap(keys, words, size);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(!(o instanceof BranchBitmap)) {
+            return false;
+        }
+        BranchBitmap other = (BranchBitmap) o;
+        if(size != other.size) {
+            return false;
+        }
+        for(int i = 0; i < size; i++) {
+            if(keys[i] != other.keys[i] || words[i] != other.words[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for(int i = 0; i < size; i++) {
+            hash = 31 * (31 * hash + keys[i]) + Long.hashCode(words[i]);
+        }
+        return hash;
+    }
+}
@@ -11,9 +11,11 @@ import fr.inria.diversify.util.Log;
 import fr.inria.diversify.util.LoggerUtils;
 import spoon.reflect.cu.SourcePosition;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -23,9 +25,12 @@ import java.util.stream.Collectors;
  * Time: 14:40
  */
 public class BranchComparator implements Comparator {
-    Map<String, Set<String>> testsByBranch;
+    BranchTestIndex testsByBranch;
     Map<String, SourcePosition> branchPosition;
 
+    //content of the options file of the log before writePropertiesFile, null if there was none
+    byte[] previousOptions;
+
     @Override
     public void init(InputProgram  originalInputProgram, AbstractBuilder originalBuilder) throws Exception {
         Log.debug("init BranchComparator");
@@ -40,25 +45,23 @@ public class BranchComparator implements Comparator {
 
         boolean filterTransformationPosition = filterTransformationPosition(transformation, originalCoverage, sosieCoverage);
 
+        Map<String, TestCoverage> sosieCoverageByTest = sosieCoverage.stream()
+                .collect(Collectors.toMap(TestCoverage::getTestName, tc -> tc));
+
         BranchDiff diff = new BranchDiff();
         for(TestCoverage originalTestCoverage : originalCoverage) {
-            TestCoverage sosieTestCoverage = sosieCoverage.stream()
-                    .filter(tc -> tc.getTestName().equals(originalTestCoverage.getTestName()))
-                    .findFirst()
-                    .get();
+            TestCoverage sosieTestCoverage = sosieCoverageByTest.get(originalTestCoverage.getTestName());
+            if(sosieTestCoverage == null) {
+                throw new NoSuchElementException("no coverage of " + originalTestCoverage.getTestName() + " in " + sosieLogDir);
+            }
 
             if(!originalTestCoverage.containsAllBranch(sosieTestCoverage)) {
-                Set<String> originalBranches =  originalTestCoverage.getCoveredBranch();
-                Set<String> sosieBranches = sosieTestCoverage.getCoveredBranch();
-
-                Set<String> d1 = originalBranches.stream()
-                        .filter(branch -> !sosieBranches.contains(branch))
+                Set<String> d1 = originalTestCoverage.diff(sosieTestCoverage).stream()
                         .filter(branch -> !filterTransformationPosition || !(branch.contains(transformation.classLocationName())
                                 && branch.contains(transformation.methodLocationName())))
                         .collect(Collectors.toSet());
 
-                Set<String> d2 = sosieBranches.stream()
-                        .filter(branch -> !originalBranches.contains(branch))
+                Set<String> d2 = sosieTestCoverage.diff(originalTestCoverage).stream()
                         .filter(branch -> !filterTransformationPosition || !(branch.contains(transformation.classLocationName())
                                 && branch.contains(transformation.methodLocationName())))
                         .collect(Collectors.toSet());
@@ -99,42 +102,54 @@ public class BranchComparator implements Comparator {
     }
 
     protected void initTestByBranch(AbstractBuilder originalBuilder) throws InterruptedException, IOException {
-        testsByBranch = new HashMap<>();
-
         writePropertiesFile(originalBuilder.getDirectory() + "/log");
-        originalBuilder.runGoals(new String[]{"clean", "test"}, false);
-        deletePropertiesFile(originalBuilder.getDirectory() + "/log");
+        try {
+            originalBuilder.runGoals(new String[]{"clean", "test"}, false);
+        } finally {
+            restorePropertiesFile(originalBuilder.getDirectory() + "/log");
+        }
 
-        List<TestCoverage> testCoverage = loadTestCoverage(originalBuilder.getDirectory() + "/log");
+        CoverageReader reader = new CoverageReader(originalBuilder.getDirectory() + "/log");
+        List<TestCoverage> testCoverage = reader.loadTest();
+        testsByBranch = new BranchTestIndex(reader.getBranchIndex());
 
         for(TestCoverage tc : testCoverage) {
-            for(MethodCoverage mth : tc.getCoverage().getMethodCoverages()) {
-                for(BranchCoverage branchCoverage : mth.getCoveredBranchCoverages()) {
-                    String key = mth.getMethodId() + "." + branchCoverage.getId();
-                    if (!testsByBranch.containsKey(key)) {
-                        testsByBranch.put(key, new HashSet<>());
-                    }
-                    String testName = tc.getTestName();
-                    int ind = testName.lastIndexOf(".");
-                    testName = new StringBuilder(testName).replace(ind, ind + 1, "#").toString();
-//                    testName = testName.substring(0, ind);
-                    testsByBranch.get(key).add(testName);
-                }
-            }
+            String testName = tc.getTestName();
+            int ind = testName.lastIndexOf(".");
+            testName = new StringBuilder(testName).replace(ind, ind + 1, "#").toString();
+            testsByBranch.add(testName, tc.getCoveredBranches());
         }
     }
 
+    /**
+     * Adds the options of the coverage run to the options file of the log, the options written by Profiling are kept
+     */
     protected void writePropertiesFile(String fileName) throws IOException {
-        FileWriter writer = new FileWriter(fileName + "/options");
-        writer.write("fullPath=false\n");
-        writer.write("writeVar=false\n");
-        writer.write("logMethodCall=false\n");
-        writer.close();
+        File file = new File(fileName + "/options");
+        Properties options = new Properties();
+        previousOptions = null;
+        if(file.exists()) {
+            previousOptions = Files.readAllBytes(file.toPath());
+            options.load(new ByteArrayInputStream(previousOptions));
+        }
+        options.setProperty("fullPath", "false");
+        options.setProperty("writeVar", "false");
+        options.setProperty("logMethodCall", "false");
+        try (FileWriter writer = new FileWriter(file)) {
+            options.store(writer, null);
+        }
     }
 
-    protected void deletePropertiesFile(String fileName) throws IOException {
+    /**
+     * Restores the options file of the log as it was before writePropertiesFile
+     */
+    protected void restorePropertiesFile(String fileName) throws IOException {
         File file = new File(fileName + "/options");
-        FileUtils.forceDelete(file);
+        if(previousOptions == null) {
+            FileUtils.forceDelete(file);
+        } else {
+            Files.write(file.toPath(), previousOptions);
+        }
     }
 
     protected void intBranch(InputProgram  originalInputProgram) {
@@ -152,11 +167,10 @@ public class BranchComparator implements Comparator {
     }
 
     public Collection<String> selectTest(SourcePosition sourcePosition) {
-        return branchPosition.keySet().stream()
+        List<String> branches = branchPosition.keySet().stream()
                 .filter(branch -> include(branchPosition.get(branch),sourcePosition))
-                .filter(branch -> testsByBranch.containsKey(branch))
-                .flatMap(branch -> testsByBranch.get(branch).stream())
-                .collect(Collectors.toSet());
+                .collect(Collectors.toList());
+        return testsByBranch.getTests(branches);
     }
 
     @Override
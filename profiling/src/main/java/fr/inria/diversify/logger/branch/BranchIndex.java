@@ -0,0 +1,80 @@
+package fr.inria.diversify.logger.branch;
+
+import java.util.*;
+
+/**
+ * Dense ids of the branches of a program. The branches are numbered in the order of the info file, in which
+ * BranchCoverageProcessor declares them method by method at the instrumentation: the branches of a method have
+ * consecutive ids, and a set of branches is a BranchBitmap.
+ *
+ * A branch is named as in the positions of BranchPositionProcessor: methodId.branchId
+ */
+public class BranchIndex {
+    protected List<String> branches;
+    protected Map<String, Integer> ids;
+    //last index found equal to this one
+    protected BranchIndex equalIndex;
+
+    public BranchIndex() {
+        branches = new ArrayList<>();
+        ids = new HashMap<>();
+    }
+
+    /**
+     * Numbers the branches of a method
+     *
+     * @return the id of the first branch
+     */
+    public int addMethod(int methodId, String[] methodBranches) {
+        equalIndex = null;
+        int first = branches.size();
+        for(String branch : methodBranches) {
+            String name = methodId + "." + branch;
+            ids.putIfAbsent(name, branches.size());
+            branches.add(name);
+        }
+        return first;
+    }
+
+    public int size() {
+        return branches.size();
+    }
+
+    /**
+     * @return the id of the branch, -1 if the branch is unknown
+     */
+    public int getId(String branch) {
+        return ids.getOrDefault(branch, -1);
+    }
+
+    public String getBranch(int id) {
+        return branches.get(id);
+    }
+
+    public Set<String> getBranches(BranchBitmap bitmap) {
+        Set<String> set = new HashSet<>();
+        bitmap.forEach(id -> set.add(branches.get(id)));
+        return set;
+    }
+
+    /**
+     * Two indexes are equal if they number the same branches in the same order, the bitmaps built with them
+     * are then comparable
+     */
+    @Override
+    public boolean equals(Object o) {
+        if(this == o || equalIndex == o) {
+            return true;
+        }
+        if(!(o instanceof BranchIndex) || !branches.equals(((BranchIndex) o).branches)) {
+            return false;
+        }
+        equalIndex = (BranchIndex) o;
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return branches.hashCode();
+    }
+}
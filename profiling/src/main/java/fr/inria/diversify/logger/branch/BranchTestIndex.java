@@ -0,0 +1,70 @@
+package fr.inria.diversify.logger.branch;
+
+import java.util.*;
+
+/**
+ * Inverted index of the coverage of the tests: the tests covering a branch (methodId.branchId) are a bitmap of
+ * test numbers, stored at the dense id of the branch in the BranchIndex.
+ */
+public class BranchTestIndex {
+    protected final BranchIndex branchIndex;
+    protected final List<String> tests;
+    protected final BranchBitmap[] testsByBranch;
+
+    public BranchTestIndex(BranchIndex branchIndex) {
+        this.branchIndex = branchIndex;
+        tests = new ArrayList<>();
+        testsByBranch = new BranchBitmap[branchIndex.size()];
+    }
+
+    /**
+     * Adds a test covering the branches of coveredBranches
+     */
+    public void add(String testName, BranchBitmap coveredBranches) {
+        int test = tests.size();
+        tests.add(testName);
+        coveredBranches.forEach(branch -> {
+            if(testsByBranch[branch] == null) {
+                testsByBranch[branch] = new BranchBitmap();
+            }
+            testsByBranch[branch].add(test);
+        });
+    }
+
+    public boolean containsTestFor(String branch) {
+        return testBitmap(branch) != null;
+    }
+
+    /**
+     * @return the tests covering branch, null if no test covers it
+     */
+    public Set<String> getTests(String branch) {
+        BranchBitmap bitmap = testBitmap(branch);
+        return bitmap == null ? null : testNames(bitmap);
+    }
+
+    /**
+     * The tests covering at least one of branches
+     */
+    public Set<String> getTests(Collection<String> branches) {
+        BranchBitmap union = new BranchBitmap();
+        for(String branch : branches) {
+            BranchBitmap bitmap = testBitmap(branch);
+            if(bitmap != null) {
+                union.or(bitmap);
+            }
+        }
+        return testNames(union);
+    }
+
+    protected BranchBitmap testBitmap(String branch) {
+        int id = branchIndex.getId(branch);
+        return id < 0 ? null : testsByBranch[id];
+    }
+
+    protected Set<String> testNames(BranchBitmap bitmap) {
+        Set<String> names = new HashSet<>();
+        bitmap.forEach(test -> names.add(tests.get(test)));
+        return names;
+    }
+}
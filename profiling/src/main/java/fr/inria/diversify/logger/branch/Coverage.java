@@ -93,16 +93,32 @@ public class Coverage {
     }
 
     public void merge(Coverage other) {
+        Map<String, MethodCoverage> byName = new HashMap<>();
+        for(MethodCoverage mc : methodCoverages) {
+            byName.putIfAbsent(mc.getMethodName(), mc);
+        }
         for(MethodCoverage mc : other.methodCoverages) {
-            String name = mc.getMethodName();
-            if(getMethodCoverage(name) != null) {
-                getMethodCoverage(name).merge(mc);
+            MethodCoverage find = byName.get(mc.getMethodName());
+            if(find != null) {
+                find.merge(mc);
             } else {
                 methodCoverages.add(mc);
+                byName.put(mc.getMethodName(), mc);
             }
         }
     }
 
+    /**
+     * The ids in the BranchIndex of the covered branches
+     */
+    public BranchBitmap getCoveredBranches() {
+        BranchBitmap bitmap = new BranchBitmap();
+        for(MethodCoverage mc : methodCoverages) {
+            mc.addCoveredBranches(bitmap);
+        }
+        return bitmap;
+    }
+
 
     public Set<String> getCoverageBranch() {
         Set<String> set = new HashSet<>();
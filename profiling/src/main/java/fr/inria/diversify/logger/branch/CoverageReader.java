@@ -1,5 +1,7 @@
 package fr.inria.diversify.logger.branch;
 
+import fr.inria.diversify.logger.LogDirectory;
+import fr.inria.diversify.logger.LogScanner;
 import fr.inria.diversify.logger.Pool;
 import fr.inria.diversify.logger.logger.KeyWord;
 
@@ -8,6 +10,7 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * User: Simon
@@ -16,7 +19,9 @@ import java.util.*;
  */
 public class CoverageReader {
     protected final String directory;
-
+    protected BranchIndex branchIndex;
+    //names of the branches by global id, for the logs of the instrumentation with int ids, else null
+    protected String[] branchNames;
 
     public CoverageReader(String directory) {
         this.directory = directory;
@@ -35,79 +40,70 @@ public class CoverageReader {
     }
 
     protected List<TestCoverage> loadTestData(Map<Integer, MethodCoverage> idToMethod) throws IOException {
-        File dir = new File(directory);
-        List<TestCoverage> testCoverages = new ArrayList<>();
+        Map<String, TestCoverage> testCoverages = new ConcurrentHashMap<>();
 
-        for(File file : dir.listFiles()) {
-            if(file.isFile() && file.getName().startsWith("log")) {
-                List<TestCoverage> tmp = parseTestCoverageFile(file, idToMethod);
-                testCoverages = mergeTestCoverageList(testCoverages, tmp);
+        new LogDirectory(directory, "log").parse(file -> {
+            for(TestCoverage tc : parseTestCoverageFile(file, copyIdMethod(idToMethod))) {
+                mergeTestCoverage(testCoverages, tc);
             }
-        }
+        });
 
-        return testCoverages;
+        List<TestCoverage> result = new ArrayList<>(testCoverages.values());
+        result.sort(Comparator.comparing(TestCoverage::getTestName));
+        return result;
     }
 
-    protected List<TestCoverage> mergeTestCoverageList(List<TestCoverage> list1, List<TestCoverage> list2) {
-        for(TestCoverage tc : list2) {
-            TestCoverage find = list1.stream()
-                    .filter(t -> t.testName.equals(tc.testName))
-                    .findFirst()
-                    .orElse(null);
-
-            if(find == null) {
-                list1.add(tc);
-            } else {
-                find.merge(find);
-            }
-        }
+    protected void mergeTestCoverage(Map<String, TestCoverage> testCoverages, TestCoverage tc) {
+        testCoverages.merge(tc.testName, tc, (find, other) -> {
+            find.merge(other);
+            return find;
+        });
+    }
 
-        return list1;
+    /**
+     * A copy of idToMethod without the paths, for the parsing of a log file
+     */
+    protected Map<Integer, MethodCoverage> copyIdMethod(Map<Integer, MethodCoverage> idToMethod) {
+        Map<Integer, MethodCoverage> copy = new HashMap<>(idToMethod.size() * 2);
+        for(MethodCoverage mc : idToMethod.values()) {
+            copy.put(mc.getMethodId(), new MethodCoverage(mc));
+        }
+        return copy;
     }
 
     protected List<TestCoverage> parseTestCoverageFile(File file, Map<Integer, MethodCoverage> idToMethod) throws IOException {
-        BufferedReader br = new BufferedReader(new FileReader(file));
         List<TestCoverage> testCoverages = new ArrayList<>();
-        List<String> currentTestCoverage = new LinkedList<>();
         String currentTest = null;
 
-        String line = br.readLine();
-        String logEntry = "";
-        while (line != null) {
-            line = br.readLine();
-            logEntry = logEntry + line;
-            if (logEntry.endsWith("$$")) {
-                logEntry = logEntry.substring(0, logEntry.length() - 2);
-                String[] split = logEntry.split(";");
-                switch (split[0]) {
+        try (LogScanner log = new LogScanner(file)) {
+            while (log.next()) {
+                switch (log.keyWord()) {
                     case KeyWord.testStartObservation:
-                        currentTest = split[1];
-                        currentTestCoverage = new LinkedList<>();
+                        currentTest = log.symbol(1);
                         resetIdMethod(idToMethod);
                         break;
                     case KeyWord.testEndObservation:
                         if (currentTest != null) {
-                            parseCoverage(currentTestCoverage, idToMethod);
-                            testCoverages.add(new TestCoverage(currentTest, idToMethod));
+                            testCoverages.add(new TestCoverage(currentTest, idToMethod, branchIndex));
                             currentTest = null;
                             resetIdMethod(idToMethod);
                         }
                         break;
                     case KeyWord.branchObservation:
-                        currentTestCoverage.add(logEntry);
+                        //the paths are added to the methods reset by the test start
+                        if (currentTest != null) {
+                            parseCoverageLine(log, idToMethod);
+                        }
                         break;
                     default:
                         break;
                 }
-                logEntry = "";
-            }
-            if(logEntry.startsWith(KeyWord.testEndObservation) && currentTest != null) {
-                parseCoverage(currentTestCoverage, idToMethod);
-                testCoverages.add(new TestCoverage(currentTest, idToMethod));
-                currentTest = null;
-                resetIdMethod(idToMethod);
             }
         }
+        //the log of a thread still running at the end of its test has no test end record
+        if (currentTest != null) {
+            testCoverages.add(new TestCoverage(currentTest, idToMethod, branchIndex));
+        }
 
         return testCoverages;
     }
@@ -116,56 +112,46 @@ public class CoverageReader {
         for(Integer key : idToMethod.keySet()) {
             MethodCoverage mc = idToMethod.get(key);
             if(mc.allPath.size() != 0) {
-                idToMethod.put(key, new MethodCoverage(Pool.get(key), mc.getMethodName(), mc.getAllBranchId()));
+                idToMethod.put(key, new MethodCoverage(mc));
             }
         }
     }
 
     public void loadData(Map<Integer, MethodCoverage> idToMethod) throws IOException {
-        File dir = new File(directory);
-
-        for(File file : dir.listFiles()) {
-            if(file.isFile() && file.getName().startsWith("log")) {
-                parseCoverageFile(file, idToMethod);
+        new LogDirectory(directory, "log").parse(file -> {
+            Map<Integer, MethodCoverage> fileCoverage = copyIdMethod(idToMethod);
+            parseCoverageFile(file, fileCoverage);
+
+            for(MethodCoverage mc : fileCoverage.values()) {
+                if(!mc.allPath.isEmpty()) {
+                    MethodCoverage methodCoverage = idToMethod.get(mc.getMethodId());
+                    synchronized (methodCoverage) {
+                        methodCoverage.merge(mc);
+                    }
+                }
             }
-        }
-    }
-
-    protected void parseCoverage(List<String> data, Map<Integer, MethodCoverage> idToMethod)  {
-
-        for(String line : data) {
-            parseCoverageLine(line, idToMethod);
-        }
+        });
     }
 
     protected void parseCoverageFile(File file, Map<Integer, MethodCoverage> idToMethod) throws IOException {
-        BufferedReader br = new BufferedReader(new FileReader(file));
-
-        String line = br.readLine();
-        String logEntry = "";
-        while (line != null) {
-            line = br.readLine();
-            logEntry = logEntry + line;
-            if (logEntry.endsWith("$$")) {
-                logEntry = logEntry.substring(0, logEntry.length() - 2);
-                if(logEntry.startsWith("P;")) {
-                    parseCoverageLine(logEntry, idToMethod);
+        try (LogScanner log = new LogScanner(file)) {
+            while (log.next()) {
+                if(log.fieldEquals(0, KeyWord.branchObservation)) {
+                    parseCoverageLine(log, idToMethod);
                 }
-                logEntry = "";
             }
         }
     }
 
-    protected void parseCoverageLine(String line, Map<Integer, MethodCoverage> idToMethod) {
-        String[] split = line.split(";");
-        if(split.length != 1) {
-            int methodId = Integer.parseInt(split[1]);
-            int methodDeep = Pool.get(Integer.parseInt(split[2]));
+    protected void parseCoverageLine(LogScanner log, Map<Integer, MethodCoverage> idToMethod) {
+        if(log.fieldCount() != 1) {
+            int methodId = log.intField(1);
+            int methodDeep = Pool.get(log.intField(2));
             MethodCoverage methodCoverage = idToMethod.get(methodId);
 
-            String[] path = new String[ split.length - 3];
-            for(int i = 3; i < split.length; i++) {
-                path[i - 3] = Pool.get(split[i]);
+            String[] path = new String[log.fieldCount() - 3];
+            for(int i = 3; i < log.fieldCount(); i++) {
+                path[i - 3] = branchNames == null ? Pool.get(log.symbol(i)) : branchNames[log.intField(i)];
             }
 
              methodCoverage.addPath(methodDeep, path);
@@ -174,24 +160,40 @@ public class CoverageReader {
 
     public Map<Integer, MethodCoverage> loadInfo() throws IOException {
         Map<Integer, MethodCoverage> idToMethod = new HashMap<>();
+        branchIndex = new BranchIndex();
+        List<String> names = new ArrayList<>();
         File infoFile = new File(directory + "/info");
         BufferedReader br = new BufferedReader(new FileReader(infoFile));
 
         String line = br.readLine();
         while (line != null) {
-            if(!line.startsWith("id")) {
+            if(line.startsWith("branch;")) {
+                //branch;globalId;methodId;branch
+                String[] split = line.split(";");
+                names.add(Pool.get(split[3]));
+            } else if(!line.startsWith("id")) {
                 String[] split = line.split(";");
                 Integer methodId = Integer.parseInt(split[0]);
                 String[] branches = new String[split.length - 2];
                 for(int i = 2; i < split.length; i++) {
                     branches[i - 2] = Pool.get(split[i]);
                 }
-                MethodCoverage methodCoverage = new MethodCoverage(methodId, split[1], branches);
+                int firstBranch = branchIndex.addMethod(methodId, branches);
+                MethodCoverage methodCoverage = new MethodCoverage(methodId, split[1], branches, firstBranch);
                 idToMethod.put(methodId, methodCoverage);
             }
             line = br.readLine();
         }
 
+        br.close();
+        branchNames = names.isEmpty() ? null : names.toArray(new String[names.size()]);
         return idToMethod;
     }
+
+    /**
+     * The dense ids of the branches of the info file, built by loadInfo
+     */
+    public BranchIndex getBranchIndex() {
+        return branchIndex;
+    }
 }
@@ -17,21 +17,57 @@ public class MethodCoverage {
     Set<List<String>> allPath;
     Set<BranchCoverage> coveredBranchCoverages;
 
+    //branches of the method, in the order of their ids in the BranchIndex
+    final String[] branches;
+    //position of each branch in branches, shared by the copies of the method coverage
+    final Map<String, Integer> branchPositions;
+    //id in the BranchIndex of the first branch, -1 if the method is not indexed
+    final int firstBranch;
+    //covered branches, by position
+    long[] covered;
+    BranchCoverage[] branchCoverageByPosition;
+
     public MethodCoverage(Integer methodId, String methodName, String[] allBranch) {
-        this.methodId = methodId;
-        this.allBranch = new HashSet<>();
-        Collections.addAll(this.allBranch, allBranch);
-        this.methodName = methodName;
-        allPath = new HashSet<>();
-        coveredBranchCoverages = new HashSet<>();
+        this(methodId, methodName, allBranch, -1);
     }
 
     public MethodCoverage(Integer methodId, String methodName, Set<String> allBranch) {
+        this(methodId, methodName, allBranch.toArray(new String[allBranch.size()]), -1);
+    }
+
+    /**
+     * @param firstBranch id of the first branch of allBranch in the BranchIndex of the program
+     */
+    public MethodCoverage(Integer methodId, String methodName, String[] allBranch, int firstBranch) {
         this.methodId = methodId;
         this.methodName = methodName;
-        this.allBranch = new HashSet<>(allBranch);
+        this.firstBranch = firstBranch;
+        branches = allBranch;
+        branchPositions = new LinkedHashMap<>();
+        for(int i = 0; i < allBranch.length; i++) {
+            branchPositions.putIfAbsent(allBranch[i], i);
+        }
+        this.allBranch = Collections.unmodifiableSet(branchPositions.keySet());
+        allPath = new HashSet<>();
+        coveredBranchCoverages = new HashSet<>();
+        covered = new long[(allBranch.length + 63) / 64];
+        branchCoverageByPosition = new BranchCoverage[allBranch.length];
+    }
+
+    /**
+     * A method coverage of the same method, without coverage
+     */
+    public MethodCoverage(MethodCoverage method) {
+        methodId = method.methodId;
+        methodName = method.methodName;
+        firstBranch = method.firstBranch;
+        branches = method.branches;
+        branchPositions = method.branchPositions;
+        allBranch = method.allBranch;
         allPath = new HashSet<>();
         coveredBranchCoverages = new HashSet<>();
+        covered = new long[method.covered.length];
+        branchCoverageByPosition = new BranchCoverage[branches.length];
     }
 
     public void addPath(int methodDeep, String[] path) {
@@ -48,22 +84,37 @@ public class MethodCoverage {
         allPath.add(compressPath);
 
         for(String id : compressPath) {
-            BranchCoverage existing = null;
-            for(BranchCoverage branchCoverage : coveredBranchCoverages) {
-                if(branchCoverage.getId().equals(id)) {
-                    existing = branchCoverage;
-                    break;
-                }
-            }
+            BranchCoverage existing = findBranchCoverage(id);
             if(existing == null) {
-                existing = new BranchCoverage(id,methodDeep);
-                coveredBranchCoverages.add(existing);
+                addBranchCoverage(new BranchCoverage(id,methodDeep));
             } else {
                 existing.addDeep(methodDeep);
             }
         }
     }
 
+    protected BranchCoverage findBranchCoverage(String id) {
+        Integer position = branchPositions.get(id);
+        if(position != null) {
+            return branchCoverageByPosition[position];
+        }
+        for(BranchCoverage branchCoverage : coveredBranchCoverages) {
+            if(branchCoverage.getId().equals(id)) {
+                return branchCoverage;
+            }
+        }
+        return null;
+    }
+
+    protected void addBranchCoverage(BranchCoverage branchCoverage) {
+        coveredBranchCoverages.add(branchCoverage);
+        Integer position = branchPositions.get(branchCoverage.getId());
+        if(position != null) {
+            branchCoverageByPosition[position] = branchCoverage;
+            covered[position >> 6] |= 1L << position;
+        }
+    }
+
     public double coverage() {
         return ((double) coveredBranchCoverages.size()) / ((double) allBranch.size());
     }
@@ -107,9 +158,28 @@ public class MethodCoverage {
     }
 
     public int distance(MethodCoverage other) {
+        if(branches != other.branches) {
+            return distanceByName(other);
+        }
+        int d = 0;
+        for(int i = 0; i < covered.length; i++) {
+            long diff = covered[i] ^ other.covered[i];
+            d += Long.bitCount(diff);
+            while (diff != 0) {
+                String branch = branches[i * 64 + Long.numberOfTrailingZeros(diff)];
+                Log.info("{} {} {}, this {}, other {}",getMethodId(), getMethodName(), branch, getNotCoveredBranchId() ,other.getNotCoveredBranchId());
+                diff &= diff - 1;
+            }
+        }
+        return d;
+    }
+
+    protected int distanceByName(MethodCoverage other) {
+        Set<String> coveredBranchId = getCoveredBranchId();
+        Set<String> otherCoveredBranchId = other.getCoveredBranchId();
         int d = 0;
         for(String branch : allBranch) {
-            if(getCoveredBranchId().contains(branch) != other.getCoveredBranchId().contains(branch)) {
+            if(coveredBranchId.contains(branch) != otherCoveredBranchId.contains(branch)) {
                 d++;
                 Log.info("{} {} {}, this {}, other {}",getMethodId(), getMethodName(), branch, getNotCoveredBranchId() ,other.getNotCoveredBranchId());
             }
@@ -117,6 +187,22 @@ public class MethodCoverage {
         return d;
     }
 
+    /**
+     * Adds the ids of the covered branches in bitmap
+     */
+    public void addCoveredBranches(BranchBitmap bitmap) {
+        if(firstBranch < 0) {
+            return;
+        }
+        for(int i = 0; i < covered.length; i++) {
+            bitmap.addWord(firstBranch + i * 64, covered[i]);
+        }
+    }
+
+    public int getFirstBranch() {
+        return firstBranch;
+    }
+
     public int nbDiffPath(MethodCoverage other) {
         int count = 0;
 
@@ -138,15 +224,9 @@ public class MethodCoverage {
     public void merge(MethodCoverage other) {
         this.allPath.addAll(other.allPath);
         for(BranchCoverage otherBranchCoverage : other.coveredBranchCoverages) {
-            BranchCoverage existing = null;
-            for(BranchCoverage branchCoverage : coveredBranchCoverages) {
-                if(branchCoverage.getId().equals(otherBranchCoverage.getId())) {
-                    existing = branchCoverage;
-                    break;
-                }
-            }
+            BranchCoverage existing = findBranchCoverage(otherBranchCoverage.getId());
             if(existing == null) {
-                coveredBranchCoverages.add(otherBranchCoverage);
+                addBranchCoverage(otherBranchCoverage);
             } else {
                 existing.addAllDeep(otherBranchCoverage.getDeeps());
             }
@@ -162,9 +242,6 @@ public class MethodCoverage {
     }
 
     public BranchCoverage getBranch(String branchId) {
-        return coveredBranchCoverages.stream()
-                .filter(branch -> branch.getId().equals(branchId))
-                .findFirst()
-                .orElse(null);
+        return findBranchCoverage(branchId);
     }
 }
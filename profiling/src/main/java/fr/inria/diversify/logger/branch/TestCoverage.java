@@ -17,10 +17,18 @@ import java.util.stream.Collectors;
 public class TestCoverage {
     String testName;
     Coverage coverage;
+    //index of the ids of coveredBranches, null if the coverage is not indexed
+    BranchIndex index;
+    BranchBitmap coveredBranches;
 
 
     public TestCoverage(String testName, Map<Integer, MethodCoverage> idToMethod) {
+        this(testName, idToMethod, null);
+    }
+
+    public TestCoverage(String testName, Map<Integer, MethodCoverage> idToMethod, BranchIndex index) {
         this.testName = testName;
+        this.index = index;
         List<MethodCoverage> list = new ArrayList<>();
         for (Integer id : idToMethod.keySet()) {
             MethodCoverage mc = idToMethod.get(id);
@@ -29,9 +37,22 @@ public class TestCoverage {
             }
         }
         coverage = new Coverage(list);
+        if(index != null) {
+            coveredBranches = coverage.getCoveredBranches();
+        }
+    }
+
+    protected boolean sameIndex(TestCoverage other) {
+        return index != null && index.equals(other.index);
     }
 
+    /**
+     * The covered branches of this test that are not covered by other
+     */
     public Set<String> diff(TestCoverage other) {
+        if(sameIndex(other)) {
+            return names(coveredBranches.difference(other.coveredBranches));
+        }
         Set<String> branchs = coverage.getCoverageBranch();
         Set<String> otherBranchs = other.coverage.getCoverageBranch();
 
@@ -47,9 +68,18 @@ public class TestCoverage {
 
     public void merge(TestCoverage other) {
         coverage.merge(other.coverage);
+        if(sameIndex(other)) {
+            coveredBranches.or(other.coveredBranches);
+        } else {
+            index = null;
+            coveredBranches = null;
+        }
     }
 
     public boolean containsAllBranch(TestCoverage other) {
+        if(sameIndex(other)) {
+            return coveredBranches.containsAll(other.coveredBranches);
+        }
         return coverage.getCoverageBranch().containsAll(other.coverage.getCoverageBranch());
     }
 
@@ -130,4 +160,30 @@ public class TestCoverage {
     public Set<String> getCoveredBranch() {
         return coverage.getCoverageBranch();
     }
+
+    /**
+     * The ids of the covered branches in the BranchIndex of the coverage, null if the coverage is not indexed
+     */
+    public BranchBitmap getCoveredBranches() {
+        return coveredBranches;
+    }
+
+    public BranchIndex getBranchIndex() {
+        return index;
+    }
+
+    //names methodName.branch of the branches of bitmap, as getCoverageBranch
+    protected Set<String> names(BranchBitmap bitmap) {
+        Set<String> names = new HashSet<>();
+        Map<Integer, String> methodNames = new HashMap<>();
+        for(MethodCoverage mc : coverage.getMethodCoverages()) {
+            methodNames.put(mc.getMethodId(), mc.getMethodName());
+        }
+        bitmap.forEach(id -> {
+            String branch = index.getBranch(id);
+            int dot = branch.indexOf('.');
+            names.add(methodNames.get(Integer.parseInt(branch.substring(0, dot))) + branch.substring(dot));
+        });
+        return names;
+    }
 }
@@ -1,6 +1,8 @@
 package fr.inria.diversify.logger.exception;
 
 
+import fr.inria.diversify.logger.LogDirectory;
+import fr.inria.diversify.logger.LogScanner;
 import fr.inria.diversify.logger.logger.KeyWord;
 
 import java.io.BufferedReader;
@@ -8,6 +10,7 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * User: Simon
@@ -24,40 +27,27 @@ public class ExceptionReader {
 
     public ExceptionReader(String directory) {
         this.directory = directory;
-        exceptionPositionByTest = new HashMap<>();
-        methodCallByTest = new HashMap<>();
+        exceptionPositionByTest = new ConcurrentHashMap<>();
+        methodCallByTest = new ConcurrentHashMap<>();
 
     }
 
     protected Collection<ExceptionPosition> load() throws IOException {
         loadInfo();
-        File dir = new File(directory);
+        new LogDirectory(directory, "log").parse(this::parseFile);
 
-        for(File file : dir.listFiles()) {
-            if(file.isFile() && file.getName().startsWith("log")) {
-                parseFile(file);
-            }
-        }
         return exceptionPositionByTest.values();
     }
 
     protected void parseFile(File file) throws IOException {
-        BufferedReader br = new BufferedReader(new FileReader(file));
         List<String> exceptions = new LinkedList();
         String currentTest = null;
 
-
-        String line = br.readLine();
-        String logEntry = "";
-        while (line != null) {
-            line = br.readLine();
-            logEntry = logEntry + line;
-            if (logEntry.endsWith("$$")) {
-                logEntry = logEntry.substring(0, logEntry.length() - 2);
-                String[] split = logEntry.split(";");
-                switch (split[0]) {
+        try (LogScanner log = new LogScanner(file)) {
+            while (log.next()) {
+                switch (log.keyWord()) {
                     case KeyWord.testStartObservation:
-                        currentTest = split[1];
+                        currentTest = log.symbol(1);
                         break;
                     case KeyWord.testEndObservation:
                         if (currentTest != null) {
@@ -67,35 +57,31 @@ public class ExceptionReader {
                         exceptions.clear();
                         break;
                     case KeyWord.catchObservation:
-                        exceptions.add(logEntry);
+                        exceptions.add(log.toString());
                         break;
                     case KeyWord.throwObservation:
-                        exceptions.add(logEntry);
+                        exceptions.add(log.toString());
                         break;
                     case KeyWord.methodCallObservation:
                         if(currentTest != null) {
-                            addMethodCall(currentTest, logEntry);
+                            addMethodCall(currentTest, log);
                         }
                         break;
                     default:
                         break;
                 }
-                logEntry = "";
-            }
-            if (logEntry.startsWith(KeyWord.testEndObservation) && currentTest != null) {
-                buildExceptionPosition(currentTest, exceptions);
             }
         }
+        //the log of a thread still running at the end of its test has no test end record
+        if (currentTest != null) {
+            buildExceptionPosition(currentTest, exceptions);
+        }
     }
 
-    protected void addMethodCall(String currentTest, String logEntry) {
-        String[] split = logEntry.split(KeyWord.simpleSeparator);
-        String methodName = idToMethod.get(split[2]);
+    protected void addMethodCall(String currentTest, LogScanner log) {
+        String methodName = idToMethod.get(log.symbol(2));
 
-        if(!methodCallByTest.containsKey(currentTest)) {
-            methodCallByTest.put(currentTest, new HashSet<>());
-        }
-        methodCallByTest.get(currentTest).add(methodName);
+        methodCallByTest.computeIfAbsent(currentTest, test -> Collections.synchronizedSet(new HashSet<>())).add(methodName);
     }
 
     protected void buildExceptionPosition(String currentTest, List<String> exceptions) {
@@ -108,19 +94,19 @@ public class ExceptionReader {
             String exceptionType = split[4];
             String exceptionValue = split[5];
 
-            if(split[0].equals(KeyWord.catchObservation)) {
-                exceptionPosition.addCatch(methodName, localPosition, exceptionType, exceptionValue);
-            } else {
-                exceptionPosition.addThrow(methodName, localPosition, exceptionType, exceptionValue);
+            //a test can be run by several threads
+            synchronized (exceptionPosition) {
+                if(split[0].equals(KeyWord.catchObservation)) {
+                    exceptionPosition.addCatch(methodName, localPosition, exceptionType, exceptionValue);
+                } else {
+                    exceptionPosition.addThrow(methodName, localPosition, exceptionType, exceptionValue);
+                }
             }
         }
     }
 
     protected ExceptionPosition getOrBuildExceptionPosition(String name) {
-        if (!exceptionPositionByTest.containsKey(name)) {
-            exceptionPositionByTest.put(name, new ExceptionPosition(name));
-        }
-        return exceptionPositionByTest.get(name);
+        return exceptionPositionByTest.computeIfAbsent(name, ExceptionPosition::new);
     }
 
     protected void loadInfo() throws IOException {
@@ -1,6 +1,8 @@
 package fr.inria.diversify.logger.graph;
 
 
+import fr.inria.diversify.logger.LogDirectory;
+import fr.inria.diversify.logger.LogScanner;
 import fr.inria.diversify.logger.logger.KeyWord;
 
 import java.io.BufferedReader;
@@ -8,6 +10,7 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * User: Simon
@@ -21,39 +24,26 @@ public class GraphReader {
 
     public GraphReader(String directory) {
         this.directory = directory;
-        graphByTest= new HashMap<>();
+        graphByTest = new ConcurrentHashMap<>();
 
     }
 
     protected Collection<Graph> load() throws IOException {
         loadInfo();
-        File dir = new File(directory);
+        new LogDirectory(directory, "log").parse(this::parseFile);
 
-        for(File file : dir.listFiles()) {
-            if(file.isFile() && file.getName().startsWith("log")) {
-                parseFile(file);
-            }
-        }
         return graphByTest.values();
     }
 
     protected void parseFile(File file) throws IOException {
-        BufferedReader br = new BufferedReader(new FileReader(file));
         List<String> methodsCall = new LinkedList();
         String currentTest = null;
 
-
-        String line = br.readLine();
-        String logEntry = "";
-        while (line != null) {
-            line = br.readLine();
-            logEntry = logEntry + line;
-            if (logEntry.endsWith("$$")) {
-                logEntry = logEntry.substring(0, logEntry.length() - 2);
-                String[] split = logEntry.split(";");
-                switch (split[0]) {
+        try (LogScanner log = new LogScanner(file)) {
+            while (log.next()) {
+                switch (log.keyWord()) {
                     case KeyWord.testStartObservation:
-                        currentTest = split[1];
+                        currentTest = log.symbol(1);
                         break;
                     case KeyWord.testEndObservation:
                         if (currentTest != null) {
@@ -63,17 +53,17 @@ public class GraphReader {
                         methodsCall.clear();
                         break;
                     case KeyWord.methodCallObservation:
-                        methodsCall.add(logEntry);
+                        methodsCall.add(log.toString());
                         break;
                     default:
                         break;
                 }
-                logEntry = "";
-            }
-            if (logEntry.startsWith(KeyWord.testEndObservation) && currentTest != null) {
-                buildGraph(currentTest, methodsCall);
             }
         }
+        //the log of a thread still running at the end of its test has no test end record
+        if (currentTest != null) {
+            buildGraph(currentTest, methodsCall);
+        }
 
     }
 
@@ -81,28 +71,28 @@ public class GraphReader {
         Graph graph = getOrBuildGraph(currentTest);
         Stack<String> stack = new Stack<>();
 
-        for(String methodCall : methodsCall) {
-            String[] split = methodCall.split(KeyWord.simpleSeparator);
-            int deep = Integer.parseInt(split[1]);
-            String name = idToMethod.get(split[2]);
+        //a test can be run by several threads
+        synchronized (graph) {
+            for(String methodCall : methodsCall) {
+                String[] split = methodCall.split(KeyWord.simpleSeparator);
+                int deep = Integer.parseInt(split[1]);
+                String name = idToMethod.get(split[2]);
 
-             while(stack.size() >= deep) {
-                stack.pop();
-            }
+                 while(stack.size() >= deep) {
+                    stack.pop();
+                }
 
-            if(stack.isEmpty()) {
-                graph.addNode(name);
-            } else {
-                graph.addCall(stack.peek(), name);
+                if(stack.isEmpty()) {
+                    graph.addNode(name);
+                } else {
+                    graph.addCall(stack.peek(), name);
+                }
+                stack.push(name);
             }
-            stack.push(name);
         }
     }
     protected Graph getOrBuildGraph(String name) {
-        if (!graphByTest.containsKey(name)) {
-            graphByTest.put(name, new Graph(name));
-        }
-        return graphByTest.get(name);
+        return graphByTest.computeIfAbsent(name, Graph::new);
     }
 
     protected void loadInfo() throws IOException {
@@ -0,0 +1,367 @@
+package fr.inria.diversify.logger.logger;
+
+import java.io.IOException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * TraceOutput writing its records from a flusher thread: the thread of the LogWriter only copies the records in a
+ * bounded ring buffer (one producer, one consumer, without lock), and the flusher encodes them with the output of
+ * the log file. When the ring buffer is full, the overflow policy:
+ *
+ * BLOCK: the thread of the LogWriter waits for the flusher
+ * DROP: the record is dropped and counted, except the test start and end records that always wait
+ *
+ * The memory of the buffer is bounded: a slow disk slows the test down (BLOCK) or loses records (DROP).
+ *
+ * close writes the records left before closing the output, ShutdownHookLog closes the outputs through Logger.close.
+ */
+public class AsyncTraceOutput implements TraceOutput {
+    public static final int BLOCK = 0;
+    public static final int DROP = 1;
+
+    protected static final int METHOD_CALL = 0;
+    protected static final int ID_METHOD_CALL = 1;
+    protected static final int PATH = 2;
+    protected static final int ID_PATH = 3;
+    protected static final int TEST_START = 4;
+    protected static final int RAW_TEST_START = 5;
+    protected static final int TEST_END = 6;
+    protected static final int VARIABLES = 7;
+    protected static final int EXCEPTION = 8;
+    protected static final int TRANSFORMATION = 9;
+    protected static final int TEXT = 10;
+
+    private static Flusher flusher;
+
+    protected final TraceOutput output;
+    protected final int overflow;
+    protected final Record[] ring;
+    protected final int mask;
+    //next record to write, written by the consumer
+    protected volatile long head = 0;
+    //next free record, written by the producer
+    protected volatile long tail = 0;
+    protected volatile boolean closed = false;
+    protected long dropped = 0;
+    protected boolean error = false;
+
+    /**
+     * A record of the log, the fields used depend on its type
+     */
+    protected static class Record {
+        int type;
+        int deep;
+        int id;
+        String methodId;
+        String string;
+        String keyWord;
+        String position;
+        String exceptionType;
+        String[] names;
+        String[] values;
+        int count;
+        int[] ints = new int[0];
+    }
+
+    /**
+     * @param size size of the ring buffer, rounded up to a power of two
+     */
+    public AsyncTraceOutput(TraceOutput output, int size, int overflow) {
+        this.output = output;
+        this.overflow = overflow;
+        int capacity = Integer.highestOneBit(Math.max(size, 2) - 1) << 1;
+        ring = new Record[capacity];
+        for (int i = 0; i < capacity; i++) {
+            ring[i] = new Record();
+        }
+        mask = capacity - 1;
+        getFlusher().add(this);
+    }
+
+    /**
+     * The policy of the overflow option, BLOCK if it is not drop
+     */
+    public static int overflowPolicy(String name) {
+        if (name.equals("drop")) {
+            return DROP;
+        }
+        return BLOCK;
+    }
+
+    public void methodCall(int deep, String methodId) {
+        Record record = next(METHOD_CALL, false);
+        if (record != null) {
+            record.deep = deep;
+            record.methodId = methodId;
+            publish(record);
+        }
+    }
+
+    public void methodCall(int deep, int methodId) {
+        Record record = next(ID_METHOD_CALL, false);
+        if (record != null) {
+            record.deep = deep;
+            record.id = methodId;
+            publish(record);
+        }
+    }
+
+    public void path(String methodId, int deep, String path) {
+        Record record = next(PATH, false);
+        if (record != null) {
+            record.methodId = methodId;
+            record.deep = deep;
+            record.string = path;
+            publish(record);
+        }
+    }
+
+    public void path(int methodId, int deep, int[] branches, int from, int to) {
+        Record record = next(ID_PATH, false);
+        if (record != null) {
+            record.id = methodId;
+            record.deep = deep;
+            if (record.ints.length < to - from) {
+                record.ints = new int[Math.max(to - from, 2 * record.ints.length)];
+            }
+            System.arraycopy(branches, from, record.ints, 0, to - from);
+            record.count = to - from;
+            publish(record);
+        }
+    }
+
+    public void testStart(String testName) {
+        Record record = next(TEST_START, true);
+        if (record != null) {
+            record.string = testName;
+            publish(record);
+        }
+    }
+
+    public void rawTestStart(String testName) {
+        Record record = next(RAW_TEST_START, true);
+        if (record != null) {
+            record.string = testName;
+            publish(record);
+        }
+    }
+
+    public void testEnd() {
+        Record record = next(TEST_END, true);
+        if (record != null) {
+            publish(record);
+        }
+    }
+
+    public void variables(int deep, String methodId, String[] names, String[] values, int count) {
+        Record record = next(VARIABLES, false);
+        if (record != null) {
+            record.deep = deep;
+            record.methodId = methodId;
+            //the arrays are built for each record by the LogWriter
+            record.names = names;
+            record.values = values;
+            record.count = count;
+            publish(record);
+        }
+    }
+
+    public void exception(String keyWord, int deep, String methodId, String localPositionId, String type, String value) {
+        Record record = next(EXCEPTION, false);
+        if (record != null) {
+            record.keyWord = keyWord;
+            record.deep = deep;
+            record.methodId = methodId;
+            record.position = localPositionId;
+            record.exceptionType = type;
+            record.string = value;
+            publish(record);
+        }
+    }
+
+    public void transformation(int deep, String id) {
+        Record record = next(TRANSFORMATION, false);
+        if (record != null) {
+            record.deep = deep;
+            record.string = id;
+            publish(record);
+        }
+    }
+
+    public void text(String text) {
+        Record record = next(TEXT, false);
+        if (record != null) {
+            record.string = text;
+            publish(record);
+        }
+    }
+
+    /**
+     * The record to fill, null if it is dropped
+     *
+     * @param structure true for the test start and end records, never dropped
+     */
+    protected Record next(int type, boolean structure) {
+        if (closed) {
+            return null;
+        }
+        if (tail - head > mask) {
+            if (overflow == DROP && !structure) {
+                dropped++;
+                return null;
+            }
+            while (tail - head > mask) {
+                getFlusher().wakeUp();
+                LockSupport.parkNanos(10000);
+                if (closed) {
+                    return null;
+                }
+            }
+        }
+        Record record = ring[(int) (tail & mask)];
+        record.type = type;
+        return record;
+    }
+
+    protected void publish(Record record) {
+        tail++;
+    }
+
+    /**
+     * Writes the records of the ring buffer, called by the flusher
+     *
+     * @return the number of records written
+     */
+    protected synchronized int drain() {
+        if (closed) {
+            return 0;
+        }
+        int count = 0;
+        long end = tail;
+        while (head < end) {
+            write(ring[(int) (head & mask)]);
+            head++;
+            count++;
+        }
+        return count;
+    }
+
+    protected void write(Record record) {
+        try {
+            switch (record.type) {
+                case METHOD_CALL:
+                    output.methodCall(record.deep, record.methodId);
+                    break;
+                case ID_METHOD_CALL:
+                    output.methodCall(record.deep, record.id);
+                    break;
+                case PATH:
+                    output.path(record.methodId, record.deep, record.string);
+                    break;
+                case ID_PATH:
+                    output.path(record.id, record.deep, record.ints, 0, record.count);
+                    break;
+                case TEST_START:
+                    output.testStart(record.string);
+                    break;
+                case RAW_TEST_START:
+                    output.rawTestStart(record.string);
+                    break;
+                case TEST_END:
+                    output.testEnd();
+                    break;
+                case VARIABLES:
+                    output.variables(record.deep, record.methodId, record.names, record.values, record.count);
+                    break;
+                case EXCEPTION:
+                    output.exception(record.keyWord, record.deep, record.methodId, record.position,
+                            record.exceptionType, record.string);
+                    break;
+                case TRANSFORMATION:
+                    output.transformation(record.deep, record.string);
+                    break;
+                default:
+                    output.text(record.string);
+            }
+        } catch (IOException e) {
+            if (!error) {
+                error = true;
+                e.printStackTrace();
+            }
+        }
+        //the strings of the record can be collected
+        record.methodId = null;
+        record.string = null;
+        record.position = null;
+        record.exceptionType = null;
+        record.names = null;
+        record.values = null;
+    }
+
+    /**
+     * Writes the records left and closes the output
+     */
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            drain();
+            closed = true;
+        }
+        getFlusher().remove(this);
+        output.close();
+        if (dropped != 0) {
+            System.err.println("fr.inria.logger: " + dropped + " records dropped");
+        }
+    }
+
+    public long getDropped() {
+        return dropped;
+    }
+
+    protected static synchronized Flusher getFlusher() {
+        if (flusher == null) {
+            flusher = new Flusher();
+            flusher.start();
+        }
+        return flusher;
+    }
+
+    /**
+     * Daemon thread writing the records of all the AsyncTraceOutputs
+     */
+    protected static class Flusher extends Thread {
+        protected final CopyOnWriteArrayList<AsyncTraceOutput> outputs = new CopyOnWriteArrayList<AsyncTraceOutput>();
+
+        protected Flusher() {
+            super("fr.inria.logger.flusher");
+            setDaemon(true);
+        }
+
+        protected void add(AsyncTraceOutput output) {
+            outputs.add(output);
+        }
+
+        protected void remove(AsyncTraceOutput output) {
+            outputs.remove(output);
+        }
+
+        protected void wakeUp() {
+            LockSupport.unpark(this);
+        }
+
+        public void run() {
+            while (true) {
+                int count = 0;
+                for (AsyncTraceOutput output : outputs) {
+                    count += output.drain();
+                }
+                if (count == 0) {
+                    LockSupport.parkNanos(1000000);
+                }
+            }
+        }
+    }
+}
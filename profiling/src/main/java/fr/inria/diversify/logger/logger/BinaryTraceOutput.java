@@ -0,0 +1,247 @@
+package fr.inria.diversify.logger.logger;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Binary log, MAGIC followed by records. A record is a tag byte followed by its fields: ints (deep, int ids) are
+ * zigzag varints, counts and symbols are unsigned varints, strings are an unsigned varint length followed by the
+ * UTF-8 bytes, and the ids (method, branch path, test, ...) are symbols, an int given by a DEFINE record the first
+ * time the id is written.
+ *
+ * The records are encoded in a direct buffer, written in the file when it is full. The writes and close are
+ * synchronized: the shutdown hook closes the output while the threads of the program may still write records.
+ */
+public class BinaryTraceOutput implements TraceOutput {
+    public static final byte[] MAGIC = {'D', 'T', 'R', 'C', 2};
+
+    //version of the format with unsigned ints, read by LogScanner
+    public static final byte VERSION_UNSIGNED = 1;
+
+    //symbol, string
+    public static final int DEFINE = 0;
+    //deep, method symbol
+    public static final int METHOD_CALL = 1;
+    //method symbol, deep, path symbol
+    public static final int PATH = 2;
+    //test symbol
+    public static final int TEST_START = 3;
+    public static final int TEST_END = 4;
+    //deep, method symbol, count, (name symbol, value string) * count
+    public static final int VARIABLES = 5;
+    //deep, method symbol, position symbol, type symbol, value string
+    public static final int CATCH = 6;
+    public static final int THROW = 7;
+    //deep, id symbol
+    public static final int TRANSFORMATION = 8;
+    //record symbol, for the records made of a test name only
+    public static final int RECORD = 9;
+    //string, text in the format of TextTraceOutput
+    public static final int TEXT = 10;
+    public static final int CLOSE = 11;
+    //deep, method id, of the instrumentation with int ids
+    public static final int ID_METHOD_CALL = 12;
+    //method id, deep, count, branch id * count
+    public static final int ID_PATH = 13;
+
+    protected static final int BUFFER_SIZE = 1 << 20;
+    protected static final Charset UTF8 = Charset.forName("UTF-8");
+
+    protected FileOutputStream stream;
+    protected FileChannel channel;
+    protected ByteBuffer buffer;
+    protected Map<String, Integer> symbols;
+    protected boolean closed = false;
+
+    public BinaryTraceOutput(File file) throws IOException {
+        stream = new FileOutputStream(file);
+        channel = stream.getChannel();
+        buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        symbols = new HashMap<String, Integer>();
+        buffer.put(MAGIC);
+    }
+
+    public synchronized void methodCall(int deep, String methodId) throws IOException {
+        int method = symbol(methodId);
+        tag(METHOD_CALL);
+        putInt(deep);
+        putUnsigned(method);
+    }
+
+    public synchronized void path(String methodId, int deep, String path) throws IOException {
+        int method = symbol(methodId);
+        int pathSymbol = symbol(path);
+        tag(PATH);
+        putUnsigned(method);
+        putInt(deep);
+        putUnsigned(pathSymbol);
+    }
+
+    public synchronized void methodCall(int deep, int methodId) throws IOException {
+        tag(ID_METHOD_CALL);
+        putInt(deep);
+        putInt(methodId);
+    }
+
+    public synchronized void path(int methodId, int deep, int[] branches, int from, int to) throws IOException {
+        tag(ID_PATH);
+        putInt(methodId);
+        putInt(deep);
+        putUnsigned(to - from);
+        for (int i = from; i < to; i++) {
+            putInt(branches[i]);
+        }
+    }
+
+    public synchronized void testStart(String testName) throws IOException {
+        int test = symbol(testName);
+        tag(TEST_START);
+        putUnsigned(test);
+    }
+
+    public synchronized void rawTestStart(String testName) throws IOException {
+        int test = symbol(testName);
+        tag(RECORD);
+        putUnsigned(test);
+    }
+
+    public synchronized void testEnd() throws IOException {
+        tag(TEST_END);
+    }
+
+    public synchronized void variables(int deep, String methodId, String[] names, String[] values, int count) throws IOException {
+        int method = symbol(methodId);
+        int[] nameSymbols = new int[count];
+        for (int i = 0; i < count; i++) {
+            nameSymbols[i] = symbol(names[i]);
+        }
+        tag(VARIABLES);
+        putInt(deep);
+        putUnsigned(method);
+        putUnsigned(count);
+        for (int i = 0; i < count; i++) {
+            putUnsigned(nameSymbols[i]);
+            putString(values[i]);
+        }
+    }
+
+    public synchronized void exception(String keyWord, int deep, String methodId, String localPositionId, String type, String value) throws IOException {
+        int method = symbol(methodId);
+        int position = symbol(localPositionId);
+        int typeSymbol = symbol(type);
+        tag(KeyWord.catchObservation.equals(keyWord) ? CATCH : THROW);
+        putInt(deep);
+        putUnsigned(method);
+        putUnsigned(position);
+        putUnsigned(typeSymbol);
+        putString(value);
+    }
+
+    public synchronized void transformation(int deep, String id) throws IOException {
+        int idSymbol = symbol(id);
+        tag(TRANSFORMATION);
+        putInt(deep);
+        putUnsigned(idSymbol);
+    }
+
+    public synchronized void text(String text) throws IOException {
+        tag(TEXT);
+        putString(text);
+    }
+
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            buffer.put((byte) CLOSE);
+            flush();
+            channel.force(false);
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            try {
+                stream.close();
+            } catch (IOException e) {}
+        }
+    }
+
+    protected int symbol(String string) throws IOException {
+        if (string == null) {
+            string = "null";
+        }
+        Integer symbol = symbols.get(string);
+        if (symbol == null) {
+            symbol = symbols.size();
+            symbols.put(string, symbol);
+            tag(DEFINE);
+            putUnsigned(symbol);
+            putString(string);
+        }
+        return symbol;
+    }
+
+    protected void tag(int tag) throws IOException {
+        if (closed) {
+            throw new IOException("log closed");
+        }
+        ensure(1);
+        buffer.put((byte) tag);
+    }
+
+    /**
+     * A signed int, zigzag encoded: the small negative values, as a deep below 0, take one byte
+     */
+    protected void putInt(int value) throws IOException {
+        putUnsigned((value << 1) ^ (value >> 31));
+    }
+
+    protected void putUnsigned(int value) throws IOException {
+        ensure(5);
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    protected void putString(String string) throws IOException {
+        if (string == null) {
+            string = "null";
+        }
+        byte[] bytes = string.getBytes(UTF8);
+        putUnsigned(bytes.length);
+        if (bytes.length > buffer.remaining()) {
+            flush();
+        }
+        if (bytes.length > buffer.capacity()) {
+            ByteBuffer wrap = ByteBuffer.wrap(bytes);
+            while (wrap.hasRemaining()) {
+                channel.write(wrap);
+            }
+        } else {
+            buffer.put(bytes);
+        }
+    }
+
+    protected void ensure(int size) throws IOException {
+        if (buffer.remaining() < size) {
+            flush();
+        }
+    }
+
+    protected void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
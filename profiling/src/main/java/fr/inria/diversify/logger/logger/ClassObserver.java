@@ -1,12 +1,11 @@
 package fr.inria.diversify.logger.logger;
 
-import java.io.IOException;
-import java.io.PrintWriter;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -16,111 +15,185 @@ import java.util.Map;
  * Time: 11:09
  */
 public class ClassObserver {
+    //kinds of the observed values
+    protected static final int OBJECT = 0;
+    protected static final int BOOLEAN = 1;
+    protected static final int BYTE = 2;
+    protected static final int SHORT = 3;
+    protected static final int CHAR = 4;
+    protected static final int INT = 5;
+    protected static final int LONG = 6;
+    protected static final int FLOAT = 7;
+    protected static final int DOUBLE = 8;
+
+    //accessors by class, shared by the observers of all the threads
+    private static final Map<Class, Accessors> accessorsByClass = new HashMap<Class, Accessors>();
+
     protected Class aClass;
-    protected Field[] fields;
-    protected Method[] getters;
+    protected String classId;
+    protected Accessors accessors;
+
+    //previous observation: the primitive values as bits, the immutable values and the strings of the values
+    protected long[] previousBits;
+    protected boolean[] hasPreviousBits;
+    protected Object[] previousValues;
     protected String[] previousObservation;
+    protected StringBuilder observation = new StringBuilder();
+
+    /**
+     * The getters and the public fields of a class, accessible, with the kind of their values
+     */
+    protected static class Accessors {
+        protected Method[] getters;
+        protected Field[] fields;
+        protected int[] kinds;
+
+        protected Accessors(Class aClass) {
+            if(aClass == null) {
+                getters = new Method[0];
+                fields = new Field[0];
+            } else {
+                getters = findGetters(aClass);
+                fields = findFields(aClass);
+            }
+            kinds = new int[getters.length + fields.length];
+            for(int i = 0; i < getters.length; i++) {
+                kinds[i] = kind(getters[i].getReturnType());
+                setAccessible(getters[i]);
+            }
+            for(int i = 0; i < fields.length; i++) {
+                kinds[getters.length + i] = kind(fields[i].getType());
+                setAccessible(fields[i]);
+            }
+        }
 
-    private static Map<Class, String> classToId;
+        protected int size() {
+            return kinds.length;
+        }
+    }
 
-    public ClassObserver(Class aClass) {
+    /**
+     * @param classId id of the class in the log of the observer
+     */
+    public ClassObserver(Class aClass, String classId) {
         this.aClass = aClass;
+        this.classId = classId;
     }
 
-    protected void observe(Object object, PrintWriter writer) throws IOException, InterruptedException {
-        if(fields == null) {
-            intGettersAndFields(writer);
+    /**
+     * Observes the getters and public fields of object. Only the values that changed since the previous
+     * observation are formatted: the primitive fields are compared without boxing, and the immutable values
+     * with equals.
+     *
+     * @param definitions the definitions of the class and of its getters are appended to definitions
+     * at the first observation
+     * @return the observation: the class id, followed by the changed values if any
+     */
+    protected String observe(Object object, StringBuilder definitions) {
+        boolean first = accessors == null;
+        if(first) {
+            init(definitions);
         }
+        int size = accessors.size();
+        int getterCount = accessors.getters.length;
 
-        String[] results = new String[getters.length + fields.length];
+        observation.setLength(0);
+        observation.append(classId);
+        observation.append(KeyWord.simpleSeparator);
+        int valuesStart = observation.length() + size;
+        observation.setLength(valuesStart);
+        //the first observation is written even if the class has no getter
+        boolean sameValues = !first;
+        int changedCount = 0;
 
-        int i = 0;
-        for(; i < getters.length ; i++) {
-            try {
-                results[i] = formatVar(getters[i].invoke(object));
-            } catch (Exception e) {
-                results[i] = "null";
-            }
-        }
-        int j= 0;
-        for(; i < results.length ; i++) {
-            try {
-                results[i] = formatVar(fields[j].get(object));
-            } catch (Exception e) {
-                results[i] = "null";
-            }
-            j++;
-        }
-        StringBuilder sameValue = new StringBuilder();
-        List<String> result = new ArrayList<String>();
-        boolean sameValues = true;
-        if(previousObservation != null) {
-            for (i = 0; i < results.length; i++) {
-                if (previousObservation[i].equals(results[i])) {
-                    sameValue.append("0");
-                } else {
-                    sameValues = false;
-                    sameValue.append("1");
-                    result.add(results[i]);
-                    previousObservation[i] = results[i];
+        for(int i = 0; i < size; i++) {
+            boolean changed;
+            int kind = accessors.kinds[i];
+            if(kind != OBJECT && i >= getterCount) {
+                changed = observePrimitiveField(object, accessors.fields[i - getterCount], kind, i, first);
+            } else {
+                Object value;
+                try {
+                    if(i < getterCount) {
+                        value = accessors.getters[i].invoke(object);
+                    } else {
+                        value = accessors.fields[i - getterCount].get(object);
+                    }
+                } catch (Throwable e) {
+                    value = null;
                 }
+                changed = observeValue(value, kind, i, first);
             }
-        } else {
-            sameValues = false;
-            previousObservation = new String[results.length];
-            for (i = 0; i < results.length; i++) {
-                sameValue.append("1");
-                result.add(results[i]);
-                previousObservation[i] = results[i];
+            observation.setCharAt(valuesStart - size + i, changed ? '1' : '0');
+            if(changed) {
+                if(changedCount != 0) {
+                    observation.append(KeyWord.separator);
+                }
+                changedCount++;
+                sameValues = false;
+                observation.append(previousObservation[i]);
             }
         }
 
-        String classId = getClassId(writer);
-
         if(sameValues) {
-            writer.write(classId);
-        } else {
-            writer.write( classId + KeyWord.simpleSeparator + sameValue.toString() + KeyWord.separator + join(result, KeyWord.separator));
+            return classId;
         }
+        observation.insert(valuesStart, KeyWord.separator);
+        return observation.toString();
     }
 
-    protected String getClassId(PrintWriter writer) throws IOException, InterruptedException {
-        String className;
-        if(aClass == null) {
-            className = "NullClass";
-        } else {
-            className = aClass.getName();
+    protected boolean observePrimitiveField(Object object, Field field, int kind, int i, boolean first) {
+        long bits;
+        try {
+            switch (kind) {
+                case BOOLEAN: bits = field.getBoolean(object) ? 1 : 0; break;
+                case BYTE: bits = field.getByte(object); break;
+                case SHORT: bits = field.getShort(object); break;
+                case CHAR: bits = field.getChar(object); break;
+                case INT: bits = field.getInt(object); break;
+                case LONG: bits = field.getLong(object); break;
+                case FLOAT: bits = Float.floatToRawIntBits(field.getFloat(object)); break;
+                default: bits = Double.doubleToRawLongBits(field.getDouble(object));
+            }
+        } catch (Throwable e) {
+            hasPreviousBits[i] = false;
+            return observeValue(null, OBJECT, i, first);
+        }
+        if(!first && hasPreviousBits[i] && previousBits[i] == bits) {
+            return false;
         }
-        int count = classToId.size() + 1;
-        if(!classToId.containsKey(aClass)) {
-            classToId.put(aClass,  count + "");
-            writer.append(KeyWord.endLine + KeyWord.classKeyWord + KeyWord.simpleSeparator + className + KeyWord.simpleSeparator + count);
+        previousBits[i] = bits;
+        hasPreviousBits[i] = true;
+        return setObservation(i, formatVar(box(kind, bits)), first);
+    }
+
+    protected boolean observeValue(Object value, int kind, int i, boolean first) {
+        boolean immutable = kind != OBJECT || isImmutable(value);
+        if(!first && immutable && value != null && value.equals(previousValues[i])) {
+            return false;
         }
-        return classToId.get(aClass);
+        previousValues[i] = immutable ? value : null;
+        return setObservation(i, formatVar(value), first);
     }
 
-    protected String join(List<String> list, String conjunction)
-    {
-        StringBuilder sb = new StringBuilder();
-        boolean first = true;
-        for (String item : list)
-        {
-            if (first)
-                first = false;
-            else
-                sb.append(conjunction);
-            sb.append(item);
+    protected boolean setObservation(int i, String value, boolean first) {
+        if(!first && value.equals(previousObservation[i])) {
+            return false;
         }
-        return sb.toString();
+        previousObservation[i] = value;
+        return true;
     }
 
-    protected String formatVar(Object object) {
+    protected static String formatVar(Object object) {
         if (object == null) {
             return "null";
         }
         String string;
-        if (object.getClass().isArray()) {
+        if (object instanceof Object[]) {
             string = Arrays.toString((Object[]) object);
+        } else if (object.getClass().isArray()) {
+            //the arrays of primitives are not observed
+            return "null";
         } else {
             string = object + "";
         }
@@ -130,27 +203,72 @@ public class ClassObserver {
         return string;
     }
 
-    protected void intGettersAndFields(PrintWriter writer) throws IOException, InterruptedException {
+    protected void init(StringBuilder definitions) {
+        synchronized (accessorsByClass) {
+            accessors = accessorsByClass.get(aClass);
+            if(accessors == null) {
+                accessors = new Accessors(aClass);
+                accessorsByClass.put(aClass, accessors);
+            }
+        }
+        previousBits = new long[accessors.size()];
+        hasPreviousBits = new boolean[accessors.size()];
+        previousValues = new Object[accessors.size()];
+        previousObservation = new String[accessors.size()];
+
+        String className;
         if(aClass == null) {
-            getters = new Method[0];
-            fields = new Field[0];
+            className = "NullClass";
         } else {
-            getters = findGetters();
-            fields = findFields();
+            className = aClass.getName();
+        }
+        definitions.append(KeyWord.endLine + KeyWord.classKeyWord + KeyWord.simpleSeparator + className + KeyWord.simpleSeparator + classId);
+        definitions.append(KeyWord.endLine + KeyWord.getterKeyWord + KeyWord.simpleSeparator + classId);
+        for(Method method : accessors.getters) {
+            definitions.append(KeyWord.simpleSeparator + method.getName());
+        }
+        for(Field field : accessors.fields) {
+            definitions.append(KeyWord.simpleSeparator + field.getName());
         }
+    }
 
-        String classId = getClassId(writer);
+    protected static boolean isImmutable(Object value) {
+        return value instanceof String || value instanceof Number || value instanceof Boolean
+                || value instanceof Character || value instanceof Enum;
+    }
 
-        writer.append(KeyWord.endLine + KeyWord.getterKeyWord + KeyWord.simpleSeparator + classId);
-        for(Method method : getters) {
-            writer.append(KeyWord.simpleSeparator + method.getName());
-        }
-        for(Field field : fields) {
-            writer.append(KeyWord.simpleSeparator + field.getName());
+    protected static Object box(int kind, long bits) {
+        switch (kind) {
+            case BOOLEAN: return bits != 0;
+            case BYTE: return (byte) bits;
+            case SHORT: return (short) bits;
+            case CHAR: return (char) bits;
+            case INT: return (int) bits;
+            case LONG: return bits;
+            case FLOAT: return Float.intBitsToFloat((int) bits);
+            default: return Double.longBitsToDouble(bits);
         }
     }
 
-    protected Field[] findFields() {
+    protected static int kind(Class type) {
+        if(type == boolean.class) return BOOLEAN;
+        if(type == byte.class) return BYTE;
+        if(type == short.class) return SHORT;
+        if(type == char.class) return CHAR;
+        if(type == int.class) return INT;
+        if(type == long.class) return LONG;
+        if(type == float.class) return FLOAT;
+        if(type == double.class) return DOUBLE;
+        return OBJECT;
+    }
+
+    protected static void setAccessible(java.lang.reflect.AccessibleObject accessor) {
+        try {
+            accessor.setAccessible(true);
+        } catch (Throwable e) {}
+    }
+
+    protected static Field[] findFields(Class aClass) {
         List<Field> fields = new ArrayList<Field>();
         for(Field field : aClass.getFields()) {
             if(Modifier.isPublic(field.getModifiers())) {
@@ -164,7 +282,7 @@ public class ClassObserver {
         return ret;
     }
 
-    protected Method[] findGetters(){
+    protected static Method[] findGetters(Class aClass){
         List<Method> getters = new ArrayList<Method>();
         for(Method method : aClass.getMethods()){
             if((isGetter(method) || isIs(method)) && !methodDefinedInObject(method)) {
@@ -187,17 +305,17 @@ public class ClassObserver {
         return ret;
     }
 
-    protected boolean isIs(Method method) {
+    protected static boolean isIs(Method method) {
         return method.getName().startsWith("is")
                 && method.getParameterTypes().length == 0;
     }
 
-    protected boolean isGetter(Method method) {
+    protected static boolean isGetter(Method method) {
         return method.getName().startsWith("get")
                 && method.getParameterTypes().length == 0;
     }
 
-    protected boolean methodDefinedInObject(Method method) {
+    protected static boolean methodDefinedInObject(Method method) {
         for(Method objectMethod : Object.class.getMethods()) {
             if(objectMethod.equals(method)) {
                 return true;
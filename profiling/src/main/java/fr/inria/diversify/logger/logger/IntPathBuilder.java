@@ -0,0 +1,127 @@
+package fr.inria.diversify.logger.logger;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * PathBuilder of the instrumentation with int ids: the branches of the open paths are stacked in an int array,
+ * and the paths already written are kept in an open addressing table of int arrays. A branch is added without
+ * allocation, and a path is copied only the first time it is written.
+ */
+public class IntPathBuilder {
+    protected boolean fullPath;
+
+    //branches of the open paths, the path of a method call starts at starts[i]
+    protected int[] branches;
+    protected int size;
+    protected int[] starts;
+    protected int depth;
+
+    //paths already written: method id, deep, branches
+    protected int[][] paths;
+    protected int pathCount;
+
+    public IntPathBuilder(boolean fullPath) {
+        this.fullPath = fullPath;
+        branches = new int[256];
+        starts = new int[64];
+        paths = new int[1024][];
+    }
+
+    public void addBranch(int id) {
+        if (depth == 0) {
+            return;
+        }
+        if (fullPath || size == starts[depth - 1] || branches[size - 1] != id) {
+            if (size == branches.length) {
+                branches = Arrays.copyOf(branches, size * 2);
+            }
+            branches[size++] = id;
+        }
+    }
+
+    public void newPath() {
+        if (depth == starts.length) {
+            starts = Arrays.copyOf(starts, depth * 2);
+        }
+        starts[depth++] = size;
+    }
+
+    public void printPath(int methodId, int deep, TraceOutput output) throws IOException {
+        if (depth == 0) {
+            return;
+        }
+        int from = starts[--depth];
+        try {
+            if (addPath(methodId, deep, from, size)) {
+                output.path(methodId, deep, branches, from, size);
+            }
+        } finally {
+            size = from;
+        }
+    }
+
+    /**
+     * @return false if the path was already written
+     */
+    protected boolean addPath(int methodId, int deep, int from, int to) {
+        int mask = paths.length - 1;
+        int index = hash(methodId, deep, branches, from, to) & mask;
+        while (paths[index] != null) {
+            if (samePath(paths[index], methodId, deep, from, to)) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        int[] path = new int[to - from + 2];
+        path[0] = methodId;
+        path[1] = deep;
+        System.arraycopy(branches, from, path, 2, to - from);
+        paths[index] = path;
+        pathCount++;
+        if (2 * pathCount > paths.length) {
+            growPaths();
+        }
+        return true;
+    }
+
+    protected int hash(int methodId, int deep, int[] array, int from, int to) {
+        int hash = 31 * methodId + deep;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + array[i];
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    protected boolean samePath(int[] path, int methodId, int deep, int from, int to) {
+        if (path.length != to - from + 2 || path[0] != methodId || path[1] != deep) {
+            return false;
+        }
+        for (int i = from; i < to; i++) {
+            if (path[i - from + 2] != branches[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    protected void growPaths() {
+        int[][] old = paths;
+        paths = new int[old.length * 2][];
+        int mask = paths.length - 1;
+        for (int[] path : old) {
+            if (path != null) {
+                int index = hash(path[0], path[1], path, 2, path.length) & mask;
+                while (paths[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                paths[index] = path;
+            }
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(paths, null);
+        pathCount = 0;
+    }
+}
@@ -2,12 +2,13 @@ package fr.inria.diversify.logger.logger;
 
 
 import java.io.*;
+import java.lang.management.ManagementFactory;
 import java.util.*;
 
 
 public class LogWriter {
     private boolean fullPath = false;
-    private PrintWriter fileWriter;
+    private TraceOutput output;
 
     private Map<Class, ClassObserver> classesObservers;
 
@@ -17,6 +18,17 @@ public class LogWriter {
 
     private boolean writeVar = true;
 
+    private boolean binaryLog = false;
+
+    private ObservationPolicy observationPolicy = new ObservationPolicy();
+
+    //the records are written by a flusher thread
+    private boolean asyncLog = false;
+
+    private int asyncBufferSize = 1 << 16;
+
+    private int overflow = AsyncTraceOutput.BLOCK;
+
     //Thread containing the test
     private final Thread thread;
 
@@ -25,11 +37,26 @@ public class LogWriter {
 
     private PathBuilder pathBuilder;
 
+    private IntPathBuilder intPathBuilder;
+
     ///Directory where the log is being stored
     protected File dir = null;
 
     protected boolean inTest = false;
 
+    //test started by this thread
+    protected TestContext ownTest = null;
+
+    //test of the thread that created this thread, joined by this log
+    protected TestContext joinedTest = null;
+
+    //TestContext.current() of the thread of this log, looked up once: it only changes when this thread starts a test
+    protected TestContext threadTest = null;
+    protected boolean threadTestKnown = false;
+
+    //the log files of two JVMs or two threads with the same name are distinct
+    private static final String processId = processId();
+
     /**
      * Constructor for the logger
      */
@@ -40,10 +67,8 @@ public class LogWriter {
         }
         initOptions();
         pathBuilder = new PathBuilder(fullPath);
+        intPathBuilder = new IntPathBuilder(fullPath);
         classesObservers = new HashMap<Class, ClassObserver>();
-
-        ShutdownHookLog shutdownHook = new ShutdownHookLog();
-        Runtime.getRuntime().addShutdownHook(shutdownHook);
         this.thread = thread;
     }
 
@@ -56,8 +81,13 @@ public class LogWriter {
                 fullPath = Boolean.parseBoolean(propertiesOrGetDefault(properties,"fullPath", "false"));
                 logMethodCall = Boolean.parseBoolean(propertiesOrGetDefault(properties,"logMethodCall", "true"));
                 writeVar = Boolean.parseBoolean(propertiesOrGetDefault(properties,"writeVar", "true"));
+                binaryLog = Boolean.parseBoolean(propertiesOrGetDefault(properties,"binaryLog", "false"));
+                observationPolicy = new ObservationPolicy(properties);
+                asyncLog = Boolean.parseBoolean(propertiesOrGetDefault(properties,"asyncLog", "false"));
+                asyncBufferSize = Integer.parseInt(propertiesOrGetDefault(properties,"asyncBufferSize", "65536").trim());
+                overflow = AsyncTraceOutput.overflowPolicy(propertiesOrGetDefault(properties,"overflow", "block").trim());
             }
-        } catch (IOException e) {
+        } catch (Exception e) {
             System.err.println("fr.inria.logger: error with properties file");
         }
     }
@@ -82,9 +112,16 @@ public class LogWriter {
     }
 
     public void close(){
-        if(fileWriter != null) {
-            fileWriter.append(KeyWord.endLine);
-            fileWriter.close();
+        if(output != null) {
+            //the outputs have one writer, the thread of this log: the end of a joined test is only written here
+            //if this thread has ended, otherwise the log ends without it and the readers end the test there
+            if(joinedTest != null && !thread.isAlive()) {
+                joinedTest = null;
+                try {
+                    output.testEnd();
+                } catch (Exception e) {}
+            }
+            output.close();
         }
     }
 
@@ -129,23 +166,17 @@ public class LogWriter {
     }
 
     public void branch(String id) {
-        if(!isObserve && inTest) {
+        if(!isObserve && inTest()) {
             pathBuilder.addbranch(id);
         }
     }
 
     public void methodIn(String methodId) {
-        if(!isObserve && inTest) {
+        if(!isObserve && inTest()) {
             deep++;
             if(logMethodCall) {
                 try {
-                    PrintWriter fileWriter = getFileWriter();
-                    fileWriter.append(KeyWord.endLine);
-                    fileWriter.append(KeyWord.methodCallObservation);
-                    fileWriter.append(KeyWord.simpleSeparator);
-                    fileWriter.append(deep + "");
-                    fileWriter.append(KeyWord.simpleSeparator);
-                    fileWriter.append(methodId);
+                    getOutput().methodCall(deep, methodId);
                 } catch (Exception e) {
                     e.printStackTrace();
                 }
@@ -155,38 +186,112 @@ public class LogWriter {
     }
 
     public void methodOut(String id) {
-        if(!isObserve && inTest) {
+        if(!isObserve && inTest()) {
             try {
-                pathBuilder.printPath(id, deep, getFileWriter());
+                pathBuilder.printPath(id, deep, getOutput());
             } catch (Exception e) {}
             deep--;
         }
     }
 
+    public void branch(int id) {
+        if(!isObserve && inTest()) {
+            intPathBuilder.addBranch(id);
+        }
+    }
+
+    public void methodIn(int methodId) {
+        if(!isObserve && inTest()) {
+            deep++;
+            if(logMethodCall) {
+                try {
+                    getOutput().methodCall(deep, methodId);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+            intPathBuilder.newPath();
+        }
+    }
+
+    public void methodOut(int methodId) {
+        if(!isObserve && inTest()) {
+            try {
+                intPathBuilder.printPath(methodId, deep, getOutput());
+            } catch (Exception e) {}
+            deep--;
+        }
+    }
+
+    /**
+     * True if a test of this thread, or of the thread that created it, is running
+     */
+    protected boolean inTest() {
+        if(joinedTest != null && joinedTest.isFinished()) {
+            leaveJoinedTest();
+        }
+        return inTest || joinInheritedTest();
+    }
+
+    /**
+     * This thread was created during a test: its records are written in this test
+     */
+    protected boolean joinInheritedTest() {
+        if(isObserve) {
+            return false;
+        }
+        if(!threadTestKnown) {
+            threadTest = TestContext.current();
+            threadTestKnown = true;
+        }
+        TestContext context = threadTest;
+        if(context == null || context.isFinished()) {
+            return false;
+        }
+        joinedTest = context;
+        inTest = true;
+        observationPolicy.testStart();
+        try {
+            deep = 0;
+            getOutput().testStart(context.getTestName());
+        } catch (Exception e) {
+        }
+        return true;
+    }
+
+    protected void leaveJoinedTest() {
+        joinedTest = null;
+        writeTestFinish();
+    }
+
     public void writeTestStart(String testName, Object receiver) {
+        if(joinedTest != null) {
+            leaveJoinedTest();
+        }
         inTest = true;
+        observationPolicy.testStart();
+        String fullName = receiver.getClass().getCanonicalName() + "." + testName;
+        ownTest = TestContext.start(fullName);
+        threadTest = ownTest;
+        threadTestKnown = true;
         if(!isObserve) {
             try {
                 deep = 0;
-                PrintWriter fileWriter = getFileWriter();
-                fileWriter.append(KeyWord.endLine);
-                fileWriter.append(KeyWord.testStartObservation);
-                fileWriter.append(KeyWord.simpleSeparator);
-                fileWriter.append(receiver.getClass().getCanonicalName());
-                fileWriter.append(".");
-                fileWriter.append(testName);
+                getOutput().testStart(fullName);
             } catch (Exception e) {
             }
         }
     }
 
     public void writeTestStart(String testName) {
+        if(joinedTest != null) {
+            leaveJoinedTest();
+        }
         inTest = true;
+        observationPolicy.testStart();
         if(!isObserve) {
             try {
-                PrintWriter fileWriter = getFileWriter();
-                fileWriter.append(KeyWord.endLine);
-                fileWriter.append(testName);
+                getOutput().rawTestStart(testName);
             } catch (Exception e) {
             }
         }
@@ -194,39 +299,31 @@ public class LogWriter {
 
     public void writeTestFinish() {
         inTest = false;
+        if(ownTest != null) {
+            ownTest.finish();
+            ownTest = null;
+        }
         if(!isObserve) {
             try {
                 pathBuilder.clear();
-                PrintWriter fileWriter = getFileWriter();
-                fileWriter.append(KeyWord.endLine);
-                fileWriter.append(KeyWord.testEndObservation);
+                intPathBuilder.clear();
+                getOutput().testEnd();
             } catch (Exception e) {
             }
         }
     }
 
     public void writeVar(String  methodId, Object... var) {
-        if(!isObserve && writeVar) {
+        if(!isObserve && writeVar && observationPolicy.observe(methodId)) {
             isObserve = true;
             try {
-                StringBuilder string = new StringBuilder();
-                string.append(KeyWord.endLine);
-                string.append(KeyWord.variableObservation);
-                string.append(KeyWord.simpleSeparator);
-                string.append(deep + "");
-                string.append(KeyWord.simpleSeparator);
-                string.append(methodId);
-//                string.append(KeyWord.simpleSeparator);
-//                string.append(localPositionId);
-
-                String varsString = buildVars(var);
-                if(varsString.isEmpty())
+                String[] names = new String[var.length];
+                String[] values = new String[var.length];
+                int count = buildVars(var, names, values);
+                if(count == 0)
                     return;
 
-                string.append(varsString);
-
-                PrintWriter fileWriter = getFileWriter();
-                fileWriter.append(string.toString());
+                getOutput().variables(deep, methodId, names, values, count);
             } catch (Exception e) {
                 e.printStackTrace();
             } finally {
@@ -236,34 +333,25 @@ public class LogWriter {
     }
 
 
-    protected String buildVars(Object[] vars) {
-        StringBuilder varsString = new StringBuilder();
+    /**
+     * Fills names and values with the observable variables of vars
+     *
+     * @return the number of variables
+     */
+    protected int buildVars(Object[] vars, String[] names, String[] values) {
+        int count = 0;
 
-        for (int i = 0; i < vars.length / 2; i = i + 2) {
+        for (int i = 0; i + 1 < vars.length; i = i + 2) {
             try {
                 String varName = vars[i].toString();
-                String value;
-                if (vars[i + 1] == null) {
-                    value = "null";
-                } else {
-                    value = vars[i + 1].toString();
-                }
-                if(value.length() > 1000) {
-                    value = vars[i + 1].getClass().getCanonicalName() + value.length();
-                }
-//                String varId = positionId + ":" + varName;
-//                String previousValue = previousVars.get(varId);
-//                if (!value.equals(previousValue)) {
-//                    previousVars.put(varId, value);
-                    varsString.append(KeyWord.separator);
-                    varsString.append(varName);
-                    varsString.append(KeyWord.separator);
-                    varsString.append(value);
-//                }
+                String value = observationPolicy.format(vars[i + 1]);
+                names[count] = varName;
+                values[count] = value;
+                count++;
             } catch (Exception e) {
             }
         }
-        return KeyWord.simpleSeparator + varsString.substring(KeyWord.separator.length(), varsString.length());
+        return count;
     }
 
     public void logAssertArgument(int idAssertTarget, Object target,  int idAssertInvocation, Object invocation) {
@@ -275,17 +363,17 @@ public class LogWriter {
         if(!isObserve) {
             isObserve = true;
             try {
-                StringBuilder string = new StringBuilder();
-                string.append(KeyWord.endLine);
-                string.append(KeyWord.assertObservation);
-                string.append(KeyWord.simpleSeparator);
-                string.append(idAssert + "");
-
-                PrintWriter fileWriter = getFileWriter();
-                string.append(KeyWord.simpleSeparator);
-                observe(invocation, fileWriter);
-
-                fileWriter.append(string.toString());
+                //the definitions of the class of invocation precede the assert record
+                StringBuilder record = new StringBuilder();
+                String observation = observe(invocation, record);
+                record.append(KeyWord.endLine);
+                record.append(KeyWord.assertObservation);
+                record.append(KeyWord.simpleSeparator);
+                record.append(idAssert);
+                record.append(KeyWord.simpleSeparator);
+                record.append(observation);
+
+                getOutput().text(record.toString());
             } catch (Exception e) {
                 e.printStackTrace();
             } finally {
@@ -294,45 +382,46 @@ public class LogWriter {
         }
     }
 
-    protected void observe(Object object, PrintWriter writer) throws IOException, InterruptedException {
+    protected String observe(Object object, StringBuilder definitions) {
         Class objectClass;
         if(object == null) {
             objectClass = null;
         } else {
             objectClass = object.getClass();
         }
-        if(!classesObservers.containsKey(objectClass)) {
-            classesObservers.put(objectClass, new ClassObserver(objectClass));
+        ClassObserver observer = classesObservers.get(objectClass);
+        if(observer == null) {
+            observer = new ClassObserver(objectClass, Integer.toString(classesObservers.size() + 1));
+            classesObservers.put(objectClass, observer);
         }
-        classesObservers.get(objectClass).observe(object,writer);
+        return observer.observe(object, definitions);
     }
 
-    protected synchronized PrintWriter getFileWriter() throws IOException, InterruptedException {
-        if (fileWriter == null) {
-            String fileName = getThreadLogFilePath(thread) + "_" + System.currentTimeMillis();
-            fileWriter = new PrintWriter(new BufferedWriter(new FileWriter(fileName)));
+    protected TraceOutput getOutput() throws IOException, InterruptedException {
+        if (output == null) {
+            File file = new File(getThreadLogFilePath(thread) + "_" + System.currentTimeMillis()
+                    + "_" + processId + "_" + thread.getId());
+            TraceOutput fileOutput;
+            if (binaryLog) {
+                fileOutput = new BinaryTraceOutput(file);
+            } else {
+                fileOutput = new TextTraceOutput(file);
+            }
+            if (asyncLog) {
+                output = new AsyncTraceOutput(fileOutput, asyncBufferSize, overflow);
+            } else {
+                output = fileOutput;
+            }
         }
-        return fileWriter;
+        return output;
     }
 
     public void writeCatch(String methodId, String localPositionId, Object exception) {
         if(!isObserve) {
             isObserve = true;
             try {
-                PrintWriter fileWriter = getFileWriter();
-
-                fileWriter.append(KeyWord.endLine);
-                fileWriter.append(KeyWord.catchObservation);
-                fileWriter.append(KeyWord.simpleSeparator);
-                fileWriter.append(deep + "");
-                fileWriter.append(KeyWord.simpleSeparator);
-                fileWriter.append(methodId);
-                fileWriter.append(KeyWord.simpleSeparator);
-                fileWriter.append(localPositionId);
-                fileWriter.append(KeyWord.simpleSeparator);
-                fileWriter.append(exception.getClass().getCanonicalName());
-                fileWriter.append(KeyWord.simpleSeparator);
-                fileWriter.append(exception.toString());
+                getOutput().exception(KeyWord.catchObservation, deep, methodId, localPositionId,
+                        exception.getClass().getCanonicalName(), exception.toString());
             } catch (Exception e) {
                 e.printStackTrace();
             } finally {
@@ -345,21 +434,8 @@ public class LogWriter {
         if(!isObserve) {
             isObserve = true;
             try {
-                PrintWriter fileWriter = getFileWriter();
-
-                fileWriter.append(KeyWord.endLine);
-                fileWriter.append(KeyWord.throwObservation);
-                fileWriter.append(KeyWord.simpleSeparator);
-                fileWriter.append(deep + "");
-                fileWriter.append(KeyWord.simpleSeparator);
-                fileWriter.append(methodId);
-                fileWriter.append(KeyWord.simpleSeparator);
-                fileWriter.append(localPositionId);
-                fileWriter.append(KeyWord.simpleSeparator);
-                fileWriter.append(exception.getClass().getCanonicalName());
-                fileWriter.append(KeyWord.simpleSeparator);
-                fileWriter.append(exception.toString());
-
+                getOutput().exception(KeyWord.throwObservation, deep, methodId, localPositionId,
+                        exception.getClass().getCanonicalName(), exception.toString());
             } catch (Exception e) {
                 e.printStackTrace();
             } finally {
@@ -371,15 +447,19 @@ public class LogWriter {
     public void logTransformation(String id) {
         if (!isObserve) {
             try {
-                PrintWriter fileWriter = getFileWriter();
-                fileWriter.append(KeyWord.endLine);
-                fileWriter.append(KeyWord.logTransformation);
-                fileWriter.append(KeyWord.simpleSeparator);
-                fileWriter.append(deep + "");
-                fileWriter.append(KeyWord.simpleSeparator);
-                fileWriter.append(id);
+                getOutput().transformation(deep, id);
             } catch (Exception e) {
             }
         }
     }
+
+    protected static String processId() {
+        //name of the JVM: pid@host
+        String name = ManagementFactory.getRuntimeMXBean().getName();
+        int index = name.indexOf('@');
+        if(index > 0) {
+            return name.substring(0, index);
+        }
+        return Long.toString(System.nanoTime());
+    }
 }
@@ -11,12 +11,24 @@ import java.util.HashMap;
 public class Logger {
     private static HashMap<Thread, LogWriter> logs = null;
     private static File logDir;
+
+    //log of the current thread, valid while its generation is the current one
+    private static final ThreadLocal<LogWriter> currentLog = new ThreadLocal<LogWriter>();
+    private static final ThreadLocal<Integer> currentLogGeneration = new ThreadLocal<Integer>();
+    private static volatile int generation = 0;
+    private static boolean shutdownHook = false;
+
     /**
      * This is an option. By the default the verbose log is used.
      * @param log
      */
-    public static void setLog(HashMap<Thread, LogWriter> log) {
+    public static synchronized void setLog(HashMap<Thread, LogWriter> log) {
+        HashMap<Thread, LogWriter> dropped = logs;
         Logger.logs = log;
+        generation++;
+        if (dropped != null && dropped != log) {
+            close(dropped, log);
+        }
     }
 
     protected static LogWriter getLog() {
@@ -24,14 +36,32 @@ public class Logger {
     }
 
     protected static LogWriter getLog(Thread thread) {
+        if (thread == Thread.currentThread()) {
+            LogWriter l = currentLog.get();
+            Integer logGeneration = currentLogGeneration.get();
+            if (l == null || logGeneration.intValue() != generation) {
+                l = getOrCreateLog(thread);
+                currentLog.set(l);
+                currentLogGeneration.set(generation);
+            }
+            return l;
+        }
+        return getOrCreateLog(thread);
+    }
+
+    protected static synchronized LogWriter getOrCreateLog(Thread thread) {
         if ( logs == null ) { logs = new HashMap<Thread, LogWriter>(); }
-        if ( logs.containsKey(thread) ) {
-            return logs.get(thread);
-        } else {
-            LogWriter l = new LogWriter(thread, logDir);
+        LogWriter l = logs.get(thread);
+        if ( l == null ) {
+            l = new LogWriter(thread, logDir);
             logs.put(thread, l);
-            return l;
+            //one hook closes the logs of all the threads
+            if ( !shutdownHook ) {
+                Runtime.getRuntime().addShutdownHook(new ShutdownHookLog());
+                shutdownHook = true;
+            }
         }
+        return l;
     }
 
     public static void logAssertArgument(Thread thread, int idAssert, Object invocation) {
@@ -42,6 +72,21 @@ public class Logger {
         getLog(thread).branch(id);
     }
 
+    /**
+     * Branch of the instrumentation with int ids, the log of the current thread is cached in a ThreadLocal
+     */
+    public static void branch(int id) {
+        getLog().branch(id);
+    }
+
+    public static void methodIn(int id) {
+        getLog().methodIn(id);
+    }
+
+    public static void methodOut(int id) {
+        getLog().methodOut(id);
+    }
+
     public static void logTransformation(Thread thread, String id) {
         getLog(thread).logTransformation(id);
     }
@@ -78,7 +123,7 @@ public class Logger {
         getLog(thread).writeThrow(methodId, localPositionId, exception);
     }
 
-    public static void close() {
+    public static synchronized void close() {
         if(logs != null) {
             for (LogWriter l : logs.values()) {
                 l.close();
@@ -86,13 +131,28 @@ public class Logger {
         }
     }
 
+    /**
+     * Closes the logs dropped by reset or setLog, their records are still buffered. A thread that still holds one
+     * of them takes a new log at its next record, as the generation has changed.
+     */
+    protected static void close(HashMap<Thread, LogWriter> dropped, HashMap<Thread, LogWriter> kept) {
+        for (LogWriter l : dropped.values()) {
+            if (kept == null || !kept.containsValue(l)) {
+                l.close();
+            }
+        }
+    }
+
     public static void setLogDir(File dir) {
         logDir = dir;
     }
 
-    public static void reset() {
+    public static synchronized void reset() {
+        generation++;
         if(logs != null) {
+            HashMap<Thread, LogWriter> dropped = new HashMap<Thread, LogWriter>(logs);
             logs.clear();
+            close(dropped, null);
         }
     }
 
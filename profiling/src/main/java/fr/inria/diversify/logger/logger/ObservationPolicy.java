@@ -0,0 +1,229 @@
+package fr.inria.diversify.logger.logger;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+/**
+ * Which variable observations a LogWriter writes, and how the values are written. Options of the options file:
+ *
+ * observationRate: a monitoring point writes one observation out of observationRate (default 1, all)
+ * observationRate.methodId: the rate of the monitoring points of a method
+ * observationBudget: maximum number of observations by test (default 0, no maximum)
+ * valueFormat: string (toString of the value), hash (hash of the toString) or fingerprint (structural hash
+ * of the value, without toString)
+ * fingerprintDepth: depth of the objects followed by a fingerprint (default 2)
+ *
+ * The sampling counts the executions of each monitoring point, so that two runs of the same tests observe the same
+ * executions and their logs can be compared. The values of the assert observations (ClassObserver) are always written
+ * with toString.
+ */
+public class ObservationPolicy {
+    public static final int STRING = 0;
+    public static final int HASH = 1;
+    public static final int FINGERPRINT = 2;
+
+    protected static final int MAX_LENGTH = 1000;
+    //elements of an array or a collection in a fingerprint
+    protected static final int MAX_ELEMENTS = 100;
+
+    protected int defaultRate = 1;
+    protected Map<String, Integer> rates = new HashMap<String, Integer>();
+    protected Map<String, int[]> executions = new HashMap<String, int[]>();
+    protected int budget = 0;
+    protected int observations = 0;
+    protected int format = STRING;
+    protected int fingerprintDepth = 2;
+
+    protected Map<Class, Field[]> fieldsByClass = new HashMap<Class, Field[]>();
+
+    public ObservationPolicy() {}
+
+    public ObservationPolicy(Properties properties) {
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith("observationRate.")) {
+                rates.put(key.substring("observationRate.".length()), Integer.parseInt(properties.getProperty(key).trim()));
+            }
+        }
+        defaultRate = Integer.parseInt(properties.getProperty("observationRate", "1").trim());
+        budget = Integer.parseInt(properties.getProperty("observationBudget", "0").trim());
+        fingerprintDepth = Integer.parseInt(properties.getProperty("fingerprintDepth", "2").trim());
+        String valueFormat = properties.getProperty("valueFormat", "string").trim();
+        if (valueFormat.equals("hash")) {
+            format = HASH;
+        } else if (valueFormat.equals("fingerprint")) {
+            format = FINGERPRINT;
+        }
+    }
+
+    /**
+     * Counts an execution of a monitoring point
+     *
+     * @return true if this execution is observed
+     */
+    public boolean observe(String methodId) {
+        if (budget > 0 && observations >= budget) {
+            return false;
+        }
+        int rate = defaultRate;
+        if (!rates.isEmpty()) {
+            Integer methodRate = rates.get(methodId);
+            if (methodRate != null) {
+                rate = methodRate;
+            }
+        }
+        if (rate > 1) {
+            int[] count = executions.get(methodId);
+            if (count == null) {
+                count = new int[1];
+                executions.put(methodId, count);
+            }
+            if (count[0]++ % rate != 0) {
+                return false;
+            }
+        }
+        observations++;
+        return true;
+    }
+
+    /**
+     * A test starts: its budget is full and the sampling restarts
+     */
+    public void testStart() {
+        observations = 0;
+        executions.clear();
+    }
+
+    public String format(Object value) {
+        if (value == null) {
+            return "null";
+        }
+        if (format == FINGERPRINT) {
+            return "#" + Integer.toHexString(fingerprint(value, fingerprintDepth));
+        }
+        String string;
+        if (value.getClass().isArray()) {
+            string = arrayToString(value);
+        } else {
+            string = value.toString();
+        }
+        if (format == HASH) {
+            return "#" + Integer.toHexString(string.hashCode());
+        }
+        if (string.length() > MAX_LENGTH) {
+            return value.getClass().getCanonicalName() + string.length();
+        }
+        return string;
+    }
+
+    //as Arrays.toString, for the arrays of primitives too
+    protected String arrayToString(Object array) {
+        StringBuilder builder = new StringBuilder("[");
+        int length = Array.getLength(array);
+        for (int i = 0; i < length; i++) {
+            if (i != 0) {
+                builder.append(", ");
+            }
+            builder.append(Array.get(array, i));
+        }
+        return builder.append("]").toString();
+    }
+
+    /**
+     * Hash of the value: the values of the primitives and strings, the elements of the arrays, collections and maps
+     * and the fields of the other objects, followed to depth
+     */
+    public int fingerprint(Object value, int depth) {
+        if (value == null) {
+            return 0;
+        }
+        Class type = value.getClass();
+        if (value instanceof String || value instanceof Number || value instanceof Boolean
+                || value instanceof Character) {
+            return value.hashCode();
+        }
+        if (value instanceof Enum) {
+            //the hash code of an enum changes between two runs
+            return ((Enum) value).name().hashCode();
+        }
+        int hash = type.getName().hashCode();
+        if (depth == 0) {
+            return hash;
+        }
+        if (type.isArray()) {
+            int length = Array.getLength(value);
+            hash = 31 * hash + length;
+            for (int i = 0; i < length && i < MAX_ELEMENTS; i++) {
+                hash = 31 * hash + fingerprint(Array.get(value, i), depth - 1);
+            }
+        } else if (value instanceof Collection) {
+            Collection collection = (Collection) value;
+            hash = 31 * hash + collection.size();
+            //the order of the elements of a set may change between two runs
+            boolean ordered = value instanceof List || value instanceof SortedSet;
+            int sum = 0;
+            int count = 0;
+            for (Iterator it = collection.iterator(); it.hasNext() && count < MAX_ELEMENTS; count++) {
+                int element = fingerprint(it.next(), depth - 1);
+                if (ordered) {
+                    hash = 31 * hash + element;
+                } else {
+                    sum += element;
+                }
+            }
+            hash = 31 * hash + sum;
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            hash = 31 * hash + map.size();
+            int sum = 0;
+            int count = 0;
+            for (Iterator<? extends Map.Entry<?, ?>> it = map.entrySet().iterator(); it.hasNext() && count < MAX_ELEMENTS; count++) {
+                Map.Entry<?, ?> entry = it.next();
+                sum += fingerprint(entry.getKey(), depth - 1) ^ fingerprint(entry.getValue(), depth - 1);
+            }
+            hash = 31 * hash + sum;
+        } else {
+            for (Field field : fields(type)) {
+                try {
+                    hash = 31 * hash + fingerprint(field.get(value), depth - 1);
+                } catch (Exception e) {}
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * The non static fields of a class and of its super classes
+     */
+    protected Field[] fields(Class type) {
+        Field[] fields = fieldsByClass.get(type);
+        if (fields == null) {
+            List<Field> list = new ArrayList<Field>();
+            for (Class c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                Field[] declaredFields;
+                try {
+                    declaredFields = c.getDeclaredFields();
+                } catch (LinkageError e) {
+                    //the type of a field cannot be loaded
+                    continue;
+                } catch (RuntimeException e) {
+                    continue;
+                }
+                for (Field field : declaredFields) {
+                    if (!Modifier.isStatic(field.getModifiers()) && !field.isSynthetic()) {
+                        try {
+                            field.setAccessible(true);
+                            list.add(field);
+                        } catch (RuntimeException e) {
+                            //SecurityException, or a field of a module that is not open
+                        }
+                    }
+                }
+            }
+            fields = list.toArray(new Field[list.size()]);
+            fieldsByClass.put(type, fields);
+        }
+        return fields;
+    }
+}
@@ -1,6 +1,6 @@
 package fr.inria.diversify.logger.logger;
 
-import java.io.PrintWriter;
+import java.io.IOException;
 import java.util.*;
 
 /**
@@ -38,8 +38,9 @@ public class PathBuilder {
         currentPaths.push(new StringBuilder());
     }
 
-    public void printPath(String id, int deep, PrintWriter writer) {
-        String path = deep + currentPaths.pop().toString();
+    public void printPath(String id, int deep, TraceOutput output) throws IOException {
+        String branches = currentPaths.pop().toString();
+        String path = deep + branches;
         previousBranchs.pop();
 
         if (!allPath.containsKey(id)) {
@@ -49,13 +50,7 @@ public class PathBuilder {
 
         if (!paths.contains(path)) {
             paths.add(path);
-
-            writer.append(KeyWord.endLine);
-            writer.append(KeyWord.branchObservation);
-            writer.append(KeyWord.simpleSeparator);
-            writer.append(id);
-            writer.append(KeyWord.simpleSeparator);
-            writer.append(path);
+            output.path(id, deep, branches);
         }
     }
 
@@ -0,0 +1,46 @@
+package fr.inria.diversify.logger.logger;
+
+/**
+ * The test run by a thread. The context is inherited by the threads created during the test: their LogWriters
+ * write their records in the same test (a test start record with the same name, and a test end record when the
+ * test is finished, or the end of the log for a thread that outlives the test), and the readers merge the records
+ * of a test of all the log files.
+ */
+public class TestContext {
+    private static final InheritableThreadLocal<TestContext> current = new InheritableThreadLocal<TestContext>();
+
+    private final String testName;
+    private volatile boolean finished = false;
+
+    protected TestContext(String testName) {
+        this.testName = testName;
+    }
+
+    /**
+     * Starts a test in the current thread
+     */
+    public static TestContext start(String testName) {
+        TestContext context = new TestContext(testName);
+        current.set(context);
+        return context;
+    }
+
+    /**
+     * The test of the current thread, or of the thread that created it
+     */
+    public static TestContext current() {
+        return current.get();
+    }
+
+    public void finish() {
+        finished = true;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public String getTestName() {
+        return testName;
+    }
+}
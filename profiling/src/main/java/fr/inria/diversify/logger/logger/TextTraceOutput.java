@@ -0,0 +1,118 @@
+package fr.inria.diversify.logger.logger;
+
+import java.io.*;
+
+/**
+ * Text log: each record starts with KeyWord.endLine and its fields are separated by KeyWord.simpleSeparator.
+ */
+public class TextTraceOutput implements TraceOutput {
+    protected PrintWriter fileWriter;
+
+    public TextTraceOutput(File file) throws IOException {
+        fileWriter = new PrintWriter(new BufferedWriter(new FileWriter(file)));
+    }
+
+    public void methodCall(int deep, String methodId) {
+        fileWriter.append(KeyWord.endLine);
+        fileWriter.append(KeyWord.methodCallObservation);
+        fileWriter.append(KeyWord.simpleSeparator);
+        fileWriter.append(Integer.toString(deep));
+        fileWriter.append(KeyWord.simpleSeparator);
+        fileWriter.append(methodId);
+    }
+
+    public void methodCall(int deep, int methodId) {
+        methodCall(deep, Integer.toString(methodId));
+    }
+
+    public void path(String methodId, int deep, String path) {
+        fileWriter.append(KeyWord.endLine);
+        fileWriter.append(KeyWord.branchObservation);
+        fileWriter.append(KeyWord.simpleSeparator);
+        fileWriter.append(methodId);
+        fileWriter.append(KeyWord.simpleSeparator);
+        fileWriter.append(Integer.toString(deep));
+        fileWriter.append(path);
+    }
+
+    public void path(int methodId, int deep, int[] branches, int from, int to) {
+        fileWriter.append(KeyWord.endLine);
+        fileWriter.append(KeyWord.branchObservation);
+        fileWriter.append(KeyWord.simpleSeparator);
+        fileWriter.append(Integer.toString(methodId));
+        fileWriter.append(KeyWord.simpleSeparator);
+        fileWriter.append(Integer.toString(deep));
+        for (int i = from; i < to; i++) {
+            fileWriter.append(KeyWord.simpleSeparator);
+            fileWriter.append(Integer.toString(branches[i]));
+        }
+    }
+
+    public void testStart(String testName) {
+        fileWriter.append(KeyWord.endLine);
+        fileWriter.append(KeyWord.testStartObservation);
+        fileWriter.append(KeyWord.simpleSeparator);
+        fileWriter.append(testName);
+    }
+
+    public void rawTestStart(String testName) {
+        fileWriter.append(KeyWord.endLine);
+        fileWriter.append(testName);
+    }
+
+    public void testEnd() {
+        fileWriter.append(KeyWord.endLine);
+        fileWriter.append(KeyWord.testEndObservation);
+    }
+
+    public void variables(int deep, String methodId, String[] names, String[] values, int count) {
+        fileWriter.append(KeyWord.endLine);
+        fileWriter.append(KeyWord.variableObservation);
+        fileWriter.append(KeyWord.simpleSeparator);
+        fileWriter.append(Integer.toString(deep));
+        fileWriter.append(KeyWord.simpleSeparator);
+        fileWriter.append(methodId);
+        fileWriter.append(KeyWord.simpleSeparator);
+        for (int i = 0; i < count; i++) {
+            if (i != 0) {
+                fileWriter.append(KeyWord.separator);
+            }
+            fileWriter.append(names[i]);
+            fileWriter.append(KeyWord.separator);
+            fileWriter.append(values[i]);
+        }
+    }
+
+    public void exception(String keyWord, int deep, String methodId, String localPositionId, String type, String value) {
+        fileWriter.append(KeyWord.endLine);
+        fileWriter.append(keyWord);
+        fileWriter.append(KeyWord.simpleSeparator);
+        fileWriter.append(Integer.toString(deep));
+        fileWriter.append(KeyWord.simpleSeparator);
+        fileWriter.append(methodId);
+        fileWriter.append(KeyWord.simpleSeparator);
+        fileWriter.append(localPositionId);
+        fileWriter.append(KeyWord.simpleSeparator);
+        fileWriter.append(type);
+        fileWriter.append(KeyWord.simpleSeparator);
+        fileWriter.append(value);
+    }
+
+    public void transformation(int deep, String id) {
+        fileWriter.append(KeyWord.endLine);
+        fileWriter.append(KeyWord.logTransformation);
+        fileWriter.append(KeyWord.simpleSeparator);
+        fileWriter.append(Integer.toString(deep));
+        fileWriter.append(KeyWord.simpleSeparator);
+        fileWriter.append(id);
+    }
+
+    public void text(String text) {
+        fileWriter.append(text);
+    }
+
+    public void close() {
+        fileWriter.append(KeyWord.endLine);
+        fileWriter.close();
+    }
+}
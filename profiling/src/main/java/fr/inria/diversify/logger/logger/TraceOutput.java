@@ -0,0 +1,48 @@
+package fr.inria.diversify.logger.logger;
+
+import java.io.IOException;
+
+/**
+ * Encoding of the records of a LogWriter in its log file. An output is used by one thread only.
+ */
+public interface TraceOutput {
+
+    void methodCall(int deep, String methodId) throws IOException;
+
+    void methodCall(int deep, int methodId) throws IOException;
+
+    /**
+     * @param path the branches of the path, each one preceded by a simple separator
+     */
+    void path(String methodId, int deep, String path) throws IOException;
+
+    /**
+     * A path of the instrumentation with int ids: branches[from] to branches[to - 1]
+     */
+    void path(int methodId, int deep, int[] branches, int from, int to) throws IOException;
+
+    void testStart(String testName) throws IOException;
+
+    /**
+     * A record made of a test name only
+     */
+    void rawTestStart(String testName) throws IOException;
+
+    void testEnd() throws IOException;
+
+    void variables(int deep, String methodId, String[] names, String[] values, int count) throws IOException;
+
+    /**
+     * @param keyWord KeyWord.catchObservation or KeyWord.throwObservation
+     */
+    void exception(String keyWord, int deep, String methodId, String localPositionId, String type, String value) throws IOException;
+
+    void transformation(int deep, String id) throws IOException;
+
+    /**
+     * Text in the format of TextTraceOutput, records included
+     */
+    void text(String text) throws IOException;
+
+    void close();
+}
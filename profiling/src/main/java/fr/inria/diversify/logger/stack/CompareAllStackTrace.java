@@ -1,27 +1,52 @@
 package fr.inria.diversify.logger.stack;
 
+import fr.inria.diversify.logger.LogDirectory;
+import fr.inria.diversify.logger.LogScanner;
+import fr.inria.diversify.logger.logger.KeyWord;
 import fr.inria.diversify.logger.stack.diff.Report;
 import fr.inria.diversify.logger.stack.diff.TestReport;
-import fr.inria.diversify.logger.stack.stackTraceOperation.StackTrace;
 import fr.inria.diversify.util.Log;
 import org.json.JSONException;
 
+import java.io.File;
 import java.io.IOException;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
+ * Compares the traces of the tests of the original and of the sosie, read from their log directories.
+ *
+ * The traces of a test are streamed from both logs: the logs of the sosie are indexed by test and thread (log file
+ * and rank of the test in the file), and a scanner is kept open on each log file of the sosie, so that the tests
+ * written in the same order in both logs are read in one pass. LogWriter writes a log file per thread, so the trace
+ * of a thread of the original is compared with the trace of the thread of the same name of the sosie, and the
+ * reports of the threads of a test are merged.
+ *
  * Created by Simon on 18/04/14.
  */
 public class CompareAllStackTrace {
-    protected List<StackTrace> originalStackTraces;
-    protected List<StackTrace> sosieStackTraces;
+    //suffix _time_process_threadId of the name of a log file
+    protected static final Pattern LOG_SUFFIX = Pattern.compile("(.*)_\\d+_[^_]+_\\d+");
+
+    protected String originalDir;
+    protected String sosieDir;
     protected boolean partialTrace;
 
+    protected Map<Integer, String> originalIdMap;
+    protected Map<Integer, String> sosieIdMap;
+
+    //log file of the sosie and rank in this file of each test, by test and thread
+    protected Map<String, File> sosieTestFiles;
+    protected Map<String, Integer> sosieTestRanks;
+    protected Map<File, SosieLog> sosieLogs;
+
     protected Report reports;
 
-    public CompareAllStackTrace(List<StackTrace> originalStackTraces, List<StackTrace> sosieStackTraces, boolean partialTrace) throws IOException, JSONException {
-        this.originalStackTraces = originalStackTraces;
-        this.sosieStackTraces = sosieStackTraces;
+    public CompareAllStackTrace(String originalDir, String sosieDir, boolean partialTrace) throws IOException, JSONException {
+        this.originalDir = originalDir;
+        this.sosieDir = sosieDir;
         this.partialTrace = partialTrace;
         this.reports = new Report();
     }
@@ -32,31 +57,143 @@ public class CompareAllStackTrace {
      * @throws IOException
      */
     public void findDiff() throws Exception {
-        for (StackTrace original : originalStackTraces) {
-            for (StackTrace sosie : sosieStackTraces) {
-                if (sosie.getFullName().equals(original.getFullName())) {
-                    Log.debug("compare: {}", sosie.toString());
+        StackElementReader reader = new StackElementReader();
+        originalIdMap = reader.loadInfoIdMap(originalDir);
+        sosieIdMap = reader.loadInfoIdMap(sosieDir);
+        indexSosieTests();
+        sosieLogs = new HashMap<>();
+        try {
+            for (File file : new LogDirectory(originalDir, "log").getLogFiles()) {
+                Log.debug("parse file: {}", file.getAbsoluteFile());
+                String thread = threadName(file);
+                try (LogScanner log = new LogScanner(file)) {
+                    while (log.next()) {
+                        if (log.fieldEquals(0, KeyWord.testStartObservation)) {
+                            compareTest(log.from(1), thread, log);
+                        }
+                    }
+                }
+            }
+        } finally {
+            for (SosieLog sosieLog : sosieLogs.values()) {
+                sosieLog.close();
+            }
+        }
+    }
 
-                    AbstractCompareStackTrace cls = new CompareStackTrace(original, sosie);
+    /**
+     * Compares the trace of a test in a thread, original is on its test start record
+     */
+    protected void compareTest(String test, String thread, LogScanner original) throws IOException {
+        StackTraceStream originalTrace = StackTraceStream.of(original, originalIdMap);
+        String key = traceKey(test, thread);
+        File sosieFile = sosieTestFiles.get(key);
+        if (sosieFile != null) {
+            SosieLog sosieLog = sosieLogs.get(sosieFile);
+            if (sosieLog == null) {
+                sosieLog = new SosieLog(sosieFile);
+                sosieLogs.put(sosieFile, sosieLog);
+            }
+            Log.debug("compare: {} in {}", test, thread);
+            StackTraceStream sosieTrace = StackTraceStream.of(sosieLog.moveTo(sosieTestRanks.get(key)), sosieIdMap);
+
+            StreamingCompareStackTrace cls = new StreamingCompareStackTrace(originalTrace, sosieTrace);
+            cls.findDiff();
+            TestReport testReport = cls.getTestReport();
+            TestReport threadsReport = reports.getTestReport(test);
+            if (threadsReport == null) {
+                reports.putTestReport(test, testReport);
+            } else {
+                //the threads of a test run different code: a variable of one thread only is not a diff
+                threadsReport.merge(testReport, false);
+            }
+        }
+        //the original log goes to the end of the test
+        while (originalTrace.next() != null) {}
+    }
 
-                    cls.findDiff();
-                    TestReport testReport = cls.getTestReport();
-                    reports.putTestReport(original.getName(), testReport);
+    /**
+     * Finds the log file of each test and thread of the sosie, a test logged twice in a thread is compared with
+     * its first trace
+     */
+    protected void indexSosieTests() throws IOException {
+        sosieTestFiles = new HashMap<>();
+        sosieTestRanks = new HashMap<>();
+        for (File file : new LogDirectory(sosieDir, "log").getLogFiles()) {
+            String thread = threadName(file);
+            int rank = 0;
+            try (LogScanner log = new LogScanner(file)) {
+                while (log.next()) {
+                    if (log.fieldEquals(0, KeyWord.testStartObservation)) {
+                        String key = traceKey(log.from(1), thread);
+                        if (!sosieTestFiles.containsKey(key)) {
+                            sosieTestFiles.put(key, file);
+                            sosieTestRanks.put(key, rank);
+                        }
+                        rank++;
+                    }
                 }
             }
         }
     }
 
+    /**
+     * The name of the thread of a log file, without the time, the process and the id of the thread that differ
+     * from a run to another
+     */
+    protected static String threadName(File logFile) {
+        String name = logFile.getName().substring("log".length());
+        Matcher matcher = LOG_SUFFIX.matcher(name);
+        return matcher.matches() ? matcher.group(1) : name;
+    }
 
-    protected List<StackTrace> loadLog(String dir, boolean recursive) throws IOException {
-        return new StackElementReader().loadLog(dir, recursive);
+    protected static String traceKey(String test, String thread) {
+        return test + KeyWord.simpleSeparator + thread;
     }
 
     public Report getReport() throws JSONException {
         return reports;
     }
 
-    public void setSosieStackTraces(List<StackTrace> sosieStackTraces) {
-        this.sosieStackTraces = sosieStackTraces;
+    public void setSosieDir(String sosieDir) {
+        this.sosieDir = sosieDir;
+    }
+
+    /**
+     * Scanner of a log file of the sosie, reopened when a test before the current one is asked
+     */
+    protected static class SosieLog {
+        protected File file;
+        protected LogScanner scanner;
+        //number of test start records read
+        protected int testCount;
+
+        protected SosieLog(File file) {
+            this.file = file;
+        }
+
+        /**
+         * The scanner on the test start record of the test of this rank
+         */
+        protected LogScanner moveTo(int rank) throws IOException {
+            if (scanner == null || testCount > rank) {
+                close();
+                scanner = new LogScanner(file);
+                testCount = 0;
+            }
+            while (scanner.next()) {
+                if (scanner.fieldEquals(0, KeyWord.testStartObservation) && testCount++ == rank) {
+                    return scanner;
+                }
+            }
+            throw new IOException("test " + rank + " not found in " + file);
+        }
+
+        protected void close() throws IOException {
+            if (scanner != null) {
+                scanner.close();
+                scanner = null;
+            }
+        }
     }
 }
@@ -1,5 +1,6 @@
 package fr.inria.diversify.logger.stack;
 
+import fr.inria.diversify.logger.LogScanner;
 import fr.inria.diversify.logger.logger.KeyWord;
 import fr.inria.diversify.logger.stack.stackTraceOperation.StackTrace;
 import fr.inria.diversify.util.Log;
@@ -50,32 +51,25 @@ public class StackElementReader {
 
 
     protected void parseTestCoverageFile(File file) throws Exception {
-        BufferedReader br = new BufferedReader(new FileReader(file));
         String currentTest = null;
 
-        String logEntry = "";
         List<String> currentTrace = new LinkedList<>();
 
-        String line = br.readLine();
-        while (line != null) {
-            line = br.readLine();
-            logEntry = logEntry + line;
-            if (logEntry.endsWith("$$")) {
-                logEntry = logEntry.substring(0, logEntry.length() - 2);
-                if(logEntry.startsWith(KeyWord.testStartObservation)) {
+        try (LogScanner log = new LogScanner(file)) {
+            while (log.next()) {
+                if(log.fieldEquals(0, KeyWord.testStartObservation)) {
                     if(currentTest != null) {
                         testToExclude.add(currentTest);
                     }
-                    currentTest = logEntry.substring(KeyWord.testStartObservation.length() + 1, logEntry.length());
+                    currentTest = log.from(1);
                 }
-                else if(logEntry.startsWith(KeyWord.testEndObservation)) {
+                else if(log.fieldEquals(0, KeyWord.testEndObservation)) {
                     if(currentTest != null) {
                         addTest(currentTrace, currentTest);
                     }
                 } else {
-                    currentTrace.add(logEntry);
+                    currentTrace.add(log.toString());
                 }
-                logEntry = "";
             }
         }
     }
@@ -112,4 +106,28 @@ public class StackElementReader {
         }
         return map;
     }
+
+    /**
+     * Loads the ID map from the id records (id;id;method) of the info file of a log directory
+     * @param dir Log directory
+     * @return The map, empty without info file
+     */
+    protected Map<Integer,String> loadInfoIdMap(String dir) throws IOException {
+        Map<Integer,String> map = new HashMap<>();
+        File file = new File(dir + "/info");
+        if(!file.exists()) {
+            return map;
+        }
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line = reader.readLine();
+            while (line != null) {
+                String[] tmp = line.split(KeyWord.simpleSeparator, 3);
+                if(tmp.length == 3 && tmp[0].equals("id")) {
+                    map.put(Integer.parseInt(tmp[1]), tmp[2]);
+                }
+                line = reader.readLine();
+            }
+        }
+        return map;
+    }
 }
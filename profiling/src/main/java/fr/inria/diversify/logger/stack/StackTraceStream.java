@@ -0,0 +1,108 @@
+package fr.inria.diversify.logger.stack;
+
+import fr.inria.diversify.logger.LogScanner;
+import fr.inria.diversify.logger.logger.KeyWord;
+import fr.inria.diversify.logger.stack.stackElement.StackTraceElement;
+import fr.inria.diversify.logger.stack.stackTraceOperation.StackTrace;
+import fr.inria.diversify.logger.stack.stackTraceOperation.StackTraceOperation;
+import fr.inria.diversify.logger.stack.stackTraceOperation.StackTracePush;
+import fr.inria.diversify.logger.stack.stackTraceOperation.StackTraceVariableObservation;
+import fr.inria.diversify.util.Log;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * The calls and variable observations of the trace of a test, read one by one: the trace is never held in memory
+ */
+public abstract class StackTraceStream {
+
+    /**
+     * The next call or variable observation, null at the end of the trace
+     */
+    public abstract StackTraceElement next() throws IOException;
+
+    /**
+     * The elements of records of the log
+     */
+    public static StackTraceStream of(final Iterator<String> records, final Map<Integer, String> idMap) {
+        return new StackTraceStream() {
+            public StackTraceElement next() throws IOException {
+                while (records.hasNext()) {
+                    StackTraceElement element = parse(records.next(), idMap);
+                    if (element != null) {
+                        return element;
+                    }
+                }
+                return null;
+            }
+        };
+    }
+
+    /**
+     * The elements of the current test of a log, until its test end record
+     */
+    public static StackTraceStream of(final LogScanner log, final Map<Integer, String> idMap) {
+        return new StackTraceStream() {
+            protected boolean end = false;
+
+            public StackTraceElement next() throws IOException {
+                while (!end && log.next()) {
+                    if (log.fieldEquals(0, KeyWord.testEndObservation)) {
+                        end = true;
+                    } else {
+                        StackTraceElement element = parse(log.toString(), idMap);
+                        if (element != null) {
+                            return element;
+                        }
+                    }
+                }
+                end = true;
+                return null;
+            }
+        };
+    }
+
+    /**
+     * The elements of a parsed trace
+     */
+    public static StackTraceStream of(StackTrace stackTrace) {
+        final Iterator<StackTraceOperation> operations = stackTrace.getStackTraceOperations().iterator();
+        return new StackTraceStream() {
+            public StackTraceElement next() {
+                while (operations.hasNext()) {
+                    StackTraceOperation operation = operations.next();
+                    if (operation instanceof StackTracePush) {
+                        return ((StackTracePush) operation).getElem();
+                    }
+                    if (operation instanceof StackTraceVariableObservation) {
+                        return ((StackTraceVariableObservation) operation).getVars();
+                    }
+                }
+                return null;
+            }
+        };
+    }
+
+    /**
+     * The call or variable observation of a record, null for the other records
+     *
+     * @throws IOException if a call or variable observation record is invalid
+     */
+    protected static StackTraceElement parse(String record, Map<Integer, String> idMap) throws IOException {
+        if (!record.startsWith(KeyWord.methodCallObservation + KeyWord.simpleSeparator)
+                && !record.startsWith(KeyWord.variableObservation + KeyWord.simpleSeparator)) {
+            return null;
+        }
+        if (record.length() >= 1000000) {
+            Log.warn("error too big operation");
+            return null;
+        }
+        try {
+            return StackTrace.parseLine(record, idMap);
+        } catch (RuntimeException e) {
+            throw new IOException("invalid trace record: " + record.substring(0, Math.min(record.length(), 100)), e);
+        }
+    }
+}
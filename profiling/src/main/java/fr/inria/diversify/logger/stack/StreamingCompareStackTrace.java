@@ -0,0 +1,275 @@
+package fr.inria.diversify.logger.stack;
+
+import fr.inria.diversify.logger.stack.diff.TestReport;
+import fr.inria.diversify.logger.stack.stackElement.StackTraceCall;
+import fr.inria.diversify.logger.stack.stackElement.StackTraceElement;
+import fr.inria.diversify.logger.stack.stackElement.StackTraceVariable;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Compares the traces of a test of the original and of the sosie while they are read.
+ *
+ * The calls are compared in lockstep. At a divergence, the next calls of both traces (a window of windowSize calls)
+ * are searched for the nearest anchor: anchorSize calls of the same methods at the same depths, found with rolling
+ * hashes of the calls. The calls before the anchor are different calls; without anchor, all the calls of the windows
+ * are. Only the windows, the call stacks and the values of the variables are in memory, and each call is hashed
+ * once by divergence, so the time is linear in the length of the traces.
+ */
+public class StreamingCompareStackTrace {
+    protected static final long BASE = 1000003;
+
+    protected TraceCursor original;
+    protected TraceCursor sosie;
+    protected int windowSize;
+    protected int anchorSize;
+    protected TestReport testReport;
+
+    public StreamingCompareStackTrace(StackTraceStream original, StackTraceStream sosie) {
+        this(original, sosie, 1000, 3);
+    }
+
+    public StreamingCompareStackTrace(StackTraceStream original, StackTraceStream sosie, int windowSize, int anchorSize) {
+        this.original = new TraceCursor(original);
+        this.sosie = new TraceCursor(sosie);
+        this.windowSize = windowSize;
+        this.anchorSize = anchorSize;
+        testReport = new TestReport();
+    }
+
+    public List<String> findDiff() throws IOException {
+        List<String> diffs = new LinkedList<>();
+
+        while (original.hasNext() && sosie.hasNext()) {
+            boolean callStep = false;
+            if (original.nextIsVar() || sosie.nextIsVar()) {
+                if (original.nextIsVar()) {
+                    original.next();
+                }
+                if (sosie.nextIsVar()) {
+                    sosie.next();
+                }
+            } else {
+                callStep = true;
+                original.next();
+                sosie.next();
+            }
+
+            StackTraceCall top1 = original.getTop();
+            StackTraceCall top2 = sosie.getTop();
+
+            if (top1.equals(top2)) {
+                testReport.addSameMethodCall(top1);
+                if (original.variablesValueChange || sosie.variablesValueChange) {
+                    diffs.addAll(varDiff());
+                }
+            } else {
+                testReport.addDiffMethodCall(top1);
+                testReport.addDiffMethodCall(top2);
+                //the traces are resynchronized after the divergent calls
+                if (callStep) {
+                    resynchronize();
+                }
+            }
+        }
+        return diffs;
+    }
+
+    /**
+     * Skips the calls of both traces before the nearest anchor
+     */
+    protected void resynchronize() throws IOException {
+        List<StackTraceCall> calls1 = original.nextCalls(windowSize + anchorSize - 1);
+        List<StackTraceCall> calls2 = sosie.nextCalls(windowSize + anchorSize - 1);
+        if (calls1.size() < anchorSize || calls2.size() < anchorSize) {
+            return;
+        }
+        long[] hashes1 = anchorHashes(calls1);
+        long[] hashes2 = anchorHashes(calls2);
+
+        //first position of each anchor in the sosie window
+        Map<Long, Integer> positions2 = new HashMap<>(2 * hashes2.length);
+        for (int j = hashes2.length - 1; j >= 0; j--) {
+            positions2.put(hashes2[j], j);
+        }
+        int skip1 = -1;
+        int skip2 = -1;
+        for (int i = 0; i < hashes1.length && (skip1 < 0 || i < skip1 + skip2); i++) {
+            Integer j = positions2.get(hashes1[i]);
+            if (j != null && (skip1 < 0 || i + j < skip1 + skip2) && sameCalls(calls1, i, calls2, j)) {
+                skip1 = i;
+                skip2 = j;
+            }
+        }
+        if (skip1 < 0) {
+            skip1 = Math.min(windowSize, calls1.size());
+            skip2 = Math.min(windowSize, calls2.size());
+        }
+        original.skip(skip1, testReport);
+        sosie.skip(skip2, testReport);
+    }
+
+    /**
+     * Rolling hashes of the anchors of a window: hash i is the hash of the calls i to i + anchorSize - 1
+     */
+    protected long[] anchorHashes(List<StackTraceCall> calls) {
+        long[] hashes = new long[calls.size() - anchorSize + 1];
+        long power = 1;
+        for (int k = 1; k < anchorSize; k++) {
+            power *= BASE;
+        }
+        long hash = 0;
+        for (int k = 0; k < calls.size(); k++) {
+            if (k >= anchorSize) {
+                hash -= power * callHash(calls.get(k - anchorSize));
+            }
+            hash = hash * BASE + callHash(calls.get(k));
+            if (k >= anchorSize - 1) {
+                hashes[k - anchorSize + 1] = hash;
+            }
+        }
+        return hashes;
+    }
+
+    protected long callHash(StackTraceCall call) {
+        return 31L * call.getId() + call.getOriginalDeep() + 1;
+    }
+
+    protected boolean sameCalls(List<StackTraceCall> calls1, int from1, List<StackTraceCall> calls2, int from2) {
+        for (int k = 0; k < anchorSize; k++) {
+            StackTraceCall call1 = calls1.get(from1 + k);
+            StackTraceCall call2 = calls2.get(from2 + k);
+            if (!call1.equals(call2) || call1.getOriginalDeep() != call2.getOriginalDeep()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    protected Set<String> varDiff() {
+        Set<String> diff = new HashSet<>();
+        Map<String, Object> v1 = original.variables;
+        Map<String, Object> v2 = sosie.variables;
+        String className = original.getTop().getClassName();
+
+        for (String key : v1.keySet()) {
+            Object value2 = v2.get(key);
+            if (value2 == null || !v1.get(key).equals(value2)) {
+                diff.add(className + ":" + key);
+            }
+        }
+        for (String key : v2.keySet()) {
+            Object value1 = v1.get(key);
+            if (value1 == null || !v2.get(key).equals(value1)) {
+                diff.add(className + ":" + key);
+            }
+        }
+
+        testReport.updateVar(v1, original.getTop());
+        testReport.updateVarDiff(diff);
+        return diff;
+    }
+
+    public TestReport getTestReport() {
+        return testReport;
+    }
+
+    /**
+     * Position in a trace: the elements read ahead, the call stack and the values of the variables
+     */
+    protected static class TraceCursor {
+        protected StackTraceStream stream;
+        protected ArrayDeque<StackTraceElement> pending = new ArrayDeque<>();
+        protected int pendingCalls = 0;
+        protected boolean end = false;
+        protected ArrayDeque<StackTraceCall> calls = new ArrayDeque<>();
+        protected Map<String, Object> variables = new HashMap<>();
+        protected boolean variablesValueChange;
+        protected StackTraceCall emptyCall;
+
+        protected TraceCursor(StackTraceStream stream) {
+            this.stream = stream;
+        }
+
+        protected boolean read() throws IOException {
+            if (end) {
+                return false;
+            }
+            StackTraceElement element = stream.next();
+            if (element == null) {
+                end = true;
+                return false;
+            }
+            pending.addLast(element);
+            if (element instanceof StackTraceCall) {
+                pendingCalls++;
+            }
+            return true;
+        }
+
+        protected boolean hasNext() throws IOException {
+            return !pending.isEmpty() || read();
+        }
+
+        protected boolean nextIsVar() {
+            return pending.peekFirst() instanceof StackTraceVariable;
+        }
+
+        protected void next() {
+            StackTraceElement element = pending.pollFirst();
+            variablesValueChange = false;
+            if (element instanceof StackTraceCall) {
+                pendingCalls--;
+                StackTraceCall call = (StackTraceCall) element;
+                while (!calls.isEmpty() && calls.peek().getOriginalDeep() >= call.getOriginalDeep()) {
+                    calls.pop();
+                }
+                calls.push(call);
+            } else {
+                variablesValueChange = true;
+                variables.putAll(((StackTraceVariable) element).getVariables());
+            }
+        }
+
+        /**
+         * The next count calls, or less at the end of the trace
+         */
+        protected List<StackTraceCall> nextCalls(int count) throws IOException {
+            while (pendingCalls < count && read()) {}
+            List<StackTraceCall> nextCalls = new ArrayList<>(Math.min(count, pendingCalls));
+            for (StackTraceElement element : pending) {
+                if (nextCalls.size() == count) {
+                    break;
+                }
+                if (element instanceof StackTraceCall) {
+                    nextCalls.add((StackTraceCall) element);
+                }
+            }
+            return nextCalls;
+        }
+
+        /**
+         * Applies the elements of the next count calls, the calls are different calls
+         */
+        protected void skip(int count, TestReport testReport) throws IOException {
+            while (count > 0 && hasNext()) {
+                if (!nextIsVar()) {
+                    testReport.addDiffMethodCall((StackTraceCall) pending.peekFirst());
+                    count--;
+                }
+                next();
+            }
+        }
+
+        protected StackTraceCall getTop() {
+            if (calls.isEmpty()) {
+                if (emptyCall == null) {
+                    emptyCall = new StackTraceCall(0, 0, new HashMap<Integer, String>());
+                }
+                return emptyCall;
+            }
+            return calls.peek();
+        }
+    }
+}
@@ -96,17 +96,9 @@ public class StackTrace {
         stackTraceCalls.clear();
     }
     protected void addElement(String line, Map<Integer,String> idMap) {
-        String[] split = line.split(";");
-        String type = split[0];
-        int i = line.indexOf(";".charAt(0), 0);
-        Integer deep = Integer.parseInt(split[1]);
-        i = line.indexOf(";".charAt(0),i);
-        Integer methodId = Integer.parseInt(split[2]);
-        i = line.indexOf(";".charAt(0),i);
-
-        StackTraceElement elem = parseElement(type, deep, methodId,  line.substring(i + 1, line.length()), idMap);
+        StackTraceElement elem = parseLine(line, idMap);
         if (elem instanceof StackTraceCall) {
-            addCall((StackTraceCall) elem, deep);
+            addCall((StackTraceCall) elem, elem.getOriginalDeep());
         }
         else {
             try {
@@ -146,7 +138,22 @@ public class StackTrace {
         getStackTraceOperations().add(new StackTracePush(elem));
     }
 
-    protected StackTraceElement parseElement(String type, int deep, int methodId, String info, Map<Integer,String> idMap) {
+    /**
+     * Parses a record of the log: a call, a variable observation, a throw or a catch
+     */
+    public static StackTraceElement parseLine(String line, Map<Integer,String> idMap) {
+        String[] split = line.split(";");
+        String type = split[0];
+        int i = line.indexOf(";".charAt(0), 0);
+        Integer deep = Integer.parseInt(split[1]);
+        i = line.indexOf(";".charAt(0),i);
+        Integer methodId = Integer.parseInt(split[2]);
+        i = line.indexOf(";".charAt(0),i);
+
+        return parseElement(type, deep, methodId,  line.substring(i + 1, line.length()), idMap);
+    }
+
+    protected static StackTraceElement parseElement(String type, int deep, int methodId, String info, Map<Integer,String> idMap) {
         StackTraceElement st = null;
         if(type.equals(KeyWord.methodCallObservation))
             st = new StackTraceCall(methodId, deep, idMap);
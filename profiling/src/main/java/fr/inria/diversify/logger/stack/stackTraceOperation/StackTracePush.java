@@ -24,4 +24,8 @@ public class StackTracePush implements StackTraceOperation {
         stackTrace.deep--;
         stackTrace.stackTraceCalls.pop();
     }
+
+    public StackTraceCall getElem() {
+        return elem;
+    }
 }
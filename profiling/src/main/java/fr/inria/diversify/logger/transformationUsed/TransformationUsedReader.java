@@ -1,11 +1,10 @@
 package fr.inria.diversify.logger.transformationUsed;
 
 
+import fr.inria.diversify.logger.LogScanner;
 import fr.inria.diversify.logger.logger.KeyWord;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.*;
 
@@ -37,53 +36,41 @@ public class TransformationUsedReader {
     }
 
     protected void parseFile(File file) throws IOException {
-        BufferedReader br = new BufferedReader(new FileReader(file));
         String currentTest = null;
         methodDeep = new HashMap<>();
 
-        String line = br.readLine();
-        String logEntry = "";
-        while (line != null) {
-            line = br.readLine();
-            logEntry = logEntry + line;
-            if (logEntry.endsWith("$$")) {
-                logEntry = logEntry.substring(0, logEntry.length() - 2);
-                String[] split = logEntry.split(";");
-                switch (split[0]) {
+        try (LogScanner log = new LogScanner(file)) {
+            while (log.next()) {
+                switch (log.keyWord()) {
                     case KeyWord.testStartObservation:
-                        currentTest = split[1];
+                        currentTest = log.symbol(1);
                         break;
                     case KeyWord.testEndObservation:
                         currentTest = null;
                         break;
                     case KeyWord.methodCallObservation:
-                        addMethodCall(logEntry);
+                        addMethodCall(log);
                        // methodsCall.add(logEntry);
                         break;
                     case KeyWord.logTransformation:
-                        addBranch(currentTest, logEntry);
+                        addBranch(currentTest, log);
                         break;
                     default:
                         break;
                 }
-                logEntry = "";
             }
         }
 
     }
 
-    protected void addMethodCall(String logEntry) {
-        String[] tmp = logEntry.split(";");
-        Integer deep = Integer.parseInt(tmp[1]);
-        methodDeep.put(deep, tmp[2]);
+    protected void addMethodCall(LogScanner log) {
+        methodDeep.put(log.intField(1), log.symbol(2));
     }
 
-    protected void addBranch(String currentTest, String logEntry) {
+    protected void addBranch(String currentTest, LogScanner log) {
         if(!branchesUsedByTest.containsKey(currentTest)) {
             branchesUsedByTest.put(currentTest, new HashSet<>());
         }
-        String[] tmp = logEntry.split(";");
-        Integer deep = Integer.parseInt(tmp[1]);
-        branchesUsedByTest.get(currentTest).add(methodDeep.get(deep) + "." + tmp[2]);
+        branchesUsedByTest.get(currentTest).add(methodDeep.get(log.intField(1)) + "." + log.symbol(2));
     }
 }
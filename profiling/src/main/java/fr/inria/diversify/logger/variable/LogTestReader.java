@@ -1,5 +1,7 @@
 package fr.inria.diversify.logger.variable;
 
+import fr.inria.diversify.logger.LogDirectory;
+import fr.inria.diversify.logger.LogScanner;
 import fr.inria.diversify.logger.Pool;
 import fr.inria.diversify.logger.logger.KeyWord;
 import fr.inria.diversify.util.Log;
@@ -9,12 +11,12 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created by Simon on 15/01/15.
  */
 public class LogTestReader {
-    Set<String> testToExclude;
     Map<String, Test> traceByTest;
 //    private Map<String, String[]> previousVars;
 //    private Map<String, Object[]> previousValues;
@@ -26,27 +28,24 @@ public class LogTestReader {
         loadIdMap(dir + "/info");
 
         Log.debug("load trace in directory: {}", file.getAbsolutePath());
-        for (File f : file.listFiles()) {
-            if (f.isFile() && f.getName().startsWith("logmain")) {
-                try {
-                    Log.debug("parse file: {}", f.getAbsoluteFile());
-                    splitByTest(f);
-                } catch (Exception e) {
-                    Log.debug("error for: {}", f.getAbsoluteFile());
-                    e.printStackTrace();
-                }
+        reset();
+        new LogDirectory(dir, "logmain").parse(f -> {
+            try {
+                Log.debug("parse file: {}", f.getAbsoluteFile());
+                splitByTest(f);
+            } catch (Exception e) {
+                Log.debug("error for: {}", f.getAbsoluteFile());
+                e.printStackTrace();
             }
-
-        }
+        });
         Log.debug("number of test: {}", traceByTest.size());
         return traceByTest.values();
     }
 
-    protected SingleMonitoringPoint parseMonitoringPoint(String assertLog) {
-        String[] split = assertLog.split(";");
-        String methodId = idMap.get(split[2]);
+    protected SingleMonitoringPoint parseMonitoringPoint(LogScanner log) {
+        String methodId = idMap.get(log.symbol(2));
 
-        String[] vv = split[3].split(KeyWord.separator);
+        String[] vv = log.field(3).split(KeyWord.separator);
 
         String var = idMap.get(vv[0]);
         Object value;
@@ -105,74 +104,68 @@ public class LogTestReader {
         return Pool.get(value);
     }
 
+    /**
+     * Parses the tests of a log file and merges them in traceByTest, except the tests that do not end
+     * in this file
+     */
     protected void splitByTest(File file) throws Exception {
-        reset();
+        Map<String, Test> fileTraceByTest = new HashMap<>();
+        Set<String> testToExclude = new HashSet<>();
         List<SingleMonitoringPoint> monitoringPoint = new LinkedList();
         String currentTest = null;
-        BufferedReader reader = new BufferedReader(new FileReader(file));
-
-        reader.readLine();
-        String line = "";
-        String logEntry = "";
-        try {
-
-            while (line != null) {
-                line = reader.readLine();
-                logEntry = logEntry + line;
-
-                if (logEntry.endsWith("$$")) {
-                    logEntry = logEntry.substring(0, logEntry.length() - 2);
-                    String[] split = logEntry.split(";");
-                    switch (split[0]) {
-                        case KeyWord.testStartObservation :
-                            if (currentTest != null) {
-                                testToExclude.add(currentTest);
-                            }
-                            monitoringPoint = new LinkedList<>();
-                            currentTest = parseTestName(logEntry);
-                            break;
-                        case KeyWord.testEndObservation :
-                            if(currentTest != null) {
-                                addTest(currentTest, monitoringPoint);
-                                currentTest = null;
-                            }
-                            break;
-                        case KeyWord.variableObservation :
-                            SingleMonitoringPoint point = parseMonitoringPoint(logEntry);
-                            SingleMonitoringPoint previous = monitoringPoint.stream()
-                                    .filter(p -> p.getId() == point.getId())
-                                    .findFirst()
-                                    .orElse(null);
-                            if(previous != null) {
-                                previous.addAllValue(point.getValues());
-                            } else {
-                                monitoringPoint.add(point);
-                            }
-                            break;
-                        default:
-                            break;
-                    }
-                    logEntry = "";
+        try (LogScanner log = new LogScanner(file)) {
+            while (log.next()) {
+                switch (log.keyWord()) {
+                    case KeyWord.testStartObservation :
+                        if (currentTest != null) {
+                            testToExclude.add(currentTest);
+                        }
+                        monitoringPoint = new LinkedList<>();
+                        currentTest = log.from(1);
+                        break;
+                    case KeyWord.testEndObservation :
+                        if(currentTest != null) {
+                            addTest(fileTraceByTest, currentTest, monitoringPoint);
+                            currentTest = null;
+                        }
+                        break;
+                    case KeyWord.variableObservation :
+                        SingleMonitoringPoint point = parseMonitoringPoint(log);
+                        SingleMonitoringPoint previous = monitoringPoint.stream()
+                                .filter(p -> p.getId() == point.getId())
+                                .findFirst()
+                                .orElse(null);
+                        if(previous != null) {
+                            previous.addAllValue(point.getValues());
+                        } else {
+                            monitoringPoint.add(point);
+                        }
+                        break;
+                    default:
+                        break;
                 }
             }
         } catch (Exception e) {
             e.printStackTrace();
         }
         for(String test: testToExclude)
-            traceByTest.remove(test);
+            fileTraceByTest.remove(test);
+
+        for(Test test : fileTraceByTest.values()) {
+            traceByTest.merge(test.getSignature(), test, (find, other) -> {
+                find.addAllMonitoringPoint(other.monitoringPoints);
+                return find;
+            });
+        }
     }
 
-    protected void addTest(String testName, List<SingleMonitoringPoint> assertLogs) {
+    protected void addTest(Map<String, Test> traceByTest, String testName, List<SingleMonitoringPoint> assertLogs) {
         if(!traceByTest.containsKey(testName)) {
             traceByTest.put(testName, new Test(testName));
         }
         traceByTest.get(testName).addAllMonitoringPoint(assertLogs);
     }
 
-    protected String parseTestName(String logEntry) {
-        return logEntry.substring(3, logEntry.length());
-    }
-
     /**
      * Loads the ID map from file
      * @param file File to load the ID map from
@@ -199,7 +192,6 @@ public class LogTestReader {
     protected void reset() {
 //        previousValues = new HashMap<>();
 //        previousVars = new HashMap<>();
-        traceByTest = new HashMap();
-        testToExclude = new HashSet();
+        traceByTest = new ConcurrentHashMap<>();
     }
 }
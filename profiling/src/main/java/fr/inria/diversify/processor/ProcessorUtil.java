@@ -3,6 +3,7 @@ package fr.inria.diversify.processor;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -14,6 +15,7 @@ import java.util.List;
 public class ProcessorUtil {
     protected static List<String> ids = new LinkedList<>();
     protected static List<String> otherInfo = new LinkedList<>();
+    protected static List<String> branchIds = new ArrayList<>();
 
 
     public static int idFor(String key) {
@@ -24,6 +26,13 @@ public class ProcessorUtil {
     }
 
 
+    /**
+     * Global id of a branch of a method, for the instrumentation with int ids
+     */
+    public static int branchIdFor(int methodId, String branch) {
+        branchIds.add(methodId + ";" + branch);
+        return branchIds.size() - 1;
+    }
 
     public static void writeInfoFile(String dir) throws IOException {
         File file = new File(dir + "/log");
@@ -34,6 +43,10 @@ public class ProcessorUtil {
             fw.append("id;" + i + ";" + ids.get(i) + "\n");
         }
 
+        for(int i = 0; i < branchIds.size(); i++) {
+            fw.append("branch;" + i + ";" + branchIds.get(i) + "\n");
+        }
+
         for(String s : otherInfo) {
             fw.append(s + "\n");
         }
@@ -25,6 +25,8 @@ public class BranchCoverageProcessor extends AbstractLoggingInstrumenter<CtExecu
     List<String> methodsId;
     Map<Integer, Integer> blockIds;
     boolean addBodyBranch;
+    //the logger calls take int ids instead of string literals
+    boolean intId = false;
 
 
     public BranchCoverageProcessor(InputProgram inputProgram, String outputDir, boolean addBodyBranch) throws IOException {
@@ -50,7 +52,7 @@ public class BranchCoverageProcessor extends AbstractLoggingInstrumenter<CtExecu
 
 
         if(addBodyBranch) {
-            addBranchLogger(tryFinallyBody(method).getBody(),"b");
+            addBranchLogger(tryFinallyBody(method).getBody(), methodId, "b");
             info += ";b";
         }
 
@@ -64,7 +66,7 @@ public class BranchCoverageProcessor extends AbstractLoggingInstrumenter<CtExecu
                 block.addStatement(stmt);
                 ctIf.setThenStatement(block);
             }
-            addBranchLogger(ctIf.getThenStatement(),"t" + branchId);
+            addBranchLogger(ctIf.getThenStatement(), methodId, "t" + branchId);
             info += ";t" + branchId;
             if (ctIf.getElseStatement() == null) {
                 CtBlock block = getFactory().Core().createBlock();
@@ -79,14 +81,14 @@ public class BranchCoverageProcessor extends AbstractLoggingInstrumenter<CtExecu
                     ctIf.setElseStatement(block);
                 }
             }
-            addBranchLogger(ctIf.getElseStatement(), "e" + branchId);
+            addBranchLogger(ctIf.getElseStatement(), methodId, "e" + branchId);
             info += ";e" + branchId;
         }
 
         for(Object object : Query.getElements(tryFinallyBody(method), new TypeFilter(CtCase.class))) {
             CtCase ctCase = (CtCase) object;
             int branchId = idBranch(methodId);
-            addBranchLogger(ctCase, "s" + branchId);
+            addBranchLogger(ctCase, methodId, "s" + branchId);
             info += ";s" + branchId;
         }
 
@@ -104,7 +106,7 @@ public class BranchCoverageProcessor extends AbstractLoggingInstrumenter<CtExecu
                 ctLoop.setBody(block);
             }
             int branchId = idBranch(methodId);
-            addBranchLogger((CtBlock) ctLoop.getBody(), "l" + branchId);
+            addBranchLogger((CtBlock) ctLoop.getBody(), methodId, "l" + branchId);
             info += ";l" + branchId;
         }
         for(Object object : Query.getElements(tryFinallyBody(method), new TypeFilter(CtCatch.class))) {
@@ -117,7 +119,7 @@ public class BranchCoverageProcessor extends AbstractLoggingInstrumenter<CtExecu
                 ctCatch.setBody(block);
             }
             int branchId = idBranch(methodId);
-            addBranchLogger((CtBlock)ctCatch.getBody(), "c" +branchId );
+            addBranchLogger((CtBlock)ctCatch.getBody(), methodId, "c" + branchId);
             info += ";c" + branchId;
         }
 
@@ -125,8 +127,8 @@ public class BranchCoverageProcessor extends AbstractLoggingInstrumenter<CtExecu
         ProcessorUtil.addInfo(info);
     }
 
-    protected void addBranchLogger(CtStatementList stmts, String idBranch) {
-        String snippet = getLogger() + ".branch(Thread.currentThread(),\"" + idBranch + "\")";
+    protected void addBranchLogger(CtStatementList stmts, int methodId, String idBranch) {
+        String snippet = branchSnippet(methodId, idBranch);
 
         CtCodeSnippetStatement beginStmt = getFactory().Core().createCodeSnippetStatement();
         beginStmt.setValue(snippet);
@@ -138,32 +140,55 @@ public class BranchCoverageProcessor extends AbstractLoggingInstrumenter<CtExecu
         }
     }
 
-    protected void addBranchLogger(CtBlock block, String idBranch) {
-        String snippet = getLogger() + ".branch(Thread.currentThread(),\"" + idBranch + "\")";
+    protected void addBranchLogger(CtBlock block, int methodId, String idBranch) {
+        String snippet = branchSnippet(methodId, idBranch);
 
         CtCodeSnippetStatement beginStmt = getFactory().Core().createCodeSnippetStatement();
         beginStmt.setValue(snippet);
         block.insertBegin(beginStmt);
     }
 
+    protected String branchSnippet(int methodId, String idBranch) {
+        if(intId) {
+            return getLogger() + ".branch(" + ProcessorUtil.branchIdFor(methodId, idBranch) + ")";
+        }
+        return getLogger() + ".branch(Thread.currentThread(),\"" + idBranch + "\")";
+    }
+
     protected void addInOut(CtExecutable method, int id) {
         CtTry ctTry = tryFinallyBody(method);
         Factory factory = method.getFactory();
 
-        String snippet = getLogger() + ".methodIn(Thread.currentThread(),\"" + id + "\")";
+        String snippet;
+        if(intId) {
+            snippet = getLogger() + ".methodIn(" + id + ")";
+        } else {
+            snippet = getLogger() + ".methodIn(Thread.currentThread(),\"" + id + "\")";
+        }
         CtCodeSnippetStatement beginStmt = factory.Code().createCodeSnippetStatement(snippet);
 
         ctTry.getBody().insertBegin(beginStmt);
 
 
         CtCodeSnippetStatement stmt = factory.Core().createCodeSnippetStatement();
-        stmt.setValue(getLogger() + ".methodOut(Thread.currentThread(),\"" + id + "\")");
+        if(intId) {
+            stmt.setValue(getLogger() + ".methodOut(" + id + ")");
+        } else {
+            stmt.setValue(getLogger() + ".methodOut(Thread.currentThread(),\"" + id + "\")");
+        }
 
         ctTry.getFinalizer().addStatement(stmt);
     }
 
 
 
+    /**
+     * Instrumentation with int ids: the branches have a global id, written in the info file
+     */
+    public void setIntId(boolean intId) {
+        this.intId = intId;
+    }
+
     protected int idBranch(int methodId) {
         if(!blockIds.containsKey(methodId)) {
             blockIds.put(methodId, 0);
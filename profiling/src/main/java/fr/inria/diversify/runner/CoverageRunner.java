@@ -1,23 +1,16 @@
 package fr.inria.diversify.runner;
 
-import fr.inria.diversify.info.BranchInfo;
 import fr.inria.diversify.info.CoverageInfo;
 
 import fr.inria.diversify.statistic.SinglePointSessionResults;
 import fr.inria.diversify.transformation.Transformation;
 import fr.inria.diversify.transformation.exception.ApplyTransformationException;
 import fr.inria.diversify.transformation.exception.BuildTransplantException;
-import fr.inria.diversify.util.FileUtils;
 import fr.inria.diversify.util.InitUtils;
 import fr.inria.diversify.util.Log;
-import spoon.reflect.cu.SourcePosition;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
 
 /**
  * User: Simon
@@ -25,8 +18,6 @@ import java.util.stream.Collectors;
  * Time: 10:33
  */
 public class CoverageRunner extends SinglePointRunner {
-    protected CoverageInfo coverageInfo;
-    protected BranchInfo branchInfo;
 
     public CoverageRunner(InputConfiguration inputConfiguration, String projectDir, String srcDir) {
         super(inputConfiguration, projectDir, srcDir);
@@ -37,19 +28,18 @@ public class CoverageRunner extends SinglePointRunner {
     public String init(String dirProject, String dirTarget) throws IOException, InterruptedException {
         super.init(dirProject, dirTarget);
 
-        coverageInfo = new CoverageInfo(inputConfiguration.getInputProgram());
+        String indexFile = inputConfiguration.getProperty("test.impact.index");
         try {
             File dir = new File(dirTarget + "/tmp_branch_" + System.currentTimeMillis());
-            coverageInfo.init(dir.getAbsolutePath());
-            FileUtils.forceDelete(dir);
+            testImpactIndex = CoverageInfo.testImpactIndex(inputConfiguration.getInputProgram(),
+                    indexFile == null ? null : new File(indexFile),
+                    dir.getAbsolutePath());
         } catch (Exception e) {
             Log.error("error in coverageInfo");
         }
-
-        branchInfo = new BranchInfo(inputConfiguration.getInputProgram());
-        branchInfo.intBranch();
         return tmpDir;
     }
+
     protected void run(Transformation trans) throws Exception {
         Log.info("trial {}", trial);
         Log.debug("output dir: " + tmpDir + "/" + sourceDir);
@@ -59,7 +49,7 @@ public class CoverageRunner extends SinglePointRunner {
             applyTransformation(trans);
             try {
                 transformations.add(trans);
-                int status = runTestFor(tmpDir, trans.getPositions());
+                int status = runTest(builder, tmpDir, trans);
 
                 trans.setStatus(status);
                 trans.setFailures(builder.getFailedTests());
@@ -77,39 +67,4 @@ public class CoverageRunner extends SinglePointRunner {
             tryRestore(trans,e);
         } catch (BuildTransplantException e) {}
     }
-
-    protected Integer runTestFor(String directory, List<SourcePosition> sourcePositions) throws InterruptedException {
-        int status;
-        Log.debug("run test in directory: {}", directory);
-        String goals;
-        Set<String> tests = new HashSet<>();
-        for(String test : testsFor(sourcePositions)) {
-            tests.add(test.split("#")[0]);
-        }
-        if(tests.isEmpty()) {
-            goals  = "clean test ";
-        }  else {
-            goals = "clean test -Dtest=" +
-                    tests.stream()
-                        .collect(Collectors.joining(","));
-        }
-
-        builder.setDirectory(directory);
-        builder.runBuilder(new String[]{goals});
-        Log.info("status: " + builder.getStatus() + ", compile error: " + builder.getCompileError() + ", run all test: " + builder.allTestRun() + ", nb error: " + builder.getFailedTests().size());
-        status = builder.getStatus();
-
-        return status;
-
-    }
-    
-    protected Set<String> testsFor(List<SourcePosition> sourcePositions) {
-        return sourcePositions.stream()
-                .map(position -> branchInfo.smallBranchContaining(position))
-                .map(branch -> coverageInfo.getTestForBranch(branch))
-                .filter(tests -> tests != null)
-                .flatMap(tests ->tests.stream())
-                .collect(Collectors.toSet());
-    }
-
 }
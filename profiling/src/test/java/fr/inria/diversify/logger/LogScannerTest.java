@@ -0,0 +1,148 @@
+package fr.inria.diversify.logger;
+
+import fr.inria.diversify.logger.logger.BinaryTraceOutput;
+import fr.inria.diversify.logger.logger.KeyWord;
+import fr.inria.diversify.logger.logger.TextTraceOutput;
+import fr.inria.diversify.logger.logger.TraceOutput;
+import fr.inria.diversify.util.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LogScannerTest {
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("logScanner").toFile();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.forceDelete(dir);
+    }
+
+    @Test
+    public void testBinaryAsText() throws IOException {
+        List<String> text = records(write(new TextTraceOutput(new File(dir, "text"))));
+        List<String> binary = records(write(new BinaryTraceOutput(new File(dir, "binary"))));
+
+        assertTrue(new LogScanner(new File(dir, "binary")).isBinary());
+        assertEquals(text, binary);
+        assertEquals("TS;test1 #2", binary.get(0));
+        assertEquals("M;-1;method #3", binary.get(2));
+    }
+
+    @Test
+    public void testSymbols() throws IOException {
+        File file = new File(dir, "binary");
+        TraceOutput output = new BinaryTraceOutput(file);
+        for (int i = 0; i < 1000; i++) {
+            output.methodCall(i, "method" + (i % 3));
+        }
+        output.close();
+        //one DEFINE record by method
+        assertTrue(file.length() < 1000 * 4);
+
+        try (LogScanner scanner = new LogScanner(file)) {
+            for (int i = 0; i < 1000; i++) {
+                assertTrue(scanner.next());
+                assertEquals(i, scanner.intField(1));
+                assertEquals("method" + (i % 3), scanner.symbol(2));
+            }
+            assertFalse(scanner.next());
+        }
+    }
+
+    @Test
+    public void testTornTail() throws IOException {
+        File file = write(new BinaryTraceOutput(new File(dir, "binary")));
+        List<String> all = records(file);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+
+        //the log of a process killed while writing: the records read are the first records of the log
+        File torn = new File(dir, "torn");
+        for (int length = BinaryTraceOutput.MAGIC.length; length < bytes.length; length++) {
+            Files.write(torn.toPath(), Arrays.copyOf(bytes, length));
+            List<String> records = records(torn);
+            assertTrue(records.size() <= all.size());
+            assertEquals(all.subList(0, records.size()), records);
+        }
+    }
+
+    @Test
+    public void testCorruptedTail() throws IOException {
+        File file = write(new BinaryTraceOutput(new File(dir, "binary")));
+        List<String> all = records(file);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+
+        //unknown tag in place of the close record
+        byte[] unknownTag = Arrays.copyOf(bytes, bytes.length + 3);
+        unknownTag[bytes.length - 1] = 0x7F;
+        File corrupted = new File(dir, "corrupted");
+        Files.write(corrupted.toPath(), unknownTag);
+        assertEquals(all, records(corrupted));
+
+        //method call with an undefined symbol
+        byte[] undefinedSymbol = Arrays.copyOf(bytes, bytes.length + 2);
+        undefinedSymbol[bytes.length - 1] = BinaryTraceOutput.METHOD_CALL;
+        undefinedSymbol[bytes.length] = 0;
+        undefinedSymbol[bytes.length + 1] = 100;
+        Files.write(corrupted.toPath(), undefinedSymbol);
+        assertEquals(all, records(corrupted));
+    }
+
+    /**
+     * Writes the same records in output, with symbols and values that contain separators
+     */
+    private File write(TraceOutput output) throws IOException {
+        output.testStart("test1");
+        output.methodCall(0, "method");
+        output.methodCall(-1, "method");
+        output.path("method", 2, ";1;2");
+        output.methodCall(3, 42);
+        output.path(42, 3, new int[]{5, -6, 7}, 0, 3);
+        output.variables(1, "method", new String[]{"a", "b"}, new String[]{"1", "x;y\nz"}, 2);
+        output.variables(2, "method", new String[]{"c$"}, new String[]{"$$\r\n" + KeyWord.assertObservation + ";$$$"}, 1);
+        output.exception(KeyWord.catchObservation, 1, "method", "2", "java.lang.Exception", "boom");
+        output.exception(KeyWord.throwObservation, 1, "method", "3", "java.lang.Error", "bang");
+        output.transformation(0, "a;b");
+        output.text(KeyWord.endLine + KeyWord.classKeyWord + ";A;1" + KeyWord.endLine + KeyWord.getterKeyWord + ";1;size"
+                + KeyWord.endLine + KeyWord.assertObservation + ";3;1;4");
+        output.testEnd();
+        output.rawTestStart("raw");
+        output.testStart("test2");
+        output.methodCall(0, "other");
+        output.testEnd();
+        output.close();
+        return output instanceof BinaryTraceOutput ? new File(dir, "binary") : new File(dir, "text");
+    }
+
+    /**
+     * The records of a log, with their number of fields
+     */
+    private List<String> records(File file) throws IOException {
+        List<String> records = new ArrayList<>();
+        try (LogScanner scanner = new LogScanner(file)) {
+            while (scanner.next()) {
+                StringBuilder fields = new StringBuilder();
+                for (int i = 0; i < scanner.fieldCount(); i++) {
+                    assertEquals(scanner.field(i), scanner.symbol(i));
+                    fields.append(i == 0 ? "" : ";").append(scanner.field(i));
+                }
+                assertTrue(scanner.toString().startsWith(fields.toString()));
+                records.add(scanner + " #" + scanner.fieldCount());
+            }
+        }
+        return records;
+    }
+}
@@ -0,0 +1,52 @@
+package fr.inria.diversify.logger.branch;
+
+import fr.inria.diversify.logger.logger.TextTraceOutput;
+import fr.inria.diversify.logger.logger.TraceOutput;
+import fr.inria.diversify.util.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CoverageReaderTest {
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("coverageReader").toFile();
+        Files.write(new File(dir, "info").toPath(), "1;method;b0;b1\n".getBytes());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.forceDelete(dir);
+    }
+
+    @Test
+    public void testThreadStillRunning() throws IOException {
+        TraceOutput main = new TextTraceOutput(new File(dir, "logmain"));
+        main.testStart("test");
+        main.path("1", 1, ";b0");
+        main.testEnd();
+        main.close();
+
+        //log of a thread created by the test, closed before the thread ends: no test end record
+        TraceOutput child = new TextTraceOutput(new File(dir, "logchild"));
+        child.testStart("test");
+        child.path("1", 1, ";b1");
+        child.close();
+
+        List<TestCoverage> coverages = new CoverageReader(dir.getAbsolutePath()).loadTest();
+        assertEquals(1, coverages.size());
+        assertEquals("test", coverages.get(0).getTestName());
+        assertEquals(new HashSet<>(Arrays.asList("1.b0", "1.b1")), coverages.get(0).getAllBranch());
+    }
+}
@@ -0,0 +1,84 @@
+package fr.inria.diversify.logger.logger;
+
+import fr.inria.diversify.logger.LogScanner;
+import fr.inria.diversify.util.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class AsyncTraceOutputTest {
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("asyncTraceOutput").toFile();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.forceDelete(dir);
+    }
+
+    @Test
+    public void testBlock() throws IOException {
+        File file = new File(dir, "log");
+        AsyncTraceOutput output = new AsyncTraceOutput(new TextTraceOutput(file), 4, AsyncTraceOutput.BLOCK);
+        write(output);
+        output.close();
+
+        assertEquals(0, output.getDropped());
+        int calls = 0;
+        try (LogScanner scanner = new LogScanner(file)) {
+            assertTrue(scanner.next());
+            assertEquals("TS;test", scanner.toString());
+            while (scanner.next() && scanner.fieldEquals(0, KeyWord.methodCallObservation)) {
+                assertEquals(calls++, scanner.intField(1));
+            }
+            assertEquals("TE", scanner.toString());
+            assertFalse(scanner.next());
+        }
+        assertEquals(10000, calls);
+    }
+
+    @Test
+    public void testDrop() throws IOException {
+        File file = new File(dir, "log");
+        AsyncTraceOutput output = new AsyncTraceOutput(new TextTraceOutput(file), 4, AsyncTraceOutput.DROP);
+        write(output);
+        output.close();
+
+        //the test start and end records are never dropped
+        int calls = 0;
+        try (LogScanner scanner = new LogScanner(file)) {
+            assertTrue(scanner.next());
+            assertEquals("TS;test", scanner.toString());
+            while (scanner.next() && scanner.fieldEquals(0, KeyWord.methodCallObservation)) {
+                calls++;
+            }
+            assertEquals("TE", scanner.toString());
+            assertFalse(scanner.next());
+        }
+        assertEquals(10000, calls + output.getDropped());
+    }
+
+    @Test
+    public void testOverflowPolicy() {
+        assertEquals(AsyncTraceOutput.DROP, AsyncTraceOutput.overflowPolicy("drop"));
+        assertEquals(AsyncTraceOutput.BLOCK, AsyncTraceOutput.overflowPolicy("block"));
+        assertEquals(AsyncTraceOutput.BLOCK, AsyncTraceOutput.overflowPolicy("spill"));
+    }
+
+    private void write(TraceOutput output) throws IOException {
+        output.testStart("test");
+        for (int i = 0; i < 10000; i++) {
+            output.methodCall(i, "method");
+        }
+        output.testEnd();
+    }
+}
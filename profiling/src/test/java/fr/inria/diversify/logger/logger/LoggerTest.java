@@ -0,0 +1,52 @@
+package fr.inria.diversify.logger.logger;
+
+import fr.inria.diversify.logger.LogScanner;
+import fr.inria.diversify.util.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LoggerTest {
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("logger").toFile();
+        Logger.setLogDir(dir);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Logger.reset();
+        Logger.setLogDir(null);
+        FileUtils.forceDelete(dir);
+    }
+
+    @Test
+    public void testResetClosesLogs() throws IOException {
+        Thread thread = Thread.currentThread();
+        Logger.writeTestStart(thread, "test");
+        Logger.methodIn(thread, "method");
+        Logger.writeTestFinish(thread);
+        Logger.reset();
+
+        File[] files = dir.listFiles();
+        assertEquals(1, files.length);
+        List<String> records = new ArrayList<>();
+        try (LogScanner scanner = new LogScanner(files[0])) {
+            while (scanner.next()) {
+                records.add(scanner.toString());
+            }
+        }
+        assertEquals(Arrays.asList("test", "M;1;method", "TE"), records);
+    }
+}
@@ -0,0 +1,65 @@
+package fr.inria.diversify.logger.stack;
+
+import fr.inria.diversify.logger.logger.TextTraceOutput;
+import fr.inria.diversify.logger.logger.TraceOutput;
+import fr.inria.diversify.logger.stack.diff.TestReport;
+import fr.inria.diversify.util.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class CompareAllStackTraceTest {
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("compareAllStackTrace").toFile();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.forceDelete(dir);
+    }
+
+    @Test
+    public void testThreadsOfTest() throws Exception {
+        File original = new File(dir, "original");
+        File sosie = new File(dir, "sosie");
+        original.mkdir();
+        sosie.mkdir();
+        byte[] info = "id;1;a\nid;2;b\nid;3;c\nid;4;d\n".getBytes();
+        Files.write(new File(original, "info").toPath(), info);
+        Files.write(new File(sosie, "info").toPath(), info);
+        //the main thread of the test runs the same code, the thread it creates runs other code in the sosie
+        write(new File(original, "logmain_1_100_1"), 1, 2);
+        write(new File(original, "logThread-1_1_100_5"), 3);
+        write(new File(sosie, "logmain_2_200_1"), 1, 2);
+        write(new File(sosie, "logThread-1_2_200_7"), 4);
+
+        CompareAllStackTrace compare = new CompareAllStackTrace(original.getAbsolutePath(), sosie.getAbsolutePath(), false);
+        compare.findDiff();
+        TestReport report = compare.getReport().getTestReport("test");
+        Map<String, String> points = report.pointReport();
+        assertEquals("S", points.get("a"));
+        assertEquals("S", points.get("b"));
+        //c and d
+        assertTrue(report.summary().contains("diffCall: 2\n"));
+    }
+
+    private void write(File file, int... methods) throws IOException {
+        TraceOutput output = new TextTraceOutput(file);
+        output.testStart("test");
+        for (int i = 0; i < methods.length; i++) {
+            output.methodCall(i + 1, methods[i]);
+        }
+        output.testEnd();
+        output.close();
+    }
+}